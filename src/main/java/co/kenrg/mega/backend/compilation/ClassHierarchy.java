@@ -0,0 +1,90 @@
+package co.kenrg.mega.backend.compilation;
+
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.objectweb.asm.ClassReader;
+
+// Answers the supertype queries which ASM makes when computing stack map frames (see ClassWriter#getCommonSuperClass),
+// without loading any classes. Classes generated by the compiler are declared as they're compiled (so classes which
+// haven't been written yet, like those of other modules in the same build, are known); any other class is looked up by
+// reading the header of its class file from the classpath, and is cached.
+public class ClassHierarchy {
+    private static final String OBJECT = "java/lang/Object";
+
+    private static class ClassInfo {
+        @Nullable final String superName; // Only null for java/lang/Object
+        final boolean isInterface;
+
+        ClassInfo(@Nullable String superName, boolean isInterface) {
+            this.superName = superName;
+            this.isInterface = isInterface;
+        }
+    }
+
+    private final Map<String, ClassInfo> classes = Maps.newHashMap();
+    private final ClassLoader classpath;
+
+    public ClassHierarchy() {
+        this(ClassHierarchy.class.getClassLoader());
+    }
+
+    public ClassHierarchy(ClassLoader classpath) {
+        this.classpath = classpath;
+    }
+
+    public void declareClass(String internalName, String superName, boolean isInterface) {
+        this.classes.put(internalName, new ClassInfo(superName, isInterface));
+    }
+
+    // Interfaces are treated as java/lang/Object by the verifier, so the common superclass of an interface and any other
+    // type is java/lang/Object (which is also what ASM's default implementation returns).
+    public String getCommonSuperClass(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        if (getClassInfo(type1).isInterface || getClassInfo(type2).isInterface) {
+            return OBJECT;
+        }
+
+        Set<String> type1Ancestors = Sets.newHashSet();
+        for (String type = type1; type != null; type = getClassInfo(type).superName) {
+            type1Ancestors.add(type);
+        }
+        for (String type = type2; type != null; type = getClassInfo(type).superName) {
+            if (type1Ancestors.contains(type)) {
+                return type;
+            }
+        }
+        return OBJECT;
+    }
+
+    private ClassInfo getClassInfo(String internalName) {
+        ClassInfo classInfo = this.classes.get(internalName);
+        if (classInfo == null) {
+            classInfo = readClassInfo(internalName);
+            this.classes.put(internalName, classInfo);
+        }
+        return classInfo;
+    }
+
+    private ClassInfo readClassInfo(String internalName) {
+        try (InputStream classFile = this.classpath.getResourceAsStream(internalName + ".class")) {
+            if (classFile == null) {
+                throw new IllegalStateException("Class " + internalName + " is neither being compiled nor on the classpath");
+            }
+
+            ClassReader classReader = new ClassReader(classFile);
+            return new ClassInfo(classReader.getSuperName(), (classReader.getAccess() & ACC_INTERFACE) != 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read class file of " + internalName, e);
+        }
+    }
+}
@@ -1,28 +1,43 @@
 package co.kenrg.mega.backend.compilation;
 
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getInternalName;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getShapeClassName;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getShapeProperties;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isPrimitive;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isStructural;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmInternalName;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmMethodDescriptor;
+import static co.kenrg.mega.backend.compilation.optimization.LazyStaticInit.getHolderClassName;
+import static co.kenrg.mega.backend.compilation.optimization.LazyStaticInit.getInitMethodName;
 import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionCompiler.compileArrowFunction;
+import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionIndyCompiler.compileArrowFunctionImplMethod;
+import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionIndyCompiler.compileLambdaMetafactoryCallSite;
+import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionIndyCompiler.getImplMethodName;
 import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionWithClosureCompiler.compileArrowFunctionWithClosure;
 import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionWithClosureCompiler.getInitMethodDesc;
-import static co.kenrg.mega.backend.compilation.subcompilers.BooleanInfixExpressionCompiler.compileComparisonExpression;
-import static co.kenrg.mega.backend.compilation.subcompilers.BooleanInfixExpressionCompiler.compileConditionalAndExpression;
-import static co.kenrg.mega.backend.compilation.subcompilers.BooleanInfixExpressionCompiler.compileConditionalOrExpression;
+import static co.kenrg.mega.backend.compilation.subcompilers.BooleanInfixExpressionCompiler.compileBooleanExpression;
+import static co.kenrg.mega.backend.compilation.subcompilers.BooleanInfixExpressionCompiler.compileConditionalJump;
 import static co.kenrg.mega.backend.compilation.subcompilers.CallExpressionCompiler.compileInvocation;
-import static co.kenrg.mega.backend.compilation.subcompilers.MethodProxyCompiler.compileFuncProxy;
-import static co.kenrg.mega.backend.compilation.subcompilers.PrimitiveBoxingUnboxingCompiler.compileBoxPrimitiveType;
-import static co.kenrg.mega.backend.compilation.subcompilers.PrimitiveBoxingUnboxingCompiler.compileUnboxPrimitiveType;
+import static co.kenrg.mega.backend.compilation.subcompilers.CallExpressionCompiler.compileSelfTailCall;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.compileDefaultArgumentOverloads;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.findOmittedArgumentPatterns;
+import static co.kenrg.mega.backend.compilation.subcompilers.LazyStaticInitHolderCompiler.compileHolderClass;
+import static co.kenrg.mega.backend.compilation.subcompilers.MatchExpressionCompiler.compileMatchExpression;
+import static co.kenrg.mega.backend.compilation.subcompilers.ObjectShapeCompiler.compileShapeClass;
+import static co.kenrg.mega.backend.compilation.subcompilers.ObjectShapeCompiler.getShapeInitMethodDesc;
+import static co.kenrg.mega.backend.compilation.subcompilers.PropertyAccessCompiler.compileStructuralPropertyRead;
 import static co.kenrg.mega.backend.compilation.subcompilers.StaticMethodReferenceCompiler.compileMethodReference;
 import static co.kenrg.mega.backend.compilation.subcompilers.StringInfixExpressionCompiler.compileStringConcatenation;
+import static co.kenrg.mega.backend.compilation.subcompilers.StringInfixExpressionCompiler.compileStringInterpolation;
 import static co.kenrg.mega.backend.compilation.subcompilers.StringInfixExpressionCompiler.compileStringRepetition;
 import static co.kenrg.mega.backend.compilation.subcompilers.TypeDeclarationStatementCompiler.compileTypeDeclaration;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.arrayLoadInsn;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.arrayStoreInsn;
 import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.loadInsn;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.newArrayTypeOperand;
 import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.returnInsn;
 import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.storeInsn;
-import static org.objectweb.asm.Opcodes.AALOAD;
-import static org.objectweb.asm.Opcodes.AASTORE;
 import static org.objectweb.asm.Opcodes.ACC_FINAL;
 import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
 import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
@@ -48,30 +63,47 @@ import static org.objectweb.asm.Opcodes.IADD;
 import static org.objectweb.asm.Opcodes.ICONST_0;
 import static org.objectweb.asm.Opcodes.ICONST_1;
 import static org.objectweb.asm.Opcodes.IDIV;
-import static org.objectweb.asm.Opcodes.IFEQ;
-import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFLE;
 import static org.objectweb.asm.Opcodes.IF_ICMPGE;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.IMUL;
 import static org.objectweb.asm.Opcodes.INEG;
-import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
 import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
 import static org.objectweb.asm.Opcodes.ISTORE;
 import static org.objectweb.asm.Opcodes.ISUB;
 import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
 import static org.objectweb.asm.Opcodes.POP;
 import static org.objectweb.asm.Opcodes.PUTSTATIC;
 import static org.objectweb.asm.Opcodes.RETURN;
-import static org.objectweb.asm.Opcodes.V1_6;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.function.Function;
 
+import co.kenrg.mega.backend.compilation.CompilerOptions.LambdaCodegen;
+import co.kenrg.mega.backend.compilation.ir.AstToIr;
+import co.kenrg.mega.backend.compilation.ir.IrEmitter;
+import co.kenrg.mega.backend.compilation.ir.IrFunction;
+import co.kenrg.mega.backend.compilation.ir.PassManager;
+import co.kenrg.mega.backend.compilation.optimization.ConstantFolder;
+import co.kenrg.mega.backend.compilation.optimization.ConstantFoldingReport;
+import co.kenrg.mega.backend.compilation.optimization.Inliner;
+import co.kenrg.mega.backend.compilation.optimization.LazyStaticInit;
+import co.kenrg.mega.backend.compilation.optimization.InliningReport;
+import co.kenrg.mega.backend.compilation.optimization.PeepholeOptimizer;
+import co.kenrg.mega.backend.compilation.optimization.PeepholeReport;
+import co.kenrg.mega.backend.compilation.optimization.ScalarReplacement;
+import co.kenrg.mega.backend.compilation.optimization.ScalarReplacementReport;
+import co.kenrg.mega.backend.compilation.optimization.SelfTailCalls;
 import co.kenrg.mega.backend.compilation.scope.Binding;
 import co.kenrg.mega.backend.compilation.scope.BindingTypes;
 import co.kenrg.mega.backend.compilation.scope.FocusedMethod;
@@ -90,31 +122,39 @@ import co.kenrg.mega.frontend.ast.expression.IfExpression;
 import co.kenrg.mega.frontend.ast.expression.IndexExpression;
 import co.kenrg.mega.frontend.ast.expression.InfixExpression;
 import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
 import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
 import co.kenrg.mega.frontend.ast.expression.Parameter;
 import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
 import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
 import co.kenrg.mega.frontend.ast.expression.RangeExpression;
+import co.kenrg.mega.frontend.ast.expression.StringInterpolationExpression;
 import co.kenrg.mega.frontend.ast.expression.StringLiteral;
 import co.kenrg.mega.frontend.ast.iface.Expression;
 import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
 import co.kenrg.mega.frontend.ast.iface.Node;
 import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.BreakStatement;
+import co.kenrg.mega.frontend.ast.statement.ContinueStatement;
 import co.kenrg.mega.frontend.ast.statement.ForLoopStatement;
 import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
 import co.kenrg.mega.frontend.ast.statement.ImportStatement;
 import co.kenrg.mega.frontend.ast.statement.TypeDeclarationStatement;
 import co.kenrg.mega.frontend.ast.statement.ValStatement;
 import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
 import co.kenrg.mega.frontend.typechecking.TypeCheckResult;
 import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
 import co.kenrg.mega.frontend.typechecking.types.ArrayType;
 import co.kenrg.mega.frontend.typechecking.types.FunctionType;
 import co.kenrg.mega.frontend.typechecking.types.FunctionType.Kind;
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.ObjectType;
 import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -123,9 +163,15 @@ import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 
 public class Compiler {
+    // Once a static initializer's code reaches this size (in bytes), subsequent top-level statements are compiled into a
+    // helper method which it calls, so that large modules don't exceed the JVM's limit of 64KB per method.
+    private static final int MAX_STATIC_INIT_CHUNK_SIZE = 32 * 1024;
+
     private final TypeEnvironment typeEnv;
     private final List<String> errors = Lists.newArrayList();
     private final String className;
+    private final CompilerOptions options;
+    private final ClassHierarchy classHierarchy;
 
     public final ClassWriter cw;
     public final MethodVisitor clinitWriter;
@@ -133,10 +179,32 @@ public class Compiler {
     public Scope scope;
 
     private List<Pair<String, byte[]>> innerClasses = Lists.newArrayList();
+    private Set<String> innerClassNames = Sets.newHashSet(); // Of the innerClasses, so that checking for one is O(1)
     private Function<String, TypeCheckResult<Module>> typedModuleProvider;
+    private ConstantFoldingReport constantFoldingReport;
+    private InliningReport inliningReport;
+    private ScalarReplacementReport scalarReplacementReport;
+    private PeepholeReport peepholeReport;
+    private PassManager irPassManager;
+    private List<IrFunction> irFunctions = Lists.newArrayList(); // The functions compiled via the mid-level IR
+    private Set<CallExpression> selfTailCalls = Collections.emptySet(); // Of the function declaration being compiled
+    private Map<String, Set<List<String>>> omittedArgumentPatterns = Collections.emptyMap(); // By called function's name
+    private Set<String> lazyStaticBindings = Collections.emptySet(); // Names of the top-level vals initialized on first use
+    private int numStaticInitChunks = 0; // Helper methods the static initializer has been split into
+    private Deque<Pair<Label, Label>> loopLabels = new ArrayDeque<>(); // The (continue, break) targets of the enclosing loops
 
     public Compiler(String className, TypeEnvironment typeEnv) {
-        this(className, null, "java/lang/Object", null, typeEnv);
+        this(className, typeEnv, CompilerOptions.DEFAULT);
+    }
+
+    public Compiler(String className, TypeEnvironment typeEnv, CompilerOptions options) {
+        this(className, typeEnv, options, new ClassHierarchy());
+    }
+
+    // Modules compiled in the same build should share a ClassHierarchy, so that frames computed for one module's classes
+    // can refer to classes of the other modules, which may not have been written yet.
+    public Compiler(String className, TypeEnvironment typeEnv, CompilerOptions options, ClassHierarchy classHierarchy) {
+        this(className, null, "java/lang/Object", null, typeEnv, options, classHierarchy);
 
         // TODO: Flesh out the <init> method writer a bit, as needed
         MethodVisitor initWriter = this.cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
@@ -149,34 +217,124 @@ public class Compiler {
     }
 
     public Compiler(String className, String signature, String superName, String[] interfaces, TypeEnvironment typeEnv) {
+        this(className, signature, superName, interfaces, typeEnv, CompilerOptions.DEFAULT, new ClassHierarchy());
+    }
+
+    public Compiler(String className, String signature, String superName, String[] interfaces, TypeEnvironment typeEnv, CompilerOptions options, ClassHierarchy classHierarchy) {
         this.className = className;
         this.typeEnv = typeEnv;
-
-        this.cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
-        this.cw.visit(V1_6, ACC_PUBLIC, className, signature, superName, interfaces);
+        this.options = options;
+        this.classHierarchy = classHierarchy;
+
+        // Frames are computed from the compiler's own knowledge of the class hierarchy, rather than by loading classes
+        this.classHierarchy.declareClass(className, superName, false);
+        this.cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return classHierarchy.getCommonSuperClass(type1, type2);
+            }
+        };
+        this.cw.visit(options.classFileVersion(), ACC_PUBLIC, className, signature, superName, interfaces);
 
         // Note: When creating a Compiler specifically for compiling a class w/ a designated superclass, the assumption
         // is that the consumer will handle writing the <init> method visitor.
 
         this.clinitWriter = this.cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
         this.scope = new Scope(new FocusedMethod(this.clinitWriter, null, null));
+        if (options.midLevelIr) {
+            this.irPassManager = PassManager.standardPipeline();
+        }
 
         // Initialize <clinit> method writer for class. This method writer will be used to initialize all the static
         // values for the class (namespace).
         clinitWriter.visitCode();
     }
 
+    @Nullable
+    public ConstantFoldingReport getConstantFoldingReport() { // Only present after compiling a Module with constant folding enabled
+        return this.constantFoldingReport;
+    }
+
+    @Nullable
+    public InliningReport getInliningReport() { // Only present after compiling a Module with inlining enabled
+        return this.inliningReport;
+    }
+
+    @Nullable
+    public ScalarReplacementReport getScalarReplacementReport() { // Only present after compiling a Module with scalar replacement enabled
+        return this.scalarReplacementReport;
+    }
+
+    @Nullable
+    public PeepholeReport getPeepholeReport() { // Only present after compiling with any peephole rules enabled
+        return this.peepholeReport;
+    }
+
+    @Nullable
+    public PassManager getIrPassManager() { // Only present when compiling with the mid-level IR enabled
+        return this.irPassManager;
+    }
+
+    public List<IrFunction> getIrFunctions() {
+        return this.irFunctions;
+    }
+
     public void setTypedModuleProvider(Function<String, TypeCheckResult<Module>> typedModuleProvider) {
         this.typedModuleProvider = typedModuleProvider;
     }
 
     public <T extends Node> List<Pair<String, byte[]>> compile(T node) {
-        compileNode(node);
+        // Found before optimizing, since importing modules find them in the (unoptimized) typechecked module
+        if (node instanceof Module && this.options.lazyStaticInit) {
+            this.lazyStaticBindings = LazyStaticInit.find((Module) node);
+        }
+
+        Node optimizedNode = node instanceof Module ? optimize((Module) node) : node;
+        this.omittedArgumentPatterns = findOmittedArgumentPatterns(optimizedNode);
+        compileNode(optimizedNode);
+
+        if (this.scope.focusedMethod.writer != this.clinitWriter) {
+            endStaticInitChunk(this.scope.focusedMethod.writer);
+        }
         this.clinitWriter.visitInsn(RETURN);
         this.clinitWriter.visitMaxs(-1, -1);
         this.clinitWriter.visitEnd();
 
-        return results();
+        List<Pair<String, byte[]>> classes = results();
+        if (!this.options.peepholeRules.isEmpty()) {
+            PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(this.options.peepholeRules, this.classHierarchy);
+            classes = peepholeOptimizer.optimize(classes);
+            this.peepholeReport = peepholeOptimizer.getReport();
+        }
+        return classes;
+    }
+
+    // Inlining runs first, so that constants passed as arguments can be folded into the inlined bodies, and objects
+    // passed as arguments may no longer escape
+    private Module optimize(Module module) {
+        if (this.options.inlineFunctions()) {
+            Inliner inliner = new Inliner(this.options.inlineMaxSize, this.options.inlineMaxDepth);
+            module = inliner.inline(module);
+            this.inliningReport = inliner.getReport();
+        }
+        if (this.options.scalarReplacement) {
+            ScalarReplacement scalarReplacement = new ScalarReplacement();
+            module = scalarReplacement.replace(module);
+            this.scalarReplacementReport = scalarReplacement.getReport();
+        }
+        if (this.options.foldConstants) {
+            ConstantFolder constantFolder = new ConstantFolder();
+            module = constantFolder.fold(module);
+            this.constantFoldingReport = constantFolder.getReport();
+        }
+        return module;
+    }
+
+    private void addInnerClasses(List<Pair<String, byte[]>> generatedClasses) {
+        for (Pair<String, byte[]> generatedClass : generatedClasses) {
+            this.innerClasses.add(generatedClass);
+            this.innerClassNames.add(generatedClass.getLeft());
+        }
     }
 
     public List<Pair<String, byte[]>> results() { // Used publicly by sub-compilers
@@ -190,7 +348,7 @@ public class Compiler {
 
         // Statements
         if (node instanceof Module) {
-            this.compileStatements(((Module) node).statements);
+            this.compileModuleStatements(((Module) node).statements);
         } else if (node instanceof ExpressionStatement) {
             this.compileNode(((ExpressionStatement) node).expression);
         } else if (node instanceof ValStatement) {
@@ -199,6 +357,12 @@ public class Compiler {
             this.compileVarStatement((VarStatement) node);
         } else if (node instanceof ForLoopStatement) {
             this.compileForLoopStatement((ForLoopStatement) node);
+        } else if (node instanceof WhileLoopStatement) {
+            this.compileWhileLoopStatement((WhileLoopStatement) node);
+        } else if (node instanceof BreakStatement) {
+            this.scope.focusedMethod.writer.visitJumpInsn(GOTO, this.loopLabels.peek().getRight());
+        } else if (node instanceof ContinueStatement) {
+            this.scope.focusedMethod.writer.visitJumpInsn(GOTO, this.loopLabels.peek().getLeft());
         } else if (node instanceof FunctionDeclarationStatement) {
             this.compileFunctionDeclarationStatement((FunctionDeclarationStatement) node);
         } else if (node instanceof TypeDeclarationStatement) {
@@ -216,6 +380,8 @@ public class Compiler {
             this.compileLiteral(node);
         } else if (node instanceof StringLiteral) {
             this.compileLiteral(node);
+        } else if (node instanceof StringInterpolationExpression) {
+            compileStringInterpolation((StringInterpolationExpression) node, this.scope, this.options, this::compileNode);
         } else if (node instanceof ArrayLiteral) {
             this.compileArrayLiteral((ArrayLiteral) node);
         } else if (node instanceof ObjectLiteral) {
@@ -228,6 +394,10 @@ public class Compiler {
             this.compileInfixExpression((InfixExpression) node);
         } else if (node instanceof IfExpression) {
             this.compileIfExpression((IfExpression) node);
+        } else if (node instanceof MatchExpression) {
+            compileMatchExpression((MatchExpression) node, this.scope, this::compileNode);
+        } else if (node instanceof BlockExpression) {
+            this.compileBlockExpression((BlockExpression) node);
         } else if (node instanceof Identifier) {
             this.compileIdentifier((Identifier) node);
         } else if (node instanceof AssignmentExpression) {
@@ -247,6 +417,43 @@ public class Compiler {
         this.scope.context.popContext();
     }
 
+    private void compileModuleStatements(List<Statement> statements) {
+        for (Statement statement : statements) {
+            this.compileNode(statement);
+
+            MethodVisitor writer = this.scope.focusedMethod.writer;
+            if (getCodeSize(writer) >= MAX_STATIC_INIT_CHUNK_SIZE) {
+                if (writer != this.clinitWriter) {
+                    endStaticInitChunk(writer);
+                }
+                this.scope.refocus(new FocusedMethod(startStaticInitChunk(), null, null));
+            }
+        }
+    }
+
+    // Each chunk is called from <clinit> in turn, so top-level statements are still run in order
+    private MethodVisitor startStaticInitChunk() {
+        String chunkMethodName = "$clinit$" + (++this.numStaticInitChunks);
+        this.clinitWriter.visitMethodInsn(INVOKESTATIC, this.className, chunkMethodName, "()V", false);
+
+        MethodVisitor chunkWriter = this.cw.visitMethod(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, chunkMethodName, "()V", null, null);
+        chunkWriter.visitCode();
+        return chunkWriter;
+    }
+
+    private void endStaticInitChunk(MethodVisitor chunkWriter) {
+        chunkWriter.visitInsn(RETURN);
+        chunkWriter.visitMaxs(-1, -1);
+        chunkWriter.visitEnd();
+    }
+
+    // The offset of a label visited at the current position is the size of the code written so far
+    private static int getCodeSize(MethodVisitor writer) {
+        Label label = new Label();
+        writer.visitLabel(label);
+        return label.getOffset();
+    }
+
     private void compileStatements(List<Statement> statements) {
         for (Statement statement : statements) {
             this.compileNode(statement);
@@ -258,6 +465,18 @@ public class Compiler {
     //***************************************************************
 
     private void compileValStatement(ValStatement stmt) {
+        if (this.scope.isRoot() && this.lazyStaticBindings.contains(stmt.name.value)) {
+            compileLazyBinding(stmt.name.value, stmt.value.getType(), stmt.isExported, stmt.value);
+            return;
+        }
+        if (!stmt.isExported && stmt.value instanceof ArrowFunctionExpression) {
+            FunctionType fnType = (FunctionType) stmt.value.getType();
+            assert fnType != null; // Should be populated by typechecking pass
+            if (fnType.getCapturedBindings().isEmpty()) {
+                compileLambdaBinding(stmt.name.value, (ArrowFunctionExpression) stmt.value);
+                return;
+            }
+        }
         compileBinding(stmt.name.value, stmt.value.getType(), stmt.isExported, false, () -> compileNode(stmt.value));
     }
 
@@ -271,7 +490,7 @@ public class Compiler {
 
         if (this.scope.isRoot()) {
             int access = ACC_STATIC; // At root scope, declare binding as static in the class
-            if (!isMutable) {
+            if (!isMutable && this.scope.focusedMethod.writer == this.clinitWriter) { // Final fields may only be set in <clinit>
                 access = access | ACC_FINAL;
             }
             if (isExported) {
@@ -281,7 +500,7 @@ public class Compiler {
             }
             cw.visitField(access, bindingName, jvmDescriptor, null, null);
             onCompileNode.run();
-            clinitWriter.visitFieldInsn(PUTSTATIC, className, bindingName, jvmDescriptor);
+            this.scope.focusedMethod.writer.visitFieldInsn(PUTSTATIC, className, bindingName, jvmDescriptor);
 
             this.scope.addBinding(bindingName, bindingType, this.className, BindingTypes.STATIC, isMutable, isExported);
             return;
@@ -293,13 +512,78 @@ public class Compiler {
         this.scope.addBinding(bindingName, bindingType, this.className, BindingTypes.LOCAL, isMutable, isExported);
     }
 
+    // See LazyStaticInit; the binding is read from its holder class, which initializes it when first read
+    private void compileLazyBinding(String bindingName, MegaType bindingType, boolean isExported, Expression value) {
+        assert bindingType != null; // Should have been set during typechecking pass
+        String jvmDescriptor = jvmDescriptor(bindingType, false);
+
+        MethodVisitor initWriter = this.cw.visitMethod(ACC_STATIC | ACC_SYNTHETIC, getInitMethodName(bindingName), "()" + jvmDescriptor, null, null);
+        initWriter.visitCode();
+        Scope origScope = this.scope;
+        this.scope = this.scope.createMethodChild(new FocusedMethod(initWriter, null, null));
+        compileNode(value);
+        initWriter.visitInsn(returnInsn(bindingType));
+        initWriter.visitMaxs(-1, -1);
+        initWriter.visitEnd();
+        this.scope = origScope;
+
+        String holderClassName = getHolderClassName(this.className, bindingName);
+        int access = ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC;
+        if (isExported) {
+            access = access | ACC_PUBLIC;
+        } else {
+            access = access | ACC_PRIVATE;
+        }
+        this.cw.visitInnerClass(holderClassName, this.className, holderClassName.substring(this.className.length() + 1), access);
+        List<Pair<String, byte[]>> generatedClasses = compileHolderClass(this.className, holderClassName, bindingName, bindingType, isExported, this.typeEnv, this.options, this.classHierarchy, access);
+        addInnerClasses(generatedClasses);
+
+        this.scope.addBinding(bindingName, bindingType, holderClassName, BindingTypes.STATIC, false, isExported);
+    }
+
+    // A val bound to an arrow function which captures nothing needs no function object unless its value escapes: the
+    // arrow function is compiled to a static method, which calls through the val invoke directly, and a function object
+    // is only created where the val is used as a value (see loadIdentifier). Exported vals are still compiled to fields,
+    // since that's where importing modules read them from.
+    private void compileLambdaBinding(String bindingName, ArrowFunctionExpression node) {
+        FunctionType fnType = (FunctionType) node.getType();
+        assert fnType != null; // Should be populated by typechecking pass
+
+        this.scope.context.pushContext(node);
+        String lambdaName = this.scope.context.getLambdaName();
+        this.scope.context.incLambdaCountOfPreviousContext();
+
+        // Not private, since the function object's class (if any) invokes it
+        compileArrowFunctionImplMethod(this.className, this.cw, getImplMethodName(lambdaName), ACC_STATIC | ACC_SYNTHETIC, node, this.scope, (n, scope) -> {
+            Scope s = this.scope; // Preserve original scope
+            this.scope = scope;
+            compileNode(n);
+            this.scope = s;
+        });
+        this.scope.context.popContext();
+
+        this.scope.addLambdaBinding(bindingName, fnType, this.className, lambdaName);
+    }
+
     private void compileForLoopStatement(ForLoopStatement node) {
+        if (node.iteratee instanceof RangeExpression) {
+            compileRangeForLoopStatement(node, (RangeExpression) node.iteratee);
+            return;
+        }
+
+        MegaType iterateeType = node.iteratee.getType();
+        assert iterateeType != null; // Should be populated by typechecking pass
+        if (iterateeType == PrimitiveTypes.INT_RANGE) {
+            compileIntRangeForLoopStatement(node);
+            return;
+        }
+
         String tag = RandomStringUtils.randomAlphanumeric(6); // Tag to uniquely id synthesized loop variables
 
         compileNode(node.iteratee);
         int iterateeIndex = this.scope.nextLocalVariableIndex();
         this.scope.focusedMethod.writer.visitVarInsn(ASTORE, iterateeIndex);
-        this.scope.addBinding("$$for_loop_iteratee_" + tag, node.iteratee.getType(), this.className, BindingTypes.LOCAL, false);
+        this.scope.addBinding("$$for_loop_iteratee_" + tag, iterateeType, this.className, BindingTypes.LOCAL, false);
 
         int iterateeLengthIndex = this.scope.nextLocalVariableIndex();
         this.scope.focusedMethod.writer.visitVarInsn(ALOAD, iterateeIndex);
@@ -322,22 +606,22 @@ public class Compiler {
         this.scope.focusedMethod.writer.visitVarInsn(ILOAD, iterateeLengthIndex);
         this.scope.focusedMethod.writer.visitJumpInsn(IF_ICMPGE, loopEnd);
 
+        // Each element is loaded from the array by the instruction for its element type (eg. IALOAD for an Array[Int]),
+        // so it's never boxed; arrays of references are typed by their element type, so their elements need no CHECKCAST
         String iteratorName = node.iterator.value;
         int iteratorIndex = this.scope.nextLocalVariableIndex();
+        MegaType elType = ((ArrayType) iterateeType).typeArg;
         this.scope.focusedMethod.writer.visitVarInsn(ALOAD, iterateeIndex);
         this.scope.focusedMethod.writer.visitVarInsn(ILOAD, iteratorIndexIndex);
-        ArrayType iterateeType = (ArrayType) node.iteratee.getType();
-        assert iterateeType != null; // Should be populated by typechecking pass
-        if (iterateeType.typeArg == PrimitiveTypes.INTEGER) {
-            this.scope.focusedMethod.writer.visitInsn(AALOAD);
-            compileUnboxPrimitiveType(PrimitiveTypes.INTEGER, this.scope.focusedMethod.writer);
-            this.scope.focusedMethod.writer.visitVarInsn(ISTORE, iteratorIndex);
-        }
+        this.scope.focusedMethod.writer.visitInsn(arrayLoadInsn(elType));
+        this.scope.focusedMethod.writer.visitVarInsn(storeInsn(elType), iteratorIndex);
 
         this.scope.addBinding(iteratorName, node.iterator.getType(), this.className, BindingTypes.LOCAL, false);
 
-        compileBlockExpression(node.block);
+        Label loopContinue = new Label();
+        compileLoopBody(node.block, loopContinue, loopEnd);
 
+        this.scope.focusedMethod.writer.visitLabel(loopContinue);
         this.scope.focusedMethod.writer.visitIincInsn(iteratorIndexIndex, 1);
 
         this.scope.focusedMethod.writer.visitJumpInsn(GOTO, loopStart);
@@ -346,6 +630,132 @@ public class Compiler {
         this.scope.focusedMethod.writer.visitFrame(F_CHOP, 3, null, 0, null);
     }
 
+    // Looping over a range literal (`for x in a..b`) doesn't need the range to be materialized; the iterator itself is
+    // used as the induction variable of a counted loop.
+    private void compileRangeForLoopStatement(ForLoopStatement node, RangeExpression range) {
+        String tag = RandomStringUtils.randomAlphanumeric(6); // Tag to uniquely id synthesized loop variables
+
+        // Both bounds are evaluated before the iterator is bound, since the iterator may shadow a binding used in them
+        compileNode(range.leftBound);
+        compileNode(range.rightBound);
+
+        int rangeEndIndex = this.scope.nextLocalVariableIndex();
+        this.scope.focusedMethod.writer.visitVarInsn(ISTORE, rangeEndIndex);
+        this.scope.addBinding("$$for_loop_range_end_" + tag, PrimitiveTypes.INTEGER, this.className, BindingTypes.LOCAL, false);
+
+        int iteratorIndex = this.scope.nextLocalVariableIndex();
+        this.scope.focusedMethod.writer.visitVarInsn(ISTORE, iteratorIndex);
+        this.scope.addBinding(node.iterator.value, PrimitiveTypes.INTEGER, this.className, BindingTypes.LOCAL, false);
+
+        Label loopStart = new Label();
+        Label loopEnd = new Label();
+
+        this.scope.focusedMethod.writer.visitLabel(loopStart);
+        Object[] localsSignatures = this.scope.getLocalsSignatures();
+        this.scope.focusedMethod.writer.visitFrame(F_FULL, localsSignatures.length, localsSignatures, 0, null);
+        this.scope.focusedMethod.writer.visitVarInsn(ILOAD, iteratorIndex);
+        this.scope.focusedMethod.writer.visitVarInsn(ILOAD, rangeEndIndex);
+        this.scope.focusedMethod.writer.visitJumpInsn(IF_ICMPGE, loopEnd);
+
+        Label loopContinue = new Label();
+        compileLoopBody(node.block, loopContinue, loopEnd);
+
+        this.scope.focusedMethod.writer.visitLabel(loopContinue);
+        this.scope.focusedMethod.writer.visitIincInsn(iteratorIndex, 1);
+        this.scope.focusedMethod.writer.visitJumpInsn(GOTO, loopStart);
+
+        this.scope.focusedMethod.writer.visitLabel(loopEnd);
+        this.scope.focusedMethod.writer.visitFrame(F_CHOP, 2, null, 0, null);
+    }
+
+    // Looping over an IntRange value reads its start, step and size once, up front. The iterator is then stepped from the
+    // start by the step, counting down the remaining elements, rather than each element being computed by IntRange#get
+    // (which checks the index against the range's size on every call).
+    private void compileIntRangeForLoopStatement(ForLoopStatement node) {
+        String tag = RandomStringUtils.randomAlphanumeric(6); // Tag to uniquely id synthesized loop variables
+
+        compileNode(node.iteratee);
+        this.scope.focusedMethod.writer.visitInsn(DUP);
+        this.scope.focusedMethod.writer.visitInsn(DUP);
+
+        int stepIndex = this.scope.nextLocalVariableIndex();
+        this.scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, StdLib.IntRange, "step", "()I", false);
+        this.scope.focusedMethod.writer.visitVarInsn(ISTORE, stepIndex);
+        this.scope.addBinding("$$for_loop_range_step_" + tag, PrimitiveTypes.INTEGER, this.className, BindingTypes.LOCAL, false);
+
+        int remainingIndex = this.scope.nextLocalVariableIndex();
+        this.scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, StdLib.IntRange, "size", "()I", false);
+        this.scope.focusedMethod.writer.visitVarInsn(ISTORE, remainingIndex);
+        this.scope.addBinding("$$for_loop_range_remaining_" + tag, PrimitiveTypes.INTEGER, this.className, BindingTypes.LOCAL, false);
+
+        int iteratorIndex = this.scope.nextLocalVariableIndex();
+        this.scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, StdLib.IntRange, "start", "()I", false);
+        this.scope.focusedMethod.writer.visitVarInsn(ISTORE, iteratorIndex);
+        this.scope.addBinding(node.iterator.value, PrimitiveTypes.INTEGER, this.className, BindingTypes.LOCAL, false);
+
+        Label loopStart = new Label();
+        Label loopEnd = new Label();
+
+        this.scope.focusedMethod.writer.visitLabel(loopStart);
+        Object[] localsSignatures = this.scope.getLocalsSignatures();
+        this.scope.focusedMethod.writer.visitFrame(F_FULL, localsSignatures.length, localsSignatures, 0, null);
+        this.scope.focusedMethod.writer.visitVarInsn(ILOAD, remainingIndex);
+        this.scope.focusedMethod.writer.visitJumpInsn(IFLE, loopEnd);
+
+        Label loopContinue = new Label();
+        compileLoopBody(node.block, loopContinue, loopEnd);
+
+        this.scope.focusedMethod.writer.visitLabel(loopContinue);
+        this.scope.focusedMethod.writer.visitIincInsn(remainingIndex, -1);
+        this.scope.focusedMethod.writer.visitVarInsn(ILOAD, iteratorIndex);
+        this.scope.focusedMethod.writer.visitVarInsn(ILOAD, stepIndex);
+        this.scope.focusedMethod.writer.visitInsn(IADD);
+        this.scope.focusedMethod.writer.visitVarInsn(ISTORE, iteratorIndex);
+        this.scope.focusedMethod.writer.visitJumpInsn(GOTO, loopStart);
+
+        this.scope.focusedMethod.writer.visitLabel(loopEnd);
+        this.scope.focusedMethod.writer.visitFrame(F_CHOP, 3, null, 0, null);
+    }
+
+    private void compileWhileLoopStatement(WhileLoopStatement node) {
+        Label loopStart = new Label();
+        Label loopEnd = new Label();
+
+        this.scope.focusedMethod.writer.visitLabel(loopStart);
+        Object[] localsSignatures = this.scope.getLocalsSignatures();
+        this.scope.focusedMethod.writer.visitFrame(F_FULL, localsSignatures.length, localsSignatures, 0, null);
+        compileConditionalJump(node.condition, false, loopEnd, this.scope, this::compileNode);
+
+        compileLoopBody(node.block, loopStart, loopEnd);
+        this.scope.focusedMethod.writer.visitJumpInsn(GOTO, loopStart);
+
+        this.scope.focusedMethod.writer.visitLabel(loopEnd);
+        this.scope.focusedMethod.writer.visitFrame(F_SAME, 0, null, 0, null);
+    }
+
+    // A loop's body is run for its effects, so the values of its expression statements are discarded (otherwise they'd
+    // accumulate on the stack across iterations). Within the body, `continue` and `break` jump to the given labels.
+    private void compileLoopBody(BlockExpression block, Label continueLabel, Label breakLabel) {
+        Scope origScope = this.scope;
+        this.scope = this.scope.createChild();
+        this.loopLabels.push(Pair.of(continueLabel, breakLabel));
+
+        for (Statement statement : block.statements) {
+            compileNode(statement);
+
+            if (statement instanceof ExpressionStatement) {
+                MegaType type = statement.getType();
+                assert type != null; // Should be populated by typechecking pass
+                if (type != PrimitiveTypes.UNIT) {
+                    this.scope.focusedMethod.writer.visitInsn(POP);
+                }
+            }
+        }
+
+        this.loopLabels.pop();
+        this.scope = origScope;
+    }
+
     private void compileFunctionDeclarationStatement(FunctionDeclarationStatement node) {
         String methodName = node.name.value;
         TypeEnvironment.Binding methodBinding = this.typeEnv.getBinding(methodName);
@@ -361,26 +771,44 @@ public class Compiler {
         }
         MethodVisitor methodWriter = this.cw.visitMethod(access, methodName, funcDesc, null, null);
 
+        // The method's binding is added before its body is compiled, so that it can call itself recursively
+        this.scope.addBinding(methodName, fnType, this.className, BindingTypes.METHOD, false, node.isExported);
+
+        Label methodStart = new Label();
         Scope origScope = this.scope;
-        this.scope = this.scope.createChild(new FocusedMethod(methodWriter, null, null));
+        this.scope = this.scope.createMethodChild(new FocusedMethod(methodWriter, methodStart, null));
         for (Parameter param : node.parameters) {
             this.scope.addBinding(param.ident.value, param.getType(), this.className, BindingTypes.LOCAL, false);
         }
         methodWriter.visitCode();
 
-        if (node.body instanceof BlockExpression) {
-            compileStatements(((BlockExpression) node.body).statements);
+        // Bodies which can be lowered to the mid-level IR are compiled from it, after running its passes over them
+        IrFunction irFunction = this.options.midLevelIr ? AstToIr.lower(node, fnType, this.scope, this.className) : null;
+        if (irFunction != null) {
+            this.irPassManager.run(irFunction);
+            IrEmitter.emit(irFunction, methodWriter);
+            this.irFunctions.add(irFunction);
         } else {
-            compileNode(node.body);
+            // Self-calls in tail position are compiled as jumps back to the start of the method (see compileCallExpression)
+            this.selfTailCalls = SelfTailCalls.find(node);
+            methodWriter.visitLabel(methodStart);
+            if (!this.selfTailCalls.isEmpty()) {
+                methodWriter.visitFrame(F_SAME, 0, null, 0, null);
+            }
+
+            if (node.body instanceof BlockExpression) {
+                compileStatements(((BlockExpression) node.body).statements);
+            } else {
+                compileNode(node.body);
+            }
+            methodWriter.visitInsn(returnInsn(fnType.returnType));
         }
-        methodWriter.visitInsn(returnInsn(fnType.returnType));
 
         methodWriter.visitMaxs(-1, -1);
         methodWriter.visitEnd();
+        this.selfTailCalls = Collections.emptySet();
         this.scope = origScope;
 
-        this.scope.addBinding(methodName, fnType, this.className, BindingTypes.METHOD, false, node.isExported);
-
         String methodAccessProxyName = methodName + "$access";
 
         if (!node.isExported) {
@@ -397,30 +825,11 @@ public class Compiler {
             methodAccessProxyWriter.visitInsn(returnInsn(fnType.returnType));
             methodAccessProxyWriter.visitMaxs(fnType.arity(), 0);
             methodAccessProxyWriter.visitEnd();
-        } else {
-            String lambdaName = methodName + "$ref";
-            String methodRefClassName = this.className + "$" + lambdaName;
-            if (this.innerClasses.stream().noneMatch(innerClass -> innerClass.getLeft().equals(methodRefClassName))) {
-                int methodRefAccess = ACC_PUBLIC | ACC_FINAL | ACC_STATIC | ACC_SYNTHETIC;
-                this.cw.visitInnerClass(methodRefClassName, this.className, lambdaName, methodRefAccess);
-                // TODO: This will only work for static method references at the moment; make this work for non-static method references
-                List<Pair<String, byte[]>> generatedClasses = compileMethodReference(
-                    this.className,
-                    lambdaName,
-                    methodRefClassName,
-                    fnType,
-                    methodName,
-                    this.typeEnv,
-                    this.scope.context,
-                    methodRefAccess
-                );
-                this.innerClasses.addAll(generatedClasses);
-            }
         }
 
         if (fnType.containsParamsWithDefaultValues()) {
-            String proxiedMethodName = node.isExported ? methodName : methodAccessProxyName;
-            compileFuncProxy(this.className, this.cw, fnType, methodName, proxiedMethodName, scope, (n, scope) -> {
+            Set<List<String>> usedPatterns = this.omittedArgumentPatterns.getOrDefault(methodName, Collections.emptySet());
+            compileDefaultArgumentOverloads(this.className, this.cw, fnType, methodName, node.isExported, usedPatterns, scope, (n, scope) -> {
                 Scope s = this.scope; // Preserve original scope
                 this.scope = scope;
                 compileNode(n);
@@ -439,8 +848,8 @@ public class Compiler {
             access = access | ACC_PRIVATE;
         }
         this.cw.visitInnerClass(innerClassName, this.className, node.typeName.value, access);
-        List<Pair<String, byte[]>> generatedClasses = compileTypeDeclaration(this.className, innerClassName, node, this.typeEnv, access);
-        innerClasses.addAll(generatedClasses);
+        List<Pair<String, byte[]>> generatedClasses = compileTypeDeclaration(this.className, innerClassName, node, this.typeEnv, this.options, this.classHierarchy, access);
+        addInnerClasses(generatedClasses);
     }
 
     private void compileImportStatement(ImportStatement node) {
@@ -449,6 +858,9 @@ public class Compiler {
             throw new IllegalStateException("Module provider function not set on Compiler");
         }
         TypeCheckResult<Module> module = this.typedModuleProvider.apply(targetModuleName);
+        Set<String> lazyImports = module != null && this.options.lazyStaticInit
+            ? LazyStaticInit.find(module.node)
+            : Collections.emptySet();
 
         for (Identifier _import : node.imports) {
             String importName = _import.value;
@@ -477,7 +889,8 @@ public class Compiler {
                     bindingType = BindingTypes.METHOD;
                 }
             }
-            this.scope.addBinding(importName, typeBinding.type, targetModuleName, bindingType, false, false);
+            String ownerModule = lazyImports.contains(importName) ? getHolderClassName(targetModuleName, importName) : targetModuleName;
+            this.scope.addBinding(importName, typeBinding.type, ownerModule, bindingType, false, false);
         }
     }
 
@@ -507,64 +920,91 @@ public class Compiler {
         ArrayType type = (ArrayType) node.getType();
         assert type != null; // Should have been populated in typechecking pass
         MegaType elType = type.typeArg;
-        String elTypeDescriptor = jvmDescriptor(elType, true);
 
         this.scope.focusedMethod.writer.visitLdcInsn(node.elements.size());
-        this.scope.focusedMethod.writer.visitTypeInsn(ANEWARRAY, elTypeDescriptor);
+        if (isPrimitive(elType)) {
+            this.scope.focusedMethod.writer.visitIntInsn(NEWARRAY, newArrayTypeOperand(elType));
+        } else {
+            this.scope.focusedMethod.writer.visitTypeInsn(ANEWARRAY, jvmInternalName(elType));
+        }
         for (int i = 0; i < node.elements.size(); i++) {
             this.scope.focusedMethod.writer.visitInsn(DUP);
             this.scope.focusedMethod.writer.visitLdcInsn(i);
             Expression element = node.elements.get(i);
             compileNode(element);
-
-            if (isPrimitive(elType)) {
-                compileBoxPrimitiveType(elType, this.scope.focusedMethod.writer);
-            }
-            this.scope.focusedMethod.writer.visitInsn(AASTORE);
+            this.scope.focusedMethod.writer.visitInsn(arrayStoreInsn(elType));
         }
     }
 
     private void compileObjectLiteral(ObjectLiteral node) {
-        this.scope.focusedMethod.writer.visitTypeInsn(NEW, getInternalName(HashMap.class));
-        this.scope.focusedMethod.writer.visitInsn(DUP);
-        this.scope.focusedMethod.writer.visitMethodInsn(INVOKESPECIAL, getInternalName(HashMap.class), "<init>", "()V", false);
-        String tag = RandomStringUtils.randomAlphanumeric(6); // Tag to uniquely id map
-        this.scope.addBinding("$$map_" + tag, null, this.className, BindingTypes.LOCAL, false);
-        int mapIdx = this.scope.nextLocalVariableIndex();
-        this.scope.focusedMethod.writer.visitVarInsn(ASTORE, mapIdx);
-
-        for (Entry<Identifier, Expression> pair : node.pairs.entries()) {
-            this.scope.focusedMethod.writer.visitVarInsn(ALOAD, mapIdx);
-            this.scope.focusedMethod.writer.visitLdcInsn(pair.getKey().value);
-
-            Expression value = pair.getValue();
-            compileNode(value);
-            MegaType valueType = value.getType();
-            if (isPrimitive(valueType)) {
-                compileBoxPrimitiveType(valueType, this.scope.focusedMethod.writer);
+        ObjectType type = (ObjectType) node.getType();
+        assert type != null; // Should have been populated in typechecking pass
+        String shapeClassName = this.compileShapeClassIfNeeded(type);
+
+        // The shape's constructor takes the property values in canonical order; if the literal's properties were
+        // written in a different order, they're evaluated (in source order) into temporaries first.
+        List<Entry<Identifier, Expression>> pairs = Lists.newArrayList(node.pairs.entries());
+        boolean isCanonicalOrder = true;
+        for (int i = 1; i < pairs.size(); i++) {
+            if (pairs.get(i - 1).getKey().value.compareTo(pairs.get(i).getKey().value) >= 0) {
+                isCanonicalOrder = false;
+                break;
+            }
+        }
+
+        if (isCanonicalOrder) {
+            this.scope.focusedMethod.writer.visitTypeInsn(NEW, shapeClassName);
+            this.scope.focusedMethod.writer.visitInsn(DUP);
+            for (Entry<Identifier, Expression> pair : pairs) {
+                compileNode(pair.getValue());
+            }
+        } else {
+            String tag = RandomStringUtils.randomAlphanumeric(6); // Tag to uniquely id synthesized property variables
+            Map<String, Integer> propValueIndices = Maps.newHashMap();
+            for (Entry<Identifier, Expression> pair : pairs) {
+                String propName = pair.getKey().value;
+                MegaType propType = type.properties.get(propName).iterator().next();
+
+                int index = this.scope.nextLocalVariableIndex();
+                compileNode(pair.getValue());
+                this.scope.focusedMethod.writer.visitVarInsn(storeInsn(propType), index);
+                this.scope.addBinding("$$object_prop_" + propName + "_" + tag, propType, this.className, BindingTypes.LOCAL, false);
+                propValueIndices.put(propName, index);
             }
 
-            String putDesc = "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;";
-            this.scope.focusedMethod.writer.visitMethodInsn(INVOKEINTERFACE, getInternalName(Map.class), "put", putDesc, true);
-            this.scope.focusedMethod.writer.visitInsn(POP);
+            this.scope.focusedMethod.writer.visitTypeInsn(NEW, shapeClassName);
+            this.scope.focusedMethod.writer.visitInsn(DUP);
+            for (Entry<String, MegaType> prop : getShapeProperties(type)) {
+                this.scope.focusedMethod.writer.visitVarInsn(loadInsn(prop.getValue()), propValueIndices.get(prop.getKey()));
+            }
         }
 
-        this.scope.focusedMethod.writer.visitVarInsn(ALOAD, mapIdx);
+        this.scope.focusedMethod.writer.visitMethodInsn(INVOKESPECIAL, shapeClassName, "<init>", getShapeInitMethodDesc(type), false);
+    }
+
+    private String compileShapeClassIfNeeded(ObjectType type) {
+        String shapeClassName = getShapeClassName(type);
+        if (!this.innerClassNames.contains(shapeClassName)) {
+            addInnerClasses(compileShapeClass(type, this.typeEnv, this.options, this.classHierarchy));
+        }
+        return shapeClassName;
     }
 
     private void compileIndexExpression(IndexExpression node) {
         compileNode(node.target);
         compileNode(node.index);
 
+        if (node.target.getType() == PrimitiveTypes.INT_RANGE) {
+            this.scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, StdLib.IntRange, "get", "(I)I", false);
+            return;
+        }
+
         ArrayType arrayType = (ArrayType) node.target.getType();
         assert arrayType != null; // Should have been populated in typechecking pass
         MegaType arrayElType = arrayType.typeArg;
         assert arrayElType != null; // Should have been populated in typechecking pass
 
-        this.scope.focusedMethod.writer.visitInsn(AALOAD);
-        if (isPrimitive(arrayElType)) {
-            compileUnboxPrimitiveType(arrayElType, this.scope.focusedMethod.writer);
-        }
+        this.scope.focusedMethod.writer.visitInsn(arrayLoadInsn(arrayElType));
     }
 
     private void compilePrefixExpression(PrefixExpression node) {
@@ -581,18 +1021,7 @@ public class Compiler {
                 return;
             }
             case "!": {
-                Label negationEndLabel = new Label();
-                Label negationFalseLabel = new Label();
-
-                compileNode(node.expression);
-                this.scope.focusedMethod.writer.visitJumpInsn(IFNE, negationFalseLabel);
-                this.scope.focusedMethod.writer.visitInsn(ICONST_1);
-                this.scope.focusedMethod.writer.visitJumpInsn(GOTO, negationEndLabel);
-
-                this.scope.focusedMethod.writer.visitLabel(negationFalseLabel);
-                this.scope.focusedMethod.writer.visitInsn(ICONST_0);
-
-                this.scope.focusedMethod.writer.visitLabel(negationEndLabel);
+                compileBooleanExpression(node, this.scope, this::compileNode);
                 return;
             }
             default:
@@ -626,11 +1055,11 @@ public class Compiler {
         if (type.isEquivalentTo(PrimitiveTypes.STRING)) {
             switch (node.operator) {
                 case "+": {
-                    compileStringConcatenation(node, this.scope, this::compileNode);
+                    compileStringConcatenation(node, this.scope, this.options, this::compileNode);
                     return;
                 }
                 case "*": {
-                    compileStringRepetition(node, this.scope, this::compileNode);
+                    compileStringRepetition(node, this.scope, this.options, this::compileNode);
                     return;
                 }
             }
@@ -658,17 +1087,7 @@ public class Compiler {
             Integer opcode = infixOperatorOpcodes.get(node.operator).get(type);
             this.scope.focusedMethod.writer.visitInsn(opcode);
         } else if (type == PrimitiveTypes.BOOLEAN) {
-            switch (node.operator) {
-                case "&&":
-                    compileConditionalAndExpression(node, this.scope, this::compileNode);
-                    break;
-                case "||":
-                    compileConditionalOrExpression(node, this.scope, this::compileNode);
-                    break;
-                default:
-                    compileComparisonExpression(node, this.scope, this::compileNode);
-                    break;
-            }
+            compileBooleanExpression(node, this.scope, this::compileNode);
         }
     }
 
@@ -676,13 +1095,14 @@ public class Compiler {
         Label elseBlockLabel = new Label();
         Label endLabel = new Label();
 
-        compileNode(node.condition);
-
         boolean hasElse = node.elseExpr != null;
         Label condFalseLabel = hasElse ? elseBlockLabel : endLabel;
-        this.scope.focusedMethod.writer.visitJumpInsn(IFEQ, condFalseLabel);
+        compileConditionalJump(node.condition, false, condFalseLabel, this.scope, this::compileNode);
 
         compileBlockExpression(node.thenExpr);
+        if (!hasElse && node.thenExpr.getType() != PrimitiveTypes.UNIT) {
+            this.scope.focusedMethod.writer.visitInsn(POP); // Without an else, the if-expression's value is Unit
+        }
         this.scope.focusedMethod.writer.visitJumpInsn(GOTO, endLabel);
 
         if (hasElse) {
@@ -721,34 +1141,12 @@ public class Compiler {
 
     private void loadIdentifier(String identName, Binding binding) {
         if (binding.bindingType == BindingTypes.METHOD) {
-            String lambdaName = identName + "$ref";
-            String methodRefClassName = binding.ownerModule + "$" + lambdaName;
-            if (binding.ownerModule.equals(this.className)) {
-                // Don't recreate the inner class twice
-                if (this.innerClasses.stream().noneMatch(innerClass -> innerClass.getLeft().equals(methodRefClassName))) {
-                    int access = ACC_FINAL | ACC_STATIC | ACC_SYNTHETIC;
-                    if (binding.isExported) {
-                        access = access | ACC_PUBLIC;
-                    } else {
-                        access = access | ACC_PRIVATE;
-                    }
-                    this.cw.visitInnerClass(methodRefClassName, this.className, lambdaName, access);
-                    // TODO: This will only work for static method references at the moment; make this work for non-static method references
-                    List<Pair<String, byte[]>> generatedClasses = compileMethodReference(
-                        this.className,
-                        lambdaName,
-                        methodRefClassName,
-                        (FunctionType) binding.type,
-                        binding.isExported ? binding.name : binding.name + "$access",
-                        this.typeEnv,
-                        this.scope.context,
-                        access
-                    );
-                    this.innerClasses.addAll(generatedClasses);
-                }
-            }
+            loadMethodReference(identName, binding);
+            return;
+        }
 
-            this.scope.focusedMethod.writer.visitFieldInsn(GETSTATIC, methodRefClassName, "INSTANCE", "L" + methodRefClassName + ";");
+        if (binding.bindingType == BindingTypes.LAMBDA) {
+            loadLambdaBinding(binding);
             return;
         }
 
@@ -762,6 +1160,77 @@ public class Compiler {
         this.scope.focusedMethod.writer.visitVarInsn(loadInsn(type), binding.index);
     }
 
+    // A function (of this module or an imported one) is only wrapped in a function object where it's used as a value,
+    // either by a LambdaMetafactory call site or by a `$ref` class of the module using it (never of the module declaring
+    // it, so that modules whose functions are only called directly have no `$ref` classes at all).
+    private void loadMethodReference(String identName, Binding binding) {
+        FunctionType fnType = (FunctionType) binding.type;
+        boolean isLocal = binding.ownerModule.equals(this.className);
+
+        if (this.options.lambdaCodegen == LambdaCodegen.INVOKEDYNAMIC) {
+            compileLambdaMetafactoryCallSite(binding.ownerModule, binding.name, fnType, this.scope.focusedMethod.writer);
+            return;
+        }
+
+        String lambdaName = identName + "$ref";
+        String methodRefClassName = this.className + "$" + lambdaName;
+        // Don't recreate the inner class twice
+        if (!this.innerClassNames.contains(methodRefClassName)) {
+            int access = ACC_FINAL | ACC_STATIC | ACC_SYNTHETIC;
+            this.cw.visitInnerClass(methodRefClassName, this.className, lambdaName, access);
+            // TODO: This will only work for static method references at the moment; make this work for non-static method references
+            List<Pair<String, byte[]>> generatedClasses = compileMethodReference(
+                this.className,
+                lambdaName,
+                methodRefClassName,
+                fnType,
+                binding.ownerModule,
+                isLocal && !binding.isExported ? binding.name + "$access" : binding.name,
+                this.typeEnv,
+                this.options,
+                this.classHierarchy,
+                this.scope.context,
+                access
+            );
+            addInnerClasses(generatedClasses);
+        }
+
+        this.scope.focusedMethod.writer.visitFieldInsn(GETSTATIC, methodRefClassName, "INSTANCE", "L" + methodRefClassName + ";");
+    }
+
+    // The function object of a LAMBDA binding (see compileLambdaBinding) invokes the binding's static method
+    private void loadLambdaBinding(Binding binding) {
+        String lambdaName = binding.lambdaName;
+        assert lambdaName != null; // Always set for LAMBDA bindings
+        FunctionType fnType = (FunctionType) binding.type;
+
+        if (this.options.lambdaCodegen == LambdaCodegen.INVOKEDYNAMIC) {
+            compileLambdaMetafactoryCallSite(this.className, getImplMethodName(lambdaName), fnType, this.scope.focusedMethod.writer);
+            return;
+        }
+
+        String innerClassName = this.className + "$" + lambdaName;
+        if (!this.innerClassNames.contains(innerClassName)) {
+            int access = ACC_FINAL | ACC_STATIC | ACC_SYNTHETIC;
+            this.cw.visitInnerClass(innerClassName, this.className, lambdaName, access);
+            List<Pair<String, byte[]>> generatedClasses = compileMethodReference(
+                this.className,
+                lambdaName,
+                innerClassName,
+                fnType,
+                this.className,
+                getImplMethodName(lambdaName),
+                this.typeEnv,
+                this.options,
+                this.classHierarchy,
+                this.scope.context,
+                access
+            );
+            addInnerClasses(generatedClasses);
+        }
+        this.scope.focusedMethod.writer.visitFieldInsn(GETSTATIC, innerClassName, "INSTANCE", "L" + innerClassName + ";");
+    }
+
     private void compileAssignmentExpression(AssignmentExpression node) {
         String identName = node.name.value;
         Binding binding = this.scope.getBinding(identName);
@@ -774,23 +1243,76 @@ public class Compiler {
             return;
         }
 
-        compileNode(node.right);
-
         MegaType type = binding.type;
         assert type != null; // Should be filled in by the typechecking pass
-        this.scope.focusedMethod.writer.visitVarInsn(storeInsn(type), binding.index);
+
+        if (binding.bindingType == BindingTypes.LOCAL && type == PrimitiveTypes.INTEGER) {
+            Integer increment = getConstantIncrement(node);
+            if (increment != null) {
+                this.scope.focusedMethod.writer.visitIincInsn(binding.index, increment);
+                return;
+            }
+        }
+
+        compileNode(node.right);
+
+        if (binding.bindingType == BindingTypes.STATIC) {
+            this.scope.focusedMethod.writer.visitFieldInsn(PUTSTATIC, binding.ownerModule, identName, jvmDescriptor(type, false));
+        } else {
+            this.scope.focusedMethod.writer.visitVarInsn(storeInsn(type), binding.index);
+        }
+    }
+
+    // An assignment of the form `x = x + c` (including `x += c` and `x++`, which are parsed as such) can be compiled to a
+    // single IINC instruction, if c is a constant which fits in its operand.
+    @Nullable
+    private static Integer getConstantIncrement(AssignmentExpression node) {
+        if (!(node.right instanceof InfixExpression)) {
+            return null;
+        }
+        InfixExpression infix = (InfixExpression) node.right;
+        if (!infix.operator.equals("+") && !infix.operator.equals("-")) {
+            return null;
+        }
+
+        Expression operand;
+        if (isIdentifierNamed(infix.left, node.name.value)) {
+            operand = infix.right;
+        } else if (infix.operator.equals("+") && isIdentifierNamed(infix.right, node.name.value)) {
+            operand = infix.left;
+        } else {
+            return null;
+        }
+        if (!(operand instanceof IntegerLiteral)) {
+            return null;
+        }
+
+        int increment = infix.operator.equals("+") ? ((IntegerLiteral) operand).value : -((IntegerLiteral) operand).value;
+        if (increment < Short.MIN_VALUE || increment > Short.MAX_VALUE) {
+            return null;
+        }
+        return increment;
+    }
+
+    private static boolean isIdentifierNamed(Expression expr, String name) {
+        return expr instanceof Identifier && ((Identifier) expr).value.equals(name);
     }
 
     private void compileRangeExpression(RangeExpression node) {
         compileNode(node.leftBound);
         compileNode(node.rightBound);
-        this.scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, StdLib.Ranges, "of", "(II)[Ljava/lang/Integer;", false);
+        this.scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, StdLib.IntRange, "of", "(II)Lmega/lang/IntRange;", false);
     }
 
     private void compileArrowFunctionExpression(ArrowFunctionExpression node) {
         String lambdaName = this.scope.context.getLambdaName();
         this.scope.context.incLambdaCountOfPreviousContext();
 
+        if (this.options.lambdaCodegen == LambdaCodegen.INVOKEDYNAMIC) {
+            compileArrowFunctionExpressionIndy(node, lambdaName);
+            return;
+        }
+
         String innerClassName = this.className + "$" + lambdaName;
         int access = ACC_FINAL | ACC_STATIC | ACC_SYNTHETIC;
         this.cw.visitInnerClass(innerClassName, this.className, lambdaName, access);
@@ -802,9 +1324,9 @@ public class Compiler {
         boolean closesOverBindings = !capturedBindings.isEmpty();
 
         List<Pair<String, byte[]>> generatedClasses = closesOverBindings
-            ? compileArrowFunctionWithClosure(this.className, lambdaName, innerClassName, node, this.typeEnv, this.scope.context, access)
-            : compileArrowFunction(this.className, lambdaName, innerClassName, node, this.typeEnv, this.scope.context, access);
-        innerClasses.addAll(generatedClasses);
+            ? compileArrowFunctionWithClosure(this.className, lambdaName, innerClassName, node, this.typeEnv, this.options, this.classHierarchy, this.scope.context, access)
+            : compileArrowFunction(this.className, lambdaName, innerClassName, node, this.typeEnv, this.options, this.classHierarchy, this.scope.context, access);
+        addInnerClasses(generatedClasses);
 
         if (closesOverBindings) {
             this.scope.focusedMethod.writer.visitTypeInsn(NEW, innerClassName);
@@ -823,8 +1345,40 @@ public class Compiler {
         }
     }
 
+    private void compileArrowFunctionExpressionIndy(ArrowFunctionExpression node, String lambdaName) {
+        FunctionType fnType = (FunctionType) node.getType();
+        assert fnType != null; // Should be populated by typechecking pass
+
+        String implMethodName = getImplMethodName(lambdaName);
+        compileArrowFunctionImplMethod(this.className, this.cw, implMethodName, ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, node, this.scope, (n, scope) -> {
+            Scope s = this.scope; // Preserve original scope
+            this.scope = scope;
+            compileNode(n);
+            this.scope = s;
+        });
+
+        for (Entry<String, TypeEnvironment.Binding> capturedBinding : fnType.getCapturedBindings()) {
+            Binding binding = this.scope.getBinding(capturedBinding.getKey());
+            assert binding != null; // If binding is not present, there's a bigger problem
+            loadIdentifier(capturedBinding.getKey(), binding);
+        }
+        compileLambdaMetafactoryCallSite(this.className, implMethodName, fnType, this.scope.focusedMethod.writer);
+    }
+
     private void compileCallExpression(CallExpression node) {
-        compileInvocation(node, this.scope, this::compileNode);
+        if (this.selfTailCalls.contains(node) && isCallToFocusedMethod(node)) {
+            compileSelfTailCall(node, this.scope, this::compileNode);
+            return;
+        }
+
+        compileInvocation(node, this.className, this.scope, this::compileNode);
+    }
+
+    // A tail call to a function declaration's name is only a self-call if the name isn't shadowed at the call-site
+    private boolean isCallToFocusedMethod(CallExpression node) {
+        String name = ((Identifier) node.getTarget()).value;
+        Binding binding = this.scope.getBinding(name);
+        return binding != null && binding.bindingType == BindingTypes.METHOD && binding.ownerModule.equals(this.className);
     }
 
     private void compileAccessorExpression(AccessorExpression node) {
@@ -837,6 +1391,12 @@ public class Compiler {
 
         MegaType type = node.getType();
         assert type != null;
+
+        if (isStructural(targetType)) {
+            compileStructuralPropertyRead(propName, type, this.options, this.scope.focusedMethod.writer);
+            return;
+        }
+
         String getterDesc = String.format("()%s", jvmDescriptor(type, false));
         this.scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, getInternalName(targetType), getterName, getterDesc, false);
     }
@@ -0,0 +1,146 @@
+package co.kenrg.mega.backend.compilation;
+
+import static org.objectweb.asm.Opcodes.V1_6;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+public class CompilerOptions {
+    public enum LambdaCodegen {
+        // Each arrow function is compiled to its own Invokeable subclass
+        INNER_CLASSES,
+
+        // Each arrow function is compiled to a private static method on the enclosing class, and instantiated via an
+        // invokedynamic call site bootstrapped by LambdaMetafactory (requires a target of at least 8)
+        INVOKEDYNAMIC
+    }
+
+    // The rewrites the PeepholeOptimizer may make to the instructions of generated methods
+    public enum PeepholeRule {
+        BOX_UNBOX("box-unbox"),                 // A primitive boxed and then immediately unboxed is left as-is
+        CONSTANT_BRANCHES("constant-branches"), // A branch on a constant boolean (eg. `ICONST_1; IFEQ`) becomes a GOTO
+        SINGLE_USE_LOCALS("single-use-locals"), // A local which is stored and then immediately loaded (and never again) is left on the stack
+        JUMP_THREADING("jump-threading"),       // A jump to a GOTO jumps to its target instead; a GOTO to the next instruction is removed
+        UNREACHABLE_CODE("unreachable-code");   // Instructions which can't be reached are removed
+
+        public final String flag; // How the rule is named on the command line
+
+        PeepholeRule(String flag) {
+            this.flag = flag;
+        }
+
+        public static PeepholeRule fromFlag(String flag) {
+            return Arrays.stream(values())
+                .filter(rule -> rule.flag.equals(flag))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("Unknown peephole rule %s; expected one of %s", flag, Arrays.toString(values()))));
+        }
+
+        @Override
+        public String toString() {
+            return this.flag;
+        }
+    }
+
+    public static final int MIN_TARGET = 6;
+    public static final int MAX_TARGET = 21;
+    public static final int DEFAULT_TARGET = 11;
+
+    // A function (or lambda) is inlined at a call-site if its body has at most DEFAULT_INLINE_MAX_SIZE AST nodes, and
+    // inlining it wouldn't nest inlined bodies more than DEFAULT_INLINE_MAX_DEPTH deep.
+    public static final int DEFAULT_INLINE_MAX_SIZE = 32;
+    public static final int DEFAULT_INLINE_MAX_DEPTH = 2;
+
+    public static final CompilerOptions DEFAULT = new CompilerOptions(DEFAULT_TARGET, LambdaCodegen.INNER_CLASSES, true, DEFAULT_INLINE_MAX_SIZE, DEFAULT_INLINE_MAX_DEPTH, true, EnumSet.noneOf(PeepholeRule.class), false, true);
+
+    public final int target; // The Java release the generated class files target (e.g. 6, 8, 11)
+    public final LambdaCodegen lambdaCodegen;
+    public final boolean foldConstants; // Whether to run the ConstantFolder over a module before compiling it
+    public final int inlineMaxSize; // The Inliner's budget; a max size of 0 disables inlining
+    public final int inlineMaxDepth;
+    public final boolean lazyStaticInit; // Whether top-level vals may be initialized on first use (see LazyStaticInit)
+    public final Set<PeepholeRule> peepholeRules; // The PeepholeOptimizer only runs over generated classes if there are any
+    public final boolean midLevelIr; // Whether function bodies are compiled via the mid-level IR, where they're supported (see AstToIr)
+    public final boolean scalarReplacement; // Whether to run ScalarReplacement over a module before compiling it
+
+    public CompilerOptions(int target, LambdaCodegen lambdaCodegen, boolean foldConstants, int inlineMaxSize, int inlineMaxDepth, boolean lazyStaticInit, Set<PeepholeRule> peepholeRules, boolean midLevelIr, boolean scalarReplacement) {
+        if (target < MIN_TARGET || target > MAX_TARGET) {
+            throw new IllegalArgumentException(String.format("Unsupported target %d; expected a value from %d to %d", target, MIN_TARGET, MAX_TARGET));
+        }
+        if (lambdaCodegen == LambdaCodegen.INVOKEDYNAMIC && target < 8) {
+            throw new IllegalArgumentException("Compiling arrow functions via invokedynamic requires a target of at least 8");
+        }
+        if (inlineMaxSize < 0 || inlineMaxDepth < 0) {
+            throw new IllegalArgumentException(String.format("Invalid inlining budget (size %d, depth %d); expected non-negative values", inlineMaxSize, inlineMaxDepth));
+        }
+        this.target = target;
+        this.lambdaCodegen = lambdaCodegen;
+        this.foldConstants = foldConstants;
+        this.inlineMaxSize = inlineMaxSize;
+        this.inlineMaxDepth = inlineMaxDepth;
+        this.lazyStaticInit = lazyStaticInit;
+        this.peepholeRules = Sets.immutableEnumSet(peepholeRules);
+        this.midLevelIr = midLevelIr;
+        this.scalarReplacement = scalarReplacement;
+    }
+
+    public CompilerOptions withTarget(int target) {
+        return new CompilerOptions(target, this.lambdaCodegen, this.foldConstants, this.inlineMaxSize, this.inlineMaxDepth, this.lazyStaticInit, this.peepholeRules, this.midLevelIr, this.scalarReplacement);
+    }
+
+    public CompilerOptions withLambdaCodegen(LambdaCodegen lambdaCodegen) {
+        return new CompilerOptions(this.target, lambdaCodegen, this.foldConstants, this.inlineMaxSize, this.inlineMaxDepth, this.lazyStaticInit, this.peepholeRules, this.midLevelIr, this.scalarReplacement);
+    }
+
+    public CompilerOptions withFoldConstants(boolean foldConstants) {
+        return new CompilerOptions(this.target, this.lambdaCodegen, foldConstants, this.inlineMaxSize, this.inlineMaxDepth, this.lazyStaticInit, this.peepholeRules, this.midLevelIr, this.scalarReplacement);
+    }
+
+    public CompilerOptions withInlineBudget(int inlineMaxSize, int inlineMaxDepth) {
+        return new CompilerOptions(this.target, this.lambdaCodegen, this.foldConstants, inlineMaxSize, inlineMaxDepth, this.lazyStaticInit, this.peepholeRules, this.midLevelIr, this.scalarReplacement);
+    }
+
+    // Modules which import from each other must be compiled with the same setting, since it determines which class a
+    // top-level val is read from
+    public CompilerOptions withLazyStaticInit(boolean lazyStaticInit) {
+        return new CompilerOptions(this.target, this.lambdaCodegen, this.foldConstants, this.inlineMaxSize, this.inlineMaxDepth, lazyStaticInit, this.peepholeRules, this.midLevelIr, this.scalarReplacement);
+    }
+
+    public CompilerOptions withPeepholeRules(Set<PeepholeRule> peepholeRules) {
+        return new CompilerOptions(this.target, this.lambdaCodegen, this.foldConstants, this.inlineMaxSize, this.inlineMaxDepth, this.lazyStaticInit, peepholeRules, this.midLevelIr, this.scalarReplacement);
+    }
+
+    public CompilerOptions withMidLevelIr(boolean midLevelIr) {
+        return new CompilerOptions(this.target, this.lambdaCodegen, this.foldConstants, this.inlineMaxSize, this.inlineMaxDepth, this.lazyStaticInit, this.peepholeRules, midLevelIr, this.scalarReplacement);
+    }
+
+    public CompilerOptions withScalarReplacement(boolean scalarReplacement) {
+        return new CompilerOptions(this.target, this.lambdaCodegen, this.foldConstants, this.inlineMaxSize, this.inlineMaxDepth, this.lazyStaticInit, this.peepholeRules, this.midLevelIr, scalarReplacement);
+    }
+
+    public boolean inlineFunctions() {
+        return this.inlineMaxSize > 0 && this.inlineMaxDepth > 0;
+    }
+
+    public int classFileVersion() {
+        return V1_6 + (this.target - 6);
+    }
+
+    // invokedynamic was added in Java 7
+    public boolean useIndyPropertyAccess() {
+        return this.target >= 7;
+    }
+
+    // StringConcatFactory was added in Java 9
+    public boolean useIndyStringConcat() {
+        return this.target >= 9;
+    }
+
+    // String#repeat was added in Java 11
+    public boolean useStringRepeat() {
+        return this.target >= 11;
+    }
+}
@@ -2,7 +2,9 @@ package co.kenrg.mega.backend.compilation;
 
 public class StdLib {
     public static String Strings = "mega/lang/Strings";
-    public static String Ranges = "mega/lang/Ranges";
+    public static String IntRange = "mega/lang/IntRange";
+    public static String Shape = "mega/lang/Shape";
+    public static String PropertyAccess = "mega/lang/PropertyAccess";
 
     public static class Collections {
         public static String Arrays = "mega/lang/collections/Arrays";
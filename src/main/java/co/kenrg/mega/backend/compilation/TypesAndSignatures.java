@@ -2,9 +2,12 @@ package co.kenrg.mega.backend.compilation;
 
 import static java.util.stream.Collectors.joining;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import co.kenrg.mega.frontend.ast.expression.Identifier;
 import co.kenrg.mega.frontend.ast.expression.Parameter;
@@ -16,8 +19,12 @@ import co.kenrg.mega.frontend.typechecking.types.FunctionType.Kind;
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
 import co.kenrg.mega.frontend.typechecking.types.ObjectType;
 import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import co.kenrg.mega.frontend.typechecking.types.StructType;
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import mega.lang.IntRange;
 import org.objectweb.asm.Type;
 
 public class TypesAndSignatures {
@@ -47,9 +54,60 @@ public class TypesAndSignatures {
         if (type.typeClass() != null) {
             return getInternalName(type.typeClass());
         }
+        if (type instanceof ObjectType) {
+            return getShapeClassName((ObjectType) type);
+        }
         return type.className();
     }
 
+    // Object types are structural, so the properties of a shape class are kept in a canonical (name-sorted) order,
+    // independent of the order in which they were written in the source.
+    public static List<Entry<String, MegaType>> getShapeProperties(ObjectType type) {
+        List<Entry<String, MegaType>> properties = Lists.newArrayList(type.properties.entries());
+        properties.sort(Entry.comparingByKey());
+        return properties;
+    }
+
+    // Every object type with the same layout maps to the same shape class, regardless of the module it appears in, so
+    // the class name is derived from the property names and their JVM descriptors.
+    public static String getShapeClassName(ObjectType type) {
+        String layout = getShapeProperties(type).stream()
+            .map(prop -> prop.getKey() + ":" + jvmDescriptor(prop.getValue(), false))
+            .collect(joining(","));
+        return "Shape$" + Hashing.sha256().hashString(layout, StandardCharsets.UTF_8).toString().substring(0, 16);
+    }
+
+    // Functions of one or two Int (or Float) params which return an Int, Float or Bool have a primitive-specialized
+    // interface in mega.lang.functions (named for its signature; eg. `(Int, Int) => Bool` is IntIntToBoolFunction), whose
+    // invoke method takes and returns primitives. Values of these types implement both it and the generic FunctionN.
+    @Nullable
+    public static String getSpecializedFunctionInterfaceName(FunctionType fnType) {
+        if (fnType.arity() < 1 || fnType.arity() > 2 || fnType.returnType == null || !isPrimitive(fnType.returnType)) {
+            return null;
+        }
+
+        MegaType paramType = fnType.paramTypes.get(0);
+        if (paramType != PrimitiveTypes.INTEGER && paramType != PrimitiveTypes.FLOAT) {
+            return null;
+        }
+        if (!fnType.paramTypes.stream().allMatch(type -> type == paramType)) {
+            return null;
+        }
+
+        return String.format(
+            "mega/lang/functions/%sTo%sFunction",
+            Strings.repeat(paramType.displayName(), fnType.arity()),
+            fnType.returnType.displayName()
+        );
+    }
+
+    // Struct and object types are structural: a value of one may be an instance of any struct or shape class with the same
+    // properties (or, from Java, any Map). So values of these types are erased to Object in descriptors, and their
+    // properties are read via mega.lang.PropertyAccess, rather than via a particular class's fields or getters.
+    public static boolean isStructural(MegaType type) {
+        return type instanceof StructType || type instanceof ObjectType;
+    }
+
     private static String descriptorForClass(String className) {
         return String.format("L%s;", className);
     }
@@ -76,17 +134,28 @@ public class TypesAndSignatures {
         } else if (type == PrimitiveTypes.STRING) {
             return getDescriptor(PrimitiveTypes.STRING.typeClass());
         } else if (type instanceof ArrayType) {
-            String elemDescriptor = jvmDescriptor(((ArrayType) type).typeArg, true);
+            // Arrays of Int/Float/Bool are represented as primitive arrays (int[], float[], boolean[])
+            String elemDescriptor = jvmDescriptor(((ArrayType) type).typeArg, false);
             return "[" + elemDescriptor;
         } else if (type instanceof FunctionType) {
             return getDescriptor(type.typeClass());
-        } else if (type instanceof ObjectType) {
-            return getDescriptor(Map.class);
+        } else if (isStructural(type)) {
+            return getDescriptor(Object.class);
         }
 
         return descriptorForClass(type.className());
     }
 
+    // Unlike getInternalName, this yields the name expected by type-instructions (ANEWARRAY, CHECKCAST, etc), where
+    // array types are referred to by their descriptor.
+    public static String jvmInternalName(MegaType type) {
+        String descriptor = jvmDescriptor(type, true);
+        if (descriptor.startsWith("L")) {
+            return descriptor.substring(1, descriptor.length() - 1);
+        }
+        return descriptor;
+    }
+
     public static boolean isPrimitive(MegaType type) {
         return type == PrimitiveTypes.INTEGER || type == PrimitiveTypes.FLOAT || type == PrimitiveTypes.BOOLEAN;
     }
@@ -104,12 +173,24 @@ public class TypesAndSignatures {
             return PrimitiveTypes.ANY;
         } else if (c.equals(Void.class) || c.getName().equals("void")) {
             return PrimitiveTypes.UNIT;
+        } else if (c.equals(IntRange.class)) {
+            return PrimitiveTypes.INT_RANGE;
         } else if (c.isArray()) {
             Class componentType = c.getComponentType();
             if (componentType == null) {
                 return null;
             }
-            return new ArrayType(typeForClass(componentType));
+            if (componentType.equals(Integer.class) || componentType.equals(Float.class) || componentType.equals(Boolean.class)) {
+                // Array[Int], Array[Float] and Array[Bool] are represented as primitive arrays, so arrays of boxed
+                // values can't be passed across the boundary as-is.
+                System.out.println("Warning: Unsupported boxed array type: " + c + "; use a primitive array instead");
+                return null;
+            }
+            MegaType componentMegaType = typeForClass(componentType);
+            if (componentMegaType == null) {
+                return null;
+            }
+            return new ArrayType(componentMegaType);
         } else {
             System.out.println("Warning: Cannot find MegaType for class: " + c);
             return null;
@@ -0,0 +1,547 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmMethodDescriptor;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import co.kenrg.mega.backend.compilation.ir.Instruction.Assign;
+import co.kenrg.mega.backend.compilation.ir.Instruction.Eval;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Branch;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Goto;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Return;
+import co.kenrg.mega.backend.compilation.ir.Value.Arithmetic;
+import co.kenrg.mega.backend.compilation.ir.Value.Call;
+import co.kenrg.mega.backend.compilation.ir.Value.Compare;
+import co.kenrg.mega.backend.compilation.ir.Value.Const;
+import co.kenrg.mega.backend.compilation.ir.Value.IntToFloat;
+import co.kenrg.mega.backend.compilation.ir.Value.LocalRef;
+import co.kenrg.mega.backend.compilation.ir.Value.Negate;
+import co.kenrg.mega.backend.compilation.ir.Value.Not;
+import co.kenrg.mega.backend.compilation.ir.Value.StaticRef;
+import co.kenrg.mega.backend.compilation.optimization.SelfTailCalls;
+import co.kenrg.mega.backend.compilation.scope.Binding;
+import co.kenrg.mega.backend.compilation.scope.BindingTypes;
+import co.kenrg.mega.backend.compilation.scope.Scope;
+import co.kenrg.mega.frontend.ast.expression.AssignmentExpression;
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.BooleanLiteral;
+import co.kenrg.mega.frontend.ast.expression.CallExpression;
+import co.kenrg.mega.frontend.ast.expression.FloatLiteral;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.expression.IfExpression;
+import co.kenrg.mega.frontend.ast.expression.InfixExpression;
+import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.Parameter;
+import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
+import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.BreakStatement;
+import co.kenrg.mega.frontend.ast.statement.ContinueStatement;
+import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
+import co.kenrg.mega.frontend.typechecking.types.FunctionType;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Lowers the body of a (typechecked) function declaration to an {@link IrFunction}.
+ * <p>
+ * Only a subset of the language can be lowered so far: functions over Ints, Floats and Bools, whose bodies consist of
+ * literals, arithmetic, comparisons, boolean operators, if-expressions, blocks, vals and vars (and assignments to them),
+ * while-loops, and calls to other functions by name. Functions using anything else are left to the Compiler to compile
+ * directly from the AST; {@link #lower} returns null for them.
+ * <p>
+ * Control flow is made explicit while lowering: the operands of && and ||, and the conditions of if-expressions and
+ * loops, become branches between blocks (as they're compiled in jump context by the Compiler), and a self-call in tail
+ * position becomes an assignment to the parameters and a jump back to the entry block (see {@link SelfTailCalls}).
+ */
+public class AstToIr {
+    private static final Set<MegaType> SUPPORTED_TYPES = ImmutableSet.of(PrimitiveTypes.INTEGER, PrimitiveTypes.FLOAT, PrimitiveTypes.BOOLEAN);
+    private static final Set<String> ARITHMETIC_OPERATORS = ImmutableSet.of("+", "-", "*", "/");
+    private static final Set<String> COMPARISON_OPERATORS = ImmutableSet.of("<", "<=", ">", ">=", "==", "!=");
+
+    // Thrown upon reaching a construct which can't be lowered, abandoning the function
+    private static class UnsupportedConstructException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedConstructException(String message) {
+            super(message);
+        }
+    }
+
+    private final FunctionDeclarationStatement node;
+    private final IrFunction fn;
+    private final Scope scope; // Resolves the names which aren't locals of the function (eg. other functions)
+    private final String className;
+    private final Set<CallExpression> selfTailCalls;
+
+    private final Deque<Map<String, Local>> locals = new ArrayDeque<>(); // The locals in scope, by name, innermost first
+    private final Deque<Pair<Block, Block>> loopBlocks = new ArrayDeque<>(); // The (continue, break) targets of the enclosing loops
+    private Block current; // The block being built
+
+    private AstToIr(FunctionDeclarationStatement node, FunctionType fnType, Scope scope, String className) {
+        this.node = node;
+        this.fn = new IrFunction(node.name.value, fnType.returnType);
+        this.scope = scope;
+        this.className = className;
+        this.selfTailCalls = SelfTailCalls.find(node);
+    }
+
+    // The scope must be that of the function's method, with the function's own binding visible (as when compiling it)
+    @Nullable
+    public static IrFunction lower(FunctionDeclarationStatement node, FunctionType fnType, Scope scope, String className) {
+        try {
+            return new AstToIr(node, fnType, scope, className).lowerFunction();
+        } catch (UnsupportedConstructException e) {
+            return null;
+        }
+    }
+
+    private IrFunction lowerFunction() {
+        requireSupportedType(this.fn.returnType);
+
+        Map<String, Local> params = Maps.newHashMap();
+        for (Parameter param : this.node.parameters) {
+            requireSupportedType(param.getType());
+            params.put(param.ident.value, this.fn.newParam(param.ident.value, param.getType()));
+        }
+        this.locals.push(params);
+
+        this.current = this.fn.newBlock();
+        Value value = this.node.body instanceof BlockExpression
+            ? lowerStatements(((BlockExpression) this.node.body).statements, true)
+            : lowerExpression(this.node.body);
+        assert value != null;
+        terminate(new Return(value));
+
+        return this.fn;
+    }
+
+    private static void requireSupportedType(MegaType type) {
+        if (!SUPPORTED_TYPES.contains(type)) {
+            throw new UnsupportedConstructException("Unsupported type: " + type);
+        }
+    }
+
+    //***************************************************************
+    //************                Blocks                 ************
+    //***************************************************************
+
+    private void emit(Instruction instruction) {
+        this.current.instructions.add(instruction);
+    }
+
+    private void terminate(Terminator terminator) {
+        this.current.terminator = terminator;
+    }
+
+    private void jump(Block target) {
+        terminate(new Goto(target));
+    }
+
+    // Code following a jump out of the current block (eg. a break) is unreachable, but is still lowered, into a new block
+    private void startUnreachableBlock() {
+        this.current = this.fn.newBlock();
+    }
+
+    private Local newTemp(MegaType type) {
+        return this.fn.newLocal("$tmp", type);
+    }
+
+    @Nullable
+    private Local getLocal(String name) {
+        for (Map<String, Local> scopeLocals : this.locals) {
+            if (scopeLocals.containsKey(name)) {
+                return scopeLocals.get(name);
+            }
+        }
+        return null;
+    }
+
+    //***************************************************************
+    //************              Statements               ************
+    //***************************************************************
+
+    // Lowers the statements of a block, returning the value of the last one if it's needed (in which case it must be an
+    // expression statement)
+    @Nullable
+    private Value lowerStatements(List<Statement> statements, boolean needsValue) {
+        this.locals.push(Maps.newHashMap());
+
+        Value value = null;
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            if (needsValue && i == statements.size() - 1) {
+                if (!(statement instanceof ExpressionStatement) || ((ExpressionStatement) statement).expression == null) {
+                    throw new UnsupportedConstructException("Expected a block's value");
+                }
+                value = lowerExpression(((ExpressionStatement) statement).expression);
+            } else {
+                lowerStatement(statement);
+            }
+        }
+
+        this.locals.pop();
+        if (needsValue && value == null) {
+            throw new UnsupportedConstructException("Expected a block's value");
+        }
+        return value;
+    }
+
+    private void lowerStatement(Statement statement) {
+        if (statement instanceof ExpressionStatement) {
+            Expression expr = ((ExpressionStatement) statement).expression;
+            if (expr != null) { // Empty statements (eg. following a `;`) have no expression
+                lowerEffect(expr);
+            }
+        } else if (statement instanceof ValStatement) {
+            ValStatement valStatement = (ValStatement) statement;
+            lowerBinding(valStatement.name.value, valStatement.value);
+        } else if (statement instanceof VarStatement) {
+            VarStatement varStatement = (VarStatement) statement;
+            lowerBinding(varStatement.name.value, varStatement.value);
+        } else if (statement instanceof WhileLoopStatement) {
+            lowerWhileLoopStatement((WhileLoopStatement) statement);
+        } else if (statement instanceof BreakStatement) {
+            assert !this.loopBlocks.isEmpty(); // Typechecking ensures breaks are within loops
+            jump(this.loopBlocks.peek().getRight());
+            startUnreachableBlock();
+        } else if (statement instanceof ContinueStatement) {
+            assert !this.loopBlocks.isEmpty(); // Typechecking ensures continues are within loops
+            jump(this.loopBlocks.peek().getLeft());
+            startUnreachableBlock();
+        } else {
+            throw new UnsupportedConstructException("Unsupported statement: " + statement.getClass().getSimpleName());
+        }
+    }
+
+    // The value is lowered before the binding is added, since it may refer to a binding of the same name that it shadows
+    private void lowerBinding(String name, Expression valueExpr) {
+        MegaType type = valueExpr.getType();
+        requireSupportedType(type);
+
+        Value value = lowerExpression(valueExpr);
+        Local local = this.fn.newLocal(name, type);
+        emit(new Assign(local, value));
+        this.locals.peek().put(name, local);
+    }
+
+    private void lowerWhileLoopStatement(WhileLoopStatement node) {
+        Block condition = this.fn.newBlock();
+        Block body = this.fn.newBlock();
+        Block end = this.fn.newBlock();
+
+        jump(condition);
+        this.current = condition;
+        lowerBranch(node.condition, body, end);
+
+        this.current = body;
+        this.loopBlocks.push(Pair.of(condition, end));
+        lowerStatements(node.block.statements, false);
+        this.loopBlocks.pop();
+        jump(condition);
+
+        this.current = end;
+    }
+
+    // Lowers an expression whose value (if any) is discarded
+    private void lowerEffect(Expression expr) {
+        MegaType type = expr.getType();
+        assert type != null; // Should be populated in typechecking pass
+
+        if (type != PrimitiveTypes.UNIT) {
+            emit(new Eval(lowerExpression(expr)));
+        } else if (expr instanceof AssignmentExpression) {
+            lowerAssignmentExpression((AssignmentExpression) expr);
+        } else if (expr instanceof IfExpression) {
+            lowerIfStatement((IfExpression) expr);
+        } else if (expr instanceof BlockExpression) {
+            lowerStatements(((BlockExpression) expr).statements, false);
+        } else if (expr instanceof ParenthesizedExpression) {
+            lowerEffect(((ParenthesizedExpression) expr).expr);
+        } else {
+            throw new UnsupportedConstructException("Unsupported expression: " + expr.getClass().getSimpleName());
+        }
+    }
+
+    private void lowerAssignmentExpression(AssignmentExpression node) {
+        Local local = getLocal(node.name.value);
+        if (local == null) {
+            throw new UnsupportedConstructException("Unsupported assignment to a non-local: " + node.name.value);
+        }
+        emit(new Assign(local, lowerExpression(node.right)));
+    }
+
+    // An if-expression whose value is discarded (including one without an else, whose value is Unit)
+    private void lowerIfStatement(IfExpression node) {
+        Block thenBlock = this.fn.newBlock();
+        Block end = this.fn.newBlock();
+        Block elseBlock = node.elseExpr == null ? end : this.fn.newBlock();
+
+        lowerBranch(node.condition, thenBlock, elseBlock);
+
+        this.current = thenBlock;
+        lowerEffect(node.thenExpr);
+        jump(end);
+
+        if (node.elseExpr != null) {
+            this.current = elseBlock;
+            lowerEffect(node.elseExpr);
+            jump(end);
+        }
+
+        this.current = end;
+    }
+
+    //***************************************************************
+    //************              Expressions              ************
+    //***************************************************************
+
+    private Value lowerExpression(Expression expr) {
+        MegaType type = expr.getType();
+        assert type != null; // Should be populated in typechecking pass
+        requireSupportedType(type);
+
+        if (expr instanceof IntegerLiteral) {
+            return new Const(type, ((IntegerLiteral) expr).value);
+        } else if (expr instanceof FloatLiteral) {
+            return new Const(type, ((FloatLiteral) expr).value);
+        } else if (expr instanceof BooleanLiteral) {
+            return new Const(type, ((BooleanLiteral) expr).value);
+        } else if (expr instanceof ParenthesizedExpression) {
+            return lowerExpression(((ParenthesizedExpression) expr).expr);
+        } else if (expr instanceof Identifier) {
+            return lowerIdentifier((Identifier) expr);
+        } else if (expr instanceof PrefixExpression) {
+            return lowerPrefixExpression((PrefixExpression) expr);
+        } else if (expr instanceof InfixExpression) {
+            return lowerInfixExpression((InfixExpression) expr);
+        } else if (expr instanceof IfExpression) {
+            return lowerIfExpression((IfExpression) expr);
+        } else if (expr instanceof BlockExpression) {
+            return lowerStatements(((BlockExpression) expr).statements, true);
+        } else if (expr instanceof CallExpression) {
+            return lowerCallExpression((CallExpression) expr);
+        }
+        throw new UnsupportedConstructException("Unsupported expression: " + expr.getClass().getSimpleName());
+    }
+
+    private Value lowerIdentifier(Identifier node) {
+        Local local = getLocal(node.value);
+        if (local != null) {
+            return new LocalRef(local);
+        }
+
+        Binding binding = this.scope.getBinding(node.value);
+        if (binding != null && binding.bindingType == BindingTypes.STATIC) {
+            return new StaticRef(binding.ownerModule, node.value, binding.type);
+        }
+        throw new UnsupportedConstructException("Unsupported identifier: " + node.value);
+    }
+
+    private Value lowerPrefixExpression(PrefixExpression node) {
+        switch (node.operator) {
+            case "-":
+                return new Negate(lowerExpression(node.expression));
+            case "!":
+                return new Not(lowerExpression(node.expression));
+            default:
+                throw new UnsupportedConstructException("Unsupported prefix operator: " + node.operator);
+        }
+    }
+
+    private Value lowerInfixExpression(InfixExpression node) {
+        if (node.operator.equals("&&") || node.operator.equals("||")) {
+            return lowerConditionValue(node);
+        }
+
+        MegaType leftType = node.left.getType();
+        MegaType rightType = node.right.getType();
+        requireSupportedType(leftType);
+        requireSupportedType(rightType);
+
+        List<Value> operands = lowerOperands(Lists.newArrayList(node.left, node.right));
+        Value left = operands.get(0);
+        Value right = operands.get(1);
+
+        if (leftType != rightType) {
+            if (leftType == PrimitiveTypes.BOOLEAN || rightType == PrimitiveTypes.BOOLEAN) {
+                throw new UnsupportedConstructException("Unsupported operands: " + leftType + ", " + rightType);
+            }
+            left = leftType == PrimitiveTypes.INTEGER ? new IntToFloat(left) : left;
+            right = rightType == PrimitiveTypes.INTEGER ? new IntToFloat(right) : right;
+        }
+
+        if (ARITHMETIC_OPERATORS.contains(node.operator) && left.type != PrimitiveTypes.BOOLEAN) {
+            return new Arithmetic(node.operator, left, right);
+        } else if (COMPARISON_OPERATORS.contains(node.operator)) {
+            return new Compare(node.operator, left, right);
+        }
+        throw new UnsupportedConstructException("Unsupported infix operator: " + node.operator);
+    }
+
+    // Lowers expressions which are evaluated in order (eg. the operands of an operator, or the arguments of a call).
+    // Since lowering an expression with control flow (or assignments) emits instructions ahead of the value it produces,
+    // the values of the expressions before it are assigned to temporaries first, so that they're still evaluated first.
+    private List<Value> lowerOperands(List<Expression> exprs) {
+        List<Value> values = Lists.newArrayList();
+        for (Expression expr : exprs) {
+            if (!isStraightLine(expr)) {
+                for (int i = 0; i < values.size(); i++) {
+                    Value value = values.get(i);
+                    if (!(value instanceof Const)) {
+                        Local temp = newTemp(value.type);
+                        emit(new Assign(temp, value));
+                        values.set(i, new LocalRef(temp));
+                    }
+                }
+            }
+            values.add(lowerExpression(expr));
+        }
+        return values;
+    }
+
+    // Whether an expression can be lowered to a single value, without emitting any instructions or blocks
+    private static boolean isStraightLine(Expression expr) {
+        if (expr instanceof IntegerLiteral || expr instanceof FloatLiteral || expr instanceof BooleanLiteral || expr instanceof Identifier) {
+            return true;
+        } else if (expr instanceof ParenthesizedExpression) {
+            return isStraightLine(((ParenthesizedExpression) expr).expr);
+        } else if (expr instanceof PrefixExpression) {
+            return isStraightLine(((PrefixExpression) expr).expression);
+        } else if (expr instanceof InfixExpression) {
+            InfixExpression infix = (InfixExpression) expr;
+            return !infix.operator.equals("&&") && !infix.operator.equals("||") && isStraightLine(infix.left) && isStraightLine(infix.right);
+        } else if (expr instanceof CallExpression.UnnamedArgs) {
+            return ((CallExpression.UnnamedArgs) expr).arguments.stream().allMatch(AstToIr::isStraightLine);
+        }
+        return false;
+    }
+
+    private Value lowerIfExpression(IfExpression node) {
+        if (node.elseExpr == null) {
+            throw new UnsupportedConstructException("Expected an if-expression's value");
+        }
+
+        Local result = newTemp(node.getType());
+        Block thenBlock = this.fn.newBlock();
+        Block elseBlock = this.fn.newBlock();
+        Block end = this.fn.newBlock();
+
+        lowerBranch(node.condition, thenBlock, elseBlock);
+
+        this.current = thenBlock;
+        emit(new Assign(result, lowerExpression(node.thenExpr)));
+        jump(end);
+
+        this.current = elseBlock;
+        emit(new Assign(result, lowerExpression(node.elseExpr)));
+        jump(end);
+
+        this.current = end;
+        return new LocalRef(result);
+    }
+
+    // The value of an && or || expression, which is materialized from the branches on its operands
+    private Value lowerConditionValue(InfixExpression node) {
+        Local result = newTemp(PrimitiveTypes.BOOLEAN);
+        Block trueBlock = this.fn.newBlock();
+        Block falseBlock = this.fn.newBlock();
+        Block end = this.fn.newBlock();
+
+        lowerBranch(node, trueBlock, falseBlock);
+
+        this.current = trueBlock;
+        emit(new Assign(result, new Const(PrimitiveTypes.BOOLEAN, true)));
+        jump(end);
+
+        this.current = falseBlock;
+        emit(new Assign(result, new Const(PrimitiveTypes.BOOLEAN, false)));
+        jump(end);
+
+        this.current = end;
+        return new LocalRef(result);
+    }
+
+    // Terminates the current block with a branch to ifTrue or ifFalse, on the condition's value. As in the Compiler's
+    // jump context, the operands of && and || branch directly to the targets (or to the block testing the other operand).
+    private void lowerBranch(Expression condition, Block ifTrue, Block ifFalse) {
+        if (condition instanceof ParenthesizedExpression) {
+            lowerBranch(((ParenthesizedExpression) condition).expr, ifTrue, ifFalse);
+        } else if (condition instanceof BooleanLiteral) {
+            jump(((BooleanLiteral) condition).value ? ifTrue : ifFalse);
+        } else if (condition instanceof PrefixExpression && ((PrefixExpression) condition).operator.equals("!")) {
+            lowerBranch(((PrefixExpression) condition).expression, ifFalse, ifTrue);
+        } else if (condition instanceof InfixExpression && ((InfixExpression) condition).operator.equals("&&")) {
+            Block right = this.fn.newBlock();
+            lowerBranch(((InfixExpression) condition).left, right, ifFalse);
+            this.current = right;
+            lowerBranch(((InfixExpression) condition).right, ifTrue, ifFalse);
+        } else if (condition instanceof InfixExpression && ((InfixExpression) condition).operator.equals("||")) {
+            Block right = this.fn.newBlock();
+            lowerBranch(((InfixExpression) condition).left, ifTrue, right);
+            this.current = right;
+            lowerBranch(((InfixExpression) condition).right, ifTrue, ifFalse);
+        } else {
+            terminate(new Branch(lowerExpression(condition), ifTrue, ifFalse));
+        }
+    }
+
+    private Value lowerCallExpression(CallExpression node) {
+        if (!(node instanceof CallExpression.UnnamedArgs) || !(node.getTarget() instanceof Identifier)) {
+            throw new UnsupportedConstructException("Unsupported call: " + node.repr(false, 0));
+        }
+        List<Expression> arguments = ((CallExpression.UnnamedArgs) node).arguments;
+
+        String name = ((Identifier) node.getTarget()).value;
+        Binding binding = this.getLocal(name) == null ? this.scope.getBinding(name) : null;
+        if (binding == null || binding.bindingType != BindingTypes.METHOD) {
+            throw new UnsupportedConstructException("Unsupported call target: " + name);
+        }
+
+        FunctionType fnType = (FunctionType) binding.type;
+        if (arguments.size() != fnType.arity()) {
+            throw new UnsupportedConstructException("Unsupported call omitting arguments: " + name);
+        }
+        fnType.paramTypes.forEach(AstToIr::requireSupportedType);
+
+        List<Value> values = lowerOperands(arguments);
+        if (this.selfTailCalls.contains(node) && binding.ownerModule.equals(this.className)) {
+            return lowerSelfTailCall(values);
+        }
+
+        String desc = jvmMethodDescriptor(fnType, false);
+        return new Call(binding.ownerModule, name, desc, values, fnType.returnType);
+    }
+
+    // All arguments are evaluated before any parameter is reassigned, since they may refer to the parameters. The call
+    // has no value, since control never returns from it; the (unreachable) block following it uses a placeholder.
+    private Value lowerSelfTailCall(List<Value> arguments) {
+        List<Local> temps = Lists.newArrayList();
+        for (Value argument : arguments) {
+            Local temp = newTemp(argument.type);
+            emit(new Assign(temp, argument));
+            temps.add(temp);
+        }
+        for (int i = 0; i < temps.size(); i++) {
+            emit(new Assign(this.fn.params.get(i), new LocalRef(temps.get(i))));
+        }
+        jump(this.fn.entry());
+
+        startUnreachableBlock();
+        return Const.zero(this.fn.returnType);
+    }
+}
@@ -0,0 +1,30 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+// A basic block: a straight-line sequence of instructions, ending in a terminator (which is only null while the block
+// is being built)
+public class Block {
+    final int id;
+    public final List<Instruction> instructions = Lists.newArrayList();
+    public Terminator terminator;
+
+    Block(int id) {
+        this.id = id;
+    }
+
+    public String name() {
+        return "b" + this.id;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(this.name()).append(":");
+        for (Instruction instruction : this.instructions) {
+            sb.append("\n  ").append(instruction);
+        }
+        return sb.append("\n  ").append(this.terminator).toString();
+    }
+}
@@ -0,0 +1,74 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import co.kenrg.mega.backend.compilation.ir.Terminator.Branch;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Goto;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Return;
+import co.kenrg.mega.backend.compilation.ir.Value.Const;
+import co.kenrg.mega.backend.compilation.ir.Value.Not;
+
+// Simplifies the control flow between blocks:
+// - A branch on a constant becomes a goto to the target it always takes, as does a branch whose targets are the same
+// - A branch on a negated condition branches on the condition itself, with its targets swapped
+// - A jump to an empty block which only jumps elsewhere jumps to that block's target instead
+// - A jump to an empty block which only returns a value returns the value itself
+public class BranchFolding implements IrPass {
+
+    @Override
+    public String name() {
+        return "branch-folding";
+    }
+
+    @Override
+    public boolean run(IrFunction fn) {
+        boolean changed = false;
+        for (Block block : fn.blocks) {
+            Terminator folded = fold(block.terminator);
+            if (folded != block.terminator) {
+                block.terminator = folded;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static Terminator fold(Terminator terminator) {
+        if (terminator instanceof Goto) {
+            Block target = skipEmptyBlocks(((Goto) terminator).target);
+            if (target.instructions.isEmpty() && target.terminator instanceof Return) {
+                return target.terminator;
+            }
+            return target == ((Goto) terminator).target ? terminator : new Goto(target);
+        } else if (!(terminator instanceof Branch)) {
+            return terminator;
+        }
+
+        Branch branch = (Branch) terminator;
+        if (branch.condition instanceof Const) {
+            return new Goto((Boolean) ((Const) branch.condition).value ? branch.ifTrue : branch.ifFalse);
+        } else if (branch.condition instanceof Not) {
+            return new Branch(((Not) branch.condition).operand, branch.ifFalse, branch.ifTrue);
+        } else if (branch.ifTrue == branch.ifFalse && !branch.condition.hasEffects()) {
+            return new Goto(branch.ifTrue);
+        }
+
+        Block ifTrue = skipEmptyBlocks(branch.ifTrue);
+        Block ifFalse = skipEmptyBlocks(branch.ifFalse);
+        if (ifTrue == branch.ifTrue && ifFalse == branch.ifFalse) {
+            return terminator;
+        }
+        return new Branch(branch.condition, ifTrue, ifFalse);
+    }
+
+    // The block reached by following the gotos of empty blocks (stopping at a cycle of them, ie. an empty infinite loop)
+    private static Block skipEmptyBlocks(Block block) {
+        Set<Block> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (block.instructions.isEmpty() && block.terminator instanceof Goto && seen.add(block)) {
+            block = ((Goto) block.terminator).target;
+        }
+        return block;
+    }
+}
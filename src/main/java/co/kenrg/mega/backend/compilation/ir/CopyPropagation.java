@@ -0,0 +1,87 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import co.kenrg.mega.backend.compilation.ir.Instruction.Assign;
+import co.kenrg.mega.backend.compilation.ir.Value.Const;
+import co.kenrg.mega.backend.compilation.ir.Value.LocalRef;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+// Within each block, replaces the reads of a local which was assigned a constant, or the value of another local, with
+// that constant or other local (until either of them is reassigned). The temporaries introduced while lowering, and vals
+// bound to other vals, are then often left unread, to be removed by DeadCodeElimination.
+//
+// A local which is only ever assigned a single constant is replaced with the constant throughout the function, since it
+// can't be read before it's assigned.
+public class CopyPropagation implements IrPass {
+
+    @Override
+    public String name() {
+        return "copy-propagation";
+    }
+
+    @Override
+    public boolean run(IrFunction fn) {
+        Map<Local, Value> constants = findConstantLocals(fn);
+
+        boolean changed = false;
+        for (Block block : fn.blocks) {
+            Map<Local, Value> copies = Maps.newHashMap(constants);
+
+            List<Instruction> instructions = block.instructions;
+            for (int i = 0; i < instructions.size(); i++) {
+                Instruction instruction = instructions.get(i);
+                Instruction substituted = instruction.substitute(copies);
+                if (substituted != instruction) {
+                    instructions.set(i, substituted);
+                    changed = true;
+                }
+
+                if (substituted instanceof Assign) {
+                    Local local = ((Assign) substituted).local;
+                    if (constants.containsKey(local)) {
+                        continue;
+                    }
+                    copies.remove(local);
+                    copies.values().removeIf(value -> value.reads(local));
+
+                    Value value = substituted.value;
+                    if (value instanceof Const || (value instanceof LocalRef && ((LocalRef) value).local != local)) {
+                        copies.put(local, value);
+                    }
+                }
+            }
+
+            Terminator terminator = block.terminator.substitute(copies);
+            if (terminator != block.terminator) {
+                block.terminator = terminator;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // The locals (other than params) assigned exactly once in the function, with a constant, mapped to it
+    private static Map<Local, Value> findConstantLocals(IrFunction fn) {
+        Map<Local, Value> constants = Maps.newHashMap();
+        Set<Local> reassigned = Sets.newHashSet();
+        for (Block block : fn.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (!(instruction instanceof Assign)) {
+                    continue;
+                }
+                Local local = ((Assign) instruction).local;
+                if (local.isParam || constants.containsKey(local) || !(instruction.value instanceof Const)) {
+                    reassigned.add(local);
+                } else {
+                    constants.put(local, instruction.value);
+                }
+            }
+        }
+        constants.keySet().removeAll(reassigned);
+        return constants;
+    }
+}
@@ -0,0 +1,92 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+
+import co.kenrg.mega.backend.compilation.ir.Instruction.Assign;
+import co.kenrg.mega.backend.compilation.ir.Instruction.Eval;
+import co.kenrg.mega.backend.compilation.ir.Value.LocalRef;
+
+// Removes the blocks which can't be reached from the entry, and the instructions whose results are never used: the
+// assignments to locals which are never read (or which are overwritten, within the same block, before being read), and
+// the evaluations of values without effects. An assignment whose value has effects is kept as an evaluation of it.
+public class DeadCodeElimination implements IrPass {
+
+    @Override
+    public String name() {
+        return "dead-code-elimination";
+    }
+
+    @Override
+    public boolean run(IrFunction fn) {
+        boolean changed = false;
+
+        List<Block> reachable = fn.reachableBlocks();
+        if (reachable.size() != fn.blocks.size()) {
+            fn.blocks.retainAll(reachable);
+            changed = true;
+        }
+
+        Set<Local> readLocals = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Block block : fn.blocks) {
+            block.instructions.forEach(instruction -> addReadLocals(instruction.value, readLocals));
+            Value terminatorValue = block.terminator.value();
+            if (terminatorValue != null) {
+                addReadLocals(terminatorValue, readLocals);
+            }
+        }
+
+        for (Block block : fn.blocks) {
+            ListIterator<Instruction> instructions = block.instructions.listIterator();
+            while (instructions.hasNext()) {
+                Instruction instruction = instructions.next();
+                if (instruction instanceof Assign && isOverwritten((Assign) instruction, block.instructions.subList(instructions.nextIndex(), block.instructions.size()))) {
+                    instructions.remove();
+                    changed = true;
+                } else if (instruction instanceof Assign && isDeadAssignment((Assign) instruction, readLocals)) {
+                    if (instruction.value.hasEffects()) {
+                        instructions.set(new Eval(instruction.value));
+                    } else {
+                        instructions.remove();
+                    }
+                    changed = true;
+                } else if (instruction instanceof Eval && !instruction.value.hasEffects()) {
+                    instructions.remove();
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isDeadAssignment(Assign assign, Set<Local> readLocals) {
+        boolean isSelfAssignment = assign.value instanceof LocalRef && ((LocalRef) assign.value).local == assign.local;
+        return isSelfAssignment || !readLocals.contains(assign.local);
+    }
+
+    // Whether the local assigned is assigned again by one of the following instructions, before any of them read it
+    private static boolean isOverwritten(Assign assign, List<Instruction> following) {
+        if (assign.value.hasEffects()) {
+            return false;
+        }
+        for (Instruction instruction : following) {
+            if (instruction.value.reads(assign.local)) {
+                return false;
+            }
+            if (instruction instanceof Assign && ((Assign) instruction).local == assign.local) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addReadLocals(Value value, Set<Local> readLocals) {
+        if (value instanceof LocalRef) {
+            readLocals.add(((LocalRef) value).local);
+        }
+        value.operands().forEach(operand -> addReadLocals(operand, readLocals));
+    }
+}
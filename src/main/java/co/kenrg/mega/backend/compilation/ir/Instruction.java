@@ -0,0 +1,52 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import java.util.Map;
+
+// A non-branching step of a Block: either assigning a value to a local, or evaluating a value for its effects alone
+public abstract class Instruction {
+    public final Value value;
+
+    Instruction(Value value) {
+        this.value = value;
+    }
+
+    // This instruction, with any reads of the given locals in its value replaced by the values they map to
+    public abstract Instruction substitute(Map<Local, Value> values);
+
+    public static class Assign extends Instruction {
+        public final Local local;
+
+        public Assign(Local local, Value value) {
+            super(value);
+            this.local = local;
+        }
+
+        @Override
+        public Instruction substitute(Map<Local, Value> values) {
+            Value value = this.value.substitute(values);
+            return value == this.value ? this : new Assign(this.local, value);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s = %s", this.local, this.value);
+        }
+    }
+
+    public static class Eval extends Instruction {
+        public Eval(Value value) {
+            super(value);
+        }
+
+        @Override
+        public Instruction substitute(Map<Local, Value> values) {
+            Value value = this.value.substitute(values);
+            return value == this.value ? this : new Eval(value);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("eval %s", this.value);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.subcompilers.BooleanInfixExpressionCompiler.INVERSE_JUMPS;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.loadInsn;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.returnInsn;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.storeInsn;
+import static org.objectweb.asm.Opcodes.FADD;
+import static org.objectweb.asm.Opcodes.FCMPG;
+import static org.objectweb.asm.Opcodes.FCMPL;
+import static org.objectweb.asm.Opcodes.FDIV;
+import static org.objectweb.asm.Opcodes.FMUL;
+import static org.objectweb.asm.Opcodes.FNEG;
+import static org.objectweb.asm.Opcodes.FSUB;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.I2F;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IDIV;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFGE;
+import static org.objectweb.asm.Opcodes.IFGT;
+import static org.objectweb.asm.Opcodes.IFLE;
+import static org.objectweb.asm.Opcodes.IFLT;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGT;
+import static org.objectweb.asm.Opcodes.IF_ICMPLE;
+import static org.objectweb.asm.Opcodes.IF_ICMPLT;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.INEG;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.ISUB;
+import static org.objectweb.asm.Opcodes.POP;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import co.kenrg.mega.backend.compilation.ir.Instruction.Assign;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Branch;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Goto;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Return;
+import co.kenrg.mega.backend.compilation.ir.Value.Arithmetic;
+import co.kenrg.mega.backend.compilation.ir.Value.Call;
+import co.kenrg.mega.backend.compilation.ir.Value.Compare;
+import co.kenrg.mega.backend.compilation.ir.Value.Const;
+import co.kenrg.mega.backend.compilation.ir.Value.IntToFloat;
+import co.kenrg.mega.backend.compilation.ir.Value.LocalRef;
+import co.kenrg.mega.backend.compilation.ir.Value.Negate;
+import co.kenrg.mega.backend.compilation.ir.Value.Not;
+import co.kenrg.mega.backend.compilation.ir.Value.StaticRef;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Writes an {@link IrFunction} as the body of a method (whose parameters are the function's params, in order).
+ * <p>
+ * The function's reachable blocks are laid out in chains, each block followed by one of its successors where possible,
+ * so that the jump to it is a fall-through. Each local is given its own slot, in the order the locals are first used. Branches are compiled in jump context, as the
+ * Compiler compiles conditions (see BooleanInfixExpressionCompiler): a comparison becomes the jump testing it, and a
+ * negation swaps the jump's targets.
+ */
+public class IrEmitter {
+    private static final Map<String, Integer> INT_OPCODES = ImmutableMap.of("+", IADD, "-", ISUB, "*", IMUL, "/", IDIV);
+    private static final Map<String, Integer> FLOAT_OPCODES = ImmutableMap.of("+", FADD, "-", FSUB, "*", FMUL, "/", FDIV);
+
+    private final IrFunction fn;
+    private final MethodVisitor writer;
+    private final Map<Local, Integer> slots = new IdentityHashMap<>();
+    private final Map<Block, Label> labels = new IdentityHashMap<>();
+
+    private IrEmitter(IrFunction fn, MethodVisitor writer) {
+        this.fn = fn;
+        this.writer = writer;
+    }
+
+    public static void emit(IrFunction fn, MethodVisitor writer) {
+        new IrEmitter(fn, writer).emitFunction();
+    }
+
+    private void emitFunction() {
+        for (int i = 0; i < this.fn.params.size(); i++) {
+            this.slots.put(this.fn.params.get(i), i);
+        }
+
+        List<Block> blocks = layOut(this.fn.reachableBlocks());
+        blocks.forEach(block -> this.labels.put(block, new Label()));
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            Block next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+
+            this.writer.visitLabel(this.labels.get(block));
+            block.instructions.forEach(this::emitInstruction);
+            emitTerminator(block.terminator, next);
+        }
+    }
+
+    // Starting from each block (in order) which hasn't been placed yet, places the chain of blocks it falls through to:
+    // the target of its goto, or of its branch (preferring the block the branch takes if its condition is true)
+    private static List<Block> layOut(List<Block> blocks) {
+        Set<Block> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Block> layout = Lists.newArrayList();
+        for (Block start : blocks) {
+            Block block = start;
+            while (block != null && placed.add(block)) {
+                layout.add(block);
+
+                Terminator terminator = block.terminator;
+                if (terminator instanceof Goto) {
+                    block = ((Goto) terminator).target;
+                } else if (terminator instanceof Branch) {
+                    Branch branch = (Branch) terminator;
+                    block = placed.contains(branch.ifTrue) ? branch.ifFalse : branch.ifTrue;
+                } else {
+                    block = null;
+                }
+            }
+        }
+        return layout;
+    }
+
+    private int getSlot(Local local) {
+        return this.slots.computeIfAbsent(local, l -> this.slots.size());
+    }
+
+    private void emitInstruction(Instruction instruction) {
+        if (!(instruction instanceof Assign)) {
+            emitValue(instruction.value);
+            this.writer.visitInsn(POP); // All values of the IR's types take a single stack slot
+            return;
+        }
+
+        Assign assign = (Assign) instruction;
+        Integer increment = getConstantIncrement(assign);
+        if (increment != null) {
+            this.writer.visitIincInsn(getSlot(assign.local), increment);
+            return;
+        }
+
+        emitValue(assign.value);
+        this.writer.visitVarInsn(storeInsn(assign.local.type), getSlot(assign.local));
+    }
+
+    // As in Compiler#getConstantIncrement, an assignment of the form `x = x + c` is a single IINC instruction (if c fits)
+    @Nullable
+    private static Integer getConstantIncrement(Assign assign) {
+        if (assign.local.type != PrimitiveTypes.INTEGER || !(assign.value instanceof Arithmetic)) {
+            return null;
+        }
+        Arithmetic arithmetic = (Arithmetic) assign.value;
+        if (!arithmetic.operator.equals("+") && !arithmetic.operator.equals("-")) {
+            return null;
+        }
+
+        Value operand;
+        if (isRead(arithmetic.left, assign.local)) {
+            operand = arithmetic.right;
+        } else if (arithmetic.operator.equals("+") && isRead(arithmetic.right, assign.local)) {
+            operand = arithmetic.left;
+        } else {
+            return null;
+        }
+        if (!(operand instanceof Const)) {
+            return null;
+        }
+
+        int value = (Integer) ((Const) operand).value;
+        int increment = arithmetic.operator.equals("+") ? value : -value;
+        if (increment < Short.MIN_VALUE || increment > Short.MAX_VALUE) {
+            return null;
+        }
+        return increment;
+    }
+
+    private static boolean isRead(Value value, Local local) {
+        return value instanceof LocalRef && ((LocalRef) value).local == local;
+    }
+
+    private void emitTerminator(Terminator terminator, Block next) {
+        if (terminator instanceof Goto) {
+            Block target = ((Goto) terminator).target;
+            if (target != next) {
+                this.writer.visitJumpInsn(GOTO, this.labels.get(target));
+            }
+        } else if (terminator instanceof Branch) {
+            Branch branch = (Branch) terminator;
+            if (branch.ifFalse == next) {
+                emitJump(branch.condition, true, this.labels.get(branch.ifTrue));
+            } else {
+                emitJump(branch.condition, false, this.labels.get(branch.ifFalse));
+                if (branch.ifTrue != next) {
+                    this.writer.visitJumpInsn(GOTO, this.labels.get(branch.ifTrue));
+                }
+            }
+        } else if (terminator instanceof Return) {
+            emitValue(((Return) terminator).value);
+            this.writer.visitInsn(returnInsn(this.fn.returnType));
+        } else {
+            throw new IllegalStateException("Unexpected terminator: " + terminator);
+        }
+    }
+
+    // Jumps to the target label if the condition's value is jumpIfTrue, and falls through otherwise
+    private void emitJump(Value condition, boolean jumpIfTrue, Label target) {
+        if (condition instanceof Const) {
+            if (((Const) condition).value.equals(jumpIfTrue)) {
+                this.writer.visitJumpInsn(GOTO, target);
+            }
+        } else if (condition instanceof Not) {
+            emitJump(((Not) condition).operand, !jumpIfTrue, target);
+        } else if (condition instanceof Compare) {
+            int jumpIfTrueOpcode = emitComparison((Compare) condition);
+            this.writer.visitJumpInsn(jumpIfTrue ? jumpIfTrueOpcode : INVERSE_JUMPS.get(jumpIfTrueOpcode), target);
+        } else {
+            emitValue(condition);
+            this.writer.visitJumpInsn(jumpIfTrue ? IFNE : IFEQ, target);
+        }
+    }
+
+    // Pushes the operands of the comparison (or, for Floats, the result of comparing them), and returns the opcode of the
+    // jump which is taken if the comparison is true. As in BooleanInfixExpressionCompiler, comparisons with NaN are false
+    // (except for !=).
+    private int emitComparison(Compare compare) {
+        emitValue(compare.left);
+        emitValue(compare.right);
+
+        if (compare.left.type == PrimitiveTypes.FLOAT) {
+            boolean isLessThan = compare.operator.equals("<") || compare.operator.equals("<=");
+            this.writer.visitInsn(isLessThan ? FCMPG : FCMPL);
+            switch (compare.operator) {
+                case "<":
+                    return IFLT;
+                case "<=":
+                    return IFLE;
+                case ">":
+                    return IFGT;
+                case ">=":
+                    return IFGE;
+                case "==":
+                    return IFEQ;
+                default:
+                    return IFNE;
+            }
+        }
+
+        switch (compare.operator) {
+            case "<":
+                return IF_ICMPLT;
+            case "<=":
+                return IF_ICMPLE;
+            case ">":
+                return IF_ICMPGT;
+            case ">=":
+                return IF_ICMPGE;
+            case "==":
+                return IF_ICMPEQ;
+            default:
+                return IF_ICMPNE;
+        }
+    }
+
+    private void emitValue(Value value) {
+        if (value instanceof Const) {
+            emitConst((Const) value);
+        } else if (value instanceof LocalRef) {
+            Local local = ((LocalRef) value).local;
+            this.writer.visitVarInsn(loadInsn(local.type), getSlot(local));
+        } else if (value instanceof StaticRef) {
+            StaticRef staticRef = (StaticRef) value;
+            this.writer.visitFieldInsn(GETSTATIC, staticRef.owner, staticRef.name, jvmDescriptor(staticRef.type, false));
+        } else if (value instanceof Negate) {
+            emitValue(((Negate) value).operand);
+            this.writer.visitInsn(value.type == PrimitiveTypes.FLOAT ? FNEG : INEG);
+        } else if (value instanceof Arithmetic) {
+            Arithmetic arithmetic = (Arithmetic) value;
+            emitValue(arithmetic.left);
+            emitValue(arithmetic.right);
+            Map<String, Integer> opcodes = value.type == PrimitiveTypes.FLOAT ? FLOAT_OPCODES : INT_OPCODES;
+            this.writer.visitInsn(opcodes.get(arithmetic.operator));
+        } else if (value instanceof IntToFloat) {
+            emitValue(((IntToFloat) value).operand);
+            this.writer.visitInsn(I2F);
+        } else if (value instanceof Not || value instanceof Compare) {
+            emitBooleanValue(value);
+        } else if (value instanceof Call) {
+            Call call = (Call) value;
+            call.arguments.forEach(this::emitValue);
+            this.writer.visitMethodInsn(INVOKESTATIC, call.owner, call.name, call.desc, false);
+        } else {
+            throw new IllegalStateException("Unexpected value: " + value);
+        }
+    }
+
+    // Constants are pushed as the Compiler pushes literals (see Compiler#compileLiteral)
+    private void emitConst(Const value) {
+        MegaType type = value.type;
+        if (type == PrimitiveTypes.BOOLEAN) {
+            this.writer.visitInsn((Boolean) value.value ? ICONST_1 : ICONST_0);
+        } else if (type == PrimitiveTypes.INTEGER && 0 <= (Integer) value.value && (Integer) value.value <= 5) {
+            this.writer.visitInsn((Integer) value.value + ICONST_0);
+        } else {
+            this.writer.visitLdcInsn(value.value);
+        }
+    }
+
+    // A boolean's value is materialized from the jumps testing it, as a 0 or 1
+    private void emitBooleanValue(Value value) {
+        Label trueLabel = new Label();
+        Label endLabel = new Label();
+
+        emitJump(value, true, trueLabel);
+        this.writer.visitInsn(ICONST_0);
+        this.writer.visitJumpInsn(GOTO, endLabel);
+
+        this.writer.visitLabel(trueLabel);
+        this.writer.visitInsn(ICONST_1);
+
+        this.writer.visitLabel(endLabel);
+    }
+}
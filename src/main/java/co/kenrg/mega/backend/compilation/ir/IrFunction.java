@@ -0,0 +1,87 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import static java.util.stream.Collectors.joining;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import com.google.common.collect.Lists;
+
+/**
+ * The mid-level IR of a function declaration: a control-flow graph of basic {@link Block}s over explicit, typed
+ * {@link Local}s. The first block is the function's entry; each block ends in a {@link Terminator} which branches to
+ * other blocks, or returns from the function.
+ * <p>
+ * Functions are built from the typechecked AST by {@link AstToIr}, transformed by the {@link IrPass}es of a
+ * {@link PassManager}, and written as the body of a method by {@link IrEmitter}.
+ */
+public class IrFunction {
+    public final String name;
+    public final MegaType returnType;
+    public final List<Local> params = Lists.newArrayList();
+    public final List<Local> locals = Lists.newArrayList(); // Including the params
+    public final List<Block> blocks = Lists.newArrayList();
+
+    private int nextBlockId = 0;
+
+    public IrFunction(String name, MegaType returnType) {
+        this.name = name;
+        this.returnType = returnType;
+    }
+
+    public Local newParam(String name, MegaType type) {
+        Local param = new Local(name, type, true, this.locals.size());
+        this.params.add(param);
+        this.locals.add(param);
+        return param;
+    }
+
+    public Local newLocal(String name, MegaType type) {
+        Local local = new Local(name, type, false, this.locals.size());
+        this.locals.add(local);
+        return local;
+    }
+
+    public Block newBlock() {
+        Block block = new Block(this.nextBlockId++);
+        this.blocks.add(block);
+        return block;
+    }
+
+    public Block entry() {
+        return this.blocks.get(0);
+    }
+
+    // The blocks which can be reached from the entry, in the order they're laid out
+    public List<Block> reachableBlocks() {
+        Set<Block> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Block> worklist = new ArrayDeque<>();
+        worklist.push(this.entry());
+        while (!worklist.isEmpty()) {
+            Block block = worklist.pop();
+            if (reachable.add(block)) {
+                block.terminator.successors().forEach(worklist::push);
+            }
+        }
+
+        List<Block> blocks = Lists.newArrayList(this.blocks);
+        blocks.removeIf(block -> !reachable.contains(block));
+        return blocks;
+    }
+
+    @Override
+    public String toString() {
+        String params = this.params.stream()
+            .map(param -> String.format("%s: %s", param, param.type.signature()))
+            .collect(joining(", "));
+        String blocks = this.blocks.stream()
+            .map(Block::toString)
+            .collect(joining("\n"));
+        return String.format("func %s(%s): %s\n%s", this.name, params, this.returnType.signature(), blocks);
+    }
+}
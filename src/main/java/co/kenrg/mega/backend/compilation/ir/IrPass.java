@@ -0,0 +1,10 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+// A transformation of an IrFunction, run by a PassManager. A pass must preserve the function's behaviour, and should
+// only report a change if it made one, since the PassManager re-runs its passes until none of them change anything.
+public interface IrPass {
+    String name();
+
+    // Transforms the function in place, returning whether it changed anything
+    boolean run(IrFunction fn);
+}
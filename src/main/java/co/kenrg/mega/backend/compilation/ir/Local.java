@@ -0,0 +1,24 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+
+// A local variable of an IrFunction: a parameter, a val or var of its body, or a temporary introduced while lowering it.
+// Locals are compared by identity, since bindings of the same name in different blocks of the body are distinct locals.
+public class Local {
+    public final String name;
+    public final MegaType type;
+    public final boolean isParam;
+    final int id; // Unique within the function, so that locals of the same name can be told apart when printed
+
+    Local(String name, MegaType type, boolean isParam, int id) {
+        this.name = name;
+        this.type = type;
+        this.isParam = isParam;
+        this.id = id;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s.%d", this.name, this.id);
+    }
+}
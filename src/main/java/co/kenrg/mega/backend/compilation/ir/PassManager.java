@@ -0,0 +1,48 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+// Runs a pipeline of IrPasses over functions. The pipeline is re-run over a function until none of its passes change
+// anything (since each pass may expose opportunities for the others), up to MAX_ITERATIONS times.
+public class PassManager {
+    public static final int MAX_ITERATIONS = 16;
+
+    private final List<IrPass> passes;
+    private final Map<String, Integer> numChanges = Maps.newLinkedHashMap(); // Of each pass, the runs which changed a function
+
+    public PassManager(List<IrPass> passes) {
+        this.passes = ImmutableList.copyOf(passes);
+        this.passes.forEach(pass -> this.numChanges.put(pass.name(), 0));
+    }
+
+    public static PassManager standardPipeline() {
+        return new PassManager(ImmutableList.of(new CopyPropagation(), new BranchFolding(), new DeadCodeElimination()));
+    }
+
+    public List<IrPass> getPasses() {
+        return this.passes;
+    }
+
+    public Map<String, Integer> getNumChanges() {
+        return this.numChanges;
+    }
+
+    public void run(IrFunction fn) {
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            boolean changed = false;
+            for (IrPass pass : this.passes) {
+                if (pass.run(fn)) {
+                    this.numChanges.merge(pass.name(), 1, Integer::sum);
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+// The last step of a Block, which transfers control to its successor blocks (or out of the function)
+public abstract class Terminator {
+    public abstract List<Block> successors();
+
+    // The value the terminator evaluates, if any
+    @Nullable
+    public abstract Value value();
+
+    public abstract Terminator substitute(Map<Local, Value> values);
+
+    public static class Goto extends Terminator {
+        public final Block target;
+
+        public Goto(Block target) {
+            this.target = target;
+        }
+
+        @Override
+        public List<Block> successors() {
+            return ImmutableList.of(this.target);
+        }
+
+        @Override
+        public Value value() {
+            return null;
+        }
+
+        @Override
+        public Terminator substitute(Map<Local, Value> values) {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("goto %s", this.target.name());
+        }
+    }
+
+    public static class Branch extends Terminator {
+        public final Value condition;
+        public final Block ifTrue;
+        public final Block ifFalse;
+
+        public Branch(Value condition, Block ifTrue, Block ifFalse) {
+            this.condition = condition;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+        }
+
+        @Override
+        public List<Block> successors() {
+            return ImmutableList.of(this.ifTrue, this.ifFalse);
+        }
+
+        @Override
+        public Value value() {
+            return this.condition;
+        }
+
+        @Override
+        public Terminator substitute(Map<Local, Value> values) {
+            Value condition = this.condition.substitute(values);
+            return condition == this.condition ? this : new Branch(condition, this.ifTrue, this.ifFalse);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("branch %s ? %s : %s", this.condition, this.ifTrue.name(), this.ifFalse.name());
+        }
+    }
+
+    public static class Return extends Terminator {
+        public final Value value;
+
+        public Return(Value value) {
+            this.value = value;
+        }
+
+        @Override
+        public List<Block> successors() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Value value() {
+            return this.value;
+        }
+
+        @Override
+        public Terminator substitute(Map<Local, Value> values) {
+            Value value = this.value.substitute(values);
+            return value == this.value ? this : new Return(value);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("return %s", this.value);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import static java.util.stream.Collectors.joining;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+// An expression of the IR, computing a value of its type. Values are trees whose operands are evaluated left-to-right;
+// they never write to locals (only Instructions do), so a value reading a local sees the local's value as of the point
+// where the value is evaluated.
+public abstract class Value {
+    public final MegaType type;
+
+    Value(MegaType type) {
+        this.type = type;
+    }
+
+    public List<Value> operands() {
+        return Collections.emptyList();
+    }
+
+    // A copy of this value with the given operands (in place of its own), or this value itself if it has none
+    Value withOperands(List<Value> operands) {
+        return this;
+    }
+
+    // Whether evaluating the value may do anything besides computing it: invoking a method, throwing (as integer division
+    // by zero does), or initializing a class (as reading a static field may). Values without effects may be removed or
+    // duplicated freely.
+    public boolean hasEffects() {
+        return this.operands().stream().anyMatch(Value::hasEffects);
+    }
+
+    public boolean reads(Local local) {
+        return this.operands().stream().anyMatch(operand -> operand.reads(local));
+    }
+
+    // Replaces any reads of the given locals with the values they map to
+    public Value substitute(Map<Local, Value> values) {
+        List<Value> operands = this.operands();
+        if (operands.isEmpty()) {
+            return this;
+        }
+
+        List<Value> substituted = Lists.newArrayList();
+        boolean changed = false;
+        for (Value operand : operands) {
+            Value newOperand = operand.substitute(values);
+            changed = changed || newOperand != operand;
+            substituted.add(newOperand);
+        }
+        return changed ? this.withOperands(substituted) : this;
+    }
+
+    public static class Const extends Value {
+        public final Object value; // An Integer, Float or Boolean
+
+        public Const(MegaType type, Object value) {
+            super(type);
+            this.value = value;
+        }
+
+        public static Const zero(MegaType type) {
+            if (type == PrimitiveTypes.FLOAT) {
+                return new Const(type, 0.0F);
+            } else if (type == PrimitiveTypes.BOOLEAN) {
+                return new Const(type, false);
+            }
+            return new Const(type, 0);
+        }
+
+        @Override
+        public String toString() {
+            return this.value instanceof Float ? this.value + "f" : this.value.toString();
+        }
+    }
+
+    public static class LocalRef extends Value {
+        public final Local local;
+
+        public LocalRef(Local local) {
+            super(local.type);
+            this.local = local;
+        }
+
+        @Override
+        public boolean reads(Local local) {
+            return this.local == local;
+        }
+
+        @Override
+        public Value substitute(Map<Local, Value> values) {
+            return values.getOrDefault(this.local, this);
+        }
+
+        @Override
+        public String toString() {
+            return this.local.toString();
+        }
+    }
+
+    // A top-level binding, read from the static field of its class (see Compiler#loadIdentifier)
+    public static class StaticRef extends Value {
+        public final String owner;
+        public final String name;
+
+        public StaticRef(String owner, String name, MegaType type) {
+            super(type);
+            this.owner = owner;
+            this.name = name;
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s.%s", this.owner, this.name);
+        }
+    }
+
+    public static class Negate extends Value {
+        public final Value operand;
+
+        public Negate(Value operand) {
+            super(operand.type);
+            this.operand = operand;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return ImmutableList.of(this.operand);
+        }
+
+        @Override
+        Value withOperands(List<Value> operands) {
+            return new Negate(operands.get(0));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("-%s", this.operand);
+        }
+    }
+
+    public static class Not extends Value {
+        public final Value operand;
+
+        public Not(Value operand) {
+            super(PrimitiveTypes.BOOLEAN);
+            this.operand = operand;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return ImmutableList.of(this.operand);
+        }
+
+        @Override
+        Value withOperands(List<Value> operands) {
+            return new Not(operands.get(0));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("!%s", this.operand);
+        }
+    }
+
+    // One of +, -, * or / over two Ints or two Floats (an Int operand of a Float operation is converted via IntToFloat)
+    public static class Arithmetic extends Value {
+        public final String operator;
+        public final Value left;
+        public final Value right;
+
+        public Arithmetic(String operator, Value left, Value right) {
+            super(left.type);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return ImmutableList.of(this.left, this.right);
+        }
+
+        @Override
+        Value withOperands(List<Value> operands) {
+            return new Arithmetic(this.operator, operands.get(0), operands.get(1));
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return (this.type == PrimitiveTypes.INTEGER && this.operator.equals("/")) || super.hasEffects();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(%s %s %s)", this.left, this.operator, this.right);
+        }
+    }
+
+    public static class IntToFloat extends Value {
+        public final Value operand;
+
+        public IntToFloat(Value operand) {
+            super(PrimitiveTypes.FLOAT);
+            this.operand = operand;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return ImmutableList.of(this.operand);
+        }
+
+        @Override
+        Value withOperands(List<Value> operands) {
+            return new IntToFloat(operands.get(0));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("i2f(%s)", this.operand);
+        }
+    }
+
+    // One of <, <=, >, >=, == or != over two Ints, two Floats or two Bools
+    public static class Compare extends Value {
+        public final String operator;
+        public final Value left;
+        public final Value right;
+
+        public Compare(String operator, Value left, Value right) {
+            super(PrimitiveTypes.BOOLEAN);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return ImmutableList.of(this.left, this.right);
+        }
+
+        @Override
+        Value withOperands(List<Value> operands) {
+            return new Compare(this.operator, operands.get(0), operands.get(1));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(%s %s %s)", this.left, this.operator, this.right);
+        }
+    }
+
+    // An invocation of a static method (a function declared in this module, or imported from another)
+    public static class Call extends Value {
+        public final String owner;
+        public final String name;
+        public final String desc;
+        public final List<Value> arguments;
+
+        public Call(String owner, String name, String desc, List<Value> arguments, MegaType type) {
+            super(type);
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+            this.arguments = ImmutableList.copyOf(arguments);
+        }
+
+        @Override
+        public List<Value> operands() {
+            return this.arguments;
+        }
+
+        @Override
+        Value withOperands(List<Value> operands) {
+            return new Call(this.owner, this.name, this.desc, operands, this.type);
+        }
+
+        @Override
+        public boolean hasEffects() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s.%s(%s)", this.owner, this.name, this.arguments.stream().map(Value::toString).collect(joining(", ")));
+        }
+    }
+}
@@ -0,0 +1,682 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import co.kenrg.mega.backend.compilation.optimization.ConstantFoldingReport.Kind;
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.ast.expression.AccessorExpression;
+import co.kenrg.mega.frontend.ast.expression.ArrayLiteral;
+import co.kenrg.mega.frontend.ast.expression.ArrowFunctionExpression;
+import co.kenrg.mega.frontend.ast.expression.AssignmentExpression;
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.BooleanLiteral;
+import co.kenrg.mega.frontend.ast.expression.CallExpression;
+import co.kenrg.mega.frontend.ast.expression.FloatLiteral;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.expression.IfExpression;
+import co.kenrg.mega.frontend.ast.expression.IndexExpression;
+import co.kenrg.mega.frontend.ast.expression.InfixExpression;
+import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.MatchCase;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
+import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
+import co.kenrg.mega.frontend.ast.expression.Parameter;
+import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
+import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
+import co.kenrg.mega.frontend.ast.expression.RangeExpression;
+import co.kenrg.mega.frontend.ast.expression.StringInterpolationExpression;
+import co.kenrg.mega.frontend.ast.expression.StringLiteral;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.iface.Node;
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.ForLoopStatement;
+import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ImportStatement;
+import co.kenrg.mega.frontend.ast.statement.TypeDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
+import co.kenrg.mega.frontend.token.Position;
+import co.kenrg.mega.frontend.token.Token;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Simplifies a typechecked Module before it's compiled: constant arithmetic, comparison, boolean, and string
+ * expressions are evaluated (with the same semantics as the bytecode the Compiler would otherwise emit for them),
+ * if-expressions with constant conditions are replaced by the branch they take, and references to vals bound to
+ * constants are replaced by those constants.
+ * <p>
+ * The AST is immutable, so nodes are rebuilt (carrying over the types attached during typechecking) along the path to
+ * any simplified node; subtrees without anything to simplify are returned as-is.
+ */
+public class ConstantFolder {
+    private final ConstantFoldingReport report = new ConstantFoldingReport();
+    private final Map<Node, ConstantFoldingReport.Entry> entriesByNode = Maps.newIdentityHashMap();
+
+    // Each scope maps names to the literal a val was bound to, or to null for any other binding (which shadows a
+    // constant of the same name in an enclosing scope).
+    private final Deque<Map<String, Expression>> scopes = new ArrayDeque<>();
+
+    public ConstantFoldingReport getReport() {
+        return this.report;
+    }
+
+    public Module fold(Module module) {
+        this.scopes.push(Maps.newHashMap());
+
+        Map<Statement, Statement> foldedStatements = Maps.newIdentityHashMap();
+        List<Statement> statements = Lists.newArrayListWithCapacity(module.statements.size());
+        for (Statement statement : module.statements) {
+            Statement folded = foldStatement(statement);
+            foldedStatements.put(statement, folded);
+            statements.add(folded);
+        }
+
+        this.scopes.pop();
+
+        List<Statement> exports = Lists.newArrayListWithCapacity(module.exports.size());
+        for (Statement export : module.exports) {
+            exports.add(foldedStatements.getOrDefault(export, export));
+        }
+
+        Module foldedModule = new Module(statements, module.imports, exports);
+        for (Entry<String, Statement> namedExport : module.namedExports.entrySet()) {
+            Statement export = namedExport.getValue();
+            foldedModule.namedExports.put(namedExport.getKey(), foldedStatements.getOrDefault(export, export));
+        }
+        foldedModule.setType(module.getType());
+        return foldedModule;
+    }
+
+    //***************************************************************
+    //************              Statements               ************
+    //***************************************************************
+
+    private Statement foldStatement(Statement statement) {
+        Statement folded;
+        if (statement instanceof ExpressionStatement) {
+            folded = foldExpressionStatement((ExpressionStatement) statement);
+        } else if (statement instanceof ValStatement) {
+            folded = foldValStatement((ValStatement) statement);
+        } else if (statement instanceof VarStatement) {
+            folded = foldVarStatement((VarStatement) statement);
+        } else if (statement instanceof ForLoopStatement) {
+            folded = foldForLoopStatement((ForLoopStatement) statement);
+        } else if (statement instanceof WhileLoopStatement) {
+            folded = foldWhileLoopStatement((WhileLoopStatement) statement);
+        } else if (statement instanceof FunctionDeclarationStatement) {
+            folded = foldFunctionDeclarationStatement((FunctionDeclarationStatement) statement);
+        } else if (statement instanceof TypeDeclarationStatement) {
+            declare(((TypeDeclarationStatement) statement).typeName.value, null);
+            folded = statement;
+        } else if (statement instanceof ImportStatement) {
+            for (Identifier importName : ((ImportStatement) statement).imports) {
+                declare(importName.value, null);
+            }
+            folded = statement;
+        } else {
+            folded = statement;
+        }
+
+        if (folded != statement) {
+            folded.setType(statement.getType());
+        }
+        return folded;
+    }
+
+    private Statement foldExpressionStatement(ExpressionStatement statement) {
+        Expression expr = foldExpression(statement.expression);
+        if (expr == statement.expression) {
+            return statement;
+        }
+        return new ExpressionStatement(statement.token, expr);
+    }
+
+    private Statement foldValStatement(ValStatement statement) {
+        Expression value = foldExpression(statement.value);
+        declare(statement.name.value, isLiteral(value) ? value : null);
+
+        if (value == statement.value) {
+            return statement;
+        }
+        return new ValStatement(statement.token, statement.name, value, statement.isExported);
+    }
+
+    private Statement foldVarStatement(VarStatement statement) {
+        Expression value = foldExpression(statement.value);
+        declare(statement.name.value, null);
+
+        if (value == statement.value) {
+            return statement;
+        }
+        return new VarStatement(statement.token, statement.name, value, statement.isExported);
+    }
+
+    private Statement foldForLoopStatement(ForLoopStatement statement) {
+        Expression iteratee = foldExpression(statement.iteratee);
+
+        this.scopes.push(Maps.newHashMap());
+        declare(statement.iterator.value, null);
+        BlockExpression block = foldBlockExpression(statement.block);
+        this.scopes.pop();
+
+        if (iteratee == statement.iteratee && block == statement.block) {
+            return statement;
+        }
+        return new ForLoopStatement(statement.token, statement.iterator, iteratee, block);
+    }
+
+    private Statement foldWhileLoopStatement(WhileLoopStatement statement) {
+        Expression condition = foldExpression(statement.condition);
+        BlockExpression block = foldBlockExpression(statement.block);
+
+        if (condition == statement.condition && block == statement.block) {
+            return statement;
+        }
+        return new WhileLoopStatement(statement.token, condition, block);
+    }
+
+    private Statement foldFunctionDeclarationStatement(FunctionDeclarationStatement statement) {
+        declare(statement.name.value, null);
+
+        this.scopes.push(Maps.newHashMap());
+        for (Parameter parameter : statement.parameters) {
+            declare(parameter.ident.value, null);
+        }
+        Expression body = foldExpression(statement.body);
+        this.scopes.pop();
+
+        if (body == statement.body) {
+            return statement;
+        }
+        return new FunctionDeclarationStatement(statement.token, statement.name, statement.parameters, body, statement.typeAnnotation, statement.isExported);
+    }
+
+    //***************************************************************
+    //************              Expressions              ************
+    //***************************************************************
+
+    private Expression foldExpression(Expression expr) {
+        Expression folded;
+        if (expr instanceof ParenthesizedExpression) {
+            folded = foldParenthesizedExpression((ParenthesizedExpression) expr);
+        } else if (expr instanceof PrefixExpression) {
+            folded = foldPrefixExpression((PrefixExpression) expr);
+        } else if (expr instanceof InfixExpression) {
+            folded = foldInfixExpression((InfixExpression) expr);
+        } else if (expr instanceof IfExpression) {
+            folded = foldIfExpression((IfExpression) expr);
+        } else if (expr instanceof MatchExpression) {
+            folded = foldMatchExpression((MatchExpression) expr);
+        } else if (expr instanceof Identifier) {
+            folded = foldIdentifier((Identifier) expr);
+        } else if (expr instanceof BlockExpression) {
+            folded = foldBlockExpression((BlockExpression) expr);
+        } else if (expr instanceof StringInterpolationExpression) {
+            folded = foldStringInterpolationExpression((StringInterpolationExpression) expr);
+        } else if (expr instanceof ArrayLiteral) {
+            ArrayLiteral array = (ArrayLiteral) expr;
+            List<Expression> elements = foldExpressions(array.elements);
+            folded = elements == array.elements ? array : new ArrayLiteral(array.token, elements);
+        } else if (expr instanceof ObjectLiteral) {
+            folded = foldObjectLiteral((ObjectLiteral) expr);
+        } else if (expr instanceof AssignmentExpression) {
+            AssignmentExpression assignment = (AssignmentExpression) expr;
+            Expression right = foldExpression(assignment.right);
+            folded = right == assignment.right ? assignment : new AssignmentExpression(assignment.token, assignment.name, right);
+        } else if (expr instanceof RangeExpression) {
+            RangeExpression range = (RangeExpression) expr;
+            Expression leftBound = foldExpression(range.leftBound);
+            Expression rightBound = foldExpression(range.rightBound);
+            folded = leftBound == range.leftBound && rightBound == range.rightBound
+                ? range
+                : new RangeExpression(range.token, leftBound, rightBound);
+        } else if (expr instanceof IndexExpression) {
+            IndexExpression index = (IndexExpression) expr;
+            Expression target = foldExpression(index.target);
+            Expression indexExpr = foldExpression(index.index);
+            folded = target == index.target && indexExpr == index.index
+                ? index
+                : new IndexExpression(index.token, target, indexExpr);
+        } else if (expr instanceof AccessorExpression) {
+            AccessorExpression accessor = (AccessorExpression) expr;
+            Expression target = foldExpression(accessor.target);
+            folded = target == accessor.target ? accessor : new AccessorExpression(accessor.token, target, accessor.property);
+        } else if (expr instanceof ArrowFunctionExpression) {
+            folded = foldArrowFunctionExpression((ArrowFunctionExpression) expr);
+        } else if (expr instanceof CallExpression) {
+            folded = foldCallExpression((CallExpression) expr);
+        } else {
+            folded = expr;
+        }
+
+        if (folded != expr && folded.getType() == null) {
+            folded.setType(expr.getType());
+        }
+        return folded;
+    }
+
+    private List<Expression> foldExpressions(List<Expression> exprs) {
+        List<Expression> folded = Lists.newArrayListWithCapacity(exprs.size());
+        boolean changed = false;
+        for (Expression expr : exprs) {
+            Expression foldedExpr = foldExpression(expr);
+            changed = changed || foldedExpr != expr;
+            folded.add(foldedExpr);
+        }
+        return changed ? folded : exprs;
+    }
+
+    private Expression foldParenthesizedExpression(ParenthesizedExpression expr) {
+        Expression inner = foldExpression(expr.expr);
+        if (isLiteral(inner)) {
+            // The simplification is reported against the inner expression; re-key it so that an enclosing fold can
+            // supersede it.
+            ConstantFoldingReport.Entry entry = this.entriesByNode.get(expr.expr);
+            if (entry != null) {
+                this.entriesByNode.put(expr, entry);
+            }
+            return inner;
+        }
+        return inner == expr.expr ? expr : new ParenthesizedExpression(expr.token, inner);
+    }
+
+    private Expression foldPrefixExpression(PrefixExpression expr) {
+        Expression operand = foldExpression(expr.expression);
+
+        Expression result = null;
+        if (expr.operator.equals("-") && operand instanceof IntegerLiteral) {
+            result = new IntegerLiteral(expr.token, -((IntegerLiteral) operand).value);
+        } else if (expr.operator.equals("-") && operand instanceof FloatLiteral) {
+            result = new FloatLiteral(expr.token, -((FloatLiteral) operand).value);
+        } else if (expr.operator.equals("!") && operand instanceof BooleanLiteral) {
+            result = new BooleanLiteral(expr.token, !((BooleanLiteral) operand).value);
+        }
+
+        if (result != null) {
+            return recordFold(Kind.FOLDED, expr, result, expr.expression);
+        }
+        return operand == expr.expression ? expr : new PrefixExpression(expr.token, expr.operator, operand);
+    }
+
+    private Expression foldInfixExpression(InfixExpression expr) {
+        Expression left = foldExpression(expr.left);
+
+        // Short-circuiting operators with a constant left operand either don't evaluate the right operand at all, or
+        // evaluate to it
+        boolean isAnd = expr.operator.equals("&&");
+        if ((isAnd || expr.operator.equals("||")) && left instanceof BooleanLiteral) {
+            boolean leftValue = ((BooleanLiteral) left).value;
+            if (leftValue != isAnd) {
+                return recordFold(Kind.FOLDED, expr, new BooleanLiteral(expr.token, leftValue), expr.left);
+            }
+            Expression right = foldExpression(expr.right);
+            if (isLiteral(right)) {
+                return recordFold(Kind.FOLDED, expr, right, expr.left, expr.right);
+            }
+            this.report.add(Kind.FOLDED, positionOf(expr), expr.repr(false, 0), right.repr(false, 0));
+            supersedeEntryFor(expr.left);
+            return right;
+        }
+
+        Expression right = foldExpression(expr.right);
+
+        Expression result = null;
+        if (isLiteral(left) && isLiteral(right)) {
+            result = evaluateInfixExpression(expr.token, expr.operator, expr.getType(), left, right);
+        }
+
+        if (result != null) {
+            return recordFold(Kind.FOLDED, expr, result, expr.left, expr.right);
+        }
+        return left == expr.left && right == expr.right ? expr : new InfixExpression(expr.token, expr.operator, left, right);
+    }
+
+    private Expression foldIfExpression(IfExpression expr) {
+        Expression condition = foldExpression(expr.condition);
+
+        if (condition instanceof BooleanLiteral) {
+            boolean conditionValue = ((BooleanLiteral) condition).value;
+            BlockExpression branch = conditionValue ? expr.thenExpr : expr.elseExpr;
+
+            // An if-expression without an else-branch whose condition is always false is left alone
+            if (branch != null) {
+                BlockExpression block = foldBlockExpression(branch);
+
+                Expression result;
+                if (block.statements.size() == 1 && block.statements.get(0) instanceof ExpressionStatement) {
+                    result = ((ExpressionStatement) block.statements.get(0)).expression;
+                } else {
+                    result = new BlockExpression(block.token, block.statements);
+                    result.setType(expr.getType());
+                }
+
+                String before = String.format("if %s", expr.condition.repr(false, 0));
+                String after = conditionValue ? "then-branch" : "else-branch";
+                ConstantFoldingReport.Entry entry = this.report.add(Kind.PRUNED, positionOf(expr), before, after);
+                supersedeEntryFor(expr.condition);
+                if (isLiteral(result)) {
+                    this.entriesByNode.put(expr, entry);
+                }
+                return result;
+            }
+        }
+
+        BlockExpression thenExpr = foldBlockExpression(expr.thenExpr);
+        BlockExpression elseExpr = expr.elseExpr == null ? null : foldBlockExpression(expr.elseExpr);
+        if (condition == expr.condition && thenExpr == expr.thenExpr && elseExpr == expr.elseExpr) {
+            return expr;
+        }
+        return new IfExpression(expr.token, condition, thenExpr, elseExpr);
+    }
+
+    // A match's patterns are always literals, so only its subject and the bodies of its cases are folded
+    private Expression foldMatchExpression(MatchExpression expr) {
+        Expression subject = foldExpression(expr.subject);
+        boolean changed = subject != expr.subject;
+
+        List<MatchCase> cases = Lists.newArrayList();
+        for (MatchCase matchCase : expr.cases) {
+            Expression body = foldExpression(matchCase.body);
+            changed = changed || body != matchCase.body;
+            cases.add(body == matchCase.body ? matchCase : new MatchCase(matchCase.patterns, body));
+        }
+        Expression elseExpr = expr.elseExpr == null ? null : foldExpression(expr.elseExpr);
+        changed = changed || elseExpr != expr.elseExpr;
+
+        return changed ? new MatchExpression(expr.token, subject, cases, elseExpr) : expr;
+    }
+
+    private Expression foldIdentifier(Identifier expr) {
+        Expression constant = lookup(expr.value);
+        if (constant == null || constant.getType() != expr.getType()) {
+            return expr;
+        }
+
+        Expression result = copyLiteral(constant, expr.token);
+        ConstantFoldingReport.Entry entry = this.report.add(Kind.PROPAGATED, positionOf(expr), expr.value, result.repr(false, 0));
+        this.entriesByNode.put(expr, entry);
+        return result;
+    }
+
+    private BlockExpression foldBlockExpression(BlockExpression expr) {
+        this.scopes.push(Maps.newHashMap());
+
+        List<Statement> statements = Lists.newArrayListWithCapacity(expr.statements.size());
+        boolean changed = false;
+        for (Statement statement : expr.statements) {
+            Statement folded = foldStatement(statement);
+            changed = changed || folded != statement;
+            statements.add(folded);
+        }
+
+        this.scopes.pop();
+
+        if (!changed) {
+            return expr;
+        }
+        BlockExpression folded = new BlockExpression(expr.token, statements);
+        folded.setType(expr.getType());
+        return folded;
+    }
+
+    private Expression foldStringInterpolationExpression(StringInterpolationExpression expr) {
+        List<Expression> exprs = foldExpressions(expr.expressions);
+        if (exprs.stream().allMatch(ConstantFolder::isLiteral)) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < exprs.size(); i++) {
+                sb.append(expr.segments.get(i));
+                sb.append(stringValue(exprs.get(i)));
+            }
+            sb.append(expr.segments.get(expr.segments.size() - 1));
+
+            Node[] operands = expr.expressions.toArray(new Node[0]);
+            return recordFold(Kind.FOLDED, expr, new StringLiteral(expr.token, sb.toString()), operands);
+        }
+
+        if (exprs == expr.expressions) {
+            return expr;
+        }
+        return new StringInterpolationExpression(expr.token, expr.value, expr.interpolatedExpressions, expr.segments, exprs);
+    }
+
+    private Expression foldObjectLiteral(ObjectLiteral expr) {
+        LinkedHashMultimap<Identifier, Expression> pairs = LinkedHashMultimap.create();
+        boolean changed = false;
+        for (Entry<Identifier, Expression> pair : expr.pairs.entries()) {
+            Expression value = foldExpression(pair.getValue());
+            changed = changed || value != pair.getValue();
+            pairs.put(pair.getKey(), value);
+        }
+        return changed ? new ObjectLiteral(expr.token, pairs) : expr;
+    }
+
+    private Expression foldArrowFunctionExpression(ArrowFunctionExpression expr) {
+        this.scopes.push(Maps.newHashMap());
+        for (Parameter parameter : expr.parameters) {
+            declare(parameter.ident.value, null);
+        }
+        Expression body = foldExpression(expr.body);
+        this.scopes.pop();
+
+        return body == expr.body ? expr : new ArrowFunctionExpression(expr.token, expr.parameters, body);
+    }
+
+    private Expression foldCallExpression(CallExpression expr) {
+        if (expr instanceof CallExpression.UnnamedArgs) {
+            CallExpression.UnnamedArgs call = (CallExpression.UnnamedArgs) expr;
+            Expression target = foldExpression(call.target);
+            List<Expression> arguments = foldExpressions(call.arguments);
+            if (target == call.target && arguments == call.arguments) {
+                return call;
+            }
+            return new CallExpression.UnnamedArgs(call.token, target, arguments);
+        } else if (expr instanceof CallExpression.NamedArgs) {
+            CallExpression.NamedArgs call = (CallExpression.NamedArgs) expr;
+            Expression target = foldExpression(call.target);
+            List<Pair<Identifier, Expression>> arguments = Lists.newArrayListWithCapacity(call.namedParamArguments.size());
+            boolean changed = target != call.target;
+            for (Pair<Identifier, Expression> argument : call.namedParamArguments) {
+                Expression value = foldExpression(argument.getValue());
+                changed = changed || value != argument.getValue();
+                arguments.add(Pair.of(argument.getKey(), value));
+            }
+            return changed ? new CallExpression.NamedArgs(call.token, target, arguments) : call;
+        }
+        return expr;
+    }
+
+    //***************************************************************
+    //************              Evaluation               ************
+    //***************************************************************
+
+    // Evaluates an infix expression whose operands are both literals, returning null if it can't (or shouldn't) be
+    // evaluated at compile-time.
+    private static Expression evaluateInfixExpression(Token token, String operator, MegaType type, Expression left, Expression right) {
+        if (type == PrimitiveTypes.STRING) {
+            if (operator.equals("+")) {
+                return new StringLiteral(token, stringValue(left) + stringValue(right));
+            }
+            return null; // String repetition could produce an arbitrarily large constant
+        }
+
+        if (type == PrimitiveTypes.INTEGER && left instanceof IntegerLiteral && right instanceof IntegerLiteral) {
+            int l = ((IntegerLiteral) left).value;
+            int r = ((IntegerLiteral) right).value;
+            switch (operator) {
+                case "+":
+                    return new IntegerLiteral(token, l + r);
+                case "-":
+                    return new IntegerLiteral(token, l - r);
+                case "*":
+                    return new IntegerLiteral(token, l * r);
+                case "/":
+                    return r == 0 ? null : new IntegerLiteral(token, l / r); // Division by zero must still fail at runtime
+                default:
+                    return null;
+            }
+        }
+
+        if (type == PrimitiveTypes.FLOAT && isNumericLiteral(left) && isNumericLiteral(right)) {
+            float l = floatValue(left);
+            float r = floatValue(right);
+            switch (operator) {
+                case "+":
+                    return new FloatLiteral(token, l + r);
+                case "-":
+                    return new FloatLiteral(token, l - r);
+                case "*":
+                    return new FloatLiteral(token, l * r);
+                case "/":
+                    return new FloatLiteral(token, l / r);
+                default:
+                    return null;
+            }
+        }
+
+        if (type == PrimitiveTypes.BOOLEAN) {
+            Integer comparison = compareLiterals(left, right);
+            if (comparison == null) {
+                return null;
+            }
+            switch (operator) {
+                case "<":
+                    return new BooleanLiteral(token, comparison < 0);
+                case "<=":
+                    return new BooleanLiteral(token, comparison <= 0);
+                case ">":
+                    return new BooleanLiteral(token, comparison > 0);
+                case ">=":
+                    return new BooleanLiteral(token, comparison >= 0);
+                case "==":
+                    return new BooleanLiteral(token, comparison == 0);
+                case "!=":
+                    return new BooleanLiteral(token, comparison != 0);
+                default:
+                    return null;
+            }
+        }
+
+        return null;
+    }
+
+    // Mirrors the comparisons performed by BooleanInfixExpressionCompiler: ints (and bools, as 0/1) are compared as
+    // ints, mixed numbers as floats, and strings via compareTo.
+    private static Integer compareLiterals(Expression left, Expression right) {
+        if (left instanceof IntegerLiteral && right instanceof IntegerLiteral) {
+            return Integer.compare(((IntegerLiteral) left).value, ((IntegerLiteral) right).value);
+        }
+        if (isNumericLiteral(left) && isNumericLiteral(right)) {
+            float l = floatValue(left);
+            float r = floatValue(right);
+            if (Float.isNaN(l) || Float.isNaN(r)) {
+                return null; // The result of comparing with NaN depends on the comparison instruction used
+            }
+            return l < r ? -1 : (l > r ? 1 : 0);
+        }
+        if (left instanceof BooleanLiteral && right instanceof BooleanLiteral) {
+            return Boolean.compare(((BooleanLiteral) left).value, ((BooleanLiteral) right).value);
+        }
+        if (left instanceof StringLiteral && right instanceof StringLiteral) {
+            return ((StringLiteral) left).value.compareTo(((StringLiteral) right).value);
+        }
+        return null;
+    }
+
+    private static boolean isLiteral(Expression expr) {
+        return expr instanceof IntegerLiteral
+            || expr instanceof FloatLiteral
+            || expr instanceof BooleanLiteral
+            || expr instanceof StringLiteral;
+    }
+
+    private static boolean isNumericLiteral(Expression expr) {
+        return expr instanceof IntegerLiteral || expr instanceof FloatLiteral;
+    }
+
+    private static float floatValue(Expression numericLiteral) {
+        if (numericLiteral instanceof IntegerLiteral) {
+            return (float) ((IntegerLiteral) numericLiteral).value;
+        }
+        return ((FloatLiteral) numericLiteral).value;
+    }
+
+    // Matches the string representations produced by StringBuilder#append for each of the literal types
+    private static String stringValue(Expression literal) {
+        if (literal instanceof IntegerLiteral) {
+            return String.valueOf(((IntegerLiteral) literal).value);
+        } else if (literal instanceof FloatLiteral) {
+            return String.valueOf(((FloatLiteral) literal).value);
+        } else if (literal instanceof BooleanLiteral) {
+            return String.valueOf(((BooleanLiteral) literal).value);
+        }
+        return ((StringLiteral) literal).value;
+    }
+
+    private static Expression copyLiteral(Expression literal, Token token) {
+        Expression copy;
+        if (literal instanceof IntegerLiteral) {
+            copy = new IntegerLiteral(token, ((IntegerLiteral) literal).value);
+        } else if (literal instanceof FloatLiteral) {
+            copy = new FloatLiteral(token, ((FloatLiteral) literal).value);
+        } else if (literal instanceof BooleanLiteral) {
+            copy = new BooleanLiteral(token, ((BooleanLiteral) literal).value);
+        } else {
+            copy = new StringLiteral(token, ((StringLiteral) literal).value);
+        }
+        copy.setType(literal.getType());
+        return copy;
+    }
+
+    //***************************************************************
+    //************              Bookkeeping              ************
+    //***************************************************************
+
+    private void declare(String name, Expression constant) {
+        this.scopes.peek().put(name, constant);
+    }
+
+    private Expression lookup(String name) {
+        for (Map<String, Expression> scope : this.scopes) {
+            if (scope.containsKey(name)) {
+                return scope.get(name);
+            }
+        }
+        return null;
+    }
+
+    private Expression recordFold(Kind kind, Expression original, Expression result, Node... originalOperands) {
+        result.setType(original.getType());
+        ConstantFoldingReport.Entry entry = this.report.add(kind, positionOf(original), original.repr(false, 0), result.repr(false, 0));
+        this.entriesByNode.put(original, entry);
+        for (Node operand : originalOperands) {
+            supersedeEntryFor(operand);
+        }
+        return result;
+    }
+
+    private void supersedeEntryFor(Node original) {
+        ConstantFoldingReport.Entry entry = this.entriesByNode.get(original);
+        if (entry != null) {
+            this.report.supersede(entry);
+        }
+    }
+
+    private static Position positionOf(Node node) {
+        Token token = node.getToken();
+        if (token == null || token.position == null) {
+            return Position.at(-1, -1);
+        }
+        return token.position;
+    }
+}
@@ -0,0 +1,76 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.List;
+
+import co.kenrg.mega.frontend.token.Position;
+import com.google.common.collect.Lists;
+
+public class ConstantFoldingReport {
+    public enum Kind {
+        FOLDED("folded"),           // A constant expression was evaluated at compile-time
+        PROPAGATED("propagated"),   // A reference to a constant val was replaced by its value
+        PRUNED("pruned");           // An if-expression with a constant condition was replaced by the branch it takes
+
+        public final String verb;
+
+        Kind(String verb) {
+            this.verb = verb;
+        }
+    }
+
+    public static class Entry {
+        public final Kind kind;
+        public final Position position;
+        public final String before;
+        public final String after;
+
+        // An entry is superseded when the node it describes is folded away as part of an enclosing expression; only
+        // the outermost simplification is reported.
+        private boolean isSuperseded = false;
+
+        Entry(Kind kind, Position position, String before, String after) {
+            this.kind = kind;
+            this.position = position;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s `%s` to `%s`", this.kind.verb, this.before, this.after);
+        }
+    }
+
+    private final List<Entry> entries = Lists.newArrayList();
+
+    Entry add(Kind kind, Position position, String before, String after) {
+        Entry entry = new Entry(kind, position, before, after);
+        this.entries.add(entry);
+        return entry;
+    }
+
+    void supersede(Entry entry) {
+        entry.isSuperseded = true;
+    }
+
+    public List<Entry> getEntries() {
+        return this.entries.stream()
+            .filter(entry -> !entry.isSuperseded)
+            .collect(toList());
+    }
+
+    public String format(String moduleName) {
+        List<Entry> entries = this.getEntries();
+        if (entries.isEmpty()) {
+            return String.format("Constant folding (%s): nothing to simplify", moduleName);
+        }
+
+        StringBuilder sb = new StringBuilder(String.format("Constant folding (%s): %d simplification(s)", moduleName, entries.size()));
+        for (Entry entry : entries) {
+            sb.append(String.format("\n  %s (%d, %d): %s", moduleName, entry.position.line, entry.position.col, entry));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,752 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.ast.expression.AccessorExpression;
+import co.kenrg.mega.frontend.ast.expression.ArrayLiteral;
+import co.kenrg.mega.frontend.ast.expression.ArrowFunctionExpression;
+import co.kenrg.mega.frontend.ast.expression.AssignmentExpression;
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.BooleanLiteral;
+import co.kenrg.mega.frontend.ast.expression.CallExpression;
+import co.kenrg.mega.frontend.ast.expression.FloatLiteral;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.expression.IfExpression;
+import co.kenrg.mega.frontend.ast.expression.IndexExpression;
+import co.kenrg.mega.frontend.ast.expression.InfixExpression;
+import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.MatchCase;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
+import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
+import co.kenrg.mega.frontend.ast.expression.Parameter;
+import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
+import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
+import co.kenrg.mega.frontend.ast.expression.RangeExpression;
+import co.kenrg.mega.frontend.ast.expression.StringInterpolationExpression;
+import co.kenrg.mega.frontend.ast.expression.StringLiteral;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.iface.Node;
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.BreakStatement;
+import co.kenrg.mega.frontend.ast.statement.ContinueStatement;
+import co.kenrg.mega.frontend.ast.statement.ForLoopStatement;
+import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ImportStatement;
+import co.kenrg.mega.frontend.ast.statement.TypeDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
+import co.kenrg.mega.frontend.token.Position;
+import co.kenrg.mega.frontend.token.Token;
+import co.kenrg.mega.frontend.typechecking.types.FunctionType;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Replaces calls to small, non-exported function declarations (and non-capturing arrow functions bound to vals) with
+ * the bodies of those functions, to avoid the cost of the invocation; for arrow functions, this is an interface
+ * dispatch through Invokeable#invoke, with its arguments and return value boxed. A call `f(a, b)` to
+ * `func f(x: Int, y: Int) { ... }` becomes the block `{ val x = a; val y = b; { ... } }`. Each call-site gets its own
+ * copy of the body (and of the parameters' identifiers), since later passes (eg. ScalarReplacement) key their rewrites
+ * on nodes' identities, and mustn't rewrite the callee's own body, or another call-site's, along with this one.
+ * <p>
+ * Which calls are inlined is decided by a budget: the callee's body must have at most maxSize AST nodes, and since
+ * bodies are processed before they're inlined anywhere (so they may themselves contain inlined calls), the inlined
+ * bodies may be nested at most maxDepth deep.
+ * <p>
+ * Like the ConstantFolder, this runs over the typechecked AST, rebuilding nodes along the path to any inlined call.
+ */
+public class Inliner {
+    private final int maxSize;
+    private final int maxDepth;
+    private final InliningReport report;
+
+    // Each scope maps names to the declaration they're bound to: either a Candidate, for functions which may be
+    // inlined, or the node which declared the binding. These are compared by identity, to check that the names a
+    // function's body refers to mean the same thing at a call-site as they do where the function was declared.
+    private final Deque<Map<String, Object>> scopes = new ArrayDeque<>();
+
+    private int arrowFunctionDepth = 0; // Arrow function bodies are compiled into separate methods; calls within them aren't inlined
+    private int inlinedDepth = 0; // The deepest nesting of inlined bodies within the function body currently being processed
+
+    private static class Candidate {
+        private final List<Parameter> parameters;
+        private final Expression body;
+        private final int size;
+        private final int depth;
+        private final Map<String, Object> referencedNames; // The declarations of the names referenced by the body, at the function's declaration
+
+        private Candidate(List<Parameter> parameters, Expression body, int size, int depth, Map<String, Object> referencedNames) {
+            this.parameters = parameters;
+            this.body = body;
+            this.size = size;
+            this.depth = depth;
+            this.referencedNames = referencedNames;
+        }
+    }
+
+    public Inliner(int maxSize, int maxDepth) {
+        this.maxSize = maxSize;
+        this.maxDepth = maxDepth;
+        this.report = new InliningReport(maxSize, maxDepth);
+    }
+
+    public InliningReport getReport() {
+        return this.report;
+    }
+
+    public Module inline(Module module) {
+        this.scopes.push(Maps.newHashMap());
+
+        Map<Statement, Statement> inlinedStatements = Maps.newIdentityHashMap();
+        List<Statement> statements = Lists.newArrayListWithCapacity(module.statements.size());
+        for (Statement statement : module.statements) {
+            Statement inlined = inlineStatement(statement);
+            inlinedStatements.put(statement, inlined);
+            statements.add(inlined);
+        }
+
+        this.scopes.pop();
+
+        List<Statement> exports = Lists.newArrayListWithCapacity(module.exports.size());
+        for (Statement export : module.exports) {
+            exports.add(inlinedStatements.getOrDefault(export, export));
+        }
+
+        Module inlinedModule = new Module(statements, module.imports, exports);
+        for (Entry<String, Statement> namedExport : module.namedExports.entrySet()) {
+            Statement export = namedExport.getValue();
+            inlinedModule.namedExports.put(namedExport.getKey(), inlinedStatements.getOrDefault(export, export));
+        }
+        inlinedModule.setType(module.getType());
+        return inlinedModule;
+    }
+
+    //***************************************************************
+    //************              Statements               ************
+    //***************************************************************
+
+    private Statement inlineStatement(Statement statement) {
+        Statement inlined;
+        if (statement instanceof ExpressionStatement) {
+            ExpressionStatement exprStatement = (ExpressionStatement) statement;
+            Expression expr = inlineExpression(exprStatement.expression);
+            inlined = expr == exprStatement.expression ? exprStatement : new ExpressionStatement(exprStatement.token, expr);
+        } else if (statement instanceof ValStatement) {
+            inlined = inlineValStatement((ValStatement) statement);
+        } else if (statement instanceof VarStatement) {
+            VarStatement varStatement = (VarStatement) statement;
+            Expression value = inlineExpression(varStatement.value);
+            declare(varStatement.name.value, varStatement);
+            inlined = value == varStatement.value
+                ? varStatement
+                : new VarStatement(varStatement.token, varStatement.name, value, varStatement.isExported);
+        } else if (statement instanceof ForLoopStatement) {
+            inlined = inlineForLoopStatement((ForLoopStatement) statement);
+        } else if (statement instanceof WhileLoopStatement) {
+            inlined = inlineWhileLoopStatement((WhileLoopStatement) statement);
+        } else if (statement instanceof FunctionDeclarationStatement) {
+            inlined = inlineFunctionDeclarationStatement((FunctionDeclarationStatement) statement);
+        } else if (statement instanceof TypeDeclarationStatement) {
+            declare(((TypeDeclarationStatement) statement).typeName.value, statement);
+            inlined = statement;
+        } else if (statement instanceof ImportStatement) {
+            for (Identifier importName : ((ImportStatement) statement).imports) {
+                declare(importName.value, statement);
+            }
+            inlined = statement;
+        } else {
+            inlined = statement;
+        }
+
+        if (inlined != statement) {
+            inlined.setType(statement.getType());
+        }
+        return inlined;
+    }
+
+    private Statement inlineValStatement(ValStatement statement) {
+        Expression value = inlineExpression(statement.value);
+
+        Candidate candidate = null;
+        if (value instanceof ArrowFunctionExpression) {
+            FunctionType fnType = (FunctionType) value.getType();
+            assert fnType != null; // Should be populated in typechecking pass
+
+            if (fnType.getCapturedBindings().isEmpty()) {
+                ArrowFunctionExpression arrowFn = (ArrowFunctionExpression) value;
+                candidate = getCandidate(statement.name.value, arrowFn.parameters, arrowFn.body, 0);
+            }
+        }
+        declare(statement.name.value, candidate != null ? candidate : statement);
+
+        if (value == statement.value) {
+            return statement;
+        }
+        return new ValStatement(statement.token, statement.name, value, statement.isExported);
+    }
+
+    private Statement inlineForLoopStatement(ForLoopStatement statement) {
+        Expression iteratee = inlineExpression(statement.iteratee);
+
+        this.scopes.push(Maps.newHashMap());
+        declare(statement.iterator.value, statement);
+        BlockExpression block = inlineBlockExpression(statement.block);
+        this.scopes.pop();
+
+        if (iteratee == statement.iteratee && block == statement.block) {
+            return statement;
+        }
+        return new ForLoopStatement(statement.token, statement.iterator, iteratee, block);
+    }
+
+    private Statement inlineWhileLoopStatement(WhileLoopStatement statement) {
+        Expression condition = inlineExpression(statement.condition);
+        BlockExpression block = inlineBlockExpression(statement.block);
+
+        if (condition == statement.condition && block == statement.block) {
+            return statement;
+        }
+        return new WhileLoopStatement(statement.token, condition, block);
+    }
+
+    private Statement inlineFunctionDeclarationStatement(FunctionDeclarationStatement statement) {
+        declare(statement.name.value, statement);
+
+        int origInlinedDepth = this.inlinedDepth;
+        this.inlinedDepth = 0;
+
+        this.scopes.push(Maps.newHashMap());
+        for (Parameter parameter : statement.parameters) {
+            declare(parameter.ident.value, parameter);
+        }
+        Expression body = inlineExpression(statement.body);
+        this.scopes.pop();
+
+        if (!statement.isExported) {
+            Candidate candidate = getCandidate(statement.name.value, statement.parameters, body, this.inlinedDepth);
+            if (candidate != null) {
+                declare(statement.name.value, candidate);
+            }
+        }
+        this.inlinedDepth = origInlinedDepth;
+
+        if (body == statement.body) {
+            return statement;
+        }
+        return new FunctionDeclarationStatement(statement.token, statement.name, statement.parameters, body, statement.typeAnnotation, statement.isExported);
+    }
+
+    //***************************************************************
+    //************              Expressions              ************
+    //***************************************************************
+
+    private Expression inlineExpression(Expression expr) {
+        Expression inlined;
+        if (expr instanceof CallExpression) {
+            inlined = inlineCallExpression((CallExpression) expr);
+        } else if (expr instanceof ParenthesizedExpression) {
+            ParenthesizedExpression parenthesized = (ParenthesizedExpression) expr;
+            Expression inner = inlineExpression(parenthesized.expr);
+            inlined = inner == parenthesized.expr ? parenthesized : new ParenthesizedExpression(parenthesized.token, inner);
+        } else if (expr instanceof PrefixExpression) {
+            PrefixExpression prefix = (PrefixExpression) expr;
+            Expression operand = inlineExpression(prefix.expression);
+            inlined = operand == prefix.expression ? prefix : new PrefixExpression(prefix.token, prefix.operator, operand);
+        } else if (expr instanceof InfixExpression) {
+            InfixExpression infix = (InfixExpression) expr;
+            Expression left = inlineExpression(infix.left);
+            Expression right = inlineExpression(infix.right);
+            inlined = left == infix.left && right == infix.right ? infix : new InfixExpression(infix.token, infix.operator, left, right);
+        } else if (expr instanceof IfExpression) {
+            IfExpression ifExpr = (IfExpression) expr;
+            Expression condition = inlineExpression(ifExpr.condition);
+            BlockExpression thenExpr = inlineBlockExpression(ifExpr.thenExpr);
+            BlockExpression elseExpr = ifExpr.elseExpr == null ? null : inlineBlockExpression(ifExpr.elseExpr);
+            inlined = condition == ifExpr.condition && thenExpr == ifExpr.thenExpr && elseExpr == ifExpr.elseExpr
+                ? ifExpr
+                : new IfExpression(ifExpr.token, condition, thenExpr, elseExpr);
+        } else if (expr instanceof MatchExpression) {
+            inlined = inlineMatchExpression((MatchExpression) expr);
+        } else if (expr instanceof BlockExpression) {
+            inlined = inlineBlockExpression((BlockExpression) expr);
+        } else if (expr instanceof StringInterpolationExpression) {
+            StringInterpolationExpression interpolation = (StringInterpolationExpression) expr;
+            List<Expression> exprs = inlineExpressions(interpolation.expressions);
+            inlined = exprs == interpolation.expressions
+                ? interpolation
+                : new StringInterpolationExpression(interpolation.token, interpolation.value, interpolation.interpolatedExpressions, interpolation.segments, exprs);
+        } else if (expr instanceof ArrayLiteral) {
+            ArrayLiteral array = (ArrayLiteral) expr;
+            List<Expression> elements = inlineExpressions(array.elements);
+            inlined = elements == array.elements ? array : new ArrayLiteral(array.token, elements);
+        } else if (expr instanceof ObjectLiteral) {
+            inlined = inlineObjectLiteral((ObjectLiteral) expr);
+        } else if (expr instanceof AssignmentExpression) {
+            AssignmentExpression assignment = (AssignmentExpression) expr;
+            Expression right = inlineExpression(assignment.right);
+            inlined = right == assignment.right ? assignment : new AssignmentExpression(assignment.token, assignment.name, right);
+        } else if (expr instanceof RangeExpression) {
+            RangeExpression range = (RangeExpression) expr;
+            Expression leftBound = inlineExpression(range.leftBound);
+            Expression rightBound = inlineExpression(range.rightBound);
+            inlined = leftBound == range.leftBound && rightBound == range.rightBound
+                ? range
+                : new RangeExpression(range.token, leftBound, rightBound);
+        } else if (expr instanceof IndexExpression) {
+            IndexExpression index = (IndexExpression) expr;
+            Expression target = inlineExpression(index.target);
+            Expression indexExpr = inlineExpression(index.index);
+            inlined = target == index.target && indexExpr == index.index
+                ? index
+                : new IndexExpression(index.token, target, indexExpr);
+        } else if (expr instanceof AccessorExpression) {
+            AccessorExpression accessor = (AccessorExpression) expr;
+            Expression target = inlineExpression(accessor.target);
+            inlined = target == accessor.target ? accessor : new AccessorExpression(accessor.token, target, accessor.property);
+        } else if (expr instanceof ArrowFunctionExpression) {
+            inlined = inlineArrowFunctionExpression((ArrowFunctionExpression) expr);
+        } else {
+            inlined = expr;
+        }
+
+        if (inlined != expr && inlined.getType() == null) {
+            inlined.setType(expr.getType());
+        }
+        return inlined;
+    }
+
+    private List<Expression> inlineExpressions(List<Expression> exprs) {
+        List<Expression> inlined = Lists.newArrayListWithCapacity(exprs.size());
+        boolean changed = false;
+        for (Expression expr : exprs) {
+            Expression inlinedExpr = inlineExpression(expr);
+            changed = changed || inlinedExpr != expr;
+            inlined.add(inlinedExpr);
+        }
+        return changed ? inlined : exprs;
+    }
+
+    private BlockExpression inlineBlockExpression(BlockExpression expr) {
+        this.scopes.push(Maps.newHashMap());
+
+        List<Statement> statements = Lists.newArrayListWithCapacity(expr.statements.size());
+        boolean changed = false;
+        for (Statement statement : expr.statements) {
+            Statement inlined = inlineStatement(statement);
+            changed = changed || inlined != statement;
+            statements.add(inlined);
+        }
+
+        this.scopes.pop();
+
+        if (!changed) {
+            return expr;
+        }
+        BlockExpression inlined = new BlockExpression(expr.token, statements);
+        inlined.setType(expr.getType());
+        return inlined;
+    }
+
+    private Expression inlineMatchExpression(MatchExpression expr) {
+        Expression subject = inlineExpression(expr.subject);
+        boolean changed = subject != expr.subject;
+
+        List<MatchCase> cases = Lists.newArrayList();
+        for (MatchCase matchCase : expr.cases) {
+            Expression body = inlineExpression(matchCase.body);
+            changed = changed || body != matchCase.body;
+            cases.add(body == matchCase.body ? matchCase : new MatchCase(matchCase.patterns, body));
+        }
+        Expression elseExpr = expr.elseExpr == null ? null : inlineExpression(expr.elseExpr);
+        changed = changed || elseExpr != expr.elseExpr;
+
+        return changed ? new MatchExpression(expr.token, subject, cases, elseExpr) : expr;
+    }
+
+    private Expression inlineObjectLiteral(ObjectLiteral expr) {
+        LinkedHashMultimap<Identifier, Expression> pairs = LinkedHashMultimap.create();
+        boolean changed = false;
+        for (Entry<Identifier, Expression> pair : expr.pairs.entries()) {
+            Expression value = inlineExpression(pair.getValue());
+            changed = changed || value != pair.getValue();
+            pairs.put(pair.getKey(), value);
+        }
+        return changed ? new ObjectLiteral(expr.token, pairs) : expr;
+    }
+
+    private Expression inlineArrowFunctionExpression(ArrowFunctionExpression expr) {
+        this.arrowFunctionDepth++;
+        this.scopes.push(Maps.newHashMap());
+        for (Parameter parameter : expr.parameters) {
+            declare(parameter.ident.value, parameter);
+        }
+        Expression body = inlineExpression(expr.body);
+        this.scopes.pop();
+        this.arrowFunctionDepth--;
+
+        return body == expr.body ? expr : new ArrowFunctionExpression(expr.token, expr.parameters, body);
+    }
+
+    private Expression inlineCallExpression(CallExpression expr) {
+        CallExpression call;
+        if (expr instanceof CallExpression.UnnamedArgs) {
+            CallExpression.UnnamedArgs unnamedArgsCall = (CallExpression.UnnamedArgs) expr;
+            Expression target = inlineExpression(unnamedArgsCall.target);
+            List<Expression> arguments = inlineExpressions(unnamedArgsCall.arguments);
+            call = target == unnamedArgsCall.target && arguments == unnamedArgsCall.arguments
+                ? unnamedArgsCall
+                : new CallExpression.UnnamedArgs(unnamedArgsCall.token, target, arguments);
+        } else {
+            CallExpression.NamedArgs namedArgsCall = (CallExpression.NamedArgs) expr;
+            Expression target = inlineExpression(namedArgsCall.target);
+            List<Pair<Identifier, Expression>> arguments = Lists.newArrayListWithCapacity(namedArgsCall.namedParamArguments.size());
+            boolean changed = target != namedArgsCall.target;
+            for (Pair<Identifier, Expression> argument : namedArgsCall.namedParamArguments) {
+                Expression value = inlineExpression(argument.getValue());
+                changed = changed || value != argument.getValue();
+                arguments.add(Pair.of(argument.getKey(), value));
+            }
+            call = changed ? new CallExpression.NamedArgs(namedArgsCall.token, target, arguments) : namedArgsCall;
+        }
+        if (call != expr) {
+            call.setType(expr.getType());
+        }
+
+        Candidate candidate = getCandidateForCall(call);
+        if (candidate == null) {
+            return call;
+        }
+        // Calls which omit arguments (relying on default parameter values) aren't inlined
+        List<Expression> arguments = call.getArgumentsInParameterOrder((FunctionType) call.getTarget().getType());
+        if (arguments.contains(null) || !canInline(call, candidate, arguments)) {
+            return call;
+        }
+
+        int depth = candidate.depth + 1;
+        boolean isWithinBudget = candidate.size <= this.maxSize && depth <= this.maxDepth;
+        this.report.add(positionOf(call), call.repr(false, 0), candidate.size, depth, isWithinBudget);
+        if (!isWithinBudget) {
+            return call;
+        }
+        this.inlinedDepth = Math.max(this.inlinedDepth, depth);
+
+        Token token = call.getToken();
+        List<Statement> statements = Lists.newArrayListWithCapacity(arguments.size() + 1);
+        for (int i = 0; i < arguments.size(); i++) {
+            Identifier paramName = copyIdentifier(candidate.parameters.get(i).ident);
+            statements.add(new ValStatement(token, paramName, arguments.get(i), false));
+        }
+        Expression body = copyExpression(candidate.body);
+        statements.add(new ExpressionStatement(body.getToken(), body));
+
+        BlockExpression inlined = new BlockExpression(token, statements);
+        inlined.setType(call.getType());
+        return inlined;
+    }
+
+    //***************************************************************
+    //************                Copies                 ************
+    //***************************************************************
+
+    // Copies a candidate's body for a call-site. Bodies can't contain arrow functions (see getCandidate), so those (and
+    // any other nodes which can't appear in a body) are left as-is.
+    private static Expression copyExpression(Expression expr) {
+        Expression copy;
+        if (expr instanceof Identifier) {
+            copy = copyIdentifier((Identifier) expr);
+        } else if (expr instanceof IntegerLiteral) {
+            copy = new IntegerLiteral(expr.getToken(), ((IntegerLiteral) expr).value);
+        } else if (expr instanceof FloatLiteral) {
+            copy = new FloatLiteral(expr.getToken(), ((FloatLiteral) expr).value);
+        } else if (expr instanceof BooleanLiteral) {
+            copy = new BooleanLiteral(expr.getToken(), ((BooleanLiteral) expr).value);
+        } else if (expr instanceof StringLiteral) {
+            copy = new StringLiteral(expr.getToken(), ((StringLiteral) expr).value);
+        } else if (expr instanceof ParenthesizedExpression) {
+            ParenthesizedExpression parenthesized = (ParenthesizedExpression) expr;
+            copy = new ParenthesizedExpression(parenthesized.token, copyExpression(parenthesized.expr));
+        } else if (expr instanceof PrefixExpression) {
+            PrefixExpression prefix = (PrefixExpression) expr;
+            copy = new PrefixExpression(prefix.token, prefix.operator, copyExpression(prefix.expression));
+        } else if (expr instanceof InfixExpression) {
+            InfixExpression infix = (InfixExpression) expr;
+            copy = new InfixExpression(infix.token, infix.operator, copyExpression(infix.left), copyExpression(infix.right));
+        } else if (expr instanceof IfExpression) {
+            IfExpression ifExpr = (IfExpression) expr;
+            BlockExpression elseExpr = ifExpr.elseExpr == null ? null : (BlockExpression) copyExpression(ifExpr.elseExpr);
+            copy = new IfExpression(ifExpr.token, copyExpression(ifExpr.condition), (BlockExpression) copyExpression(ifExpr.thenExpr), elseExpr);
+        } else if (expr instanceof MatchExpression) {
+            MatchExpression match = (MatchExpression) expr;
+            List<MatchCase> cases = Lists.newArrayListWithCapacity(match.cases.size());
+            for (MatchCase matchCase : match.cases) {
+                cases.add(new MatchCase(copyExpressions(matchCase.patterns), copyExpression(matchCase.body)));
+            }
+            Expression elseExpr = match.elseExpr == null ? null : copyExpression(match.elseExpr);
+            copy = new MatchExpression(match.token, copyExpression(match.subject), cases, elseExpr);
+        } else if (expr instanceof BlockExpression) {
+            BlockExpression block = (BlockExpression) expr;
+            List<Statement> statements = Lists.newArrayListWithCapacity(block.statements.size());
+            for (Statement statement : block.statements) {
+                statements.add(copyStatement(statement));
+            }
+            copy = new BlockExpression(block.token, statements);
+        } else if (expr instanceof StringInterpolationExpression) {
+            StringInterpolationExpression interpolation = (StringInterpolationExpression) expr;
+            copy = new StringInterpolationExpression(interpolation.token, interpolation.value, interpolation.interpolatedExpressions, interpolation.segments, copyExpressions(interpolation.expressions));
+        } else if (expr instanceof ArrayLiteral) {
+            ArrayLiteral array = (ArrayLiteral) expr;
+            copy = new ArrayLiteral(array.token, copyExpressions(array.elements));
+        } else if (expr instanceof ObjectLiteral) {
+            ObjectLiteral object = (ObjectLiteral) expr;
+            LinkedHashMultimap<Identifier, Expression> pairs = LinkedHashMultimap.create();
+            for (Entry<Identifier, Expression> pair : object.pairs.entries()) {
+                pairs.put(copyIdentifier(pair.getKey()), copyExpression(pair.getValue()));
+            }
+            copy = new ObjectLiteral(object.token, pairs);
+        } else if (expr instanceof AssignmentExpression) {
+            AssignmentExpression assignment = (AssignmentExpression) expr;
+            copy = new AssignmentExpression(assignment.token, copyIdentifier(assignment.name), copyExpression(assignment.right));
+        } else if (expr instanceof RangeExpression) {
+            RangeExpression range = (RangeExpression) expr;
+            copy = new RangeExpression(range.token, copyExpression(range.leftBound), copyExpression(range.rightBound));
+        } else if (expr instanceof IndexExpression) {
+            IndexExpression index = (IndexExpression) expr;
+            copy = new IndexExpression(index.token, copyExpression(index.target), copyExpression(index.index));
+        } else if (expr instanceof AccessorExpression) {
+            AccessorExpression accessor = (AccessorExpression) expr;
+            copy = new AccessorExpression(accessor.token, copyExpression(accessor.target), copyIdentifier(accessor.property));
+        } else if (expr instanceof CallExpression.UnnamedArgs) {
+            CallExpression.UnnamedArgs call = (CallExpression.UnnamedArgs) expr;
+            copy = new CallExpression.UnnamedArgs(call.token, copyExpression(call.target), copyExpressions(call.arguments));
+        } else if (expr instanceof CallExpression.NamedArgs) {
+            CallExpression.NamedArgs call = (CallExpression.NamedArgs) expr;
+            List<Pair<Identifier, Expression>> arguments = Lists.newArrayListWithCapacity(call.namedParamArguments.size());
+            for (Pair<Identifier, Expression> argument : call.namedParamArguments) {
+                arguments.add(Pair.of(copyIdentifier(argument.getKey()), copyExpression(argument.getValue())));
+            }
+            copy = new CallExpression.NamedArgs(call.token, copyExpression(call.target), arguments);
+        } else {
+            return expr;
+        }
+
+        copy.setType(expr.getType());
+        return copy;
+    }
+
+    private static List<Expression> copyExpressions(List<Expression> exprs) {
+        List<Expression> copies = Lists.newArrayListWithCapacity(exprs.size());
+        for (Expression expr : exprs) {
+            copies.add(copyExpression(expr));
+        }
+        return copies;
+    }
+
+    private static Identifier copyIdentifier(Identifier identifier) {
+        Identifier copy = new Identifier(identifier.token, identifier.value, identifier.typeAnnotation);
+        copy.setType(identifier.getType());
+        return copy;
+    }
+
+    private static Statement copyStatement(Statement statement) {
+        if (statement instanceof ExpressionStatement) {
+            ExpressionStatement exprStatement = (ExpressionStatement) statement;
+            return new ExpressionStatement(exprStatement.token, copyExpression(exprStatement.expression));
+        } else if (statement instanceof ValStatement) {
+            ValStatement val = (ValStatement) statement;
+            return new ValStatement(val.token, copyIdentifier(val.name), copyExpression(val.value), val.isExported);
+        } else if (statement instanceof VarStatement) {
+            VarStatement var = (VarStatement) statement;
+            return new VarStatement(var.token, copyIdentifier(var.name), copyExpression(var.value), var.isExported);
+        } else if (statement instanceof ForLoopStatement) {
+            ForLoopStatement forLoop = (ForLoopStatement) statement;
+            return new ForLoopStatement(forLoop.token, copyIdentifier(forLoop.iterator), copyExpression(forLoop.iteratee), (BlockExpression) copyExpression(forLoop.block));
+        } else if (statement instanceof WhileLoopStatement) {
+            WhileLoopStatement whileLoop = (WhileLoopStatement) statement;
+            return new WhileLoopStatement(whileLoop.token, copyExpression(whileLoop.condition), (BlockExpression) copyExpression(whileLoop.block));
+        } else if (statement instanceof BreakStatement) {
+            return new BreakStatement(statement.getToken());
+        } else if (statement instanceof ContinueStatement) {
+            return new ContinueStatement(statement.getToken());
+        }
+        return statement;
+    }
+
+    //***************************************************************
+    //************              Candidates               ************
+    //***************************************************************
+
+    private Candidate getCandidate(String name, List<Parameter> parameters, Expression body, int depth) {
+        if (parameters.stream().anyMatch(Parameter::hasDefaultValue)) {
+            return null;
+        }
+
+        BodyScan scan = new BodyScan();
+        scan.scan(body);
+        if (scan.containsArrowFunction || scan.referencedNames.contains(name)) {
+            return null; // Recursive functions, and bodies which would need to be compiled into separate methods, aren't inlined
+        }
+
+        Map<String, Object> referencedNames = Maps.newHashMap();
+        for (String referencedName : scan.referencedNames) {
+            if (parameters.stream().noneMatch(param -> param.ident.value.equals(referencedName))) {
+                referencedNames.put(referencedName, lookup(referencedName));
+            }
+        }
+        return new Candidate(parameters, body, scan.size, depth, referencedNames);
+    }
+
+    private Candidate getCandidateForCall(CallExpression call) {
+        if (this.arrowFunctionDepth > 0 || !(call.getTarget() instanceof Identifier)) {
+            return null;
+        }
+
+        Object declaration = lookup(((Identifier) call.getTarget()).value);
+        return declaration instanceof Candidate ? (Candidate) declaration : null;
+    }
+
+    private boolean canInline(CallExpression call, Candidate candidate, List<Expression> arguments) {
+        // The names referenced in the body must refer to the same bindings at the call-site as at the declaration
+        for (Entry<String, Object> referencedName : candidate.referencedNames.entrySet()) {
+            if (lookup(referencedName.getKey()) != referencedName.getValue()) {
+                return false;
+            }
+        }
+
+        // The arguments are bound to vals named after the parameters, in order; an argument can't refer to a name
+        // which would be shadowed by the val of an earlier parameter.
+        FunctionType fnType = (FunctionType) call.getTarget().getType();
+        assert fnType != null; // Should be populated in typechecking pass
+        Set<String> boundParamNames = Sets.newHashSet();
+        for (int i = 0; i < arguments.size(); i++) {
+            Expression argument = arguments.get(i);
+            if (!isSameJvmType(argument.getType(), fnType.paramTypes.get(i))) {
+                return false;
+            }
+
+            BodyScan scan = new BodyScan();
+            scan.scan(argument);
+            if (!Sets.intersection(scan.referencedNames, boundParamNames).isEmpty()) {
+                return false;
+            }
+            boundParamNames.add(candidate.parameters.get(i).ident.value);
+        }
+
+        return candidate.body.getType() == null || isSameJvmType(candidate.body.getType(), call.getType());
+    }
+
+    // An inlined argument is stored in a local of the argument's type, rather than of the parameter's type
+    private static boolean isSameJvmType(MegaType type1, MegaType type2) {
+        return type1 != null && type2 != null && jvmDescriptor(type1, false).equals(jvmDescriptor(type2, false));
+    }
+
+    // Computes the size of a (candidate's) body, and the names it references
+    private static class BodyScan {
+        private int size = 0;
+        private final Set<String> referencedNames = Sets.newHashSet();
+        private boolean containsArrowFunction = false;
+
+        private void scan(Node node) {
+            if (node == null) {
+                return;
+            }
+            this.size++;
+
+            if (node instanceof Identifier) {
+                this.referencedNames.add(((Identifier) node).value);
+            } else if (node instanceof ExpressionStatement) {
+                scan(((ExpressionStatement) node).expression);
+            } else if (node instanceof ValStatement) {
+                scan(((ValStatement) node).value);
+            } else if (node instanceof VarStatement) {
+                scan(((VarStatement) node).value);
+            } else if (node instanceof ForLoopStatement) {
+                scan(((ForLoopStatement) node).iteratee);
+                scan(((ForLoopStatement) node).block);
+            } else if (node instanceof WhileLoopStatement) {
+                scan(((WhileLoopStatement) node).condition);
+                scan(((WhileLoopStatement) node).block);
+            } else if (node instanceof ParenthesizedExpression) {
+                scan(((ParenthesizedExpression) node).expr);
+            } else if (node instanceof PrefixExpression) {
+                scan(((PrefixExpression) node).expression);
+            } else if (node instanceof InfixExpression) {
+                scan(((InfixExpression) node).left);
+                scan(((InfixExpression) node).right);
+            } else if (node instanceof IfExpression) {
+                scan(((IfExpression) node).condition);
+                scan(((IfExpression) node).thenExpr);
+                scan(((IfExpression) node).elseExpr);
+            } else if (node instanceof MatchExpression) {
+                scan(((MatchExpression) node).subject);
+                ((MatchExpression) node).cases.forEach(matchCase -> scan(matchCase.body));
+                scan(((MatchExpression) node).elseExpr);
+            } else if (node instanceof BlockExpression) {
+                ((BlockExpression) node).statements.forEach(this::scan);
+            } else if (node instanceof StringInterpolationExpression) {
+                ((StringInterpolationExpression) node).expressions.forEach(this::scan);
+            } else if (node instanceof ArrayLiteral) {
+                ((ArrayLiteral) node).elements.forEach(this::scan);
+            } else if (node instanceof ObjectLiteral) {
+                ((ObjectLiteral) node).pairs.values().forEach(this::scan);
+            } else if (node instanceof AssignmentExpression) {
+                this.referencedNames.add(((AssignmentExpression) node).name.value);
+                scan(((AssignmentExpression) node).right);
+            } else if (node instanceof RangeExpression) {
+                scan(((RangeExpression) node).leftBound);
+                scan(((RangeExpression) node).rightBound);
+            } else if (node instanceof IndexExpression) {
+                scan(((IndexExpression) node).target);
+                scan(((IndexExpression) node).index);
+            } else if (node instanceof AccessorExpression) {
+                scan(((AccessorExpression) node).target);
+            } else if (node instanceof ArrowFunctionExpression) {
+                this.containsArrowFunction = true;
+            } else if (node instanceof CallExpression.UnnamedArgs) {
+                scan(((CallExpression.UnnamedArgs) node).target);
+                ((CallExpression.UnnamedArgs) node).arguments.forEach(this::scan);
+            } else if (node instanceof CallExpression.NamedArgs) {
+                scan(((CallExpression.NamedArgs) node).target);
+                ((CallExpression.NamedArgs) node).namedParamArguments.forEach(argument -> scan(argument.getValue()));
+            }
+        }
+    }
+
+    //***************************************************************
+    //************              Bookkeeping              ************
+    //***************************************************************
+
+    private void declare(String name, Object declaration) {
+        this.scopes.peek().put(name, declaration);
+    }
+
+    private Object lookup(String name) {
+        for (Map<String, Object> scope : this.scopes) {
+            if (scope.containsKey(name)) {
+                return scope.get(name);
+            }
+        }
+        return null;
+    }
+
+    private static Position positionOf(Node node) {
+        Token token = node.getToken();
+        if (token == null || token.position == null) {
+            return Position.at(-1, -1);
+        }
+        return token.position;
+    }
+}
@@ -0,0 +1,65 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import java.util.List;
+
+import co.kenrg.mega.frontend.token.Position;
+import com.google.common.collect.Lists;
+
+public class InliningReport {
+    public static class Entry {
+        public final Position position;
+        public final String call;
+        public final int size;  // The size of the callee's body, in AST nodes
+        public final int depth; // How deeply inlined bodies would be nested, were the callee inlined here
+        public final boolean isInlined;
+
+        Entry(Position position, String call, int size, int depth, boolean isInlined) {
+            this.position = position;
+            this.call = call;
+            this.size = size;
+            this.depth = depth;
+            this.isInlined = isInlined;
+        }
+
+        @Override
+        public String toString() {
+            String verb = this.isInlined ? "inlined" : "over budget, not inlined";
+            return String.format("%s `%s` (size %d, depth %d)", verb, this.call, this.size, this.depth);
+        }
+    }
+
+    public final int maxSize;
+    public final int maxDepth;
+    private final List<Entry> entries = Lists.newArrayList();
+
+    InliningReport(int maxSize, int maxDepth) {
+        this.maxSize = maxSize;
+        this.maxDepth = maxDepth;
+    }
+
+    void add(Position position, String call, int size, int depth, boolean isInlined) {
+        this.entries.add(new Entry(position, call, size, depth, isInlined));
+    }
+
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    public int getNumInlined() {
+        return (int) this.entries.stream().filter(entry -> entry.isInlined).count();
+    }
+
+    public String format(String moduleName) {
+        StringBuilder sb = new StringBuilder(String.format(
+            "Inlining (%s, budget: size <= %d, depth <= %d): %d call(s) inlined",
+            moduleName,
+            this.maxSize,
+            this.maxDepth,
+            this.getNumInlined()
+        ));
+        for (Entry entry : this.entries) {
+            sb.append(String.format("\n  %s (%d, %d): %s", moduleName, entry.position.line, entry.position.col, entry));
+        }
+        return sb.toString();
+    }
+}
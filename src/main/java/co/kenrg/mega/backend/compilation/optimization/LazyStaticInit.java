@@ -0,0 +1,117 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import java.util.Set;
+
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.ast.expression.AccessorExpression;
+import co.kenrg.mega.frontend.ast.expression.ArrayLiteral;
+import co.kenrg.mega.frontend.ast.expression.ArrowFunctionExpression;
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.BooleanLiteral;
+import co.kenrg.mega.frontend.ast.expression.FloatLiteral;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.expression.IfExpression;
+import co.kenrg.mega.frontend.ast.expression.InfixExpression;
+import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
+import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
+import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
+import co.kenrg.mega.frontend.ast.expression.RangeExpression;
+import co.kenrg.mega.frontend.ast.expression.StringInterpolationExpression;
+import co.kenrg.mega.frontend.ast.expression.StringLiteral;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import com.google.common.collect.Sets;
+
+// Finds the top-level vals of a module which are initialized on first use, rather than when the module is loaded, via
+// the initialization-on-demand holder idiom: the val's initializer is compiled to a synthetic method on the module, and
+// the val itself is a static final field of a nested holder class, whose <clinit> calls that method. The JVM runs the
+// holder's <clinit> (exactly once, thread-safely) when the field is first read, so loading a module only initializes the
+// vals which are used.
+//
+// A val is only initialized lazily if its initializer does some work (literals, identifiers and arrow functions are as
+// cheap to initialize eagerly as to look up lazily), and if that work is pure: it makes no calls and can't throw, so
+// running it at the time of first use (or never) rather than when the module is loaded can't be observed. Likewise, no
+// val is initialized lazily if the module has top-level vars; otherwise an initializer could observe a var's value at
+// the time of first use. This is decided from the module's AST alone, so that a module which imports a val finds it in
+// the same class as the val's module.
+public class LazyStaticInit {
+    private static final String HOLDER_CLASS_SUFFIX = "$$Holder";
+    private static final String INIT_METHOD_SUFFIX = "$init";
+
+    public static Set<String> find(Module module) {
+        Set<String> lazyBindingNames = Sets.newHashSet();
+        for (Statement statement : module.statements) {
+            if (statement instanceof VarStatement) {
+                return Sets.newHashSet();
+            }
+
+            if (statement instanceof ValStatement) {
+                Expression value = ((ValStatement) statement).value;
+                if (!isTrivial(value) && isPure(value)) {
+                    lazyBindingNames.add(((ValStatement) statement).name.value);
+                }
+            }
+        }
+        return lazyBindingNames;
+    }
+
+    public static String getHolderClassName(String className, String bindingName) {
+        return className + "$" + bindingName + HOLDER_CLASS_SUFFIX;
+    }
+
+    public static String getInitMethodName(String bindingName) {
+        return bindingName + INIT_METHOD_SUFFIX;
+    }
+
+    private static boolean isTrivial(Expression expr) {
+        if (expr instanceof ParenthesizedExpression) {
+            return isTrivial(((ParenthesizedExpression) expr).expr);
+        } else if (expr instanceof PrefixExpression) {
+            Expression operand = ((PrefixExpression) expr).expression;
+            return operand instanceof IntegerLiteral || operand instanceof FloatLiteral || operand instanceof BooleanLiteral;
+        }
+
+        return expr instanceof IntegerLiteral ||
+            expr instanceof FloatLiteral ||
+            expr instanceof BooleanLiteral ||
+            expr instanceof StringLiteral ||
+            expr instanceof Identifier ||
+            expr instanceof ArrowFunctionExpression;
+    }
+
+    // Calls may have side effects, and indexing and division may throw, so none of them are pure
+    private static boolean isPure(Expression expr) {
+        if (isTrivial(expr)) {
+            return true;
+        } else if (expr instanceof ParenthesizedExpression) {
+            return isPure(((ParenthesizedExpression) expr).expr);
+        } else if (expr instanceof PrefixExpression) {
+            return isPure(((PrefixExpression) expr).expression);
+        } else if (expr instanceof InfixExpression) {
+            InfixExpression infix = (InfixExpression) expr;
+            return !infix.operator.equals("/") && isPure(infix.left) && isPure(infix.right);
+        } else if (expr instanceof IfExpression) {
+            IfExpression ifExpr = (IfExpression) expr;
+            return isPure(ifExpr.condition) && isPure(ifExpr.thenExpr) && (ifExpr.elseExpr == null || isPure(ifExpr.elseExpr));
+        } else if (expr instanceof BlockExpression) {
+            return ((BlockExpression) expr).statements.stream()
+                .allMatch(statement -> statement instanceof ExpressionStatement && isPure(((ExpressionStatement) statement).expression));
+        } else if (expr instanceof ArrayLiteral) {
+            return ((ArrayLiteral) expr).elements.stream().allMatch(LazyStaticInit::isPure);
+        } else if (expr instanceof ObjectLiteral) {
+            return ((ObjectLiteral) expr).pairs.values().stream().allMatch(LazyStaticInit::isPure);
+        } else if (expr instanceof StringInterpolationExpression) {
+            return ((StringInterpolationExpression) expr).expressions.stream().allMatch(LazyStaticInit::isPure);
+        } else if (expr instanceof RangeExpression) {
+            RangeExpression range = (RangeExpression) expr;
+            return isPure(range.leftBound) && isPure(range.rightBound);
+        } else if (expr instanceof AccessorExpression) {
+            return isPure(((AccessorExpression) expr).target);
+        }
+        return false;
+    }
+}
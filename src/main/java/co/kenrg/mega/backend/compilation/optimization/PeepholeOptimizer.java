@@ -0,0 +1,487 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static java.util.stream.Collectors.toList;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFGE;
+import static org.objectweb.asm.Opcodes.IFGT;
+import static org.objectweb.asm.Opcodes.IFLE;
+import static org.objectweb.asm.Opcodes.IFLT;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.IF_ACMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ACMPNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGT;
+import static org.objectweb.asm.Opcodes.IF_ICMPLE;
+import static org.objectweb.asm.Opcodes.IF_ICMPLT;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.RETURN;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
+import co.kenrg.mega.backend.compilation.CompilerOptions.PeepholeRule;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang3.tuple.Pair;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+// Rewrites the methods of generated classes, after they've been compiled, to remove redundant sequences of instructions
+// which code generation (which writes each node's instructions without looking at its neighbors') leaves behind. Each
+// method is read into a MethodNode, and the enabled rules (see PeepholeRule) are applied to its instructions until none
+// of them changes anything, since each rule can expose opportunities for the others. For example, an if-expression on a
+// comparison materializes the comparison's value as a boolean before branching on it; branching on the constant values
+// directly (CONSTANT_BRANCHES) leaves the original branch unreachable (UNREACHABLE_CODE), and its GOTOs pointing at the
+// next instruction (JUMP_THREADING), so that all that remains is the comparison's own jump.
+//
+// "Straight-line" rules, which rewrite adjacent instructions, only apply if no jump lands between the instructions.
+// Frames (and max stack sizes) are recomputed when the class is written back.
+public class PeepholeOptimizer {
+    // The box classes (see PrimitiveBoxingUnboxingCompiler), and the descriptor of the primitive and unboxing method of each
+    private static final Map<String, Pair<String, String>> BOX_CLASSES = ImmutableMap.of(
+        "java/lang/Integer", Pair.of("I", "intValue"),
+        "java/lang/Boolean", Pair.of("Z", "booleanValue"),
+        "java/lang/Float", Pair.of("F", "floatValue")
+    );
+
+    private static final Map<Integer, Integer> INVERSE_JUMPS = ImmutableMap.<Integer, Integer>builder()
+        .put(IFEQ, IFNE).put(IFNE, IFEQ)
+        .put(IFLT, IFGE).put(IFGE, IFLT)
+        .put(IFGT, IFLE).put(IFLE, IFGT)
+        .put(IF_ICMPEQ, IF_ICMPNE).put(IF_ICMPNE, IF_ICMPEQ)
+        .put(IF_ICMPLT, IF_ICMPGE).put(IF_ICMPGE, IF_ICMPLT)
+        .put(IF_ICMPGT, IF_ICMPLE).put(IF_ICMPLE, IF_ICMPGT)
+        .put(IF_ACMPEQ, IF_ACMPNE).put(IF_ACMPNE, IF_ACMPEQ)
+        .put(IFNULL, IFNONNULL).put(IFNONNULL, IFNULL)
+        .build();
+
+    private final Set<PeepholeRule> rules;
+    private final ClassHierarchy classHierarchy;
+    private final PeepholeReport report;
+
+    public PeepholeOptimizer(Set<PeepholeRule> rules, ClassHierarchy classHierarchy) {
+        this.rules = rules;
+        this.classHierarchy = classHierarchy;
+        this.report = new PeepholeReport(rules);
+    }
+
+    public PeepholeReport getReport() {
+        return this.report;
+    }
+
+    public List<Pair<String, byte[]>> optimize(List<Pair<String, byte[]>> classes) {
+        return classes.stream()
+            .map(generatedClass -> Pair.of(generatedClass.getLeft(), optimizeClass(generatedClass.getRight())))
+            .collect(toList());
+    }
+
+    private byte[] optimizeClass(byte[] classFile) {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(classFile).accept(classNode, ClassReader.SKIP_FRAMES);
+
+        for (MethodNode method : classNode.methods) {
+            if (method.instructions.size() == 0) {
+                continue; // Abstract methods have no code
+            }
+
+            int numInstructionsBefore = countInstructions(method.instructions);
+            int sizeBefore = getCodeSize(method);
+            optimizeMethod(method);
+            this.report.add(classNode.name, method.name + method.desc, numInstructionsBefore, countInstructions(method.instructions), sizeBefore, getCodeSize(method));
+        }
+
+        ClassHierarchy classHierarchy = this.classHierarchy;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return classHierarchy.getCommonSuperClass(type1, type2);
+            }
+        };
+        classNode.accept(cw);
+        return cw.toByteArray();
+    }
+
+    private void optimizeMethod(MethodNode method) {
+        boolean isChanged = true;
+        while (isChanged) {
+            isChanged = false;
+            if (this.rules.contains(PeepholeRule.BOX_UNBOX)) {
+                isChanged |= removeBoxUnboxPairs(method.instructions, getJumpTargets(method));
+            }
+            if (this.rules.contains(PeepholeRule.CONSTANT_BRANCHES)) {
+                isChanged |= resolveConstantBranches(method.instructions);
+            }
+            if (this.rules.contains(PeepholeRule.SINGLE_USE_LOCALS)) {
+                isChanged |= removeSingleUseLocals(method.instructions, getJumpTargets(method));
+            }
+            if (this.rules.contains(PeepholeRule.JUMP_THREADING)) {
+                isChanged |= threadJumps(method.instructions, getJumpTargets(method));
+            }
+            if (this.rules.contains(PeepholeRule.UNREACHABLE_CODE)) {
+                isChanged |= removeUnreachableCode(method);
+            }
+        }
+    }
+
+    // `INVOKESTATIC Integer.valueOf; [CHECKCAST Integer;] INVOKEVIRTUAL Integer.intValue` leaves the int as it was
+    private static boolean removeBoxUnboxPairs(InsnList instructions, Set<LabelNode> jumpTargets) {
+        boolean isChanged = false;
+        AbstractInsnNode insn = instructions.getFirst();
+        while (insn != null) {
+            AbstractInsnNode next = insn.getNext();
+
+            String boxClass = getBoxedClass(insn);
+            if (boxClass != null) {
+                AbstractInsnNode unbox = getNextInStraightLine(insn, jumpTargets);
+                if (unbox != null && unbox.getOpcode() == CHECKCAST && ((TypeInsnNode) unbox).desc.equals(boxClass)) {
+                    unbox = getNextInStraightLine(unbox, jumpTargets);
+                }
+                if (unbox != null && isUnboxing(unbox, boxClass)) {
+                    next = unbox.getNext();
+                    removeRange(instructions, insn, unbox);
+                    isChanged = true;
+                }
+            }
+
+            insn = next;
+        }
+        return isChanged;
+    }
+
+    private static String getBoxedClass(AbstractInsnNode insn) {
+        if (insn.getOpcode() != INVOKESTATIC) {
+            return null;
+        }
+        MethodInsnNode method = (MethodInsnNode) insn;
+        Pair<String, String> primitive = BOX_CLASSES.get(method.owner);
+        if (primitive == null || !method.name.equals("valueOf") || !method.desc.equals("(" + primitive.getLeft() + ")L" + method.owner + ";")) {
+            return null;
+        }
+        return method.owner;
+    }
+
+    private static boolean isUnboxing(AbstractInsnNode insn, String boxClass) {
+        if (insn.getOpcode() != INVOKEVIRTUAL) {
+            return false;
+        }
+        MethodInsnNode method = (MethodInsnNode) insn;
+        Pair<String, String> primitive = BOX_CLASSES.get(boxClass);
+        return method.owner.equals(boxClass) && method.name.equals(primitive.getRight()) && method.desc.equals("()" + primitive.getLeft());
+    }
+
+    // A constant boolean (`ICONST_0` or `ICONST_1`) which (possibly via GOTOs) reaches an IFEQ or IFNE is replaced by a
+    // GOTO to wherever that branch would go. Other paths to the branch (eg. the other arm of a materialized boolean) are
+    // left as they are.
+    private static boolean resolveConstantBranches(InsnList instructions) {
+        boolean isChanged = false;
+        for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn.getOpcode() != ICONST_0 && insn.getOpcode() != ICONST_1) {
+                continue;
+            }
+
+            AbstractInsnNode branch = followGotos(getNextInFlow(insn));
+            if (branch == null || (branch.getOpcode() != IFEQ && branch.getOpcode() != IFNE)) {
+                continue;
+            }
+
+            boolean isTaken = (branch.getOpcode() == IFEQ) == (insn.getOpcode() == ICONST_0);
+            LabelNode destination = isTaken ? ((JumpInsnNode) branch).label : getLabelAfter(instructions, branch);
+            JumpInsnNode jump = new JumpInsnNode(GOTO, destination);
+            instructions.set(insn, jump);
+            insn = jump;
+            isChanged = true;
+        }
+        return isChanged;
+    }
+
+    // `xSTORE n; xLOAD n` leaves the value on the stack, if that's the only store to, and load of, local n
+    private static boolean removeSingleUseLocals(InsnList instructions, Set<LabelNode> jumpTargets) {
+        Map<Integer, Integer> numUses = Maps.newHashMap(); // Loads, stores and increments of each local
+        for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof VarInsnNode) {
+                numUses.merge(((VarInsnNode) insn).var, 1, Integer::sum);
+            } else if (insn instanceof IincInsnNode) {
+                numUses.merge(((IincInsnNode) insn).var, 2, Integer::sum);
+            }
+        }
+
+        boolean isChanged = false;
+        AbstractInsnNode insn = instructions.getFirst();
+        while (insn != null) {
+            AbstractInsnNode next = insn.getNext();
+
+            if (insn.getOpcode() >= ISTORE && insn.getOpcode() <= ASTORE) {
+                VarInsnNode store = (VarInsnNode) insn;
+                AbstractInsnNode load = getNextInStraightLine(store, jumpTargets);
+                boolean isLoadOfStoredLocal = load != null &&
+                    load.getOpcode() == store.getOpcode() - (ISTORE - ILOAD) &&
+                    ((VarInsnNode) load).var == store.var;
+                if (isLoadOfStoredLocal && numUses.get(store.var) == 2) {
+                    next = load.getNext();
+                    removeRange(instructions, store, load);
+                    isChanged = true;
+                }
+            }
+
+            insn = next;
+        }
+        return isChanged;
+    }
+
+    // Jumps to a GOTO are retargeted to its destination, and GOTOs to the next instruction are removed. A conditional
+    // jump over a GOTO (`IFLT L1; GOTO L2; L1: ...`) is inverted to jump to the GOTO's target instead (`IFGE L2; L1: ...`).
+    private static boolean threadJumps(InsnList instructions, Set<LabelNode> jumpTargets) {
+        boolean isChanged = false;
+        AbstractInsnNode insn = instructions.getFirst();
+        while (insn != null) {
+            AbstractInsnNode next = insn.getNext();
+
+            if (insn instanceof JumpInsnNode) {
+                JumpInsnNode jump = (JumpInsnNode) insn;
+                LabelNode target = getFinalTarget(jump.label);
+                if (target != jump.label) {
+                    jump.label = target;
+                    isChanged = true;
+                }
+                if (jump.getOpcode() == GOTO && isJumpToNext(jump)) {
+                    instructions.remove(jump);
+                    isChanged = true;
+                } else if (INVERSE_JUMPS.containsKey(jump.getOpcode())) {
+                    AbstractInsnNode nextInsn = getNextInStraightLine(jump, jumpTargets);
+                    if (nextInsn != null && nextInsn.getOpcode() == GOTO && isJumpToNext((JumpInsnNode) nextInsn, jump.label)) {
+                        next = nextInsn.getNext();
+                        jump.setOpcode(INVERSE_JUMPS.get(jump.getOpcode()));
+                        jump.label = ((JumpInsnNode) nextInsn).label;
+                        instructions.remove(nextInsn);
+                        isChanged = true;
+                    }
+                }
+            } else if (insn instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode) insn;
+                isChanged |= threadSwitch(tableSwitch.labels, tableSwitch.dflt);
+                tableSwitch.dflt = getFinalTarget(tableSwitch.dflt);
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode) insn;
+                isChanged |= threadSwitch(lookupSwitch.labels, lookupSwitch.dflt);
+                lookupSwitch.dflt = getFinalTarget(lookupSwitch.dflt);
+            }
+
+            insn = next;
+        }
+        return isChanged;
+    }
+
+    private static boolean threadSwitch(List<LabelNode> labels, LabelNode dflt) {
+        boolean isChanged = getFinalTarget(dflt) != dflt;
+        for (int i = 0; i < labels.size(); i++) {
+            LabelNode target = getFinalTarget(labels.get(i));
+            if (target != labels.get(i)) {
+                labels.set(i, target);
+                isChanged = true;
+            }
+        }
+        return isChanged;
+    }
+
+    private static boolean isJumpToNext(JumpInsnNode jump) {
+        return isJumpToNext(jump, jump.label);
+    }
+
+    // Whether the label is between insn and the next instruction
+    private static boolean isJumpToNext(AbstractInsnNode insn, LabelNode label) {
+        for (AbstractInsnNode next = insn.getNext(); next != null && next.getOpcode() < 0; next = next.getNext()) {
+            if (next == label) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Instructions which aren't reachable from the start of the method are removed; their labels are kept, since other
+    // nodes (eg. line numbers) may refer to them. Methods with exception handlers are left alone, since removing all of
+    // the instructions a handler covers would leave it with an empty range.
+    private static boolean removeUnreachableCode(MethodNode method) {
+        if (!method.tryCatchBlocks.isEmpty()) {
+            return false;
+        }
+
+        Set<AbstractInsnNode> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<AbstractInsnNode> worklist = new ArrayDeque<>();
+        worklist.push(method.instructions.getFirst());
+        while (!worklist.isEmpty()) {
+            AbstractInsnNode insn = worklist.pop();
+            while (insn != null && reachable.add(insn)) {
+                int opcode = insn.getOpcode();
+                if (insn instanceof JumpInsnNode) {
+                    worklist.push(((JumpInsnNode) insn).label);
+                    if (opcode == GOTO) {
+                        break;
+                    }
+                } else if (insn instanceof TableSwitchInsnNode) {
+                    worklist.addAll(((TableSwitchInsnNode) insn).labels);
+                    worklist.push(((TableSwitchInsnNode) insn).dflt);
+                    break;
+                } else if (insn instanceof LookupSwitchInsnNode) {
+                    worklist.addAll(((LookupSwitchInsnNode) insn).labels);
+                    worklist.push(((LookupSwitchInsnNode) insn).dflt);
+                    break;
+                } else if ((opcode >= IRETURN && opcode <= RETURN) || opcode == ATHROW) {
+                    break;
+                }
+                insn = insn.getNext();
+            }
+        }
+
+        boolean isChanged = false;
+        for (AbstractInsnNode insn : method.instructions.toArray()) {
+            if (insn.getOpcode() >= 0 && !reachable.contains(insn)) {
+                method.instructions.remove(insn);
+                isChanged = true;
+            }
+        }
+        return isChanged;
+    }
+
+    private static Set<LabelNode> getJumpTargets(MethodNode method) {
+        Set<LabelNode> jumpTargets = Sets.newHashSet();
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof JumpInsnNode) {
+                jumpTargets.add(((JumpInsnNode) insn).label);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                jumpTargets.addAll(((TableSwitchInsnNode) insn).labels);
+                jumpTargets.add(((TableSwitchInsnNode) insn).dflt);
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                jumpTargets.addAll(((LookupSwitchInsnNode) insn).labels);
+                jumpTargets.add(((LookupSwitchInsnNode) insn).dflt);
+            }
+        }
+        for (TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
+            jumpTargets.add(tryCatchBlock.start);
+            jumpTargets.add(tryCatchBlock.end);
+            jumpTargets.add(tryCatchBlock.handler);
+        }
+        return jumpTargets;
+    }
+
+    // The next instruction to be executed after insn (which isn't a jump), skipping over labels and line numbers
+    private static AbstractInsnNode getNextInFlow(AbstractInsnNode insn) {
+        AbstractInsnNode next = insn.getNext();
+        while (next != null && next.getOpcode() < 0) {
+            next = next.getNext();
+        }
+        return next;
+    }
+
+    // The next instruction after insn, if no jump can land between them
+    private static AbstractInsnNode getNextInStraightLine(AbstractInsnNode insn, Set<LabelNode> jumpTargets) {
+        for (AbstractInsnNode next = insn.getNext(); next != null; next = next.getNext()) {
+            if (next.getOpcode() >= 0) {
+                return next;
+            }
+            if (next instanceof LabelNode && jumpTargets.contains(next)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // The first instruction executed after jumping to insn, if it's a GOTO (or chain of GOTOs)
+    private static AbstractInsnNode followGotos(AbstractInsnNode insn) {
+        Set<AbstractInsnNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (insn != null && insn.getOpcode() == GOTO && visited.add(insn)) {
+            insn = getNextInFlow(((JumpInsnNode) insn).label);
+        }
+        return insn;
+    }
+
+    private static LabelNode getFinalTarget(LabelNode label) {
+        Set<LabelNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        LabelNode target = label;
+        while (visited.add(target)) {
+            AbstractInsnNode insn = getNextInFlow(target);
+            if (insn == null || insn.getOpcode() != GOTO) {
+                break;
+            }
+            target = ((JumpInsnNode) insn).label;
+        }
+        return target;
+    }
+
+    private static LabelNode getLabelAfter(InsnList instructions, AbstractInsnNode insn) {
+        if (insn.getNext() instanceof LabelNode) {
+            return (LabelNode) insn.getNext();
+        }
+        LabelNode label = new LabelNode();
+        instructions.insert(insn, label);
+        return label;
+    }
+
+    // Removes the real instructions from first to last (inclusive); labels and line numbers between them are kept
+    private static void removeRange(InsnList instructions, AbstractInsnNode first, AbstractInsnNode last) {
+        AbstractInsnNode insn = first;
+        while (insn != last) {
+            AbstractInsnNode next = insn.getNext();
+            if (insn.getOpcode() >= 0) {
+                instructions.remove(insn);
+            }
+            insn = next;
+        }
+        instructions.remove(last);
+    }
+
+    private static int countInstructions(InsnList instructions) {
+        int numInstructions = 0;
+        for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn.getOpcode() >= 0) {
+                numInstructions++;
+            }
+        }
+        return numInstructions;
+    }
+
+    // The size of the method's bytecode is the offset of a label at the end of its instructions, once they're written.
+    // They're written to a throwaway class, and the labels are reset afterwards so they can be written again.
+    private static int getCodeSize(MethodNode method) {
+        LabelNode end = new LabelNode();
+        method.instructions.add(end);
+        method.accept(new ClassWriter(0));
+        int size = end.getLabel().getOffset();
+        method.instructions.remove(end);
+        method.instructions.resetLabels();
+        return size;
+    }
+}
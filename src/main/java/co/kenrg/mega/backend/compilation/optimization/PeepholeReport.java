@@ -0,0 +1,90 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static java.util.stream.Collectors.joining;
+
+import java.util.List;
+import java.util.Set;
+
+import co.kenrg.mega.backend.compilation.CompilerOptions.PeepholeRule;
+import com.google.common.collect.Lists;
+
+public class PeepholeReport {
+    // HotSpot's default limits on the size of a method's bytecode (in bytes) for the JIT to inline calls to it: any
+    // call to a method within MAX_INLINE_SIZE may be inlined, but only frequent calls to one within FREQ_INLINE_SIZE
+    public static final int MAX_INLINE_SIZE = 35;
+    public static final int FREQ_INLINE_SIZE = 325;
+
+    public static class Entry {
+        public final String className;
+        public final String method; // The method's name and descriptor
+        public final int numInstructionsBefore;
+        public final int numInstructionsAfter;
+        public final int sizeBefore; // The size of the method's bytecode, in bytes
+        public final int sizeAfter;
+
+        Entry(String className, String method, int numInstructionsBefore, int numInstructionsAfter, int sizeBefore, int sizeAfter) {
+            this.className = className;
+            this.method = method;
+            this.numInstructionsBefore = numInstructionsBefore;
+            this.numInstructionsAfter = numInstructionsAfter;
+            this.sizeBefore = sizeBefore;
+            this.sizeAfter = sizeAfter;
+        }
+
+        @Override
+        public String toString() {
+            String inliningThreshold = "";
+            if (this.sizeBefore > MAX_INLINE_SIZE && this.sizeAfter <= MAX_INLINE_SIZE) {
+                inliningThreshold = String.format(", now within MaxInlineSize (%d)", MAX_INLINE_SIZE);
+            } else if (this.sizeBefore > FREQ_INLINE_SIZE && this.sizeAfter <= FREQ_INLINE_SIZE) {
+                inliningThreshold = String.format(", now within FreqInlineSize (%d)", FREQ_INLINE_SIZE);
+            }
+
+            return String.format(
+                "`%s.%s` %d -> %d instruction(s), %d -> %d byte(s)%s",
+                this.className,
+                this.method,
+                this.numInstructionsBefore,
+                this.numInstructionsAfter,
+                this.sizeBefore,
+                this.sizeAfter,
+                inliningThreshold
+            );
+        }
+    }
+
+    public final Set<PeepholeRule> rules;
+    private final List<Entry> entries = Lists.newArrayList();
+
+    PeepholeReport(Set<PeepholeRule> rules) {
+        this.rules = rules;
+    }
+
+    void add(String className, String method, int numInstructionsBefore, int numInstructionsAfter, int sizeBefore, int sizeAfter) {
+        this.entries.add(new Entry(className, method, numInstructionsBefore, numInstructionsAfter, sizeBefore, sizeAfter));
+    }
+
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    public int getNumInstructionsRemoved() {
+        return this.entries.stream()
+            .mapToInt(entry -> entry.numInstructionsBefore - entry.numInstructionsAfter)
+            .sum();
+    }
+
+    public String format(String moduleName) {
+        StringBuilder sb = new StringBuilder(String.format(
+            "Peephole optimization (%s, rules: %s): %d instruction(s) removed from %d method(s)",
+            moduleName,
+            this.rules.stream().map(PeepholeRule::toString).collect(joining(", ")),
+            this.getNumInstructionsRemoved(),
+            this.entries.size()
+        ));
+        for (Entry entry : this.entries) {
+            sb.append(String.format("\n  %s: %s", moduleName, entry));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,637 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.ast.expression.AccessorExpression;
+import co.kenrg.mega.frontend.ast.expression.ArrayLiteral;
+import co.kenrg.mega.frontend.ast.expression.ArrowFunctionExpression;
+import co.kenrg.mega.frontend.ast.expression.AssignmentExpression;
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.CallExpression;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.expression.IfExpression;
+import co.kenrg.mega.frontend.ast.expression.IndexExpression;
+import co.kenrg.mega.frontend.ast.expression.InfixExpression;
+import co.kenrg.mega.frontend.ast.expression.MatchCase;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
+import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
+import co.kenrg.mega.frontend.ast.expression.Parameter;
+import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
+import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
+import co.kenrg.mega.frontend.ast.expression.RangeExpression;
+import co.kenrg.mega.frontend.ast.expression.StringInterpolationExpression;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.iface.Node;
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.ForLoopStatement;
+import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
+import co.kenrg.mega.frontend.token.Position;
+import co.kenrg.mega.frontend.token.Token;
+import co.kenrg.mega.frontend.typechecking.types.FunctionType;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.ObjectType;
+import co.kenrg.mega.frontend.typechecking.types.StructType;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Replaces object literals and struct instances which never escape the function creating them with locals holding
+ * their properties, so they're never allocated (whether or not the JIT's own escape analysis would have removed the
+ * allocation). `val p = Point(x: a, y: b)`, where p is only used to read its properties, becomes the vals
+ * `val p$x = a` and `val p$y = b`, and each `p.x` becomes `p$x`.
+ * <p>
+ * A value escapes if its val is referenced other than to read one of its properties: eg. if it's passed to a function,
+ * returned, stored in another object, captured by an arrow function, or bound to a var. Vals bound directly to the
+ * value (such as those the Inliner binds arguments to) are aliases of it, and are removed along with it. Only vals
+ * within blocks are considered; top-level vals are static fields, which other functions and modules may read.
+ * <p>
+ * Like the Inliner and the ConstantFolder, this runs over the typechecked AST, rebuilding nodes along the path to any
+ * replaced val or property read. Since vals and property reads are identified by their nodes, a value is left as-is if
+ * any of those nodes is reachable from more than one place in the AST (rewriting it would rewrite every place at once).
+ */
+public class ScalarReplacement {
+    private final ScalarReplacementReport report = new ScalarReplacementReport();
+
+    private static class Candidate {
+        private final ValStatement statement;
+        private final MegaType type;
+        private final Map<String, Expression> propValues; // In the order they're evaluated when allocating the value
+        private final int functionDepth;
+
+        private String escapeReason = null;
+        private final Map<String, String> propLocalNames = Maps.newHashMap();
+
+        private Candidate(ValStatement statement, MegaType type, Map<String, Expression> propValues, int functionDepth) {
+            this.statement = statement;
+            this.type = type;
+            this.propValues = propValues;
+            this.functionDepth = functionDepth;
+        }
+
+        private void escape(String reason) {
+            if (this.escapeReason == null) {
+                this.escapeReason = reason;
+            }
+        }
+    }
+
+    // Each scope maps names to the declaration they're bound to: either a Candidate (for its val, and any aliases of it),
+    // or the node which declared the binding.
+    private final Deque<Map<String, Object>> scopes = new ArrayDeque<>();
+    private int functionDepth = 0; // Function and arrow function bodies are compiled into separate methods
+
+    private final List<Candidate> candidates = Lists.newArrayList();
+    private final Map<AccessorExpression, Candidate> propReads = Maps.newIdentityHashMap();
+    private final Map<ValStatement, Candidate> aliases = Maps.newIdentityHashMap();
+    private final Set<Node> analyzedNodes = Sets.newIdentityHashSet();
+    private final Set<Node> sharedNodes = Sets.newIdentityHashSet();
+
+    private final Map<ValStatement, Candidate> replacedVals = Maps.newIdentityHashMap();
+    private final Set<String> localNames = Sets.newHashSet();
+
+    public ScalarReplacementReport getReport() {
+        return this.report;
+    }
+
+    public Module replace(Module module) {
+        this.scopes.push(Maps.newHashMap());
+        for (Statement statement : module.statements) {
+            analyzeStatement(statement, false);
+        }
+        this.scopes.pop();
+
+        for (Candidate candidate : this.candidates) {
+            if (isShared(candidate)) {
+                candidate.escape("shared with another body");
+            }
+            int numReads = (int) this.propReads.values().stream().filter(c -> c == candidate).count();
+            String name = candidate.statement.name.value;
+            this.report.add(positionOf(candidate.statement), name, candidate.type.displayName(), numReads, candidate.escapeReason);
+            if (candidate.escapeReason != null) {
+                continue;
+            }
+
+            for (String propName : candidate.propValues.keySet()) {
+                candidate.propLocalNames.put(propName, getLocalName(name + "$" + propName));
+            }
+            this.replacedVals.put(candidate.statement, candidate);
+        }
+        if (this.replacedVals.isEmpty()) {
+            return module;
+        }
+
+        Map<Statement, Statement> replacedStatements = Maps.newIdentityHashMap();
+        List<Statement> statements = Lists.newArrayListWithCapacity(module.statements.size());
+        for (Statement statement : module.statements) {
+            Statement replaced = replaceStatement(statement);
+            replacedStatements.put(statement, replaced);
+            statements.add(replaced);
+        }
+
+        List<Statement> exports = Lists.newArrayListWithCapacity(module.exports.size());
+        for (Statement export : module.exports) {
+            exports.add(replacedStatements.getOrDefault(export, export));
+        }
+
+        Module replacedModule = new Module(statements, module.imports, exports);
+        for (Entry<String, Statement> namedExport : module.namedExports.entrySet()) {
+            Statement export = namedExport.getValue();
+            replacedModule.namedExports.put(namedExport.getKey(), replacedStatements.getOrDefault(export, export));
+        }
+        replacedModule.setType(module.getType());
+        return replacedModule;
+    }
+
+    //***************************************************************
+    //************               Analysis                ************
+    //***************************************************************
+
+    // A val is only a candidate (or an alias) if it's within a block, and isn't the block's last statement (whose
+    // removal would change the block's value)
+    private void analyzeStatement(Statement statement, boolean isLocal) {
+        if (statement instanceof ExpressionStatement) {
+            analyze(((ExpressionStatement) statement).expression);
+        } else if (statement instanceof ValStatement) {
+            analyzeValStatement((ValStatement) statement, isLocal);
+        } else if (statement instanceof VarStatement) {
+            analyze(((VarStatement) statement).value);
+            declare(((VarStatement) statement).name.value, statement);
+        } else if (statement instanceof ForLoopStatement) {
+            ForLoopStatement forLoop = (ForLoopStatement) statement;
+            analyze(forLoop.iteratee);
+            this.scopes.push(Maps.newHashMap());
+            declare(forLoop.iterator.value, forLoop);
+            analyze(forLoop.block);
+            this.scopes.pop();
+        } else if (statement instanceof WhileLoopStatement) {
+            analyze(((WhileLoopStatement) statement).condition);
+            analyze(((WhileLoopStatement) statement).block);
+        } else if (statement instanceof FunctionDeclarationStatement) {
+            FunctionDeclarationStatement fnDecl = (FunctionDeclarationStatement) statement;
+            declare(fnDecl.name.value, fnDecl);
+            analyzeFunctionBody(fnDecl.parameters, fnDecl.body);
+        }
+    }
+
+    private void analyzeValStatement(ValStatement statement, boolean isLocal) {
+        markAnalyzed(statement);
+        if (isLocal && statement.value instanceof Identifier) {
+            Object declaration = lookup(((Identifier) statement.value).value);
+            if (declaration instanceof Candidate && ((Candidate) declaration).functionDepth == this.functionDepth) {
+                this.aliases.put(statement, (Candidate) declaration);
+                declare(statement.name.value, declaration);
+                return;
+            }
+        }
+
+        analyze(statement.value);
+
+        Candidate candidate = isLocal ? getCandidate(statement) : null;
+        if (candidate != null) {
+            this.candidates.add(candidate);
+        }
+        declare(statement.name.value, candidate != null ? candidate : statement);
+    }
+
+    private void analyzeFunctionBody(List<Parameter> parameters, Expression body) {
+        this.functionDepth++;
+        this.scopes.push(Maps.newHashMap());
+        for (Parameter parameter : parameters) {
+            declare(parameter.ident.value, parameter);
+        }
+        analyze(body);
+        this.scopes.pop();
+        this.functionDepth--;
+    }
+
+    private void analyze(Node node) {
+        if (node == null) {
+            return;
+        }
+
+        if (node instanceof Identifier) {
+            Object declaration = lookup(((Identifier) node).value);
+            if (declaration instanceof Candidate) {
+                Candidate candidate = (Candidate) declaration;
+                candidate.escape(candidate.functionDepth == this.functionDepth ? "used as a value" : "captured by a function");
+            }
+        } else if (node instanceof AccessorExpression) {
+            analyzeAccessorExpression((AccessorExpression) node);
+        } else if (node instanceof BlockExpression) {
+            List<Statement> statements = ((BlockExpression) node).statements;
+            this.scopes.push(Maps.newHashMap());
+            for (int i = 0; i < statements.size(); i++) {
+                analyzeStatement(statements.get(i), i < statements.size() - 1);
+            }
+            this.scopes.pop();
+        } else if (node instanceof ArrowFunctionExpression) {
+            analyzeFunctionBody(((ArrowFunctionExpression) node).parameters, ((ArrowFunctionExpression) node).body);
+        } else if (node instanceof CallExpression) {
+            // A call through a property (eg. `p.fn()`) passes the value to the callee, so the target is analyzed as a
+            // use of the value itself
+            Expression target = ((CallExpression) node).getTarget();
+            analyze(target instanceof AccessorExpression ? ((AccessorExpression) target).target : target);
+            if (node instanceof CallExpression.UnnamedArgs) {
+                ((CallExpression.UnnamedArgs) node).arguments.forEach(this::analyze);
+            } else {
+                ((CallExpression.NamedArgs) node).namedParamArguments.forEach(argument -> analyze(argument.getValue()));
+            }
+        } else if (node instanceof ParenthesizedExpression) {
+            analyze(((ParenthesizedExpression) node).expr);
+        } else if (node instanceof PrefixExpression) {
+            analyze(((PrefixExpression) node).expression);
+        } else if (node instanceof InfixExpression) {
+            analyze(((InfixExpression) node).left);
+            analyze(((InfixExpression) node).right);
+        } else if (node instanceof IfExpression) {
+            analyze(((IfExpression) node).condition);
+            analyze(((IfExpression) node).thenExpr);
+            analyze(((IfExpression) node).elseExpr);
+        } else if (node instanceof MatchExpression) {
+            analyze(((MatchExpression) node).subject);
+            ((MatchExpression) node).cases.forEach(matchCase -> analyze(matchCase.body));
+            analyze(((MatchExpression) node).elseExpr);
+        } else if (node instanceof StringInterpolationExpression) {
+            ((StringInterpolationExpression) node).expressions.forEach(this::analyze);
+        } else if (node instanceof ArrayLiteral) {
+            ((ArrayLiteral) node).elements.forEach(this::analyze);
+        } else if (node instanceof ObjectLiteral) {
+            ((ObjectLiteral) node).pairs.values().forEach(this::analyze);
+        } else if (node instanceof AssignmentExpression) {
+            analyze(((AssignmentExpression) node).right);
+        } else if (node instanceof RangeExpression) {
+            analyze(((RangeExpression) node).leftBound);
+            analyze(((RangeExpression) node).rightBound);
+        } else if (node instanceof IndexExpression) {
+            analyze(((IndexExpression) node).target);
+            analyze(((IndexExpression) node).index);
+        } else if (node instanceof Statement) {
+            analyzeStatement((Statement) node, false);
+        }
+    }
+
+    private void analyzeAccessorExpression(AccessorExpression node) {
+        markAnalyzed(node);
+        Object declaration = node.target instanceof Identifier ? lookup(((Identifier) node.target).value) : null;
+        if (!(declaration instanceof Candidate)) {
+            analyze(node.target);
+            return;
+        }
+
+        Candidate candidate = (Candidate) declaration;
+        Expression propValue = candidate.propValues.get(node.property.value);
+        if (candidate.functionDepth != this.functionDepth) {
+            candidate.escape("captured by a function");
+        } else if (propValue == null || !isSameJvmType(propValue.getType(), node.getType())) {
+            candidate.escape("used as a value");
+        } else {
+            this.propReads.put(node, candidate);
+        }
+    }
+
+    private void markAnalyzed(Node node) {
+        if (!this.analyzedNodes.add(node)) {
+            this.sharedNodes.add(node);
+        }
+    }
+
+    private boolean isShared(Candidate candidate) {
+        if (this.sharedNodes.contains(candidate.statement)) {
+            return true;
+        }
+        for (Entry<AccessorExpression, Candidate> propRead : this.propReads.entrySet()) {
+            if (propRead.getValue() == candidate && this.sharedNodes.contains(propRead.getKey())) {
+                return true;
+            }
+        }
+        for (Entry<ValStatement, Candidate> alias : this.aliases.entrySet()) {
+            if (alias.getValue() == candidate && this.sharedNodes.contains(alias.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The val's value must allocate an object literal or struct instance, each of whose property values is of the same
+    // JVM type as the property (so that the local it's stored in can stand in for the property)
+    private Candidate getCandidate(ValStatement statement) {
+        Map<String, Expression> propValues = new LinkedHashMap<>();
+        MegaType type = statement.value.getType();
+
+        if (statement.value instanceof ObjectLiteral && type instanceof ObjectType) {
+            ObjectType objType = (ObjectType) type;
+            for (Entry<Identifier, Expression> pair : ((ObjectLiteral) statement.value).pairs.entries()) {
+                String propName = pair.getKey().value;
+                Set<MegaType> propTypes = objType.properties.get(propName);
+                if (propTypes.size() != 1 || !isSameJvmType(pair.getValue().getType(), propTypes.iterator().next())) {
+                    return null;
+                }
+                propValues.put(propName, pair.getValue());
+            }
+        } else if (statement.value instanceof CallExpression && type instanceof StructType) {
+            CallExpression call = (CallExpression) statement.value;
+            FunctionType fnType = (FunctionType) call.getTarget().getType();
+            if (!(call.getTarget() instanceof Identifier) || fnType == null || !fnType.isConstructor) {
+                return null;
+            }
+
+            // The constructor's arguments are evaluated in parameter order, however they're passed
+            List<Expression> arguments = call.getArgumentsInParameterOrder(fnType);
+            if (arguments.contains(null)) {
+                return null;
+            }
+            for (int i = 0; i < arguments.size(); i++) {
+                if (!isSameJvmType(arguments.get(i).getType(), fnType.paramTypes.get(i))) {
+                    return null;
+                }
+                propValues.put(fnType.parameters.get(i).ident.value, arguments.get(i));
+            }
+        } else {
+            return null;
+        }
+        return new Candidate(statement, type, propValues, this.functionDepth);
+    }
+
+    private static boolean isSameJvmType(MegaType type1, MegaType type2) {
+        return type1 != null && type2 != null && jvmDescriptor(type1, false).equals(jvmDescriptor(type2, false));
+    }
+
+    //***************************************************************
+    //************              Replacement              ************
+    //***************************************************************
+
+    private Statement replaceStatement(Statement statement) {
+        Statement replaced;
+        if (statement instanceof ExpressionStatement) {
+            ExpressionStatement exprStatement = (ExpressionStatement) statement;
+            Expression expr = replaceExpression(exprStatement.expression);
+            replaced = expr == exprStatement.expression ? exprStatement : new ExpressionStatement(exprStatement.token, expr);
+        } else if (statement instanceof ValStatement) {
+            ValStatement valStatement = (ValStatement) statement;
+            Expression value = replaceExpression(valStatement.value);
+            replaced = value == valStatement.value
+                ? valStatement
+                : new ValStatement(valStatement.token, valStatement.name, value, valStatement.isExported);
+        } else if (statement instanceof VarStatement) {
+            VarStatement varStatement = (VarStatement) statement;
+            Expression value = replaceExpression(varStatement.value);
+            replaced = value == varStatement.value
+                ? varStatement
+                : new VarStatement(varStatement.token, varStatement.name, value, varStatement.isExported);
+        } else if (statement instanceof ForLoopStatement) {
+            ForLoopStatement forLoop = (ForLoopStatement) statement;
+            Expression iteratee = replaceExpression(forLoop.iteratee);
+            BlockExpression block = replaceBlockExpression(forLoop.block);
+            replaced = iteratee == forLoop.iteratee && block == forLoop.block
+                ? forLoop
+                : new ForLoopStatement(forLoop.token, forLoop.iterator, iteratee, block);
+        } else if (statement instanceof WhileLoopStatement) {
+            WhileLoopStatement whileLoop = (WhileLoopStatement) statement;
+            Expression condition = replaceExpression(whileLoop.condition);
+            BlockExpression block = replaceBlockExpression(whileLoop.block);
+            replaced = condition == whileLoop.condition && block == whileLoop.block
+                ? whileLoop
+                : new WhileLoopStatement(whileLoop.token, condition, block);
+        } else if (statement instanceof FunctionDeclarationStatement) {
+            FunctionDeclarationStatement fnDecl = (FunctionDeclarationStatement) statement;
+            Expression body = replaceExpression(fnDecl.body);
+            replaced = body == fnDecl.body
+                ? fnDecl
+                : new FunctionDeclarationStatement(fnDecl.token, fnDecl.name, fnDecl.parameters, body, fnDecl.typeAnnotation, fnDecl.isExported);
+        } else {
+            replaced = statement;
+        }
+
+        if (replaced != statement) {
+            replaced.setType(statement.getType());
+        }
+        return replaced;
+    }
+
+    private Expression replaceExpression(Expression expr) {
+        Expression replaced;
+        if (expr instanceof AccessorExpression) {
+            AccessorExpression accessor = (AccessorExpression) expr;
+            Candidate candidate = this.propReads.get(accessor);
+            if (candidate != null && this.replacedVals.containsKey(candidate.statement)) {
+                String localName = candidate.propLocalNames.get(accessor.property.value);
+                replaced = new Identifier(accessor.property.token, localName, null, accessor.getType());
+            } else {
+                Expression target = replaceExpression(accessor.target);
+                replaced = target == accessor.target ? accessor : new AccessorExpression(accessor.token, target, accessor.property);
+            }
+        } else if (expr instanceof BlockExpression) {
+            replaced = replaceBlockExpression((BlockExpression) expr);
+        } else if (expr instanceof CallExpression) {
+            replaced = replaceCallExpression((CallExpression) expr);
+        } else if (expr instanceof ParenthesizedExpression) {
+            ParenthesizedExpression parenthesized = (ParenthesizedExpression) expr;
+            Expression inner = replaceExpression(parenthesized.expr);
+            replaced = inner == parenthesized.expr ? parenthesized : new ParenthesizedExpression(parenthesized.token, inner);
+        } else if (expr instanceof PrefixExpression) {
+            PrefixExpression prefix = (PrefixExpression) expr;
+            Expression operand = replaceExpression(prefix.expression);
+            replaced = operand == prefix.expression ? prefix : new PrefixExpression(prefix.token, prefix.operator, operand);
+        } else if (expr instanceof InfixExpression) {
+            InfixExpression infix = (InfixExpression) expr;
+            Expression left = replaceExpression(infix.left);
+            Expression right = replaceExpression(infix.right);
+            replaced = left == infix.left && right == infix.right ? infix : new InfixExpression(infix.token, infix.operator, left, right);
+        } else if (expr instanceof IfExpression) {
+            IfExpression ifExpr = (IfExpression) expr;
+            Expression condition = replaceExpression(ifExpr.condition);
+            BlockExpression thenExpr = replaceBlockExpression(ifExpr.thenExpr);
+            BlockExpression elseExpr = ifExpr.elseExpr == null ? null : replaceBlockExpression(ifExpr.elseExpr);
+            replaced = condition == ifExpr.condition && thenExpr == ifExpr.thenExpr && elseExpr == ifExpr.elseExpr
+                ? ifExpr
+                : new IfExpression(ifExpr.token, condition, thenExpr, elseExpr);
+        } else if (expr instanceof MatchExpression) {
+            replaced = replaceMatchExpression((MatchExpression) expr);
+        } else if (expr instanceof StringInterpolationExpression) {
+            StringInterpolationExpression interpolation = (StringInterpolationExpression) expr;
+            List<Expression> exprs = replaceExpressions(interpolation.expressions);
+            replaced = exprs == interpolation.expressions
+                ? interpolation
+                : new StringInterpolationExpression(interpolation.token, interpolation.value, interpolation.interpolatedExpressions, interpolation.segments, exprs);
+        } else if (expr instanceof ArrayLiteral) {
+            ArrayLiteral array = (ArrayLiteral) expr;
+            List<Expression> elements = replaceExpressions(array.elements);
+            replaced = elements == array.elements ? array : new ArrayLiteral(array.token, elements);
+        } else if (expr instanceof ObjectLiteral) {
+            replaced = replaceObjectLiteral((ObjectLiteral) expr);
+        } else if (expr instanceof AssignmentExpression) {
+            AssignmentExpression assignment = (AssignmentExpression) expr;
+            Expression right = replaceExpression(assignment.right);
+            replaced = right == assignment.right ? assignment : new AssignmentExpression(assignment.token, assignment.name, right);
+        } else if (expr instanceof RangeExpression) {
+            RangeExpression range = (RangeExpression) expr;
+            Expression leftBound = replaceExpression(range.leftBound);
+            Expression rightBound = replaceExpression(range.rightBound);
+            replaced = leftBound == range.leftBound && rightBound == range.rightBound
+                ? range
+                : new RangeExpression(range.token, leftBound, rightBound);
+        } else if (expr instanceof IndexExpression) {
+            IndexExpression index = (IndexExpression) expr;
+            Expression target = replaceExpression(index.target);
+            Expression indexExpr = replaceExpression(index.index);
+            replaced = target == index.target && indexExpr == index.index
+                ? index
+                : new IndexExpression(index.token, target, indexExpr);
+        } else if (expr instanceof ArrowFunctionExpression) {
+            ArrowFunctionExpression arrowFn = (ArrowFunctionExpression) expr;
+            Expression body = replaceExpression(arrowFn.body);
+            replaced = body == arrowFn.body ? arrowFn : new ArrowFunctionExpression(arrowFn.token, arrowFn.parameters, body);
+        } else {
+            replaced = expr;
+        }
+
+        if (replaced != expr && replaced.getType() == null) {
+            replaced.setType(expr.getType());
+        }
+        return replaced;
+    }
+
+    private List<Expression> replaceExpressions(List<Expression> exprs) {
+        List<Expression> replaced = Lists.newArrayListWithCapacity(exprs.size());
+        boolean changed = false;
+        for (Expression expr : exprs) {
+            Expression replacedExpr = replaceExpression(expr);
+            changed = changed || replacedExpr != expr;
+            replaced.add(replacedExpr);
+        }
+        return changed ? replaced : exprs;
+    }
+
+    // A replaced val becomes a val per property, bound to the property's value; its aliases are removed
+    private BlockExpression replaceBlockExpression(BlockExpression expr) {
+        List<Statement> statements = Lists.newArrayListWithCapacity(expr.statements.size());
+        boolean changed = false;
+        for (Statement statement : expr.statements) {
+            Candidate candidate = this.replacedVals.get(statement);
+            Candidate aliased = this.aliases.get(statement);
+            if (candidate != null) {
+                for (Entry<String, Expression> propValue : candidate.propValues.entrySet()) {
+                    String localName = candidate.propLocalNames.get(propValue.getKey());
+                    Expression value = replaceExpression(propValue.getValue());
+                    Identifier name = new Identifier(candidate.statement.name.token, localName, null, value.getType());
+                    statements.add(new ValStatement(candidate.statement.token, name, value, false));
+                }
+                changed = true;
+            } else if (aliased != null && this.replacedVals.containsKey(aliased.statement)) {
+                changed = true;
+            } else {
+                Statement replaced = replaceStatement(statement);
+                changed = changed || replaced != statement;
+                statements.add(replaced);
+            }
+        }
+
+        if (!changed) {
+            return expr;
+        }
+        BlockExpression replaced = new BlockExpression(expr.token, statements);
+        replaced.setType(expr.getType());
+        return replaced;
+    }
+
+    private Expression replaceCallExpression(CallExpression expr) {
+        CallExpression call;
+        if (expr instanceof CallExpression.UnnamedArgs) {
+            CallExpression.UnnamedArgs unnamedArgsCall = (CallExpression.UnnamedArgs) expr;
+            Expression target = replaceExpression(unnamedArgsCall.target);
+            List<Expression> arguments = replaceExpressions(unnamedArgsCall.arguments);
+            call = target == unnamedArgsCall.target && arguments == unnamedArgsCall.arguments
+                ? unnamedArgsCall
+                : new CallExpression.UnnamedArgs(unnamedArgsCall.token, target, arguments);
+        } else {
+            CallExpression.NamedArgs namedArgsCall = (CallExpression.NamedArgs) expr;
+            Expression target = replaceExpression(namedArgsCall.target);
+            List<Pair<Identifier, Expression>> arguments = Lists.newArrayListWithCapacity(namedArgsCall.namedParamArguments.size());
+            boolean changed = target != namedArgsCall.target;
+            for (Pair<Identifier, Expression> argument : namedArgsCall.namedParamArguments) {
+                Expression value = replaceExpression(argument.getValue());
+                changed = changed || value != argument.getValue();
+                arguments.add(Pair.of(argument.getKey(), value));
+            }
+            call = changed ? new CallExpression.NamedArgs(namedArgsCall.token, target, arguments) : namedArgsCall;
+        }
+        return call;
+    }
+
+    private Expression replaceMatchExpression(MatchExpression expr) {
+        Expression subject = replaceExpression(expr.subject);
+        boolean changed = subject != expr.subject;
+
+        List<MatchCase> cases = Lists.newArrayList();
+        for (MatchCase matchCase : expr.cases) {
+            Expression body = replaceExpression(matchCase.body);
+            changed = changed || body != matchCase.body;
+            cases.add(body == matchCase.body ? matchCase : new MatchCase(matchCase.patterns, body));
+        }
+        Expression elseExpr = expr.elseExpr == null ? null : replaceExpression(expr.elseExpr);
+        changed = changed || elseExpr != expr.elseExpr;
+
+        return changed ? new MatchExpression(expr.token, subject, cases, elseExpr) : expr;
+    }
+
+    private Expression replaceObjectLiteral(ObjectLiteral expr) {
+        LinkedHashMultimap<Identifier, Expression> pairs = LinkedHashMultimap.create();
+        boolean changed = false;
+        for (Entry<Identifier, Expression> pair : expr.pairs.entries()) {
+            Expression value = replaceExpression(pair.getValue());
+            changed = changed || value != pair.getValue();
+            pairs.put(pair.getKey(), value);
+        }
+        return changed ? new ObjectLiteral(expr.token, pairs) : expr;
+    }
+
+    //***************************************************************
+    //************              Bookkeeping              ************
+    //***************************************************************
+
+    private void declare(String name, Object declaration) {
+        this.scopes.peek().put(name, declaration);
+    }
+
+    private Object lookup(String name) {
+        for (Map<String, Object> scope : this.scopes) {
+            if (scope.containsKey(name)) {
+                return scope.get(name);
+            }
+        }
+        return null;
+    }
+
+    // The names of the locals are unique within the module, since `$` can't appear in names written in source
+    private String getLocalName(String name) {
+        String localName = name;
+        for (int i = 1; !this.localNames.add(localName); i++) {
+            localName = name + "$" + i;
+        }
+        return localName;
+    }
+
+    private static Position positionOf(Node node) {
+        Token token = node.getToken();
+        if (token == null || token.position == null) {
+            return Position.at(-1, -1);
+        }
+        return token.position;
+    }
+}
@@ -0,0 +1,62 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import java.util.List;
+
+import co.kenrg.mega.frontend.token.Position;
+import com.google.common.collect.Lists;
+
+public class ScalarReplacementReport {
+    public static class Entry {
+        public final Position position;
+        public final String name;
+        public final String type;
+        public final int numReads;            // The property reads of the value, via its val (or aliases of it)
+        public final String escapeReason;     // Null if the value doesn't escape
+
+        Entry(Position position, String name, String type, int numReads, String escapeReason) {
+            this.position = position;
+            this.name = name;
+            this.type = type;
+            this.numReads = numReads;
+            this.escapeReason = escapeReason;
+        }
+
+        public boolean isReplaced() {
+            return this.escapeReason == null;
+        }
+
+        @Override
+        public String toString() {
+            if (this.isReplaced()) {
+                return String.format("replaced `%s` (%s), %d property read(s)", this.name, this.type, this.numReads);
+            }
+            return String.format("`%s` (%s) escapes (%s), not replaced", this.name, this.type, this.escapeReason);
+        }
+    }
+
+    private final List<Entry> entries = Lists.newArrayList();
+
+    void add(Position position, String name, String type, int numReads, String escapeReason) {
+        this.entries.add(new Entry(position, name, type, numReads, escapeReason));
+    }
+
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    public int getNumReplaced() {
+        return (int) this.entries.stream().filter(Entry::isReplaced).count();
+    }
+
+    public String format(String moduleName) {
+        StringBuilder sb = new StringBuilder(String.format(
+            "Scalar replacement (%s): %d allocation(s) removed",
+            moduleName,
+            this.getNumReplaced()
+        ));
+        for (Entry entry : this.entries) {
+            sb.append(String.format("\n  %s (%d, %d): %s", moduleName, entry.position.line, entry.position.col, entry));
+        }
+        return sb.toString();
+    }
+}
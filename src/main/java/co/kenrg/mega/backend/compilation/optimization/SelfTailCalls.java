@@ -0,0 +1,81 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.CallExpression;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.expression.IfExpression;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
+import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
+
+// Finds the calls a function declaration makes to itself in tail position (ie. where the value of the call is the value
+// of the function), which can be compiled as a jump back to the start of the method rather than as an invocation.
+//
+// Tail positions are found by descending through the branches of if-expressions (which have an else) and the last
+// expression of blocks; calls which omit arguments (relying on default parameter values) are not included, since
+// they're dispatched through the method's proxy. Note that a call is only a self-call if the function's name isn't
+// shadowed at the call-site; since that depends on scoping, it must be verified when compiling the call.
+public class SelfTailCalls {
+    public static Set<CallExpression> find(FunctionDeclarationStatement node) {
+        Set<CallExpression> tailCalls = Collections.newSetFromMap(new IdentityHashMap<>());
+        findInTailPosition(node.body, node, tailCalls);
+        return tailCalls;
+    }
+
+    private static void findInTailPosition(Expression expr, FunctionDeclarationStatement fn, Set<CallExpression> tailCalls) {
+        if (expr instanceof ParenthesizedExpression) {
+            findInTailPosition(((ParenthesizedExpression) expr).expr, fn, tailCalls);
+        } else if (expr instanceof BlockExpression) {
+            List<Statement> statements = ((BlockExpression) expr).statements;
+            if (statements.isEmpty()) {
+                return;
+            }
+
+            Statement last = statements.get(statements.size() - 1);
+            if (last instanceof ExpressionStatement) {
+                findInTailPosition(((ExpressionStatement) last).expression, fn, tailCalls);
+            }
+        } else if (expr instanceof IfExpression) {
+            IfExpression ifExpr = (IfExpression) expr;
+            if (ifExpr.elseExpr == null) {
+                return;
+            }
+
+            findInTailPosition(ifExpr.thenExpr, fn, tailCalls);
+            findInTailPosition(ifExpr.elseExpr, fn, tailCalls);
+        } else if (expr instanceof MatchExpression) {
+            MatchExpression match = (MatchExpression) expr;
+            if (match.elseExpr == null) {
+                return;
+            }
+
+            match.cases.forEach(matchCase -> findInTailPosition(matchCase.body, fn, tailCalls));
+            findInTailPosition(match.elseExpr, fn, tailCalls);
+        } else if (expr instanceof CallExpression) {
+            CallExpression call = (CallExpression) expr;
+            if (isCallToSelfWithAllArguments(call, fn)) {
+                tailCalls.add(call);
+            }
+        }
+    }
+
+    private static boolean isCallToSelfWithAllArguments(CallExpression call, FunctionDeclarationStatement fn) {
+        Expression target = call.getTarget();
+        if (!(target instanceof Identifier) || !((Identifier) target).value.equals(fn.name.value)) {
+            return false;
+        }
+
+        int numArgs = call instanceof CallExpression.UnnamedArgs
+            ? ((CallExpression.UnnamedArgs) call).arguments.size()
+            : ((CallExpression.NamedArgs) call).namedParamArguments.size();
+        return numArgs == fn.parameters.size();
+    }
+}
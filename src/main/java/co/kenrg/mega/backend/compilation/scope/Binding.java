@@ -1,5 +1,7 @@
 package co.kenrg.mega.backend.compilation.scope;
 
+import javax.annotation.Nullable;
+
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
 
 public class Binding {
@@ -10,8 +12,9 @@ public class Binding {
     public final int index;
     public final boolean isExported;
     public final String ownerModule;
+    @Nullable public final String lambdaName; // Only set for LAMBDA bindings
 
-    Binding(BindingTypes bindingType, String name, boolean isMutable, MegaType type, int index, boolean isExported, String ownerModule) {
+    Binding(BindingTypes bindingType, String name, boolean isMutable, MegaType type, int index, boolean isExported, String ownerModule, @Nullable String lambdaName) {
         this.bindingType = bindingType;
         this.name = name;
         this.isMutable = isMutable;
@@ -19,5 +22,6 @@ public class Binding {
         this.index = index;
         this.isExported = isExported;
         this.ownerModule = ownerModule;
+        this.lambdaName = lambdaName;
     }
 }
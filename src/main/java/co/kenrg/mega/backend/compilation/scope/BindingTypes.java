@@ -3,5 +3,6 @@ package co.kenrg.mega.backend.compilation.scope;
 public enum BindingTypes {
     STATIC,
     LOCAL,
-    METHOD // Currently, METHOD implies STATIC, since there are no non-static methods
+    METHOD, // Currently, METHOD implies STATIC, since there are no non-static methods
+    LAMBDA // A val bound to a non-capturing arrow function, compiled to a static method (see Compiler#compileLambdaBinding)
 }
@@ -1,14 +1,13 @@
 package co.kenrg.mega.backend.compilation.scope;
 
-import static java.util.stream.Collectors.joining;
-
+import javax.annotation.Nullable;
 import java.util.List;
-import java.util.Objects;
 
 import co.kenrg.mega.frontend.ast.expression.ArrayLiteral;
 import co.kenrg.mega.frontend.ast.expression.AssignmentExpression;
 import co.kenrg.mega.frontend.ast.expression.CallExpression;
 import co.kenrg.mega.frontend.ast.expression.IfExpression;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
 import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
 import co.kenrg.mega.frontend.ast.iface.Node;
 import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
@@ -20,6 +19,7 @@ public class Context {
     private class ContextFrame {
         Node node;
         Integer numLambdas;
+        String lambdaName; // Of a lambda in this frame; computed lazily, and reset when it'd change (see below)
 
         ContextFrame(Node node, Integer numLambdas) {
             this.node = node;
@@ -37,40 +37,63 @@ public class Context {
         int index = this.contextFrames.size() - 2;
         ContextFrame previousFrame = this.contextFrames.get(index);
         previousFrame.numLambdas++;
+
+        // The lambda names of the previous frame and the current frame (which is above it) include the count
+        previousFrame.lambdaName = null;
+        this.contextFrames.get(index + 1).lambdaName = null;
     }
 
     public void popContext() {
         this.contextFrames.remove(this.contextFrames.size() - 1);
     }
 
+    // The name of a lambda is built from the names of each frame in the context, joined by `$`. Each frame's lambda name
+    // is cached, and built from the name of the frame below it, so only frames pushed since the last call (or whose
+    // lambda count has changed) need to be named.
     public String getLambdaName() {
-        return this.contextFrames.stream()
-            .map(frame -> {
-                Node node = frame.node;
+        int index = this.contextFrames.size() - 1;
+        while (index >= 0 && this.contextFrames.get(index).lambdaName == null) {
+            index--;
+        }
 
-                if (node instanceof ValStatement) {
-                    return ((ValStatement) node).name.value;
-                } else if (node instanceof VarStatement) {
-                    return ((VarStatement) node).name.value;
-                } else if (node instanceof FunctionDeclarationStatement) {
-                    return ((FunctionDeclarationStatement) node).name.value;
-                }
+        String lambdaName = index >= 0 ? this.contextFrames.get(index).lambdaName : "";
+        for (int i = index + 1; i < this.contextFrames.size(); i++) {
+            ContextFrame frame = this.contextFrames.get(i);
+            String frameName = getFrameName(frame);
+            if (frameName != null) {
+                lambdaName = lambdaName.isEmpty() ? frameName : lambdaName + "$" + frameName;
+            }
+            frame.lambdaName = lambdaName;
+        }
+        return lambdaName;
+    }
 
-                if (node instanceof ArrayLiteral) {
-                    return frame.numLambdas.toString();
-                } else if (node instanceof ObjectLiteral) {
-                    return frame.numLambdas.toString();
-                } else if (node instanceof IfExpression) {
-                    return frame.numLambdas.toString();
-                } else if (node instanceof AssignmentExpression) {
-                    return ((AssignmentExpression) node).name.value;
-                } else if (node instanceof CallExpression) {
-                    return frame.numLambdas.toString();
-                } else {
-                    return null;
-                }
-            })
-            .filter(Objects::nonNull)
-            .collect(joining("$"));
+    @Nullable
+    private static String getFrameName(ContextFrame frame) {
+        Node node = frame.node;
+
+        if (node instanceof ValStatement) {
+            return ((ValStatement) node).name.value;
+        } else if (node instanceof VarStatement) {
+            return ((VarStatement) node).name.value;
+        } else if (node instanceof FunctionDeclarationStatement) {
+            return ((FunctionDeclarationStatement) node).name.value;
+        }
+
+        if (node instanceof ArrayLiteral) {
+            return frame.numLambdas.toString();
+        } else if (node instanceof ObjectLiteral) {
+            return frame.numLambdas.toString();
+        } else if (node instanceof IfExpression) {
+            return frame.numLambdas.toString();
+        } else if (node instanceof MatchExpression) {
+            return frame.numLambdas.toString();
+        } else if (node instanceof AssignmentExpression) {
+            return ((AssignmentExpression) node).name.value;
+        } else if (node instanceof CallExpression) {
+            return frame.numLambdas.toString();
+        } else {
+            return null;
+        }
     }
 }
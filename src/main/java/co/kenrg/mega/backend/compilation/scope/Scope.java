@@ -7,6 +7,7 @@ import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Map;
 
+import co.kenrg.mega.frontend.typechecking.types.FunctionType;
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
 import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
 import com.google.common.collect.Lists;
@@ -15,8 +16,9 @@ import org.objectweb.asm.Opcodes;
 
 public class Scope {
     public final Scope parent;
-    public final FocusedMethod focusedMethod;
+    public FocusedMethod focusedMethod; // Not final; the root scope's is refocused when a static initializer is split
     public final Map<String, Binding> bindings;
+    private final List<Binding> localBindings = Lists.newArrayList(); // Of the bindings, those which are LOCAL, in index order
     public Context context; // Not final; can be set on a compiler's scope from a sub-compiler
 
     private int nextLocalVarIndex = 0;
@@ -40,6 +42,15 @@ public class Scope {
         return this.parent == null;
     }
 
+    // Top-level statements are compiled into the root scope, whose focused method is the static initializer of the class,
+    // or one of the helper methods it's split into (see Compiler#compileModuleStatements).
+    public void refocus(FocusedMethod focusedMethod) {
+        if (!this.isRoot()) {
+            throw new IllegalStateException("Only the root scope can be refocused");
+        }
+        this.focusedMethod = focusedMethod;
+    }
+
     public Scope createChild() {
         return new Scope(this, this.focusedMethod, this.context);
     }
@@ -48,9 +59,26 @@ public class Scope {
         return new Scope(this, focusedMethod, this.context);
     }
 
+    // Bindings from enclosing scopes remain visible, but local variable indices start over, since the focused method
+    // gets its own frame.
+    public Scope createMethodChild(FocusedMethod focusedMethod) {
+        Scope child = new Scope(this, focusedMethod, this.context);
+        child.nextLocalVarIndex = 0;
+        return child;
+    }
+
+    // As above, but the first numParams local variable indices are reserved for the method's (unnamed) parameters
+    public Scope createMethodChild(FocusedMethod focusedMethod, int numParams) {
+        Scope child = this.createMethodChild(focusedMethod);
+        child.nextLocalVarIndex = numParams;
+        return child;
+    }
+
     public void addBinding(String name, MegaType type, String ownerModule, BindingTypes bindingType, boolean isMutable, boolean isExported) {
-        this.bindings.put(name, new Binding(bindingType, name, isMutable, type, this.nextLocalVarIndex, isExported, ownerModule));
+        Binding binding = new Binding(bindingType, name, isMutable, type, this.nextLocalVarIndex, isExported, ownerModule, null);
+        this.bindings.put(name, binding);
         if (bindingType == BindingTypes.LOCAL) {
+            this.localBindings.add(binding);
             this.nextLocalVarIndex++;
         }
     }
@@ -59,6 +87,10 @@ public class Scope {
         this.addBinding(name, type, ownerModule, bindingType, isMutable, false);
     }
 
+    public void addLambdaBinding(String name, FunctionType type, String ownerModule, String lambdaName) {
+        this.bindings.put(name, new Binding(BindingTypes.LAMBDA, name, false, type, this.nextLocalVarIndex, false, ownerModule, lambdaName));
+    }
+
     public int nextLocalVariableIndex() {
         return this.nextLocalVarIndex;
     }
@@ -77,24 +109,32 @@ public class Scope {
     /**
      * Used in conjunction with <code>MethodVisitor#visitFrame</code>
      *
-     * @return the signatures of all current local variables before creating a new frame.
+     * @return the signatures of all current local variables (of this scope and the enclosing scopes within the same
+     * method) before creating a new frame, in index order.
      */
     public Object[] getLocalsSignatures() {
-        List<Binding> bindings = Lists.newArrayList(this.bindings.values());
-        bindings.sort((b1, b2) -> b2.index - b1.index);
-
-        Object[] signatures = new Object[bindings.size()];
-        for (int i = 0; i < bindings.size(); i++) {
-            Binding binding = bindings.get(i);
-            MegaType type = binding.type;
-            if (isPrimitive(type)) {
-                if (type == PrimitiveTypes.INTEGER || type == PrimitiveTypes.BOOLEAN) {
-                    signatures[i] = Opcodes.INTEGER;
-                } else if (type == PrimitiveTypes.FLOAT) {
-                    signatures[i] = Opcodes.FLOAT;
+        List<List<Binding>> scopesLocalBindings = Lists.newArrayList();
+        int numLocals = 0;
+        for (Scope scope = this; scope != null && scope.focusedMethod == this.focusedMethod; scope = scope.parent) {
+            scopesLocalBindings.add(scope.localBindings);
+            numLocals += scope.localBindings.size();
+        }
+
+        Object[] signatures = new Object[numLocals];
+        int i = 0;
+        for (List<Binding> localBindings : Lists.reverse(scopesLocalBindings)) {
+            for (Binding binding : localBindings) {
+                MegaType type = binding.type;
+                if (isPrimitive(type)) {
+                    if (type == PrimitiveTypes.INTEGER || type == PrimitiveTypes.BOOLEAN) {
+                        signatures[i] = Opcodes.INTEGER;
+                    } else if (type == PrimitiveTypes.FLOAT) {
+                        signatures[i] = Opcodes.FLOAT;
+                    }
+                } else {
+                    signatures[i] = jvmDescriptor(type, false);
                 }
-            } else {
-                signatures[i] = jvmDescriptor(type, false);
+                i++;
             }
         }
         return signatures;
@@ -2,8 +2,10 @@ package co.kenrg.mega.backend.compilation.subcompilers;
 
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getDescriptor;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getInternalName;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getSpecializedFunctionInterfaceName;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isPrimitive;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmInternalName;
 import static co.kenrg.mega.backend.compilation.subcompilers.PrimitiveBoxingUnboxingCompiler.compileBoxPrimitiveType;
 import static co.kenrg.mega.backend.compilation.subcompilers.PrimitiveBoxingUnboxingCompiler.compileUnboxPrimitiveType;
 import static java.util.stream.Collectors.joining;
@@ -25,7 +27,9 @@ import static org.objectweb.asm.Opcodes.RETURN;
 
 import java.util.List;
 
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
 import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
 import co.kenrg.mega.backend.compilation.scope.BindingTypes;
 import co.kenrg.mega.backend.compilation.scope.Context;
 import co.kenrg.mega.backend.compilation.scope.FocusedMethod;
@@ -48,13 +52,15 @@ public class ArrowFunctionExpressionCompiler {
         String innerClassName,
         ArrowFunctionExpression node,
         TypeEnvironment typeEnv,
+        CompilerOptions options,
+        ClassHierarchy classHierarchy,
         Context context,
         int access
     ) {
         FunctionType arrowFnType = (FunctionType) node.getType();
         assert arrowFnType != null; // Should be populated in typechecking pass
 
-        Compiler compiler = getCompiler(innerClassName, arrowFnType, typeEnv, context);
+        Compiler compiler = getCompiler(innerClassName, arrowFnType, typeEnv, options, classHierarchy, context);
         compiler.cw.visitInnerClass(innerClassName, outerClassName, lambdaName, access);
 
         writeClinitMethod(compiler, innerClassName);
@@ -84,11 +90,19 @@ public class ArrowFunctionExpressionCompiler {
         return String.format("%s<%s>;", desc.substring(0, desc.length() - 1), functionDescTypeArgs);
     }
 
-    static Compiler getCompiler(String innerClassName, FunctionType arrowFnType, TypeEnvironment typeEnv, Context context) {
+    static Compiler getCompiler(String innerClassName, FunctionType arrowFnType, TypeEnvironment typeEnv, CompilerOptions options, ClassHierarchy classHierarchy, Context context) {
         String functionDesc = getFunctionJvmDescriptor(arrowFnType);
         String functionIfaceName = getInternalName(arrowFnType);
         String arrowFnSignature = String.format("%s%s", getDescriptor(Invokeable.class), functionDesc);
-        Compiler compiler = new Compiler(innerClassName, arrowFnSignature, getInternalName(Invokeable.class), new String[]{functionIfaceName}, typeEnv);
+        String[] interfaces = new String[]{functionIfaceName};
+
+        // The class's actual invoke method (see getInvokeMethodDesc) already implements the specialized interface, if any
+        String specializedIfaceName = getSpecializedFunctionInterfaceName(arrowFnType);
+        if (specializedIfaceName != null) {
+            arrowFnSignature = String.format("%sL%s;", arrowFnSignature, specializedIfaceName);
+            interfaces = new String[]{functionIfaceName, specializedIfaceName};
+        }
+        Compiler compiler = new Compiler(innerClassName, arrowFnSignature, getInternalName(Invokeable.class), interfaces, typeEnv, options, classHierarchy);
         compiler.scope.context = context;
         return compiler;
     }
@@ -130,7 +144,7 @@ public class ArrowFunctionExpressionCompiler {
             ifaceInvokeWriter.visitVarInsn(ALOAD, i + 1); // Load subsequent parameters
 
             MegaType paramType = arrowFnType.paramTypes.get(i);
-            ifaceInvokeWriter.visitTypeInsn(CHECKCAST, getInternalName(paramType));
+            ifaceInvokeWriter.visitTypeInsn(CHECKCAST, jvmInternalName(paramType));
             if (isPrimitive(paramType)) {
                 compileUnboxPrimitiveType(paramType, ifaceInvokeWriter);
             }
@@ -0,0 +1,102 @@
+package co.kenrg.mega.backend.compilation.subcompilers;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getInternalName;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmMethodDescriptor;
+import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionCompiler.getInvokeMethodDesc;
+import static java.util.stream.Collectors.joining;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+
+import co.kenrg.mega.backend.compilation.scope.BindingTypes;
+import co.kenrg.mega.backend.compilation.scope.FocusedMethod;
+import co.kenrg.mega.backend.compilation.scope.Scope;
+import co.kenrg.mega.backend.compilation.util.OpcodeUtils;
+import co.kenrg.mega.frontend.ast.expression.ArrowFunctionExpression;
+import co.kenrg.mega.frontend.ast.expression.Parameter;
+import co.kenrg.mega.frontend.ast.iface.Node;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment.Binding;
+import co.kenrg.mega.frontend.typechecking.types.FunctionType;
+import com.google.common.base.Strings;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+public class ArrowFunctionExpressionIndyCompiler {
+    private static final Handle LAMBDA_METAFACTORY = new Handle(
+        H_INVOKESTATIC,
+        "java/lang/invoke/LambdaMetafactory",
+        "metafactory",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;",
+        false
+    );
+
+    public static String getImplMethodName(String lambdaName) {
+        return "lambda$" + lambdaName;
+    }
+
+    // Captured bindings are passed as leading parameters to the implementation method, ahead of the arrow function's
+    // own parameters; this is the shape LambdaMetafactory expects for capturing lambdas.
+    public static String getImplMethodDesc(FunctionType arrowFnType, List<Entry<String, Binding>> capturedBindings) {
+        String capturedDescs = getCapturedBindingsDesc(capturedBindings);
+        String invokeDesc = getInvokeMethodDesc(arrowFnType);
+        return "(" + capturedDescs + invokeDesc.substring(1);
+    }
+
+    private static String getCapturedBindingsDesc(List<Entry<String, Binding>> capturedBindings) {
+        return capturedBindings.stream()
+            .map(capturedBinding -> jvmDescriptor(capturedBinding.getValue().type, false))
+            .collect(joining(""));
+    }
+
+    public static void compileArrowFunctionImplMethod(
+        String className,
+        ClassWriter cw,
+        String implMethodName,
+        int access,
+        ArrowFunctionExpression node,
+        Scope scope,
+        BiConsumer<Node, Scope> compileNode
+    ) {
+        FunctionType arrowFnType = (FunctionType) node.getType();
+        assert arrowFnType != null; // Should be populated in typechecking pass
+        List<Entry<String, Binding>> capturedBindings = arrowFnType.getCapturedBindings();
+
+        String implMethodDesc = getImplMethodDesc(arrowFnType, capturedBindings);
+        MethodVisitor implMethodWriter = cw.visitMethod(access, implMethodName, implMethodDesc, null, null);
+        implMethodWriter.visitCode();
+
+        Scope implMethodScope = scope.createMethodChild(new FocusedMethod(implMethodWriter, null, null));
+        for (Entry<String, Binding> capturedBinding : capturedBindings) {
+            Binding binding = capturedBinding.getValue();
+            implMethodScope.addBinding(capturedBinding.getKey(), binding.type, className, BindingTypes.LOCAL, !binding.isImmutable);
+        }
+        for (Parameter parameter : node.parameters) {
+            implMethodScope.addBinding(parameter.ident.value, parameter.getType(), className, BindingTypes.LOCAL, false);
+        }
+
+        compileNode.accept(node.body, implMethodScope);
+        implMethodWriter.visitInsn(OpcodeUtils.returnInsn(arrowFnType.returnType));
+
+        implMethodWriter.visitMaxs(-1, -1);
+        implMethodWriter.visitEnd();
+    }
+
+    // Expects the captured bindings (if any) to already be on the stack, in order
+    public static void compileLambdaMetafactoryCallSite(String className, String implMethodName, FunctionType arrowFnType, MethodVisitor writer) {
+        List<Entry<String, Binding>> capturedBindings = arrowFnType.getCapturedBindings();
+
+        String functionIfaceName = getInternalName(arrowFnType);
+        String callSiteDesc = String.format("(%s)L%s;", getCapturedBindingsDesc(capturedBindings), functionIfaceName);
+
+        Type erasedInvokeType = Type.getMethodType(String.format("(%s)Ljava/lang/Object;", Strings.repeat("Ljava/lang/Object;", arrowFnType.arity())));
+        Handle implMethod = new Handle(H_INVOKESTATIC, className, implMethodName, getImplMethodDesc(arrowFnType, capturedBindings), false);
+        Type instantiatedInvokeType = Type.getMethodType(jvmMethodDescriptor(arrowFnType, true));
+
+        writer.visitInvokeDynamicInsn("invoke", callSiteDesc, LAMBDA_METAFACTORY, erasedInvokeType, implMethod, instantiatedInvokeType);
+    }
+}
@@ -19,7 +19,9 @@ import static org.objectweb.asm.Opcodes.RETURN;
 import java.util.List;
 import java.util.Map.Entry;
 
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
 import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
 import co.kenrg.mega.backend.compilation.scope.BindingTypes;
 import co.kenrg.mega.backend.compilation.scope.Context;
 import co.kenrg.mega.backend.compilation.scope.FocusedMethod;
@@ -40,6 +42,8 @@ public class ArrowFunctionExpressionWithClosureCompiler {
         String innerClassName,
         ArrowFunctionExpression node,
         TypeEnvironment typeEnv,
+        CompilerOptions options,
+        ClassHierarchy classHierarchy,
         Context context,
         int access
     ) {
@@ -47,7 +51,7 @@ public class ArrowFunctionExpressionWithClosureCompiler {
         assert arrowFnType != null; // Should be populated in typechecking pass
         List<Entry<String, Binding>> capturedBindings = arrowFnType.getCapturedBindings();
 
-        Compiler compiler = getCompiler(innerClassName, arrowFnType, typeEnv, context);
+        Compiler compiler = getCompiler(innerClassName, arrowFnType, typeEnv, options, classHierarchy, context);
         compiler.cw.visitInnerClass(innerClassName, outerClassName, lambdaName, access);
 
         writeClinitMethod(compiler, capturedBindings);
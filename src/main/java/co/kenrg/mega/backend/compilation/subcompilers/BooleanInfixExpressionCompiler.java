@@ -1,6 +1,7 @@
 package co.kenrg.mega.backend.compilation.subcompilers;
 
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getInternalName;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isStructural;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
 import static org.objectweb.asm.Opcodes.FCMPG;
 import static org.objectweb.asm.Opcodes.FCMPL;
@@ -22,118 +23,160 @@ import static org.objectweb.asm.Opcodes.IF_ICMPLT;
 import static org.objectweb.asm.Opcodes.IF_ICMPNE;
 import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
 
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import co.kenrg.mega.backend.compilation.scope.Scope;
+import co.kenrg.mega.frontend.ast.expression.BooleanLiteral;
 import co.kenrg.mega.frontend.ast.expression.InfixExpression;
+import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
+import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
+import co.kenrg.mega.frontend.ast.iface.Expression;
 import co.kenrg.mega.frontend.ast.iface.Node;
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
 import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.objectweb.asm.Label;
 
 /**
  * Represents a "sub-compiler" which is specialized to generate JVM bytecode for Boolean Infix Expressions
  * (such as && and ||) as well as Comparison Expressions (e.g. <, <=, >, >=, ==, and !=).
+ * <p>
+ * Conditions are compiled in "jump context": rather than pushing a boolean onto the stack, the code for a condition
+ * jumps to a label if the condition has a given value, and falls through otherwise. An if-expression or loop branches on
+ * its condition this way directly, so its comparisons (and the && / || / ! operators combining them) compile to the
+ * jumps which test them, without materializing any intermediate booleans. Where a condition's value is needed, it's
+ * materialized from the jumps, as a 0 or 1.
  */
 public class BooleanInfixExpressionCompiler {
 
-    public static void compileConditionalAndExpression(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
-        Label condEndLabel = new Label();
-        Label condFalseLabel = new Label();
-
-        compileNode.accept(node.left);
-        scope.focusedMethod.writer.visitJumpInsn(IFEQ, condFalseLabel);
+    // Pushes the value of a boolean-valued infix (or prefix !) expression onto the stack, as a 0 or 1
+    public static void compileBooleanExpression(Expression node, Scope scope, Consumer<Node> compileNode) {
+        Label trueLabel = new Label();
+        Label endLabel = new Label();
 
-        compileNode.accept(node.right);
-        scope.focusedMethod.writer.visitJumpInsn(IFEQ, condFalseLabel);
+        compileConditionalJump(node, true, trueLabel, scope, compileNode);
+        scope.focusedMethod.writer.visitInsn(ICONST_0);
+        scope.focusedMethod.writer.visitJumpInsn(GOTO, endLabel);
 
+        scope.focusedMethod.writer.visitLabel(trueLabel);
         scope.focusedMethod.writer.visitInsn(ICONST_1);
-        scope.focusedMethod.writer.visitJumpInsn(GOTO, condEndLabel);
 
-        scope.focusedMethod.writer.visitLabel(condFalseLabel);
-        scope.focusedMethod.writer.visitInsn(ICONST_0);
+        scope.focusedMethod.writer.visitLabel(endLabel);
+    }
 
-        scope.focusedMethod.writer.visitLabel(condEndLabel);
+    // Jumps to the target label if the condition's value is jumpIfTrue, and falls through otherwise
+    public static void compileConditionalJump(Expression condition, boolean jumpIfTrue, Label target, Scope scope, Consumer<Node> compileNode) {
+        if (condition instanceof ParenthesizedExpression) {
+            compileConditionalJump(((ParenthesizedExpression) condition).expr, jumpIfTrue, target, scope, compileNode);
+        } else if (condition instanceof BooleanLiteral) {
+            if (((BooleanLiteral) condition).value == jumpIfTrue) {
+                scope.focusedMethod.writer.visitJumpInsn(GOTO, target);
+            }
+        } else if (condition instanceof PrefixExpression && ((PrefixExpression) condition).operator.equals("!")) {
+            compileConditionalJump(((PrefixExpression) condition).expression, !jumpIfTrue, target, scope, compileNode);
+        } else if (condition instanceof InfixExpression && ((InfixExpression) condition).operator.equals("&&")) {
+            compileConditionalAndJump((InfixExpression) condition, jumpIfTrue, target, scope, compileNode);
+        } else if (condition instanceof InfixExpression && ((InfixExpression) condition).operator.equals("||")) {
+            compileConditionalOrJump((InfixExpression) condition, jumpIfTrue, target, scope, compileNode);
+        } else if (condition instanceof InfixExpression && COMPARISON_OPERATORS.contains(((InfixExpression) condition).operator)) {
+            compileComparisonJump((InfixExpression) condition, jumpIfTrue, target, scope, compileNode);
+        } else {
+            compileNode.accept(condition);
+            scope.focusedMethod.writer.visitJumpInsn(jumpIfTrue ? IFNE : IFEQ, target);
+        }
     }
 
-    public static void compileConditionalOrExpression(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
-        Label condEndLabel = new Label();
-        Label condTrueLabel = new Label();
-        Label condFalseLabel = new Label();
+    private static final Set<String> COMPARISON_OPERATORS = ImmutableSet.of("<", "<=", ">", ">=", "==", "!=");
+
+    // The opposite of each conditional jump (ie. the jump taken when it isn't, and vice-versa)
+    public static final Map<Integer, Integer> INVERSE_JUMPS = ImmutableMap.<Integer, Integer>builder()
+        .put(IFEQ, IFNE).put(IFNE, IFEQ)
+        .put(IFLT, IFGE).put(IFGE, IFLT)
+        .put(IFGT, IFLE).put(IFLE, IFGT)
+        .put(IF_ICMPEQ, IF_ICMPNE).put(IF_ICMPNE, IF_ICMPEQ)
+        .put(IF_ICMPLT, IF_ICMPGE).put(IF_ICMPGE, IF_ICMPLT)
+        .put(IF_ICMPGT, IF_ICMPLE).put(IF_ICMPLE, IF_ICMPGT)
+        .build();
+
+    // If either side is false (when jumping on false), or if both are true (when jumping on true)
+    private static void compileConditionalAndJump(InfixExpression node, boolean jumpIfTrue, Label target, Scope scope, Consumer<Node> compileNode) {
+        if (!jumpIfTrue) {
+            compileConditionalJump(node.left, false, target, scope, compileNode);
+            compileConditionalJump(node.right, false, target, scope, compileNode);
+            return;
+        }
 
-        compileNode.accept(node.left);
-        scope.focusedMethod.writer.visitJumpInsn(IFNE, condTrueLabel);
+        Label condFalseLabel = new Label();
+        compileConditionalJump(node.left, false, condFalseLabel, scope, compileNode);
+        compileConditionalJump(node.right, true, target, scope, compileNode);
+        scope.focusedMethod.writer.visitLabel(condFalseLabel);
+    }
 
-        compileNode.accept(node.right);
-        scope.focusedMethod.writer.visitJumpInsn(IFEQ, condFalseLabel);
+    // If either side is true (when jumping on true), or if both are false (when jumping on false)
+    private static void compileConditionalOrJump(InfixExpression node, boolean jumpIfTrue, Label target, Scope scope, Consumer<Node> compileNode) {
+        if (jumpIfTrue) {
+            compileConditionalJump(node.left, true, target, scope, compileNode);
+            compileConditionalJump(node.right, true, target, scope, compileNode);
+            return;
+        }
 
+        Label condTrueLabel = new Label();
+        compileConditionalJump(node.left, true, condTrueLabel, scope, compileNode);
+        compileConditionalJump(node.right, false, target, scope, compileNode);
         scope.focusedMethod.writer.visitLabel(condTrueLabel);
-        scope.focusedMethod.writer.visitInsn(ICONST_1);
-        scope.focusedMethod.writer.visitJumpInsn(GOTO, condEndLabel);
-
-        scope.focusedMethod.writer.visitLabel(condFalseLabel);
-        scope.focusedMethod.writer.visitInsn(ICONST_0);
-
-        scope.focusedMethod.writer.visitLabel(condEndLabel);
     }
 
-    public static void compileComparisonExpression(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
+    private static void compileComparisonJump(InfixExpression node, boolean jumpIfTrue, Label target, Scope scope, Consumer<Node> compileNode) {
         MegaType leftType = node.left.getType();
         assert leftType != null;
         MegaType rightType = node.right.getType();
         assert rightType != null;
 
+        int jumpIfTrueOpcode;
         if (PrimitiveTypes.NUMBER.isEquivalentTo(leftType) && PrimitiveTypes.NUMBER.isEquivalentTo(rightType)) {
             if (leftType == PrimitiveTypes.INTEGER && rightType == PrimitiveTypes.INTEGER) {
-                pushIntegerComparison(node, scope, compileNode);
-            } else if (leftType == PrimitiveTypes.FLOAT || rightType == PrimitiveTypes.FLOAT) {
-                pushFloatComparison(node, scope, compileNode);
+                jumpIfTrueOpcode = compileIntegerComparison(node, scope, compileNode);
+            } else {
+                jumpIfTrueOpcode = compileFloatComparison(node, scope, compileNode);
             }
         } else if (leftType == PrimitiveTypes.BOOLEAN && rightType == PrimitiveTypes.BOOLEAN) {
-            pushIntegerComparison(node, scope, compileNode);
+            jumpIfTrueOpcode = compileIntegerComparison(node, scope, compileNode);
         } else {
-            pushComparableComparison(node, scope, compileNode);
+            jumpIfTrueOpcode = compileComparableComparison(node, scope, compileNode);
         }
+
+        scope.focusedMethod.writer.visitJumpInsn(jumpIfTrue ? jumpIfTrueOpcode : INVERSE_JUMPS.get(jumpIfTrueOpcode), target);
     }
 
-    private static void pushIntegerComparison(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
-        Label trueLabel = new Label();
-        Label endLabel = new Label();
+    // Each of the compile*Comparison methods pushes the operands of the comparison (or the result of comparing them), and
+    // returns the opcode of the jump which is taken if the comparison is true.
 
+    private static int compileIntegerComparison(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
         compileNode.accept(node.left);
         compileNode.accept(node.right);
 
         switch (node.operator) {
             case "<":
-                scope.focusedMethod.writer.visitJumpInsn(IF_ICMPLT, trueLabel);
-                break;
+                return IF_ICMPLT;
             case "<=":
-                scope.focusedMethod.writer.visitJumpInsn(IF_ICMPLE, trueLabel);
-                break;
+                return IF_ICMPLE;
             case ">":
-                scope.focusedMethod.writer.visitJumpInsn(IF_ICMPGT, trueLabel);
-                break;
+                return IF_ICMPGT;
             case ">=":
-                scope.focusedMethod.writer.visitJumpInsn(IF_ICMPGE, trueLabel);
-                break;
+                return IF_ICMPGE;
             case "==":
-                scope.focusedMethod.writer.visitJumpInsn(IF_ICMPEQ, trueLabel);
-                break;
-            case "!=":
-                scope.focusedMethod.writer.visitJumpInsn(IF_ICMPNE, trueLabel);
-                break;
+                return IF_ICMPEQ;
+            default:
+                return IF_ICMPNE;
         }
-
-        scope.focusedMethod.writer.visitInsn(ICONST_0);
-        scope.focusedMethod.writer.visitJumpInsn(GOTO, endLabel);
-
-        scope.focusedMethod.writer.visitLabel(trueLabel);
-        scope.focusedMethod.writer.visitInsn(ICONST_1);
-
-        scope.focusedMethod.writer.visitLabel(endLabel);
     }
 
-    private static void pushFloatComparison(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
+    // Comparisons with NaN are false (except for !=), as in Java: FCMPG pushes 1 if either operand is NaN, so it's used
+    // for < and <=, and FCMPL pushes -1, so it's used for > and >=.
+    private static int compileFloatComparison(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
         MegaType leftType = node.left.getType();
         assert leftType != null;
         compileNode.accept(node.left);
@@ -148,46 +191,29 @@ public class BooleanInfixExpressionCompiler {
             scope.focusedMethod.writer.visitInsn(I2F);
         }
 
-        Label trueLabel = new Label();
-        Label endLabel = new Label();
-
         switch (node.operator) {
             case "<":
-                scope.focusedMethod.writer.visitInsn(FCMPL);
-                scope.focusedMethod.writer.visitJumpInsn(IFLT, trueLabel);
-                break;
+                scope.focusedMethod.writer.visitInsn(FCMPG);
+                return IFLT;
             case "<=":
-                scope.focusedMethod.writer.visitInsn(FCMPL);
-                scope.focusedMethod.writer.visitJumpInsn(IFLE, trueLabel);
-                break;
-            case ">":
                 scope.focusedMethod.writer.visitInsn(FCMPG);
-                scope.focusedMethod.writer.visitJumpInsn(IFGT, trueLabel);
-                break;
+                return IFLE;
+            case ">":
+                scope.focusedMethod.writer.visitInsn(FCMPL);
+                return IFGT;
             case ">=":
-                scope.focusedMethod.writer.visitInsn(FCMPG);
-                scope.focusedMethod.writer.visitJumpInsn(IFGE, trueLabel);
-                break;
+                scope.focusedMethod.writer.visitInsn(FCMPL);
+                return IFGE;
             case "==":
                 scope.focusedMethod.writer.visitInsn(FCMPL);
-                scope.focusedMethod.writer.visitJumpInsn(IFEQ, trueLabel);
-                break;
-            case "!=":
+                return IFEQ;
+            default:
                 scope.focusedMethod.writer.visitInsn(FCMPL);
-                scope.focusedMethod.writer.visitJumpInsn(IFNE, trueLabel);
-                break;
+                return IFNE;
         }
-
-        scope.focusedMethod.writer.visitInsn(ICONST_0);
-        scope.focusedMethod.writer.visitJumpInsn(GOTO, endLabel);
-
-        scope.focusedMethod.writer.visitLabel(trueLabel);
-        scope.focusedMethod.writer.visitInsn(ICONST_1);
-
-        scope.focusedMethod.writer.visitLabel(endLabel);
     }
 
-    private static void pushComparableComparison(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
+    private static int compileComparableComparison(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
         compileNode.accept(node.left);
         compileNode.accept(node.right);
 
@@ -196,50 +222,32 @@ public class BooleanInfixExpressionCompiler {
 
         String jvmDescriptor = jvmDescriptor(leftType, false);
         String signature = String.format("(%s)I", jvmDescriptor);
-        String className = getInternalName(leftType);
+        String className = isStructural(leftType) ? getInternalName(Object.class) : getInternalName(leftType);
         if (className == null) {
             System.out.printf("Expected type %s to have a class name\n", leftType);
             className = getInternalName(PrimitiveTypes.ANY);
         }
 
-        Label trueLabel = new Label();
-        Label endLabel = new Label();
-
         switch (node.operator) {
-            case "<":
-                scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, className, "compareTo", signature, false);
-                scope.focusedMethod.writer.visitJumpInsn(IFLT, trueLabel);
-                break;
-            case "<=":
-                scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, className, "compareTo", signature, false);
-                scope.focusedMethod.writer.visitJumpInsn(IFLE, trueLabel);
-                break;
-            case ">":
-                scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, className, "compareTo", signature, false);
-                scope.focusedMethod.writer.visitJumpInsn(IFGT, trueLabel);
-                break;
-            case ">=":
-                scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, className, "compareTo", signature, false);
-                scope.focusedMethod.writer.visitJumpInsn(IFGE, trueLabel);
-                break;
             case "==":
-                // The `equals` method places a boolean on the top of the stack; call the method and return early
+                // The `equals` method places a boolean on the top of the stack, which is 1 (not 0) if they're equal
                 scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, className, "equals", "(Ljava/lang/Object;)Z", false);
-                return;
+                return IFNE;
             case "!=":
-                // If the comparison is (!=), call the `equals` method. If `equals` returns 0 (false), negate
-                // by jumping to the true label.
                 scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, className, "equals", "(Ljava/lang/Object;)Z", false);
-                scope.focusedMethod.writer.visitJumpInsn(IFEQ, trueLabel);
-                break;
+                return IFEQ;
         }
 
-        scope.focusedMethod.writer.visitInsn(ICONST_0);
-        scope.focusedMethod.writer.visitJumpInsn(GOTO, endLabel);
-
-        scope.focusedMethod.writer.visitLabel(trueLabel);
-        scope.focusedMethod.writer.visitInsn(ICONST_1);
-
-        scope.focusedMethod.writer.visitLabel(endLabel);
+        scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, className, "compareTo", signature, false);
+        switch (node.operator) {
+            case "<":
+                return IFLT;
+            case "<=":
+                return IFLE;
+            case ">":
+                return IFGT;
+            default:
+                return IFGE;
+        }
     }
 }
@@ -1,22 +1,35 @@
 package co.kenrg.mega.backend.compilation.subcompilers;
 
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getInternalName;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getSpecializedFunctionInterfaceName;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isPrimitive;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isStructural;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmInternalName;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmMethodDescriptor;
-import static co.kenrg.mega.backend.compilation.subcompilers.MethodProxyCompiler.PROXY_SUFFIX;
-import static co.kenrg.mega.backend.compilation.subcompilers.MethodProxyCompiler.getMethodProxyType;
+import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionCompiler.getInvokeMethodDesc;
+import static co.kenrg.mega.backend.compilation.subcompilers.ArrowFunctionExpressionIndyCompiler.getImplMethodName;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.getOmittedArgumentsBitmask;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.getOmittedParamNames;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.getOverloadName;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.getOverloadType;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.getProxyName;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.getProxyType;
+import static co.kenrg.mega.backend.compilation.subcompilers.DefaultArgumentOverloadCompiler.usesProxy;
 import static co.kenrg.mega.backend.compilation.subcompilers.PrimitiveBoxingUnboxingCompiler.compileBoxPrimitiveType;
 import static co.kenrg.mega.backend.compilation.subcompilers.PrimitiveBoxingUnboxingCompiler.compileUnboxPrimitiveType;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.loadInsn;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.storeInsn;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.zeroValueInsn;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
-import static org.objectweb.asm.Opcodes.ACONST_NULL;
 import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
 import static org.objectweb.asm.Opcodes.CHECKCAST;
 import static org.objectweb.asm.Opcodes.DUP;
-import static org.objectweb.asm.Opcodes.FCONST_0;
 import static org.objectweb.asm.Opcodes.GETSTATIC;
-import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
 import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
 import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
@@ -25,62 +38,61 @@ import static org.objectweb.asm.Opcodes.NEW;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
-import java.util.stream.IntStream;
 
 import co.kenrg.mega.backend.compilation.scope.Binding;
 import co.kenrg.mega.backend.compilation.scope.BindingTypes;
 import co.kenrg.mega.backend.compilation.scope.Scope;
 import co.kenrg.mega.frontend.ast.expression.AccessorExpression;
 import co.kenrg.mega.frontend.ast.expression.CallExpression;
-import co.kenrg.mega.frontend.ast.expression.CallExpression.NamedArgs;
-import co.kenrg.mega.frontend.ast.expression.CallExpression.UnnamedArgs;
 import co.kenrg.mega.frontend.ast.expression.Identifier;
 import co.kenrg.mega.frontend.ast.iface.Expression;
 import co.kenrg.mega.frontend.ast.iface.Node;
 import co.kenrg.mega.frontend.typechecking.types.FunctionType;
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
-import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.tuple.Pair;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
 
 public class CallExpressionCompiler {
-    public static void compileInvocation(CallExpression node, Scope scope, Consumer<Node> compileNode) {
+    public static void compileInvocation(CallExpression node, String className, Scope scope, Consumer<Node> compileNode) {
         Node target = node.getTarget();
         FunctionType fnType = (FunctionType) target.getType();
         assert fnType != null;
 
-        List<Expression> arguments;
-        if (node instanceof CallExpression.UnnamedArgs) {
-            UnnamedArgs callExpr = (UnnamedArgs) node;
-            arguments = IntStream.range(0, fnType.arity())
-                .mapToObj(i -> callExpr.arguments.size() > i ? callExpr.arguments.get(i) : null)
-                .collect(toList());
-        } else if (node instanceof CallExpression.NamedArgs) {
-            NamedArgs callExpr = (NamedArgs) node;
-
-            Map<String, Expression> namedArgs = callExpr.namedParamArguments.stream()
-                .collect(toMap(param -> param.getKey().value, Pair::getValue));
-
-            arguments = fnType.parameters.stream()
-                .map(param -> param.ident.value)
-                .map(namedArgs::get)
-                .collect(toList());
+        List<Expression> arguments = node.getArgumentsInParameterOrder(fnType);
+        boolean omitsArguments = arguments.stream().anyMatch(Objects::isNull);
+        if (omitsArguments) {
+            compileDefaultArgumentsInvocation(target, arguments, className, scope, compileNode);
         } else {
-            throw new IllegalStateException("No other possible subclass of CallExpression: " + node.getClass());
+            compileDirectInvocation(target, arguments, className, scope, compileNode);
         }
+    }
 
-        boolean shouldInvokeProxy = arguments.stream().anyMatch(Objects::isNull);
-        if (shouldInvokeProxy) {
-            compileProxyInvocation(target, arguments, scope, compileNode);
-        } else {
-            compileNonProxyInvocation(target, arguments, scope, compileNode);
+    // A call to the method currently being compiled, in tail position, can re-use the current stack frame: the arguments
+    // are stored into the method's parameters, and control jumps back to the start of the method.
+    public static void compileSelfTailCall(CallExpression node, Scope scope, Consumer<Node> compileNode) {
+        FunctionType fnType = (FunctionType) node.getTarget().getType();
+        assert fnType != null; // Should be populated in typechecking pass
+
+        Label methodStart = scope.focusedMethod.start;
+        assert methodStart != null; // Should be visited at the start of every function declaration's method
+
+        List<Expression> arguments = node.getArgumentsInParameterOrder(fnType);
+        assert arguments.stream().noneMatch(Objects::isNull); // Calls relying on default param values go through an overload
+
+        // All arguments must be evaluated before any parameter is overwritten, since they may refer to the parameters
+        pushArguments(arguments, scope, compileNode, false);
+        for (int i = fnType.arity() - 1; i >= 0; i--) {
+            scope.focusedMethod.writer.visitVarInsn(storeInsn(fnType.paramTypes.get(i)), i);
         }
+        scope.focusedMethod.writer.visitJumpInsn(GOTO, methodStart);
     }
 
-    private static void compileNonProxyInvocation(Node target, List<Expression> arguments, Scope scope, Consumer<Node> compileNode) {
+    private static void compileDirectInvocation(Node target, List<Expression> arguments, String className, Scope scope, Consumer<Node> compileNode) {
         FunctionType fnType = (FunctionType) target.getType();
         assert fnType != null; // Should be populated in typechecking pass
 
@@ -107,6 +119,13 @@ public class CallExpressionCompiler {
                 String jvmDesc = jvmMethodDescriptor(fnType, false);
                 scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, binding.ownerModule, name, jvmDesc, false); // TODO: Don't assume all methods are static
                 return;
+            } else if (binding.bindingType == BindingTypes.LAMBDA) {
+                assert binding.lambdaName != null; // Always set for LAMBDA bindings
+                pushArguments(arguments, scope, compileNode, false);
+
+                String implMethodDesc = getInvokeMethodDesc((FunctionType) binding.type);
+                scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, binding.ownerModule, getImplMethodName(binding.lambdaName), implMethodDesc, false);
+                return;
             } else {
                 String jvmDesc = jvmDescriptor(fnType, true);
                 if (binding.bindingType == BindingTypes.STATIC) {
@@ -115,7 +134,7 @@ public class CallExpressionCompiler {
                     scope.focusedMethod.writer.visitVarInsn(ALOAD, binding.index);
                 }
             }
-        } else if (target instanceof AccessorExpression) {
+        } else if (target instanceof AccessorExpression && !isStructural(((AccessorExpression) target).target.getType())) {
             Expression accessorTarget = ((AccessorExpression) target).target;
             MegaType accessorTargetType = accessorTarget.getType();
             assert accessorTargetType != null;
@@ -133,20 +152,83 @@ public class CallExpressionCompiler {
             scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, accessorTargetClass, accessorPropertyName, jvmDesc, false);
             return;
         } else {
+            // Including function-valued properties of structural types, which are read like any other property
             compileNode.accept(target);
         }
 
-        scope.focusedMethod.writer.visitTypeInsn(CHECKCAST, getInternalName(fnType));
+        String specializedIfaceName = getSpecializedFunctionInterfaceName(fnType);
+        if (specializedIfaceName != null) {
+            compileSpecializedInvocation(fnType, specializedIfaceName, arguments, className, scope, compileNode);
+            return;
+        }
 
+        scope.focusedMethod.writer.visitTypeInsn(CHECKCAST, getInternalName(fnType));
         pushArguments(arguments, scope, compileNode, true);
+        compileGenericInvoke(fnType, scope.focusedMethod.writer);
+    }
+
+    // Function values whose type has a primitive-specialized interface can be invoked without boxing the arguments or
+    // unboxing the result (see ArrowFunctionExpressionCompiler). Function values which don't implement it (eg. a FunctionN
+    // passed in from Java) are invoked generically instead, so the function value and arguments are first stored into
+    // locals, to be loaded by whichever invocation is taken.
+    private static void compileSpecializedInvocation(FunctionType fnType, String specializedIfaceName, List<Expression> arguments, String className, Scope scope, Consumer<Node> compileNode) {
+        MethodVisitor writer = scope.focusedMethod.writer;
+
+        int fnIndex = addSyntheticLocal(className, scope, fnType);
+        writer.visitVarInsn(ASTORE, fnIndex);
+
+        List<Pair<MegaType, Integer>> argLocals = Lists.newArrayList();
+        for (Expression arg : arguments) {
+            MegaType argType = arg.getType();
+            assert argType != null; // Should be populated in typechecking pass
+
+            compileNode.accept(arg);
+            int argIndex = addSyntheticLocal(className, scope, argType);
+            writer.visitVarInsn(storeInsn(argType), argIndex);
+            argLocals.add(Pair.of(argType, argIndex));
+        }
+
+        Label genericInvocation = new Label();
+        Label invocationEnd = new Label();
+        writer.visitVarInsn(ALOAD, fnIndex);
+        writer.visitTypeInsn(INSTANCEOF, specializedIfaceName);
+        writer.visitJumpInsn(IFEQ, genericInvocation);
 
+        writer.visitVarInsn(ALOAD, fnIndex);
+        writer.visitTypeInsn(CHECKCAST, specializedIfaceName);
+        for (Pair<MegaType, Integer> argLocal : argLocals) {
+            writer.visitVarInsn(loadInsn(argLocal.getLeft()), argLocal.getRight());
+        }
+        writer.visitMethodInsn(INVOKEINTERFACE, specializedIfaceName, "invoke", getInvokeMethodDesc(fnType), true);
+        writer.visitJumpInsn(GOTO, invocationEnd);
+
+        writer.visitLabel(genericInvocation);
+        writer.visitVarInsn(ALOAD, fnIndex);
+        writer.visitTypeInsn(CHECKCAST, getInternalName(fnType));
+        for (Pair<MegaType, Integer> argLocal : argLocals) {
+            writer.visitVarInsn(loadInsn(argLocal.getLeft()), argLocal.getRight());
+            compileBoxPrimitiveType(argLocal.getLeft(), writer);
+        }
+        compileGenericInvoke(fnType, writer);
+
+        writer.visitLabel(invocationEnd);
+    }
+
+    private static int addSyntheticLocal(String className, Scope scope, MegaType type) {
+        int index = scope.nextLocalVariableIndex();
+        scope.addBinding("$$invoke_local_" + index, type, className, BindingTypes.LOCAL, false);
+        return index;
+    }
+
+    // Expects the FunctionN value and its (boxed) arguments to already be on the stack
+    private static void compileGenericInvoke(FunctionType fnType, MethodVisitor writer) {
         String invokeDesc = String.format("(%s)Ljava/lang/Object;", Strings.repeat("Ljava/lang/Object;", fnType.arity()));
-        scope.focusedMethod.writer.visitMethodInsn(INVOKEINTERFACE, getInternalName(fnType), "invoke", invokeDesc, true);
+        writer.visitMethodInsn(INVOKEINTERFACE, getInternalName(fnType), "invoke", invokeDesc, true);
 
         assert fnType.returnType != null;
-        scope.focusedMethod.writer.visitTypeInsn(CHECKCAST, jvmDescriptor(fnType.returnType, true));
+        writer.visitTypeInsn(CHECKCAST, jvmInternalName(fnType.returnType));
         if (isPrimitive(fnType.returnType)) {
-            compileUnboxPrimitiveType(fnType.returnType, scope.focusedMethod.writer);
+            compileUnboxPrimitiveType(fnType.returnType, writer);
         }
     }
 
@@ -162,7 +244,7 @@ public class CallExpressionCompiler {
         }
     }
 
-    private static void compileProxyInvocation(Node target, List<Expression> arguments, Scope scope, Consumer<Node> compileNode) {
+    private static void compileDefaultArgumentsInvocation(Node target, List<Expression> arguments, String className, Scope scope, Consumer<Node> compileNode) {
         FunctionType fnType = (FunctionType) target.getType();
         assert fnType != null; // Should be populated in typechecking pass
 
@@ -175,56 +257,30 @@ public class CallExpressionCompiler {
             Binding binding = scope.getBinding(name);
             assert binding != null; // If binding is null, then typechecking must have failed (probably)
 
-            String proxyName = name + PROXY_SUFFIX;
-            Binding proxyBinding = scope.getBinding(proxyName);
-            assert proxyBinding != null; // If proxyBinding is null, then typechecking must have failed (probably)
+            if (binding.bindingType == BindingTypes.METHOD && !binding.ownerModule.equals(className) && usesProxy(fnType)) {
+                // Only the patterns of omitted arguments used within the function's own module have overloads
+                for (int i = 0; i < arguments.size(); i++) {
+                    Expression arg = arguments.get(i);
+                    if (arg == null) {
+                        scope.focusedMethod.writer.visitInsn(zeroValueInsn(fnType.paramTypes.get(i)));
+                    } else {
+                        compileNode.accept(arg);
+                    }
+                }
+                scope.focusedMethod.writer.visitLdcInsn(getOmittedArgumentsBitmask(arguments));
 
-            if (binding.bindingType == BindingTypes.METHOD) {
-                FunctionType funcProxyType = getMethodProxyType(fnType);
-                pushArgumentsForProxiedCall(funcProxyType, arguments, scope, compileNode);
-                int argBitmask = getArgumentBitmask(arguments);
-                scope.focusedMethod.writer.visitLdcInsn(argBitmask);
+                String jvmDesc = jvmMethodDescriptor(getProxyType(fnType), false);
+                scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, binding.ownerModule, getProxyName(name), jvmDesc, false);
+            } else if (binding.bindingType == BindingTypes.METHOD) {
+                List<String> omittedParamNames = getOmittedParamNames(fnType, arguments);
+                pushArguments(arguments.stream().filter(Objects::nonNull).collect(toList()), scope, compileNode, false);
 
-                String jvmDesc = jvmMethodDescriptor(funcProxyType, false);
-                scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, binding.ownerModule, proxyName, jvmDesc, false); // TODO: Don't assume all methods are static
+                String overloadName = getOverloadName(name, omittedParamNames);
+                String jvmDesc = jvmMethodDescriptor(getOverloadType(fnType, omittedParamNames), false);
+                scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, binding.ownerModule, overloadName, jvmDesc, false); // TODO: Don't assume all methods are static
             } else {
                 throw new IllegalStateException("Cannot invoke arrow functions with default params");
             }
         }
     }
-
-    private static int getArgumentBitmask(List<Expression> arguments) {
-        int argBitmask = 0;
-        for (int i = 0; i < arguments.size(); i++) {
-            Expression arg = arguments.get(i);
-            if (arg == null) {
-                argBitmask = argBitmask | (int) Math.pow(2, i);
-            }
-        }
-        return argBitmask;
-    }
-
-    private static void pushArgumentsForProxiedCall(FunctionType arrowFnProxyType, List<Expression> arguments, Scope scope, Consumer<Node> compileNode) {
-        for (int i = 0; i < arguments.size(); i++) {
-            Expression arg = arguments.get(i);
-            if (arg == null) {
-                MegaType paramType = arrowFnProxyType.paramTypes.get(i);
-                if (paramType == PrimitiveTypes.INTEGER) {
-                    scope.focusedMethod.writer.visitInsn(ICONST_0);
-                } else if (paramType == PrimitiveTypes.BOOLEAN) {
-                    scope.focusedMethod.writer.visitInsn(ICONST_0);
-                } else if (paramType == PrimitiveTypes.FLOAT) {
-                    scope.focusedMethod.writer.visitInsn(FCONST_0);
-                } else {
-                    scope.focusedMethod.writer.visitInsn(ACONST_NULL);
-                }
-                continue;
-            }
-
-            MegaType argType = arg.getType();
-            assert argType != null; // Should be populated in typechecking pass
-
-            compileNode.accept(arg);
-        }
-    }
 }
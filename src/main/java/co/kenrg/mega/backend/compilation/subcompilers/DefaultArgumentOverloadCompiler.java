@@ -0,0 +1,347 @@
+package co.kenrg.mega.backend.compilation.subcompilers;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmInternalName;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmMethodDescriptor;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.loadInsn;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.storeInsn;
+import static java.util.stream.Collectors.toList;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.IAND;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+import co.kenrg.mega.backend.compilation.scope.FocusedMethod;
+import co.kenrg.mega.backend.compilation.scope.Scope;
+import co.kenrg.mega.backend.compilation.util.OpcodeUtils;
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.ast.expression.AccessorExpression;
+import co.kenrg.mega.frontend.ast.expression.ArrayLiteral;
+import co.kenrg.mega.frontend.ast.expression.ArrowFunctionExpression;
+import co.kenrg.mega.frontend.ast.expression.AssignmentExpression;
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.CallExpression;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.expression.IfExpression;
+import co.kenrg.mega.frontend.ast.expression.IndexExpression;
+import co.kenrg.mega.frontend.ast.expression.InfixExpression;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
+import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
+import co.kenrg.mega.frontend.ast.expression.Parameter;
+import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
+import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
+import co.kenrg.mega.frontend.ast.expression.RangeExpression;
+import co.kenrg.mega.frontend.ast.expression.StringInterpolationExpression;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.iface.Node;
+import co.kenrg.mega.frontend.ast.statement.ForLoopStatement;
+import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
+import co.kenrg.mega.frontend.typechecking.types.FunctionType;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+// A call which omits arguments for parameters with default values is compiled as a call to an overload of the function
+// specific to that pattern of omitted arguments; the overload takes only the supplied arguments, evaluates the default
+// values of the omitted ones inline, and invokes the function.
+public class DefaultArgumentOverloadCompiler {
+    private static final String OVERLOAD_INFIX = "$default$";
+    private static final String PROXY_SUFFIX = "$proxy";
+
+    // An exported function with k defaulted parameters has 2^k - 1 possible patterns of omitted arguments, so only
+    // functions with at most this many get an overload for every pattern
+    private static final int MAX_OVERLOADED_DEFAULTS = 3;
+
+    // Overloads are only compiled for the patterns of omitted arguments which are used in the module. An exported
+    // function may also be called from other modules though, so it gets an overload for every possible pattern if it
+    // has few enough defaulted parameters; otherwise, it gets a proxy which other modules call for any pattern (see
+    // usesProxy).
+    public static void compileDefaultArgumentOverloads(
+        String className,
+        ClassWriter cw,
+        FunctionType fnType,
+        String methodName,
+        boolean isExported,
+        Set<List<String>> usedPatterns,
+        Scope scope,
+        BiConsumer<Node, Scope> compileNode
+    ) {
+        List<String> defaultedParamNames = fnType.parameters.stream()
+            .filter(Parameter::hasDefaultValue)
+            .map(parameter -> parameter.ident.value)
+            .collect(toList());
+
+        Set<List<String>> patterns;
+        if (isExported && !usesProxy(fnType)) {
+            patterns = Sets.newLinkedHashSet();
+            for (Set<String> omitted : Sets.powerSet(Sets.newLinkedHashSet(defaultedParamNames))) {
+                if (!omitted.isEmpty()) {
+                    patterns.add(defaultedParamNames.stream().filter(omitted::contains).collect(toList()));
+                }
+            }
+        } else {
+            // The patterns were found by the called function's name, which may refer to a different function at some
+            // call-sites; any pattern which doesn't fit this function's signature must belong to some other function.
+            patterns = Sets.newLinkedHashSet(usedPatterns);
+            patterns.removeIf(omitted -> !defaultedParamNames.containsAll(omitted));
+        }
+
+        for (List<String> omittedParamNames : patterns) {
+            compileDefaultArgumentOverload(className, cw, fnType, methodName, omittedParamNames, scope, compileNode);
+        }
+        if (isExported && usesProxy(fnType)) {
+            compileDefaultArgumentProxy(className, cw, fnType, methodName, scope, compileNode);
+        }
+    }
+
+    // Whether calls from other modules which omit arguments go through the function's proxy, rather than an overload
+    static boolean usesProxy(FunctionType fnType) {
+        return fnType.parameters.stream().filter(Parameter::hasDefaultValue).count() > MAX_OVERLOADED_DEFAULTS;
+    }
+
+    // The proxy takes every parameter, plus a bitmask of the omitted ones (whose values are ignored), and evaluates the
+    // default values of the omitted parameters before invoking the function
+    private static void compileDefaultArgumentProxy(
+        String className,
+        ClassWriter cw,
+        FunctionType fnType,
+        String methodName,
+        Scope scope,
+        BiConsumer<Node, Scope> compileNode
+    ) {
+        FunctionType proxyType = getProxyType(fnType);
+        String proxyName = getProxyName(methodName);
+        String proxyDesc = jvmMethodDescriptor(proxyType, false);
+
+        int access = ACC_PUBLIC | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC;
+        MethodVisitor proxyWriter = cw.visitMethod(access, proxyName, proxyDesc, null, null);
+        proxyWriter.visitCode();
+
+        Scope proxyScope = scope.createMethodChild(new FocusedMethod(proxyWriter, null, null), proxyType.arity());
+        int bitmaskIdx = fnType.arity();
+
+        for (int i = 0; i < fnType.arity(); i++) {
+            Parameter parameter = fnType.parameters.get(i);
+            if (!parameter.hasDefaultValue()) {
+                continue;
+            }
+            MegaType paramType = parameter.getType();
+            assert paramType != null; // Should be populated in typechecking pass
+
+            Label supplied = new Label();
+            proxyWriter.visitVarInsn(ILOAD, bitmaskIdx);
+            proxyWriter.visitLdcInsn(1 << i);
+            proxyWriter.visitInsn(IAND);
+            proxyWriter.visitJumpInsn(IFEQ, supplied);
+
+            compileNode.accept(parameter.defaultValue, proxyScope);
+            if (paramType instanceof FunctionType) {
+                proxyWriter.visitTypeInsn(CHECKCAST, jvmInternalName(paramType));
+            }
+            proxyWriter.visitVarInsn(storeInsn(paramType), i);
+            proxyWriter.visitLabel(supplied);
+        }
+
+        for (int i = 0; i < fnType.arity(); i++) {
+            proxyWriter.visitVarInsn(loadInsn(fnType.paramTypes.get(i)), i);
+        }
+
+        String fnDesc = jvmMethodDescriptor(fnType, false);
+        proxyWriter.visitMethodInsn(INVOKESTATIC, className, methodName, fnDesc, false);
+        proxyWriter.visitInsn(OpcodeUtils.returnInsn(fnType.returnType));
+
+        proxyWriter.visitMaxs(-1, -1);
+        proxyWriter.visitEnd();
+    }
+
+    private static void compileDefaultArgumentOverload(
+        String className,
+        ClassWriter cw,
+        FunctionType fnType,
+        String methodName,
+        List<String> omittedParamNames,
+        Scope scope,
+        BiConsumer<Node, Scope> compileNode
+    ) {
+        FunctionType overloadType = getOverloadType(fnType, omittedParamNames);
+        String overloadName = getOverloadName(methodName, omittedParamNames);
+        String overloadDesc = jvmMethodDescriptor(overloadType, false);
+
+        int access = ACC_PUBLIC | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC;
+        MethodVisitor overloadWriter = cw.visitMethod(access, overloadName, overloadDesc, null, null);
+        overloadWriter.visitCode();
+
+        // Default values can't refer to the function's parameters, so the overload's parameters are left unnamed
+        Scope overloadScope = scope.createMethodChild(new FocusedMethod(overloadWriter, null, null), overloadType.arity());
+
+        int paramIdx = 0;
+        for (Parameter parameter : fnType.parameters) {
+            MegaType paramType = parameter.getType();
+            assert paramType != null; // Should be populated in typechecking pass
+
+            if (omittedParamNames.contains(parameter.ident.value)) {
+                compileNode.accept(parameter.defaultValue, overloadScope);
+                if (paramType instanceof FunctionType) {
+                    overloadWriter.visitTypeInsn(CHECKCAST, jvmInternalName(paramType));
+                }
+            } else {
+                overloadWriter.visitVarInsn(loadInsn(paramType), paramIdx++);
+            }
+        }
+
+        String fnDesc = jvmMethodDescriptor(fnType, false);
+        overloadWriter.visitMethodInsn(INVOKESTATIC, className, methodName, fnDesc, false);
+        overloadWriter.visitInsn(OpcodeUtils.returnInsn(fnType.returnType));
+
+        overloadWriter.visitMaxs(-1, -1);
+        overloadWriter.visitEnd();
+    }
+
+    static String getOverloadName(String methodName, List<String> omittedParamNames) {
+        return methodName + OVERLOAD_INFIX + String.join("$", omittedParamNames);
+    }
+
+    static String getProxyName(String methodName) {
+        return methodName + PROXY_SUFFIX;
+    }
+
+    static FunctionType getProxyType(FunctionType fnType) {
+        List<MegaType> paramTypes = Lists.newArrayList(fnType.paramTypes);
+        paramTypes.add(PrimitiveTypes.INTEGER);
+
+        return FunctionType.ofSignature(paramTypes, fnType.returnType);
+    }
+
+    // The arguments are as returned by CallExpression#getArgumentsInParameterOrder, with nulls in place of omitted arguments
+    static int getOmittedArgumentsBitmask(List<Expression> arguments) {
+        int bitmask = 0;
+        for (int i = 0; i < arguments.size(); i++) {
+            if (arguments.get(i) == null) {
+                bitmask |= 1 << i;
+            }
+        }
+        return bitmask;
+    }
+
+    static FunctionType getOverloadType(FunctionType fnType, List<String> omittedParamNames) {
+        List<MegaType> paramTypes = fnType.parameters.stream()
+            .filter(parameter -> !omittedParamNames.contains(parameter.ident.value))
+            .map(Parameter::getType)
+            .collect(toList());
+
+        return FunctionType.ofSignature(paramTypes, fnType.returnType);
+    }
+
+    // The arguments are as returned by CallExpression#getArgumentsInParameterOrder, with nulls in place of omitted arguments
+    static List<String> getOmittedParamNames(FunctionType fnType, List<Expression> arguments) {
+        return IntStream.range(0, arguments.size())
+            .filter(i -> arguments.get(i) == null)
+            .mapToObj(i -> fnType.parameters.get(i).ident.value)
+            .collect(toList());
+    }
+
+    /**
+     * Finds the patterns of omitted arguments used by calls within a module.
+     *
+     * @return the lists of omitted parameters' names (in parameter order), keyed by the name of the called function.
+     */
+    public static Map<String, Set<List<String>>> findOmittedArgumentPatterns(Node node) {
+        Map<String, Set<List<String>>> patterns = Maps.newHashMap();
+        findOmittedArgumentPatterns(node, patterns);
+        return patterns;
+    }
+
+    private static void findOmittedArgumentPatterns(Node node, Map<String, Set<List<String>>> patterns) {
+        if (node == null) {
+            return;
+        }
+
+        if (node instanceof Module) {
+            ((Module) node).statements.forEach(statement -> findOmittedArgumentPatterns(statement, patterns));
+        } else if (node instanceof FunctionDeclarationStatement) {
+            FunctionDeclarationStatement fnDecl = (FunctionDeclarationStatement) node;
+            fnDecl.parameters.forEach(parameter -> findOmittedArgumentPatterns(parameter.defaultValue, patterns));
+            findOmittedArgumentPatterns(fnDecl.body, patterns);
+        } else if (node instanceof ExpressionStatement) {
+            findOmittedArgumentPatterns(((ExpressionStatement) node).expression, patterns);
+        } else if (node instanceof ValStatement) {
+            findOmittedArgumentPatterns(((ValStatement) node).value, patterns);
+        } else if (node instanceof VarStatement) {
+            findOmittedArgumentPatterns(((VarStatement) node).value, patterns);
+        } else if (node instanceof ForLoopStatement) {
+            findOmittedArgumentPatterns(((ForLoopStatement) node).iteratee, patterns);
+            findOmittedArgumentPatterns(((ForLoopStatement) node).block, patterns);
+        } else if (node instanceof WhileLoopStatement) {
+            findOmittedArgumentPatterns(((WhileLoopStatement) node).condition, patterns);
+            findOmittedArgumentPatterns(((WhileLoopStatement) node).block, patterns);
+        } else if (node instanceof ParenthesizedExpression) {
+            findOmittedArgumentPatterns(((ParenthesizedExpression) node).expr, patterns);
+        } else if (node instanceof PrefixExpression) {
+            findOmittedArgumentPatterns(((PrefixExpression) node).expression, patterns);
+        } else if (node instanceof InfixExpression) {
+            findOmittedArgumentPatterns(((InfixExpression) node).left, patterns);
+            findOmittedArgumentPatterns(((InfixExpression) node).right, patterns);
+        } else if (node instanceof IfExpression) {
+            findOmittedArgumentPatterns(((IfExpression) node).condition, patterns);
+            findOmittedArgumentPatterns(((IfExpression) node).thenExpr, patterns);
+            findOmittedArgumentPatterns(((IfExpression) node).elseExpr, patterns);
+        } else if (node instanceof MatchExpression) {
+            findOmittedArgumentPatterns(((MatchExpression) node).subject, patterns);
+            ((MatchExpression) node).cases.forEach(matchCase -> findOmittedArgumentPatterns(matchCase.body, patterns));
+            findOmittedArgumentPatterns(((MatchExpression) node).elseExpr, patterns);
+        } else if (node instanceof BlockExpression) {
+            ((BlockExpression) node).statements.forEach(statement -> findOmittedArgumentPatterns(statement, patterns));
+        } else if (node instanceof StringInterpolationExpression) {
+            ((StringInterpolationExpression) node).expressions.forEach(expr -> findOmittedArgumentPatterns(expr, patterns));
+        } else if (node instanceof ArrayLiteral) {
+            ((ArrayLiteral) node).elements.forEach(element -> findOmittedArgumentPatterns(element, patterns));
+        } else if (node instanceof ObjectLiteral) {
+            ((ObjectLiteral) node).pairs.values().forEach(value -> findOmittedArgumentPatterns(value, patterns));
+        } else if (node instanceof AssignmentExpression) {
+            findOmittedArgumentPatterns(((AssignmentExpression) node).right, patterns);
+        } else if (node instanceof RangeExpression) {
+            findOmittedArgumentPatterns(((RangeExpression) node).leftBound, patterns);
+            findOmittedArgumentPatterns(((RangeExpression) node).rightBound, patterns);
+        } else if (node instanceof IndexExpression) {
+            findOmittedArgumentPatterns(((IndexExpression) node).target, patterns);
+            findOmittedArgumentPatterns(((IndexExpression) node).index, patterns);
+        } else if (node instanceof AccessorExpression) {
+            findOmittedArgumentPatterns(((AccessorExpression) node).target, patterns);
+        } else if (node instanceof ArrowFunctionExpression) {
+            findOmittedArgumentPatterns(((ArrowFunctionExpression) node).body, patterns);
+        } else if (node instanceof CallExpression) {
+            CallExpression call = (CallExpression) node;
+            Expression target = call.getTarget();
+            FunctionType fnType = (FunctionType) target.getType();
+            assert fnType != null; // Should be populated in typechecking pass
+
+            List<Expression> arguments = call.getArgumentsInParameterOrder(fnType);
+            List<String> omittedParamNames = getOmittedParamNames(fnType, arguments);
+            if (!omittedParamNames.isEmpty() && target instanceof Identifier) {
+                patterns.computeIfAbsent(((Identifier) target).value, name -> Sets.newLinkedHashSet()).add(omittedParamNames);
+            }
+
+            findOmittedArgumentPatterns(target, patterns);
+            arguments.forEach(argument -> findOmittedArgumentPatterns(argument, patterns));
+        }
+    }
+}
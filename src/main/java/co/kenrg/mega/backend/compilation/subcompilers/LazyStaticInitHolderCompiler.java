@@ -0,0 +1,55 @@
+package co.kenrg.mega.backend.compilation.subcompilers;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.optimization.LazyStaticInit.getInitMethodName;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.PUTSTATIC;
+import static org.objectweb.asm.Opcodes.RETURN;
+
+import java.util.List;
+
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
+import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import org.apache.commons.lang3.tuple.Pair;
+
+// The holder class of a lazily-initialized val (see LazyStaticInit) has a single static final field, named after the
+// val, which its <clinit> populates by calling the val's init method on the outer class. The init method (rather than
+// the holder) contains the initializer's code, so that it can access the outer class's private members.
+public class LazyStaticInitHolderCompiler {
+    public static List<Pair<String, byte[]>> compileHolderClass(
+        String outerClassName,
+        String holderClassName,
+        String bindingName,
+        MegaType bindingType,
+        boolean isExported,
+        TypeEnvironment typeEnv,
+        CompilerOptions options,
+        ClassHierarchy classHierarchy,
+        int access
+    ) {
+        Compiler compiler = new Compiler(holderClassName, null, "java/lang/Object", null, typeEnv, options, classHierarchy);
+        compiler.cw.visitInnerClass(holderClassName, outerClassName, holderClassName.substring(outerClassName.length() + 1), access);
+
+        String jvmDescriptor = jvmDescriptor(bindingType, false);
+        int fieldAccess = ACC_STATIC | ACC_FINAL; // Package-private if not exported, so the outer class can read it
+        if (isExported) {
+            fieldAccess = fieldAccess | ACC_PUBLIC;
+        }
+        compiler.cw.visitField(fieldAccess, bindingName, jvmDescriptor, null, null);
+
+        compiler.clinitWriter.visitMethodInsn(INVOKESTATIC, outerClassName, getInitMethodName(bindingName), "()" + jvmDescriptor, false);
+        compiler.clinitWriter.visitFieldInsn(PUTSTATIC, holderClassName, bindingName, jvmDescriptor);
+        compiler.clinitWriter.visitInsn(RETURN);
+        compiler.clinitWriter.visitMaxs(-1, -1);
+        compiler.clinitWriter.visitEnd();
+
+        compiler.cw.visitEnd();
+        return compiler.results();
+    }
+}
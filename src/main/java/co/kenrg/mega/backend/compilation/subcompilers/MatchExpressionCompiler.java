@@ -0,0 +1,212 @@
+package co.kenrg.mega.backend.compilation.subcompilers;
+
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.FCMPL;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.POP;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+
+import co.kenrg.mega.backend.compilation.scope.Scope;
+import co.kenrg.mega.frontend.ast.expression.BooleanLiteral;
+import co.kenrg.mega.frontend.ast.expression.FloatLiteral;
+import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.MatchCase;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
+import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
+import co.kenrg.mega.frontend.ast.expression.StringLiteral;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.Node;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Represents a "sub-compiler" which is specialized to generate JVM bytecode for Match Expressions. Since a match's
+ * patterns are always literals, the case to run is chosen by a single dispatch on the subject, rather than by a chain
+ * of comparisons:
+ * <ul>
+ * <li>Int (and Bool) subjects are switched on directly, via a tableswitch if the patterns' values are dense enough, or
+ * a lookupswitch otherwise.</li>
+ * <li>String subjects are switched on by their hash code, and then compared to the patterns with that hash code.</li>
+ * <li>Float subjects are compared to each pattern in turn, since there's no switch over floats.</li>
+ * </ul>
+ * If several cases have patterns with the same value, the first of them is chosen, as in a chain of if-expressions.
+ */
+public class MatchExpressionCompiler {
+
+    public static void compileMatchExpression(MatchExpression node, Scope scope, Consumer<Node> compileNode) {
+        MethodVisitor writer = scope.focusedMethod.writer;
+
+        MegaType subjectType = node.subject.getType();
+        assert subjectType != null; // Should be populated in typechecking pass
+
+        Label endLabel = new Label();
+        Label elseLabel = node.elseExpr == null ? endLabel : new Label();
+
+        List<Label> caseLabels = Lists.newArrayList();
+        Map<Object, Label> labelsByValue = Maps.newLinkedHashMap();
+        for (MatchCase matchCase : node.cases) {
+            Label caseLabel = new Label();
+            caseLabels.add(caseLabel);
+            for (Expression pattern : matchCase.patterns) {
+                labelsByValue.putIfAbsent(getPatternValue(pattern), caseLabel);
+            }
+        }
+
+        compileNode.accept(node.subject);
+        if (subjectType == PrimitiveTypes.INTEGER || subjectType == PrimitiveTypes.BOOLEAN) {
+            Map<Integer, Label> labelsByKey = Maps.newHashMap();
+            labelsByValue.forEach((value, label) -> labelsByKey.put((Integer) value, label));
+            compileSwitch(labelsByKey, elseLabel, writer);
+        } else if (subjectType == PrimitiveTypes.STRING) {
+            compileStringDispatch(labelsByValue, elseLabel, writer);
+        } else {
+            compileFloatDispatch(labelsByValue, elseLabel, writer);
+        }
+
+        for (int i = 0; i < node.cases.size(); i++) {
+            writer.visitLabel(caseLabels.get(i));
+
+            Expression body = node.cases.get(i).body;
+            compileNode.accept(body);
+            if (node.elseExpr == null && body.getType() != PrimitiveTypes.UNIT) {
+                writer.visitInsn(POP); // Without an else, the match-expression's value is Unit
+            }
+            writer.visitJumpInsn(GOTO, endLabel);
+        }
+
+        if (node.elseExpr != null) {
+            writer.visitLabel(elseLabel);
+            compileNode.accept(node.elseExpr);
+        }
+
+        writer.visitLabel(endLabel);
+    }
+
+    // A pattern's value is that of its literal: an Integer, Float, or String (Bools are Integers, as they are on the JVM)
+    private static Object getPatternValue(Expression pattern) {
+        if (pattern instanceof IntegerLiteral) {
+            return ((IntegerLiteral) pattern).value;
+        } else if (pattern instanceof FloatLiteral) {
+            return ((FloatLiteral) pattern).value;
+        } else if (pattern instanceof BooleanLiteral) {
+            return ((BooleanLiteral) pattern).value ? 1 : 0;
+        } else if (pattern instanceof StringLiteral) {
+            return ((StringLiteral) pattern).value;
+        } else if (pattern instanceof PrefixExpression) {
+            Object value = getPatternValue(((PrefixExpression) pattern).expression);
+            if (value instanceof Integer) {
+                return -((Integer) value);
+            }
+            return -((Float) value);
+        }
+        throw new IllegalStateException("Match patterns must be literals, saw: " + pattern.repr(false, 0));
+    }
+
+    // Consumes an int from the stack, and jumps to its label (or the default label, if it has none). The choice between
+    // a tableswitch and a lookupswitch weighs their size against their (relative) speed, as javac does.
+    private static void compileSwitch(Map<Integer, Label> labelsByKey, Label defaultLabel, MethodVisitor writer) {
+        if (labelsByKey.isEmpty()) {
+            writer.visitInsn(POP);
+            writer.visitJumpInsn(GOTO, defaultLabel);
+            return;
+        }
+
+        int[] keys = labelsByKey.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int min = keys[0];
+        int max = keys[keys.length - 1];
+
+        if (isDenseEnoughForTableSwitch(min, max, keys.length)) {
+            Label[] labels = new Label[max - min + 1];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = labelsByKey.getOrDefault(min + i, defaultLabel);
+            }
+            writer.visitTableSwitchInsn(min, max, defaultLabel, labels);
+        } else {
+            Label[] labels = new Label[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                labels[i] = labelsByKey.get(keys[i]);
+            }
+            writer.visitLookupSwitchInsn(defaultLabel, keys, labels);
+        }
+    }
+
+    private static boolean isDenseEnoughForTableSwitch(int min, int max, int numKeys) {
+        long tableSpaceCost = 4 + ((long) max - min + 1);
+        long tableTimeCost = 3;
+        long lookupSpaceCost = 3 + 2 * (long) numKeys;
+        long lookupTimeCost = numKeys;
+        return tableSpaceCost + 3 * tableTimeCost <= lookupSpaceCost + 3 * lookupTimeCost;
+    }
+
+    // Consumes a String from the stack. The String is kept on the stack while it's compared to the patterns whose hash
+    // codes match its own, so each case (and the default) is reached via a label which pops it first.
+    private static void compileStringDispatch(Map<Object, Label> labelsByValue, Label defaultLabel, MethodVisitor writer) {
+        Label popThenDefault = new Label();
+        Map<Label, Label> popThenCaseLabels = Maps.newLinkedHashMap();
+
+        Map<Integer, List<Entry<Object, Label>>> patternsByHashCode = Maps.newLinkedHashMap();
+        for (Entry<Object, Label> entry : labelsByValue.entrySet()) {
+            patternsByHashCode.computeIfAbsent(entry.getKey().hashCode(), hashCode -> Lists.newArrayList()).add(entry);
+        }
+
+        Map<Integer, Label> hashCodeLabels = Maps.newHashMap();
+        patternsByHashCode.keySet().forEach(hashCode -> hashCodeLabels.put(hashCode, new Label()));
+
+        writer.visitInsn(DUP);
+        writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+        compileSwitch(hashCodeLabels, popThenDefault, writer);
+
+        for (Entry<Integer, List<Entry<Object, Label>>> hashCodeAndPatterns : patternsByHashCode.entrySet()) {
+            writer.visitLabel(hashCodeLabels.get(hashCodeAndPatterns.getKey()));
+            for (Entry<Object, Label> pattern : hashCodeAndPatterns.getValue()) {
+                writer.visitInsn(DUP);
+                writer.visitLdcInsn(pattern.getKey());
+                writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+                writer.visitJumpInsn(IFNE, popThenCaseLabels.computeIfAbsent(pattern.getValue(), caseLabel -> new Label()));
+            }
+            writer.visitJumpInsn(GOTO, popThenDefault);
+        }
+
+        compilePopThenJumps(popThenCaseLabels, popThenDefault, defaultLabel, writer);
+    }
+
+    // Consumes a Float from the stack, comparing it to each pattern in turn (like the == operator, via FCMPL); as with
+    // Strings, the subject is kept on the stack while it's compared.
+    private static void compileFloatDispatch(Map<Object, Label> labelsByValue, Label defaultLabel, MethodVisitor writer) {
+        Label popThenDefault = new Label();
+        Map<Label, Label> popThenCaseLabels = Maps.newLinkedHashMap();
+
+        for (Entry<Object, Label> pattern : labelsByValue.entrySet()) {
+            writer.visitInsn(DUP);
+            writer.visitLdcInsn(pattern.getKey());
+            writer.visitInsn(FCMPL);
+            writer.visitJumpInsn(IFEQ, popThenCaseLabels.computeIfAbsent(pattern.getValue(), caseLabel -> new Label()));
+        }
+        writer.visitJumpInsn(GOTO, popThenDefault);
+
+        compilePopThenJumps(popThenCaseLabels, popThenDefault, defaultLabel, writer);
+    }
+
+    private static void compilePopThenJumps(Map<Label, Label> popThenCaseLabels, Label popThenDefault, Label defaultLabel, MethodVisitor writer) {
+        for (Entry<Label, Label> caseLabelAndPopThenCaseLabel : popThenCaseLabels.entrySet()) {
+            writer.visitLabel(caseLabelAndPopThenCaseLabel.getValue());
+            writer.visitInsn(POP);
+            writer.visitJumpInsn(GOTO, caseLabelAndPopThenCaseLabel.getKey());
+        }
+
+        writer.visitLabel(popThenDefault);
+        writer.visitInsn(POP);
+        writer.visitJumpInsn(GOTO, defaultLabel);
+    }
+}
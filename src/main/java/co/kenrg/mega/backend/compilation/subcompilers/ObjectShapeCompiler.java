@@ -0,0 +1,147 @@
+package co.kenrg.mega.backend.compilation.subcompilers;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getShapeClassName;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getShapeProperties;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isPrimitive;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.subcompilers.PrimitiveBoxingUnboxingCompiler.compileBoxPrimitiveType;
+import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.loadInsn;
+import static java.util.stream.Collectors.joining;
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PROTECTED;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.PUTSTATIC;
+import static org.objectweb.asm.Opcodes.RETURN;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
+import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
+import co.kenrg.mega.backend.compilation.StdLib;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import co.kenrg.mega.frontend.typechecking.types.ObjectType;
+import org.apache.commons.lang3.tuple.Pair;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+// Object literals are compiled to instances of a generated "shape" class: a final class with one public final field per
+// property (in canonical order; see TypesAndSignatures#getShapeProperties), extending mega.lang.Shape, which provides a
+// read-only Map view over those fields for dynamic consumers.
+public class ObjectShapeCompiler {
+    private static final String PROPERTY_NAMES_FIELD = "$propertyNames";
+
+    public static String getShapeInitMethodDesc(ObjectType type) {
+        return getShapeProperties(type).stream()
+            .map(prop -> jvmDescriptor(prop.getValue(), false))
+            .collect(joining("", "(", ")V"));
+    }
+
+    public static List<Pair<String, byte[]>> compileShapeClass(ObjectType type, TypeEnvironment typeEnv, CompilerOptions options, ClassHierarchy classHierarchy) {
+        String shapeClassName = getShapeClassName(type);
+        List<Entry<String, MegaType>> properties = getShapeProperties(type);
+
+        Compiler compiler = new Compiler(shapeClassName, null, StdLib.Shape, null, typeEnv, options, classHierarchy);
+
+        writeFieldsAndClinitMethod(shapeClassName, compiler, properties);
+        writeInitMethod(shapeClassName, compiler, type, properties);
+        writeGetPropertyMethod(shapeClassName, compiler, properties);
+
+        compiler.cw.visitEnd();
+        return compiler.results();
+    }
+
+    private static void writeFieldsAndClinitMethod(String shapeClassName, Compiler compiler, List<Entry<String, MegaType>> properties) {
+        compiler.cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, PROPERTY_NAMES_FIELD, "[Ljava/lang/String;", null, null);
+        for (Entry<String, MegaType> prop : properties) {
+            compiler.cw.visitField(ACC_PUBLIC | ACC_FINAL, prop.getKey(), jvmDescriptor(prop.getValue(), false), null, null);
+        }
+
+        compiler.clinitWriter.visitLdcInsn(properties.size());
+        compiler.clinitWriter.visitTypeInsn(ANEWARRAY, "java/lang/String");
+        for (int i = 0; i < properties.size(); i++) {
+            compiler.clinitWriter.visitInsn(DUP);
+            compiler.clinitWriter.visitLdcInsn(i);
+            compiler.clinitWriter.visitLdcInsn(properties.get(i).getKey());
+            compiler.clinitWriter.visitInsn(AASTORE);
+        }
+        compiler.clinitWriter.visitFieldInsn(PUTSTATIC, shapeClassName, PROPERTY_NAMES_FIELD, "[Ljava/lang/String;");
+
+        compiler.clinitWriter.visitInsn(RETURN);
+        compiler.clinitWriter.visitMaxs(-1, -1);
+        compiler.clinitWriter.visitEnd();
+    }
+
+    private static void writeInitMethod(String shapeClassName, Compiler compiler, ObjectType type, List<Entry<String, MegaType>> properties) {
+        MethodVisitor initWriter = compiler.cw.visitMethod(ACC_PUBLIC, "<init>", getShapeInitMethodDesc(type), null, null);
+        initWriter.visitCode();
+        initWriter.visitVarInsn(ALOAD, 0);
+        initWriter.visitFieldInsn(GETSTATIC, shapeClassName, PROPERTY_NAMES_FIELD, "[Ljava/lang/String;");
+        initWriter.visitMethodInsn(INVOKESPECIAL, StdLib.Shape, "<init>", "([Ljava/lang/String;)V", false);
+
+        int index = 1;
+        for (Entry<String, MegaType> prop : properties) {
+            MegaType propType = prop.getValue();
+
+            initWriter.visitVarInsn(ALOAD, 0);
+            initWriter.visitVarInsn(loadInsn(propType), index);
+            initWriter.visitFieldInsn(PUTFIELD, shapeClassName, prop.getKey(), jvmDescriptor(propType, false));
+            index++;
+        }
+
+        initWriter.visitInsn(RETURN);
+        initWriter.visitMaxs(-1, -1);
+        initWriter.visitEnd();
+    }
+
+    private static void writeGetPropertyMethod(String shapeClassName, Compiler compiler, List<Entry<String, MegaType>> properties) {
+        MethodVisitor getPropertyWriter = compiler.cw.visitMethod(ACC_PROTECTED, "getProperty", "(I)Ljava/lang/Object;", null, null);
+        getPropertyWriter.visitCode();
+
+        Label defaultLabel = new Label();
+        if (!properties.isEmpty()) {
+            Label[] propLabels = new Label[properties.size()];
+            for (int i = 0; i < propLabels.length; i++) {
+                propLabels[i] = new Label();
+            }
+
+            getPropertyWriter.visitVarInsn(ILOAD, 1);
+            getPropertyWriter.visitTableSwitchInsn(0, propLabels.length - 1, defaultLabel, propLabels);
+
+            for (int i = 0; i < propLabels.length; i++) {
+                Entry<String, MegaType> prop = properties.get(i);
+                MegaType propType = prop.getValue();
+
+                getPropertyWriter.visitLabel(propLabels[i]);
+                getPropertyWriter.visitVarInsn(ALOAD, 0);
+                getPropertyWriter.visitFieldInsn(GETFIELD, shapeClassName, prop.getKey(), jvmDescriptor(propType, false));
+                if (isPrimitive(propType)) {
+                    compileBoxPrimitiveType(propType, getPropertyWriter);
+                }
+                getPropertyWriter.visitInsn(ARETURN);
+            }
+        }
+
+        getPropertyWriter.visitLabel(defaultLabel);
+        getPropertyWriter.visitInsn(ACONST_NULL);
+        getPropertyWriter.visitInsn(ARETURN);
+
+        getPropertyWriter.visitMaxs(-1, -1);
+        getPropertyWriter.visitEnd();
+    }
+}
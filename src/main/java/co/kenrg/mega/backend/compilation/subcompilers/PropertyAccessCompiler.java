@@ -0,0 +1,44 @@
+package co.kenrg.mega.backend.compilation.subcompilers;
+
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isPrimitive;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmInternalName;
+import static co.kenrg.mega.backend.compilation.subcompilers.PrimitiveBoxingUnboxingCompiler.compileUnboxPrimitiveType;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+
+import co.kenrg.mega.backend.compilation.CompilerOptions;
+import co.kenrg.mega.backend.compilation.StdLib;
+import co.kenrg.mega.frontend.typechecking.types.MegaType;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+
+// Properties of values of structural types (see TypesAndSignatures#isStructural) are read via an invokedynamic call
+// site per access, whose bootstrap (mega.lang.PropertyAccess) caches the getters of the receiver classes seen at that
+// site, so a site which only ever sees one or a few classes costs a class check and a field read.
+public class PropertyAccessCompiler {
+    private static final Handle PROPERTY_ACCESS_BOOTSTRAP = new Handle(
+        H_INVOKESTATIC,
+        StdLib.PropertyAccess,
+        "bootstrap",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;",
+        false
+    );
+
+    // Expects the receiver to be on the stack
+    public static void compileStructuralPropertyRead(String propName, MegaType propType, CompilerOptions options, MethodVisitor writer) {
+        if (options.useIndyPropertyAccess()) {
+            String callSiteDesc = String.format("(Ljava/lang/Object;)%s", jvmDescriptor(propType, false));
+            writer.visitInvokeDynamicInsn(propName, callSiteDesc, PROPERTY_ACCESS_BOOTSTRAP);
+            return;
+        }
+
+        writer.visitLdcInsn(propName);
+        writer.visitMethodInsn(INVOKESTATIC, StdLib.PropertyAccess, "getProperty", "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+        writer.visitTypeInsn(CHECKCAST, jvmInternalName(propType));
+        if (isPrimitive(propType)) {
+            compileUnboxPrimitiveType(propType, writer);
+        }
+    }
+}
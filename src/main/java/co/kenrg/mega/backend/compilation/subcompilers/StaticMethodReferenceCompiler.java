@@ -13,7 +13,9 @@ import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 
 import java.util.List;
 
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
 import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
 import co.kenrg.mega.backend.compilation.scope.Binding;
 import co.kenrg.mega.backend.compilation.scope.BindingTypes;
 import co.kenrg.mega.backend.compilation.scope.Context;
@@ -32,24 +34,27 @@ public class StaticMethodReferenceCompiler {
         String lambdaName,
         String innerClassName,
         FunctionType methodType,
+        String methodOwner,
         String methodName,
         TypeEnvironment typeEnv,
+        CompilerOptions options,
+        ClassHierarchy classHierarchy,
         Context context,
         int access
     ) {
-        Compiler compiler = getCompiler(innerClassName, methodType, typeEnv, context);
+        Compiler compiler = getCompiler(innerClassName, methodType, typeEnv, options, classHierarchy, context);
         compiler.cw.visitInnerClass(innerClassName, outerClassName, lambdaName, access);
 
         writeClinitMethod(compiler, innerClassName);
         writeInitMethod(compiler, methodType.arity());
         writeIfaceInvokeMethod(compiler, innerClassName, methodType);
-        writeActualInvokeMethod(compiler, methodType, outerClassName, innerClassName, methodName);
+        writeActualInvokeMethod(compiler, methodType, methodOwner, innerClassName, methodName);
 
         compiler.cw.visitEnd();
         return compiler.results();
     }
 
-    private static void writeActualInvokeMethod(Compiler compiler, FunctionType methodType, String outerClassName, String innerClassName, String methodName) {
+    private static void writeActualInvokeMethod(Compiler compiler, FunctionType methodType, String methodOwner, String innerClassName, String methodName) {
         MethodVisitor invokeMethodWriter = compiler.cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "invoke", getInvokeMethodDesc(methodType), null, null);
         invokeMethodWriter.visitCode();
 
@@ -68,7 +73,7 @@ public class StaticMethodReferenceCompiler {
         }
 
         String methodDesc = jvmMethodDescriptor(methodType, false);
-        invokeMethodWriter.visitMethodInsn(INVOKESTATIC, outerClassName, methodName, methodDesc, false);
+        invokeMethodWriter.visitMethodInsn(INVOKESTATIC, methodOwner, methodName, methodDesc, false);
         invokeMethodWriter.visitInsn(OpcodeUtils.returnInsn(methodType.returnType));
 
         invokeMethodWriter.visitMaxs(2, 2);
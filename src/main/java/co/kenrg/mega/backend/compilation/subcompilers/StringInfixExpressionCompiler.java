@@ -1,25 +1,56 @@
 package co.kenrg.mega.backend.compilation.subcompilers;
 
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isPrimitive;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
 import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.ICONST_0;
 import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
 import static org.objectweb.asm.Opcodes.NEW;
 
+import java.util.List;
 import java.util.function.Consumer;
 
+import co.kenrg.mega.backend.compilation.CompilerOptions;
 import co.kenrg.mega.backend.compilation.scope.Scope;
 import co.kenrg.mega.backend.compilation.StdLib;
 import co.kenrg.mega.frontend.ast.expression.InfixExpression;
+import co.kenrg.mega.frontend.ast.expression.StringInterpolationExpression;
+import co.kenrg.mega.frontend.ast.expression.StringLiteral;
 import co.kenrg.mega.frontend.ast.iface.Expression;
 import co.kenrg.mega.frontend.ast.iface.Node;
 import co.kenrg.mega.frontend.typechecking.types.ArrayType;
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
 import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.Lists;
+import org.objectweb.asm.Handle;
 
 public class StringInfixExpressionCompiler {
-    public static void compileStringConcatenation(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
+    private static final Handle STRING_CONCAT_FACTORY = new Handle(
+        H_INVOKESTATIC,
+        "java/lang/invoke/StringConcatFactory",
+        "makeConcatWithConstants",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;",
+        false
+    );
+
+    // StringConcatFactory accepts at most 200 argument slots per call site; one slot is reserved for carrying over the
+    // result of the previous call site when a chain has to be split.
+    private static final int MAX_CONCAT_ARGS = 199;
+
+    private static final char TAG_ARG = '\u0001';
+    private static final char TAG_CONST = '\u0002';
+
+    private static final int INTERPOLATED_VALUE_SIZE_HINT = 16;
+
+    public static void compileStringConcatenation(InfixExpression node, Scope scope, CompilerOptions options, Consumer<Node> compileNode) {
+        if (options.useIndyStringConcat()) {
+            compileIndyStringConcatenation(node, scope, compileNode);
+            return;
+        }
+
         scope.focusedMethod.writer.visitTypeInsn(NEW, "java/lang/StringBuilder");
         scope.focusedMethod.writer.visitInsn(DUP);
         scope.focusedMethod.writer.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
@@ -39,19 +70,132 @@ public class StringInfixExpressionCompiler {
             return;
         }
 
+        String operandDesc = compileConcatOperand(node, scope, compileNode);
+        String signature = String.format("(%s)Ljava/lang/StringBuilder;", operandDesc);
+        scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", signature, false);
+    }
+
+    // Pushes the value of a concatenation operand, returning the descriptor of the value on the stack. Arrays are
+    // converted to their string representations first.
+    private static String compileConcatOperand(Node node, Scope scope, Consumer<Node> compileNode) {
+        MegaType type = node.getType();
+        assert type != null; // Populated by typechecker pass
+
         compileNode.accept(node);
         if (new ArrayType(PrimitiveTypes.ANY).isEquivalentTo(type)) {
-            String signature = "([Ljava/lang/Object;)Ljava/lang/String;";
+            MegaType elType = ((ArrayType) type).typeArg;
+            String arrayDesc = isPrimitive(elType) ? jvmDescriptor(type, false) : "[Ljava/lang/Object;";
+            String signature = String.format("(%s)Ljava/lang/String;", arrayDesc);
             scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, StdLib.Collections.Arrays, "toString", signature, false);
-            scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
-        } else {
-            String jvmDescriptor = jvmDescriptor(type, false);
-            String signature = String.format("(%s)Ljava/lang/StringBuilder;", jvmDescriptor);
-            scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", signature, false);
+            return "Ljava/lang/String;";
+        }
+        return isPrimitive(type) || type == PrimitiveTypes.STRING
+            ? jvmDescriptor(type, false)
+            : "Ljava/lang/Object;";
+    }
+
+    private static void collectConcatOperands(Node node, List<Node> operands) {
+        if (node instanceof InfixExpression && ((InfixExpression) node).operator.equals("+") && node.getType() == PrimitiveTypes.STRING) {
+            collectConcatOperands(((InfixExpression) node).left, operands);
+            collectConcatOperands(((InfixExpression) node).right, operands);
+            return;
+        }
+        operands.add(node);
+    }
+
+    // Compiles the whole (flattened) concatenation chain into a single StringConcatFactory call site. String literals
+    // are folded into the recipe, rather than being passed as arguments.
+    private static void compileIndyStringConcatenation(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
+        List<Node> operands = Lists.newArrayList();
+        collectConcatOperands(node, operands);
+
+        List<Object> parts = Lists.newArrayListWithCapacity(operands.size());
+        for (Node operand : operands) {
+            parts.add(operand instanceof StringLiteral ? ((StringLiteral) operand).value : operand);
+        }
+        compileIndyConcatParts(parts, scope, compileNode);
+    }
+
+    // Each part is either a String constant or a Node whose value is to be pushed. Constants which would collide with
+    // the recipe's tag characters are passed as arguments instead.
+    private static void compileIndyConcatParts(List<Object> parts, Scope scope, Consumer<Node> compileNode) {
+        StringBuilder recipe = new StringBuilder();
+        StringBuilder argDescs = new StringBuilder();
+        int numArgs = 0;
+        for (Object part : parts) {
+            if (part instanceof String) {
+                String value = (String) part;
+                if (value.indexOf(TAG_ARG) == -1 && value.indexOf(TAG_CONST) == -1) {
+                    recipe.append(value);
+                    continue;
+                }
+            }
+
+            if (numArgs == MAX_CONCAT_ARGS) {
+                writeConcatCallSite(recipe.toString(), argDescs.toString(), scope);
+                recipe.setLength(0);
+                argDescs.setLength(0);
+                recipe.append(TAG_ARG);
+                argDescs.append("Ljava/lang/String;");
+                numArgs = 1;
+            }
+
+            if (part instanceof String) {
+                scope.focusedMethod.writer.visitLdcInsn(part);
+                argDescs.append("Ljava/lang/String;");
+            } else {
+                argDescs.append(compileConcatOperand((Node) part, scope, compileNode));
+            }
+            recipe.append(TAG_ARG);
+            numArgs++;
+        }
+        writeConcatCallSite(recipe.toString(), argDescs.toString(), scope);
+    }
+
+    private static void writeConcatCallSite(String recipe, String argDescs, Scope scope) {
+        String desc = String.format("(%s)Ljava/lang/String;", argDescs);
+        scope.focusedMethod.writer.visitInvokeDynamicInsn("makeConcatWithConstants", desc, STRING_CONCAT_FACTORY, recipe);
+    }
+
+    public static void compileStringInterpolation(StringInterpolationExpression node, Scope scope, CompilerOptions options, Consumer<Node> compileNode) {
+        if (options.useIndyStringConcat()) {
+            List<Object> parts = Lists.newArrayListWithCapacity(node.segments.size() + node.expressions.size());
+            for (int i = 0; i < node.expressions.size(); i++) {
+                parts.add(node.segments.get(i));
+                parts.add(node.expressions.get(i));
+            }
+            parts.add(node.segments.get(node.segments.size() - 1));
+            compileIndyConcatParts(parts, scope, compileNode);
+            return;
+        }
+
+        // Presize the builder to fit the literal segments plus a modest allowance per interpolated value, so that
+        // typical interpolations never need to grow the underlying buffer.
+        int literalLength = node.segments.stream().mapToInt(String::length).sum();
+        int capacity = literalLength + INTERPOLATED_VALUE_SIZE_HINT * node.expressions.size();
+
+        scope.focusedMethod.writer.visitTypeInsn(NEW, "java/lang/StringBuilder");
+        scope.focusedMethod.writer.visitInsn(DUP);
+        scope.focusedMethod.writer.visitLdcInsn(capacity);
+        scope.focusedMethod.writer.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "(I)V", false);
+
+        for (int i = 0; i < node.segments.size(); i++) {
+            String segment = node.segments.get(i);
+            if (!segment.isEmpty()) {
+                scope.focusedMethod.writer.visitLdcInsn(segment);
+                scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+            }
+            if (i < node.expressions.size()) {
+                String operandDesc = compileConcatOperand(node.expressions.get(i), scope, compileNode);
+                String signature = String.format("(%s)Ljava/lang/StringBuilder;", operandDesc);
+                scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", signature, false);
+            }
         }
+
+        scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
     }
 
-    public static void compileStringRepetition(InfixExpression node, Scope scope, Consumer<Node> compileNode) {
+    public static void compileStringRepetition(InfixExpression node, Scope scope, CompilerOptions options, Consumer<Node> compileNode) {
         Expression strExpr;
         Expression intExpr;
         if (node.left.getType() == PrimitiveTypes.INTEGER) {
@@ -63,6 +207,15 @@ public class StringInfixExpressionCompiler {
         }
         compileNode.accept(strExpr);
         compileNode.accept(intExpr);
+
+        if (options.useStringRepeat()) {
+            // Unlike String#repeat, repeating a string a negative number of times yields the empty string
+            scope.focusedMethod.writer.visitInsn(ICONST_0);
+            scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "max", "(II)I", false);
+            scope.focusedMethod.writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "repeat", "(I)Ljava/lang/String;", false);
+            return;
+        }
+
         String signature = "(Ljava/lang/String;I)Ljava/lang/String;";
         scope.focusedMethod.writer.visitMethodInsn(INVOKESTATIC, StdLib.Strings, "repeat", signature, false);
     }
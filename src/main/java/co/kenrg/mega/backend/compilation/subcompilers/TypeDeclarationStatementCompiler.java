@@ -3,6 +3,7 @@ package co.kenrg.mega.backend.compilation.subcompilers;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.getInternalName;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.isPrimitive;
 import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmDescriptor;
+import static co.kenrg.mega.backend.compilation.TypesAndSignatures.jvmInternalName;
 import static co.kenrg.mega.backend.compilation.util.OpcodeUtils.loadInsn;
 import static java.util.stream.Collectors.joining;
 import static org.objectweb.asm.Opcodes.ACC_FINAL;
@@ -38,7 +39,9 @@ import static org.objectweb.asm.Opcodes.RETURN;
 import java.util.List;
 import java.util.Map.Entry;
 
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
 import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
 import co.kenrg.mega.backend.compilation.util.OpcodeUtils;
 import co.kenrg.mega.frontend.ast.statement.TypeDeclarationStatement;
 import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
@@ -59,6 +62,8 @@ public class TypeDeclarationStatementCompiler {
         String innerClassName,
         TypeDeclarationStatement node,
         TypeEnvironment typeEnv,
+        CompilerOptions options,
+        ClassHierarchy classHierarchy,
         int access
     ) {
         String typeClassName = node.typeName.value;
@@ -67,7 +72,7 @@ public class TypeDeclarationStatementCompiler {
             // Don't generate classes for alias types
             return Lists.newArrayList();
         }
-        Compiler compiler = new Compiler(innerClassName, null, getInternalName(Object.class), null, typeEnv);
+        Compiler compiler = new Compiler(innerClassName, null, getInternalName(Object.class), null, typeEnv, options, classHierarchy);
         compiler.cw.visitInnerClass(innerClassName, outerClassName, typeClassName, access);
 
         StructType structType = (StructType) type;
@@ -179,10 +184,12 @@ public class TypeDeclarationStatementCompiler {
                 equalsWriter.visitInsn(FCMPL);
                 equalsWriter.visitJumpInsn(IFNE, falseLabel);
             } else if (propType instanceof ArrayType) {
-                equalsWriter.visitMethodInsn(INVOKESTATIC, getInternalName(java.util.Arrays.class), "equals", "([Ljava/lang/Object;[Ljava/lang/Object;)Z", false);
+                String arrayDesc = arrayArgumentDescriptor((ArrayType) propType);
+                String desc = String.format("(%s%s)Z", arrayDesc, arrayDesc);
+                equalsWriter.visitMethodInsn(INVOKESTATIC, getInternalName(java.util.Arrays.class), "equals", desc, false);
                 equalsWriter.visitJumpInsn(IFEQ, falseLabel);
             } else {
-                equalsWriter.visitMethodInsn(INVOKEVIRTUAL, propDesc, "equals", "(Ljava/lang/Object;)Z", false);
+                equalsWriter.visitMethodInsn(INVOKEVIRTUAL, jvmInternalName(propType), "equals", "(Ljava/lang/Object;)Z", false);
                 equalsWriter.visitJumpInsn(IFEQ, falseLabel);
             }
         }
@@ -222,7 +229,8 @@ public class TypeDeclarationStatementCompiler {
                 String desc = String.format("(%s)I", jvmDescriptor(propType, false));
                 hashCodeWriter.visitMethodInsn(INVOKESTATIC, getInternalName(propType), "hashCode", desc, false);
             } else if (propType instanceof ArrayType) {
-                hashCodeWriter.visitMethodInsn(INVOKESTATIC, "java/util/Arrays", "hashCode", "([Ljava/lang/Object;)I", false);
+                String desc = String.format("(%s)I", arrayArgumentDescriptor((ArrayType) propType));
+                hashCodeWriter.visitMethodInsn(INVOKESTATIC, "java/util/Arrays", "hashCode", desc, false);
             } else {
                 hashCodeWriter.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I", false);
             }
@@ -271,7 +279,8 @@ public class TypeDeclarationStatementCompiler {
                 if (((ArrayType) propType).typeArg == PrimitiveTypes.STRING) {
                     toStringWriter.visitMethodInsn(INVOKESTATIC, getInternalName(Arrays.class), "strArrayToString", "([Ljava/lang/String;)Ljava/lang/String;", false);
                 } else {
-                    toStringWriter.visitMethodInsn(INVOKESTATIC, getInternalName(Arrays.class), "toString", "([Ljava/lang/Object;)Ljava/lang/String;", false);
+                    String desc = String.format("(%s)Ljava/lang/String;", arrayArgumentDescriptor((ArrayType) propType));
+                    toStringWriter.visitMethodInsn(INVOKESTATIC, getInternalName(Arrays.class), "toString", desc, false);
                 }
                 appendDesc = "(Ljava/lang/Object;)Ljava/lang/StringBuilder;";
             } else {
@@ -295,4 +304,10 @@ public class TypeDeclarationStatementCompiler {
         toStringWriter.visitMaxs(2, 1);
         toStringWriter.visitEnd();
     }
+
+    // The java.util.Arrays (and mega.lang.collections.Arrays) helpers have overloads for primitive arrays; all other
+    // arrays go through the Object[] variant.
+    private static String arrayArgumentDescriptor(ArrayType arrayType) {
+        return isPrimitive(arrayType.typeArg) ? jvmDescriptor(arrayType, false) : "[Ljava/lang/Object;";
+    }
 }
@@ -1,14 +1,28 @@
 package co.kenrg.mega.backend.compilation.util;
 
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
 import static org.objectweb.asm.Opcodes.ALOAD;
 import static org.objectweb.asm.Opcodes.ARETURN;
 import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.BALOAD;
+import static org.objectweb.asm.Opcodes.BASTORE;
+import static org.objectweb.asm.Opcodes.FALOAD;
+import static org.objectweb.asm.Opcodes.FASTORE;
+import static org.objectweb.asm.Opcodes.FCONST_0;
 import static org.objectweb.asm.Opcodes.FLOAD;
 import static org.objectweb.asm.Opcodes.FRETURN;
 import static org.objectweb.asm.Opcodes.FSTORE;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IASTORE;
+import static org.objectweb.asm.Opcodes.ICONST_0;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.IRETURN;
 import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.T_BOOLEAN;
+import static org.objectweb.asm.Opcodes.T_FLOAT;
+import static org.objectweb.asm.Opcodes.T_INT;
 
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
 import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
@@ -38,6 +52,19 @@ public class OpcodeUtils {
         }
     }
 
+    // The instruction which pushes the zero value of the type (eg. for an argument whose value is ignored)
+    public static int zeroValueInsn(MegaType type) {
+        if (type == PrimitiveTypes.INTEGER) {
+            return ICONST_0;
+        } else if (type == PrimitiveTypes.BOOLEAN) {
+            return ICONST_0;
+        } else if (type == PrimitiveTypes.FLOAT) {
+            return FCONST_0;
+        } else {
+            return ACONST_NULL;
+        }
+    }
+
     public static int storeInsn(MegaType type) {
         if (type == PrimitiveTypes.INTEGER) {
             return ISTORE;
@@ -49,4 +76,41 @@ public class OpcodeUtils {
             return ASTORE;
         }
     }
+
+    public static int arrayLoadInsn(MegaType elemType) {
+        if (elemType == PrimitiveTypes.INTEGER) {
+            return IALOAD;
+        } else if (elemType == PrimitiveTypes.BOOLEAN) {
+            return BALOAD;
+        } else if (elemType == PrimitiveTypes.FLOAT) {
+            return FALOAD;
+        } else {
+            return AALOAD;
+        }
+    }
+
+    public static int arrayStoreInsn(MegaType elemType) {
+        if (elemType == PrimitiveTypes.INTEGER) {
+            return IASTORE;
+        } else if (elemType == PrimitiveTypes.BOOLEAN) {
+            return BASTORE;
+        } else if (elemType == PrimitiveTypes.FLOAT) {
+            return FASTORE;
+        } else {
+            return AASTORE;
+        }
+    }
+
+    // Operand for the NEWARRAY instruction; only valid for primitive element types
+    public static int newArrayTypeOperand(MegaType elemType) {
+        if (elemType == PrimitiveTypes.INTEGER) {
+            return T_INT;
+        } else if (elemType == PrimitiveTypes.BOOLEAN) {
+            return T_BOOLEAN;
+        } else if (elemType == PrimitiveTypes.FLOAT) {
+            return T_FLOAT;
+        } else {
+            throw new IllegalStateException("No primitive array type for element type: " + elemType);
+        }
+    }
 }
@@ -13,7 +13,6 @@ import static co.kenrg.mega.backend.evaluation.object.EvalError.unsupportedIndex
 
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.function.Supplier;
 
 import co.kenrg.mega.backend.evaluation.object.ArrayObj;
@@ -22,8 +21,10 @@ import co.kenrg.mega.backend.evaluation.object.BooleanObj;
 import co.kenrg.mega.backend.evaluation.object.FloatObj;
 import co.kenrg.mega.backend.evaluation.object.FunctionObj;
 import co.kenrg.mega.backend.evaluation.object.IntegerObj;
+import co.kenrg.mega.backend.evaluation.object.LoopControlObj;
 import co.kenrg.mega.backend.evaluation.object.NullObj;
 import co.kenrg.mega.backend.evaluation.object.ObjectObj;
+import co.kenrg.mega.backend.evaluation.object.RangeObj;
 import co.kenrg.mega.backend.evaluation.object.StringObj;
 import co.kenrg.mega.backend.evaluation.object.iface.InvokeableObj;
 import co.kenrg.mega.backend.evaluation.object.iface.Obj;
@@ -41,6 +42,8 @@ import co.kenrg.mega.frontend.ast.expression.IfExpression;
 import co.kenrg.mega.frontend.ast.expression.IndexExpression;
 import co.kenrg.mega.frontend.ast.expression.InfixExpression;
 import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.MatchCase;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
 import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
 import co.kenrg.mega.frontend.ast.expression.Parameter;
 import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
@@ -52,15 +55,23 @@ import co.kenrg.mega.frontend.ast.iface.Expression;
 import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
 import co.kenrg.mega.frontend.ast.iface.Node;
 import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.BreakStatement;
+import co.kenrg.mega.frontend.ast.statement.ContinueStatement;
 import co.kenrg.mega.frontend.ast.statement.ForLoopStatement;
 import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
 import co.kenrg.mega.frontend.ast.statement.ValStatement;
 import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
+import mega.lang.IntRange;
 
 public class Evaluator {
+    // The jump map of each match-expression (from each pattern's value to the body of its case), computed the first time
+    // the match-expression is evaluated. Keys are compared by identity, and are weakly-held.
+    private static final Map<MatchExpression, Map<Object, Expression>> matchJumpMaps = new MapMaker().weakKeys().makeMap();
 
     public static Obj eval(Node node, Environment env) {
         if (node instanceof Module) {
@@ -78,6 +89,12 @@ public class Evaluator {
             return evalFunctionDeclarationStatement((FunctionDeclarationStatement) node, env);
         } else if (node instanceof ForLoopStatement) {
             return evalForLoopStatement((ForLoopStatement) node, env);
+        } else if (node instanceof WhileLoopStatement) {
+            return evalWhileLoopStatement((WhileLoopStatement) node, env);
+        } else if (node instanceof BreakStatement) {
+            return LoopControlObj.BREAK;
+        } else if (node instanceof ContinueStatement) {
+            return LoopControlObj.CONTINUE;
         }
 
         // Expressions
@@ -103,6 +120,8 @@ public class Evaluator {
             return evalInfixExpression((InfixExpression) node, env);
         } else if (node instanceof IfExpression) {
             return evalIfExpression((IfExpression) node, env);
+        } else if (node instanceof MatchExpression) {
+            return evalMatchExpression((MatchExpression) node, env);
         } else if (node instanceof BlockExpression) {
             return evalBlockExpression((BlockExpression) node, env);
         } else if (node instanceof Identifier) {
@@ -168,7 +187,30 @@ public class Evaluator {
     }
 
     private static Obj evalForLoopStatement(ForLoopStatement statement, Environment env) {
+        if (statement.iteratee instanceof RangeExpression) {
+            return evalRangeForLoopStatement(statement, (RangeExpression) statement.iteratee, env);
+        }
+
         Obj iteratee = eval(statement.iteratee, env);
+        if (iteratee.isError()) {
+            return iteratee;
+        }
+        if (iteratee.getType() == ObjectType.RANGE) {
+            IntRange range = ((RangeObj) iteratee).range;
+            for (int i : range) {
+                Environment blockEnv = env.createChildEnvironment();
+                blockEnv.add(statement.iterator.value, new IntegerObj(i), true);
+
+                Obj blockResult = evalBlockExpression(statement.block, blockEnv);
+                if (blockResult.isError()) {
+                    return blockResult;
+                }
+                if (blockResult == LoopControlObj.BREAK) {
+                    break;
+                }
+            }
+            return NullObj.NULL;
+        }
         if (iteratee.getType() != ObjectType.ARRAY) {
             return typeMismatchError(ObjectType.ARRAY, iteratee.getType());
         }
@@ -182,11 +224,63 @@ public class Evaluator {
             if (blockResult.isError()) {
                 return blockResult;
             }
+            if (blockResult == LoopControlObj.BREAK) {
+                break;
+            }
         }
 
         return NullObj.NULL;
     }
 
+    // Looping over a range literal walks the bounds directly, rather than materializing the range as an array first
+    private static Obj evalRangeForLoopStatement(ForLoopStatement statement, RangeExpression range, Environment env) {
+        Obj lBound = evalRangeBound(range.leftBound, env);
+        if (lBound.isError()) {
+            return lBound;
+        }
+        Obj rBound = evalRangeBound(range.rightBound, env);
+        if (rBound.isError()) {
+            return rBound;
+        }
+
+        int lValue = ((IntegerObj) lBound).value;
+        int rValue = ((IntegerObj) rBound).value;
+        for (int i = lValue; i < rValue; i++) {
+            Environment blockEnv = env.createChildEnvironment();
+            blockEnv.add(statement.iterator.value, new IntegerObj(i), true);
+
+            Obj blockResult = evalBlockExpression(statement.block, blockEnv);
+            if (blockResult.isError()) {
+                return blockResult;
+            }
+            if (blockResult == LoopControlObj.BREAK) {
+                break;
+            }
+        }
+
+        return NullObj.NULL;
+    }
+
+    private static Obj evalWhileLoopStatement(WhileLoopStatement statement, Environment env) {
+        while (true) {
+            Obj condition = eval(statement.condition, env);
+            if (condition.isError()) {
+                return condition;
+            }
+            if (!isTruthy(condition)) {
+                return NullObj.NULL;
+            }
+
+            Obj blockResult = evalBlockExpression(statement.block, env.createChildEnvironment());
+            if (blockResult.isError()) {
+                return blockResult;
+            }
+            if (blockResult == LoopControlObj.BREAK) {
+                return NullObj.NULL;
+            }
+        }
+    }
+
     private static Obj evalStatements(List<Statement> statements, Environment env) {
         Obj result = null;
         for (Statement statement : statements) {
@@ -215,22 +309,23 @@ public class Evaluator {
     }
 
     private static Obj evalStringInterpolationExpression(StringInterpolationExpression expr, Environment env) {
-        String str = expr.value;
-        for (Entry<String, Expression> entry : expr.interpolatedExpressions.entrySet()) {
-            Obj result = eval(entry.getValue(), env);
+        StringBuilder sb = new StringBuilder(expr.value.length());
+        for (int i = 0; i < expr.expressions.size(); i++) {
+            sb.append(expr.segments.get(i));
+
+            Obj result = eval(expr.expressions.get(i), env);
             if (result.isError()) {
                 return result;
             }
-            String replacement;
             if (result.getType() == ObjectType.STRING) {
-                replacement = ((StringObj) result).value;
+                sb.append(((StringObj) result).value);
             } else {
-                replacement = result.inspect(0);
+                sb.append(result.inspect(0));
             }
-            str = str.replace(entry.getKey(), replacement);
         }
+        sb.append(expr.segments.get(expr.segments.size() - 1));
 
-        return new StringObj(str);
+        return new StringObj(sb.toString());
     }
 
     private static Obj evalArrayLiteral(ArrayLiteral array, Environment env) {
@@ -493,7 +588,7 @@ public class Evaluator {
         Obj result = NullObj.NULL;
         for (Statement statement : expression.statements) {
             result = eval(statement, env);
-            if (result.isError()) {
+            if (result.isError() || result instanceof LoopControlObj) {
                 return result;
             }
         }
@@ -519,6 +614,54 @@ public class Evaluator {
         }
     }
 
+    private static Obj evalMatchExpression(MatchExpression expression, Environment env) {
+        Obj subject = eval(expression.subject, env);
+        if (subject.isError()) {
+            return subject;
+        }
+
+        Map<Object, Expression> jumpMap = matchJumpMaps.get(expression);
+        if (jumpMap == null) {
+            jumpMap = Maps.newHashMap();
+            for (MatchCase matchCase : expression.cases) {
+                for (Expression pattern : matchCase.patterns) {
+                    Obj patternValue = eval(pattern, env);
+                    if (patternValue.isError()) {
+                        return patternValue;
+                    }
+                    jumpMap.putIfAbsent(getMatchKey(patternValue), matchCase.body); // The first case with a pattern wins
+                }
+            }
+            matchJumpMaps.put(expression, jumpMap);
+        }
+
+        Expression body = jumpMap.get(getMatchKey(subject));
+        if (body != null) {
+            return eval(body, env);
+        } else if (expression.elseExpr != null) {
+            return eval(expression.elseExpr, env);
+        } else {
+            return NullObj.NULL;
+        }
+    }
+
+    // Patterns are always literals, so their values (and any subject which could match them) are Ints, Floats, Bools or
+    // Strings; other subjects are their own keys, which match no pattern.
+    private static Object getMatchKey(Obj obj) {
+        switch (obj.getType()) {
+            case INTEGER:
+                return ((IntegerObj) obj).value;
+            case FLOAT:
+                return ((FloatObj) obj).value;
+            case BOOLEAN:
+                return ((BooleanObj) obj).value;
+            case STRING:
+                return ((StringObj) obj).value;
+            default:
+                return obj;
+        }
+    }
+
     private static Obj evalArrowFunctionExpression(ArrowFunctionExpression expr, Environment env) {
         return new ArrowFunctionObj(expr, env);
     }
@@ -578,7 +721,7 @@ public class Evaluator {
         if (target.isError()) {
             return target;
         }
-        if (target.getType() != ObjectType.ARRAY) {
+        if (target.getType() != ObjectType.ARRAY && target.getType() != ObjectType.RANGE) {
             return unsupportedIndexTargetError(target);
         }
 
@@ -590,6 +733,16 @@ public class Evaluator {
             return unsupportedIndexOperationError(index);
         }
 
+        if (target.getType() == ObjectType.RANGE) {
+            IntRange range = ((RangeObj) target).range;
+            int indexVal = ((IntegerObj) index).value;
+            if (indexVal < 0 || indexVal >= range.size()) {
+                return NullObj.NULL;
+            } else {
+                return new IntegerObj(range.get(indexVal));
+            }
+        }
+
         ArrayObj array = (ArrayObj) target;
         int indexVal = ((IntegerObj) index).value;
         int maxVal = array.elems.size();
@@ -621,33 +774,30 @@ public class Evaluator {
         }
     }
 
+    private static Obj evalRangeBound(Expression bound, Environment env) {
+        Obj value = eval(bound, env);
+        if (value.isError()) {
+            return value;
+        }
+        if (value.getType() != ObjectType.INTEGER) {
+            return typeMismatchError(ObjectType.INTEGER, value.getType());
+        }
+        return value;
+    }
+
     private static Obj evalRangeExpression(RangeExpression expression, Environment env) {
-        Obj lBound = eval(expression.leftBound, env);
+        Obj lBound = evalRangeBound(expression.leftBound, env);
         if (lBound.isError()) {
             return lBound;
         }
-        if (lBound.getType() != ObjectType.INTEGER) {
-            return typeMismatchError(ObjectType.INTEGER, lBound.getType());
-        }
 
-        Obj rBound = eval(expression.rightBound, env);
+        Obj rBound = evalRangeBound(expression.rightBound, env);
         if (rBound.isError()) {
             return rBound;
         }
-        if (rBound.getType() != ObjectType.INTEGER) {
-            return typeMismatchError(ObjectType.INTEGER, rBound.getType());
-        }
 
         int lValue = ((IntegerObj) lBound).value;
         int rValue = ((IntegerObj) rBound).value;
-        if (rValue <= lValue) {
-            return new ArrayObj(Lists.newArrayList());
-        }
-
-        List<Obj> elems = Lists.newArrayList();
-        for (int i = lValue; i < rValue; i++) {
-            elems.add(new IntegerObj(i));
-        }
-        return new ArrayObj(elems);
+        return new RangeObj(IntRange.of(lValue, rValue));
     }
 }
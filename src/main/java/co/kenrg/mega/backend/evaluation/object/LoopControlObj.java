@@ -0,0 +1,27 @@
+package co.kenrg.mega.backend.evaluation.object;
+
+import co.kenrg.mega.backend.evaluation.object.iface.Obj;
+import co.kenrg.mega.backend.evaluation.object.iface.ObjectType;
+
+// The result of evaluating a `break` or `continue`; like an EvalError, it ends the evaluation of the enclosing blocks,
+// up to the innermost loop.
+public class LoopControlObj extends Obj {
+    public static final LoopControlObj BREAK = new LoopControlObj("break");
+    public static final LoopControlObj CONTINUE = new LoopControlObj("continue");
+
+    private final String keyword;
+
+    private LoopControlObj(String keyword) {
+        this.keyword = keyword;
+    }
+
+    @Override
+    public ObjectType getType() {
+        return ObjectType.UNIT;
+    }
+
+    @Override
+    public String inspect(int indentLevel) {
+        return this.keyword;
+    }
+}
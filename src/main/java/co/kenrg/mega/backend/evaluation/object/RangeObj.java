@@ -0,0 +1,25 @@
+package co.kenrg.mega.backend.evaluation.object;
+
+import static co.kenrg.mega.backend.evaluation.object.iface.ObjectType.RANGE;
+
+import co.kenrg.mega.backend.evaluation.object.iface.Obj;
+import co.kenrg.mega.backend.evaluation.object.iface.ObjectType;
+import mega.lang.IntRange;
+
+public class RangeObj extends Obj {
+    public final IntRange range;
+
+    public RangeObj(IntRange range) {
+        this.range = range;
+    }
+
+    @Override
+    public ObjectType getType() {
+        return RANGE;
+    }
+
+    @Override
+    public String inspect(int indentLevel) {
+        return this.range.toString();
+    }
+}
@@ -10,6 +10,7 @@ public enum ObjectType {
 
     FUNCTION("Func"),
     ARRAY("Array"),
+    RANGE("IntRange"),
     OBJECT("Object"),
 
     NULL("Null"),
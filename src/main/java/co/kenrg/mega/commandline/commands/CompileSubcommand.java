@@ -6,11 +6,18 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
 import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
+import co.kenrg.mega.backend.compilation.CompilerOptions.LambdaCodegen;
+import co.kenrg.mega.backend.compilation.CompilerOptions.PeepholeRule;
 import co.kenrg.mega.commandline.iface.Subcommand;
 import co.kenrg.mega.frontend.ast.Module;
 import co.kenrg.mega.frontend.typechecking.ModuleDescriptor;
@@ -38,7 +45,22 @@ public class CompileSubcommand implements Subcommand {
     public Options opts() {
         return new Options()
             .addOption("h", "help", false, "Displays this help information, for the compile subcommand")
-            .addOption("o", "out-dir", true, "Directory where compiled class files should be written (defaults to current directory)");
+            .addOption("o", "out-dir", true, "Directory where compiled class files should be written (defaults to current directory)")
+            .addOption("t", "target", true, "Java release the generated class files should target (defaults to " + CompilerOptions.DEFAULT_TARGET + ")")
+            .addOption(null, "indy-lambdas", false, "Compile arrow functions via invokedynamic instead of inner classes (requires Java 8+)")
+            .addOption(null, "no-fold", false, "Disable constant folding and dead-branch elimination")
+            .addOption(null, "fold-report", false, "Print a report of the expressions simplified by constant folding")
+            .addOption(null, "inline-size", true, "Max size (in AST nodes) of a function body to inline at call-sites; 0 disables inlining (defaults to " + CompilerOptions.DEFAULT_INLINE_MAX_SIZE + ")")
+            .addOption(null, "inline-depth", true, "Max nesting depth of inlined function bodies (defaults to " + CompilerOptions.DEFAULT_INLINE_MAX_DEPTH + ")")
+            .addOption(null, "inline-report", false, "Print a report of the calls considered for inlining, against the inlining budget")
+            .addOption(null, "no-scalar-replace", false, "Disable scalar replacement of local objects and struct instances which don't escape")
+            .addOption(null, "escape-report", false, "Print a report of the local objects and struct instances considered for scalar replacement")
+            .addOption(null, "peephole", false, "Run all peephole optimizations over the generated bytecode")
+            .addOption(null, "peephole-rules", true, "Comma-separated peephole optimizations to run over the generated bytecode (any of " + Arrays.toString(PeepholeRule.values()) + ")")
+            .addOption(null, "peephole-report", false, "Print the instruction counts of each method, before and after peephole optimization")
+            .addOption(null, "eager-init", false, "Initialize all top-level vals when their module is loaded, rather than on first use")
+            .addOption(null, "mid-level-ir", false, "Compile function bodies via the mid-level IR (running its passes over them), where they're supported")
+            .addOption(null, "ir-dump", false, "Print the mid-level IR of each function compiled via it, after its passes have run");
     }
 
     @Override
@@ -69,14 +91,65 @@ public class CompileSubcommand implements Subcommand {
             System.exit(1);
         }
 
-        compileModule(ModuleDescriptor.fromRaw(fileToCompile), outputDirectory);
+        CompilerOptions options = CompilerOptions.DEFAULT;
+        try {
+            if (command.hasOption('t')) {
+                options = options.withTarget(Integer.parseInt(command.getOptionValue('t')));
+            }
+            if (command.hasOption("indy-lambdas")) {
+                options = options.withLambdaCodegen(LambdaCodegen.INVOKEDYNAMIC);
+            }
+            if (command.hasOption("no-fold")) {
+                options = options.withFoldConstants(false);
+            }
+            if (command.hasOption("inline-size") || command.hasOption("inline-depth")) {
+                int inlineMaxSize = command.hasOption("inline-size") ? Integer.parseInt(command.getOptionValue("inline-size")) : options.inlineMaxSize;
+                int inlineMaxDepth = command.hasOption("inline-depth") ? Integer.parseInt(command.getOptionValue("inline-depth")) : options.inlineMaxDepth;
+                options = options.withInlineBudget(inlineMaxSize, inlineMaxDepth);
+            }
+            if (command.hasOption("no-scalar-replace")) {
+                options = options.withScalarReplacement(false);
+            }
+            if (command.hasOption("eager-init")) {
+                options = options.withLazyStaticInit(false);
+            }
+            if (command.hasOption("mid-level-ir")) {
+                options = options.withMidLevelIr(true);
+            }
+            if (command.hasOption("peephole")) {
+                options = options.withPeepholeRules(EnumSet.allOf(PeepholeRule.class));
+            } else if (command.hasOption("peephole-rules")) {
+                Set<PeepholeRule> peepholeRules = EnumSet.noneOf(PeepholeRule.class);
+                for (String rule : command.getOptionValue("peephole-rules").split(",")) {
+                    peepholeRules.add(PeepholeRule.fromFlag(rule.trim()));
+                }
+                options = options.withPeepholeRules(peepholeRules);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+
+        printFoldingReports = command.hasOption("fold-report");
+        printInliningReports = command.hasOption("inline-report");
+        printScalarReplacementReports = command.hasOption("escape-report");
+        printPeepholeReports = command.hasOption("peephole-report");
+        printIrFunctions = command.hasOption("ir-dump");
+        compileModule(ModuleDescriptor.fromRaw(fileToCompile), outputDirectory, options);
 
         return true;
     }
 
+    private static boolean printFoldingReports = false;
+    private static boolean printInliningReports = false;
+    private static boolean printScalarReplacementReports = false;
+    private static boolean printPeepholeReports = false;
+    private static boolean printIrFunctions = false;
+
     private static Map<ModuleDescriptor, TypeCheckResult<Module>> compiledModulesCache = Maps.newHashMap();
+    private static ClassHierarchy classHierarchy = new ClassHierarchy(); // Shared by all modules compiled in this build
 
-    private static TypeCheckResult<Module> compileModule(ModuleDescriptor moduleDescriptor, String outputDirectory) {
+    private static TypeCheckResult<Module> compileModule(ModuleDescriptor moduleDescriptor, String outputDirectory, CompilerOptions options) {
         if (compiledModulesCache.containsKey(moduleDescriptor)) {
             return compiledModulesCache.get(moduleDescriptor);
         }
@@ -92,9 +165,25 @@ public class CompileSubcommand implements Subcommand {
 
         Module module = result.node;
 
-        Compiler compiler = new Compiler(moduleDescriptor.moduleName, typeEnv);
-        compiler.setTypedModuleProvider(_moduleName -> compileModule(ModuleDescriptor.fromRaw(_moduleName), outputDirectory));
+        Compiler compiler = new Compiler(moduleDescriptor.moduleName, typeEnv, options, classHierarchy);
+        compiler.setTypedModuleProvider(_moduleName -> compileModule(ModuleDescriptor.fromRaw(_moduleName), outputDirectory, options));
         List<Pair<String, byte[]>> classes = compiler.compile(module);
+        if (printInliningReports && compiler.getInliningReport() != null) {
+            System.out.println(compiler.getInliningReport().format(moduleDescriptor.moduleName));
+        }
+        if (printScalarReplacementReports && compiler.getScalarReplacementReport() != null) {
+            System.out.println(compiler.getScalarReplacementReport().format(moduleDescriptor.moduleName));
+        }
+        if (printFoldingReports && compiler.getConstantFoldingReport() != null) {
+            System.out.println(compiler.getConstantFoldingReport().format(moduleDescriptor.moduleName));
+        }
+        if (printPeepholeReports && compiler.getPeepholeReport() != null) {
+            System.out.println(compiler.getPeepholeReport().format(moduleDescriptor.moduleName));
+        }
+        if (printIrFunctions) {
+            System.out.printf("Mid-level IR (%s): %d function(s)\n", moduleDescriptor.moduleName, compiler.getIrFunctions().size());
+            compiler.getIrFunctions().forEach(System.out::println);
+        }
         if (!writeClasses(outputDirectory, classes)) {
             return null;
         }
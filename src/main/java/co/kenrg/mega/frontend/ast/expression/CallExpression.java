@@ -1,11 +1,16 @@
 package co.kenrg.mega.frontend.ast.expression;
 
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import co.kenrg.mega.frontend.ast.iface.Expression;
 import co.kenrg.mega.frontend.token.Token;
+import co.kenrg.mega.frontend.typechecking.types.FunctionType;
 import co.kenrg.mega.frontend.typechecking.types.MegaType;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.NotImplementedException;
@@ -27,6 +32,12 @@ public class CallExpression extends Expression {
         throw new NotImplementedException("This method should never be invoked on the CallExpression superclass; defer to un/named args subclasses");
     }
 
+    // The arguments of the call, in the order of the function's parameters; arguments which are omitted (to use the
+    // parameter's default value) are null
+    public List<Expression> getArgumentsInParameterOrder(FunctionType fnType) {
+        throw new NotImplementedException("This method should never be invoked on the CallExpression superclass; defer to un/named args subclasses");
+    }
+
     public static class UnnamedArgs extends CallExpression {
         public final Token token;
         public final Expression target; // The invokee
@@ -49,6 +60,13 @@ public class CallExpression extends Expression {
             return this.target;
         }
 
+        @Override
+        public List<Expression> getArgumentsInParameterOrder(FunctionType fnType) {
+            return IntStream.range(0, fnType.arity())
+                .mapToObj(i -> this.arguments.size() > i ? this.arguments.get(i) : null)
+                .collect(toList());
+        }
+
         @Override
         public String repr(boolean debug, int indentLevel) {
             return String.format(
@@ -85,6 +103,16 @@ public class CallExpression extends Expression {
             return this.target;
         }
 
+        @Override
+        public List<Expression> getArgumentsInParameterOrder(FunctionType fnType) {
+            Map<String, Expression> namedArgs = this.namedParamArguments.stream()
+                .collect(toMap(param -> param.getKey().value, Pair::getValue));
+
+            return fnType.parameters.stream()
+                .map(param -> namedArgs.get(param.ident.value))
+                .collect(toList());
+        }
+
         @Override
         public String repr(boolean debug, int indentLevel) {
             return String.format(
@@ -0,0 +1,44 @@
+package co.kenrg.mega.frontend.ast.expression;
+
+import static java.util.stream.Collectors.joining;
+
+import java.util.List;
+
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+// A case of a match-expression, whose body is evaluated if the match's subject is equal to any of its patterns. Patterns
+// are always literals (see Parser#parseMatchPattern).
+public class MatchCase {
+    public final List<Expression> patterns;
+    public final Expression body;
+
+    public MatchCase(List<Expression> patterns, Expression body) {
+        this.patterns = patterns;
+        this.body = body;
+    }
+
+    public String repr(boolean debug, int indentLevel) {
+        String patterns = this.patterns.stream()
+            .map(pattern -> pattern.repr(debug, indentLevel))
+            .collect(joining(", "));
+        return String.format("%s => %s", patterns, this.body.repr(debug, indentLevel));
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+}
@@ -0,0 +1,43 @@
+package co.kenrg.mega.frontend.ast.expression;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.token.Token;
+import com.google.common.base.Strings;
+
+public class MatchExpression extends Expression {
+    public final Token token;
+    public final Expression subject;
+    public final List<MatchCase> cases;
+    @Nullable public final Expression elseExpr;
+
+    public MatchExpression(Token token, Expression subject, List<MatchCase> cases, @Nullable Expression elseExpr) {
+        this.token = token;
+        this.subject = subject;
+        this.cases = cases;
+        this.elseExpr = elseExpr;
+    }
+
+    @Override
+    public String repr(boolean debug, int indentLevel) {
+        String indentation = Strings.repeat("  ", indentLevel + 1);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("match %s {\n", this.subject.repr(debug, indentLevel)));
+        for (MatchCase matchCase : this.cases) {
+            sb.append(indentation).append(matchCase.repr(debug, indentLevel + 1)).append("\n");
+        }
+        if (this.elseExpr != null) {
+            sb.append(indentation).append("else => ").append(this.elseExpr.repr(debug, indentLevel + 1)).append("\n");
+        }
+        sb.append(Strings.repeat("  ", indentLevel)).append("}");
+        return sb.toString();
+    }
+
+    @Override
+    public Token getToken() {
+        return this.token;
+    }
+}
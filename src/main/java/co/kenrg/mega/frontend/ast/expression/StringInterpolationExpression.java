@@ -1,5 +1,6 @@
 package co.kenrg.mega.frontend.ast.expression;
 
+import java.util.List;
 import java.util.Map;
 
 import co.kenrg.mega.frontend.ast.iface.Expression;
@@ -10,10 +11,17 @@ public class StringInterpolationExpression extends Expression {
     public final String value;
     public final Map<String, Expression> interpolatedExpressions;
 
-    public StringInterpolationExpression(Token token, String value, Map<String, Expression> interpolatedExpressions) {
+    // The string, split around its interpolated expressions: segments.get(i) precedes expressions.get(i), and the last
+    // segment follows the last expression (so there is always one more segment than there are expressions).
+    public final List<String> segments;
+    public final List<Expression> expressions;
+
+    public StringInterpolationExpression(Token token, String value, Map<String, Expression> interpolatedExpressions, List<String> segments, List<Expression> expressions) {
         this.token = token;
         this.value = value;
         this.interpolatedExpressions = interpolatedExpressions;
+        this.segments = segments;
+        this.expressions = expressions;
     }
 
     @Override
@@ -23,6 +31,6 @@ public class StringInterpolationExpression extends Expression {
 
     @Override
     public Token getToken() {
-        return null;
+        return this.token;
     }
 }
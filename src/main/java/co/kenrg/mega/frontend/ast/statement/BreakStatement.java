@@ -0,0 +1,22 @@
+package co.kenrg.mega.frontend.ast.statement;
+
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.token.Token;
+
+public class BreakStatement extends Statement {
+    public final Token token;
+
+    public BreakStatement(Token token) {
+        this.token = token;
+    }
+
+    @Override
+    public String repr(boolean debug, int indentLevel) {
+        return "break";
+    }
+
+    @Override
+    public Token getToken() {
+        return this.token;
+    }
+}
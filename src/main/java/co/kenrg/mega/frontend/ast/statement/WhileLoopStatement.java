@@ -0,0 +1,32 @@
+package co.kenrg.mega.frontend.ast.statement;
+
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.token.Token;
+
+public class WhileLoopStatement extends Statement {
+    public final Token token;
+    public final Expression condition;
+    public final BlockExpression block;
+
+    public WhileLoopStatement(Token token, Expression condition, BlockExpression block) {
+        this.token = token;
+        this.condition = condition;
+        this.block = block;
+    }
+
+    @Override
+    public String repr(boolean debug, int indentLevel) {
+        return String.format(
+            "while %s %s",
+            this.condition.repr(debug, indentLevel),
+            this.block.repr(debug, indentLevel)
+        );
+    }
+
+    @Override
+    public Token getToken() {
+        return this.token;
+    }
+}
@@ -99,16 +99,42 @@ public class Lexer {
                 }
                 break;
             case '+':
-                token = Token.plus(pos);
+                if (peekChar() == '=') {
+                    this.readChar();
+                    token = Token.plusAssign(pos);
+                } else if (peekChar() == '+') {
+                    this.readChar();
+                    token = Token.increment(pos);
+                } else {
+                    token = Token.plus(pos);
+                }
                 break;
             case '-':
-                token = Token.minus(pos);
+                if (peekChar() == '=') {
+                    this.readChar();
+                    token = Token.minusAssign(pos);
+                } else if (peekChar() == '-') {
+                    this.readChar();
+                    token = Token.decrement(pos);
+                } else {
+                    token = Token.minus(pos);
+                }
                 break;
             case '/':
-                token = Token.slash(pos);
+                if (peekChar() == '=') {
+                    this.readChar();
+                    token = Token.slashAssign(pos);
+                } else {
+                    token = Token.slash(pos);
+                }
                 break;
             case '*':
-                token = Token.star(pos);
+                if (peekChar() == '=') {
+                    this.readChar();
+                    token = Token.starAssign(pos);
+                } else {
+                    token = Token.star(pos);
+                }
                 break;
             case ';':
                 token = Token.semicolon(pos);
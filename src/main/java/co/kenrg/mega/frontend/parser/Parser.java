@@ -1,12 +1,13 @@
 package co.kenrg.mega.frontend.parser;
 
+import static co.kenrg.mega.frontend.parser.Precedence.ARROW;
 import static co.kenrg.mega.frontend.parser.Precedence.LOWEST;
 import static co.kenrg.mega.frontend.parser.Precedence.PREFIX;
-import static java.util.stream.Collectors.toMap;
 
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,6 +25,8 @@ import co.kenrg.mega.frontend.ast.expression.IfExpression;
 import co.kenrg.mega.frontend.ast.expression.IndexExpression;
 import co.kenrg.mega.frontend.ast.expression.InfixExpression;
 import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.MatchCase;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
 import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
 import co.kenrg.mega.frontend.ast.expression.Parameter;
 import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
@@ -35,12 +38,15 @@ import co.kenrg.mega.frontend.ast.iface.Exportable;
 import co.kenrg.mega.frontend.ast.iface.Expression;
 import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
 import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.BreakStatement;
+import co.kenrg.mega.frontend.ast.statement.ContinueStatement;
 import co.kenrg.mega.frontend.ast.statement.ForLoopStatement;
 import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
 import co.kenrg.mega.frontend.ast.statement.ImportStatement;
 import co.kenrg.mega.frontend.ast.statement.TypeDeclarationStatement;
 import co.kenrg.mega.frontend.ast.statement.ValStatement;
 import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
 import co.kenrg.mega.frontend.ast.type.BasicTypeExpression;
 import co.kenrg.mega.frontend.ast.type.FunctionTypeExpression;
 import co.kenrg.mega.frontend.ast.type.ParametrizedTypeExpression;
@@ -69,6 +75,10 @@ public class Parser {
     private Token curTok;
     private Token peekTok;
     private Token peekAheadTok;
+    private int loopDepth = 0; // The number of loops enclosing the current token, within the current function body
+    private boolean isInOperand = false; // Whether the current token is within an operand of an expression, within the innermost loop
+    private boolean isStatementExpression = false; // Whether the next expression to be parsed is an expression statement
+    private final List<Token> loopControlTokens = Lists.newArrayList(); // The `break`s and `continue`s parsed so far
 
     public Parser(Lexer lexer) {
         this.lexer = lexer;
@@ -89,6 +99,7 @@ public class Parser {
         this.registerPrefix(TokenType.MINUS, this::parsePrefixExpression);
         this.registerPrefix(TokenType.LPAREN, this::parseParenExpression);
         this.registerPrefix(TokenType.IF, this::parseIfExpression);
+        this.registerPrefix(TokenType.MATCH, this::parseMatchExpression);
         this.registerPrefix(TokenType.LBRACK, this::parseArrayLiteral);
         this.registerPrefix(TokenType.LBRACE, this::parseObjectLiteral);
 
@@ -109,6 +120,12 @@ public class Parser {
         this.registerInfix(TokenType.LPAREN, this::parseCallExpression);
         this.registerInfix(TokenType.LBRACK, this::parseIndexExpression);
         this.registerInfix(TokenType.ASSIGN, this::parseAssignmentExpression);
+        this.registerInfix(TokenType.PLUS_ASSIGN, this::parseCompoundAssignmentExpression);
+        this.registerInfix(TokenType.MINUS_ASSIGN, this::parseCompoundAssignmentExpression);
+        this.registerInfix(TokenType.STAR_ASSIGN, this::parseCompoundAssignmentExpression);
+        this.registerInfix(TokenType.SLASH_ASSIGN, this::parseCompoundAssignmentExpression);
+        this.registerInfix(TokenType.INCREMENT, this::parseIncrementExpression);
+        this.registerInfix(TokenType.DECREMENT, this::parseIncrementExpression);
         this.registerInfix(TokenType.DOT, this::parseAccessorExpression);
         this.registerInfix(TokenType.DOTDOT, this::parseRangeExpression);
     }
@@ -225,6 +242,11 @@ public class Parser {
                 return this.parseFunctionDeclarationStatement(isExported);
             case FOR:
                 return this.parseForInLoopStatement();
+            case WHILE:
+                return this.parseWhileLoopStatement();
+            case BREAK:
+            case CONTINUE:
+                return this.parseLoopControlStatement();
             case TYPE:
                 return this.parseTypeDeclarationStatement(isExported);
             case IMPORT:
@@ -444,15 +466,13 @@ public class Parser {
 
         Expression body;
         if (this.curTokenIs(TokenType.LBRACE)) {
-            body = this.parseBlockExpression();
+            body = this.parseFunctionBody(this::parseBlockExpression);
         } else if (this.curTokenIs(TokenType.ASSIGN)) {
             this.nextToken(); // Skip '='
             if (this.curTokenIs(TokenType.LBRACE)) {
                 this.addParserWarning("Unnecessary equals sign; a function whose single-expression body is a block is pointless", this.prevTok.position);
-                body = this.parseBlockExpression();
-            } else {
-                body = this.parseExpression(LOWEST);
             }
+            body = this.parseFunctionBody(this::parseBlockOrSingleExpression);
         } else {
             throw new IllegalStateException("There shouldn't be any other possibilities for a function body");
         }
@@ -484,10 +504,57 @@ public class Parser {
             return null;
         }
 
-        BlockExpression block = (BlockExpression) this.parseBlockExpression();
+        BlockExpression block = this.parseLoopBody();
         return new ForLoopStatement(t, iterator, iteratee, block);
     }
 
+    // while <expr> { <stmts> }
+    private Statement parseWhileLoopStatement() {
+        Token t = this.curTok;  // The 'while' token
+        this.nextToken();   // Skip 'while'
+
+        Expression condition = this.parseExpression(LOWEST);
+
+        if (!this.expectPeek(TokenType.LBRACE)) {
+            return null;
+        }
+
+        BlockExpression block = this.parseLoopBody();
+        return new WhileLoopStatement(t, condition, block);
+    }
+
+    private BlockExpression parseLoopBody() {
+        boolean outerIsInOperand = this.isInOperand;
+        this.isInOperand = false;
+        this.loopDepth++;
+        BlockExpression block = (BlockExpression) this.parseBlockExpression();
+        this.loopDepth--;
+        this.isInOperand = outerIsInOperand;
+        return block;
+    }
+
+    // break | continue
+    private Statement parseLoopControlStatement() {
+        Token t = this.curTok;  // The 'break' or 'continue' token
+
+        if (this.peekTokenIs(TokenType.SEMICOLON)) {
+            this.nextToken();
+        }
+
+        if (this.loopDepth == 0) {
+            this.addParserError(String.format("Unexpected %s outside of a loop", t.literal), t.position);
+            return null;
+        }
+
+        // Jumping out of an operand would leave the values of the other operands on the stack
+        if (this.isInOperand) {
+            this.addParserError(String.format("Unexpected %s within an expression", t.literal), t.position);
+            return null;
+        }
+        this.loopControlTokens.add(t);
+        return t.type == TokenType.BREAK ? new BreakStatement(t) : new ContinueStatement(t);
+    }
+
     // [export] type <ident> = <type_expr>
     private Statement parseTypeDeclarationStatement(boolean isExported) {
         Token t = this.curTok;  // The 'type' token
@@ -538,6 +605,7 @@ public class Parser {
     private Statement parseExpressionStatement() {
         Token t = this.curTok;
 
+        this.isStatementExpression = true;
         Expression expr = this.parseExpression(Precedence.LOWEST);
 
         if (this.peekTokenIs(TokenType.SEMICOLON)) {
@@ -554,7 +622,19 @@ public class Parser {
             return null;
         }
 
+        // Only the branches of an expression statement's if, match, or block may contain `break` or `continue`; any
+        // other expression is an operand of something else (a condition, an argument, an initializer, etc.)
+        boolean isStatement = this.isStatementExpression;
+        this.isStatementExpression = false;
+        boolean outerIsInOperand = this.isInOperand;
+        this.isInOperand = outerIsInOperand || !isStatement;
+        int numLoopControls = this.loopControlTokens.size();
+
         Expression leftExpr = prefixFn.get();
+        this.isInOperand = outerIsInOperand;
+        if (leftExpr == null) {
+            return null;    // The error has already been reported; there's nothing for an infix expression to apply to
+        }
 
         while (!this.peekTokenIs(TokenType.SEMICOLON) && precedence.ordinal() < this.peekPrecedence().ordinal()) {
             InfixParseFunction infixFn = this.infixParseFns.get(this.peekTok.type);
@@ -562,6 +642,14 @@ public class Parser {
                 return leftExpr;
             }
 
+            // An expression statement with an infix expression after it turns out to be an operand after all
+            if (isStatement) {
+                isStatement = false;
+                for (Token t : this.loopControlTokens.subList(numLoopControls, this.loopControlTokens.size())) {
+                    this.addParserError(String.format("Unexpected %s within an expression", t.literal), t.position);
+                }
+            }
+
             this.nextToken();
 
             // "Reduce" together all infix parsing functions
@@ -602,34 +690,43 @@ public class Parser {
         Token t = this.curTok;
         String str = this.curTok.literal;
 
-        Pattern interpolationRegex = Pattern.compile("(?:[^\\\\]|^)\\$(\\{([^}]*)}|(\\w*))");
+        Pattern interpolationRegex = Pattern.compile("(?<!\\\\)\\$(\\{([^}]*)}|([A-Za-z_]\\w*))");
         Matcher m = interpolationRegex.matcher(str);
 
-        List<String> interpolatedExpressions = Lists.newArrayList();
+        // Split the string into literal segments and interpolated expressions, in order
+        List<String> segments = Lists.newArrayList();
+        List<Expression> expressions = Lists.newArrayList();
+        Map<String, Expression> interpolatedExpressions = Maps.newHashMap();
+        int segmentStart = 0;
         while (m.find()) {
-            interpolatedExpressions.add(m.group(1));
+            String exprStr = m.group(1);
+            Expression expr = interpolatedExpressions.get("$" + exprStr);
+            if (expr == null) {
+                expr = parseInterpolatedExpression(exprStr);
+                interpolatedExpressions.put("$" + exprStr, expr);
+            }
+
+            int placeholderStart = m.start(1) - 1; // Include the leading `$`
+            segments.add(str.substring(segmentStart, placeholderStart));
+            expressions.add(expr);
+            segmentStart = m.end(1);
         }
-        if (interpolatedExpressions.isEmpty()) {
+        if (expressions.isEmpty()) {
             return new StringLiteral(this.curTok, this.curTok.literal);
         }
-        return parseStringInterpolationExpression(t, str, interpolatedExpressions);
+        segments.add(str.substring(segmentStart));
+
+        return new StringInterpolationExpression(t, str, interpolatedExpressions, segments, expressions);
     }
 
-    private Expression parseStringInterpolationExpression(Token token, String str, List<String> interpolatedExpressions) {
-        Map<String, Expression> exprs = interpolatedExpressions.stream()
-            .collect(toMap(
-                exprStr -> "$" + exprStr,
-                exprStr -> {
-                    // This is a little janky... There's GOT to be a way to make the regex above do this for me
-                    if (exprStr.startsWith("{") && exprStr.endsWith("}")) {
-                        exprStr = exprStr.substring(1, exprStr.length() - 1);
-                    }
+    private Expression parseInterpolatedExpression(String exprStr) {
+        // This is a little janky... There's GOT to be a way to make the regex above do this for me
+        if (exprStr.startsWith("{") && exprStr.endsWith("}")) {
+            exprStr = exprStr.substring(1, exprStr.length() - 1);
+        }
 
-                    Parser p = new Parser(new Lexer(exprStr));
-                    return p.parseExpression(LOWEST);
-                }
-            ));
-        return new StringInterpolationExpression(token, str, exprs);
+        Parser p = new Parser(new Lexer(exprStr));
+        return p.parseExpression(LOWEST);
     }
 
     // [[<expr> [,<expr>]*]*]
@@ -774,6 +871,106 @@ public class Parser {
         return new IfExpression(t, condition, thenBlock, elseBlock);
     }
 
+    // match <expr> { [<pattern> [, <pattern>]* => <expr>[,]]* [else => <expr>] }
+    private Expression parseMatchExpression() {
+        Token t = this.curTok;  // The 'match' token
+        this.nextToken();   // Skip 'match'
+
+        Expression subject = this.parseExpression(LOWEST);
+
+        if (!this.expectPeek(TokenType.LBRACE)) {
+            return null;
+        }
+
+        List<MatchCase> cases = Lists.newArrayList();
+        Expression elseExpr = null;
+        while (!this.peekTokenIs(TokenType.RBRACE)) {
+            this.nextToken();   // Consume '{', or the last token of the previous case
+
+            if (this.curTokenIs(TokenType.ELSE)) {
+                if (!this.expectPeek(TokenType.ARROW)) {
+                    return null;
+                }
+                this.nextToken();   // Consume '=>'
+
+                elseExpr = this.parseBlockOrSingleExpression();
+                if (elseExpr == null) {
+                    return null;
+                }
+
+                // The else-case must be the last case
+                if (!this.peekTokenIs(TokenType.RBRACE)) {
+                    this.addParserError(String.format("Expected %s, saw %s", TokenType.RBRACE, this.peekTok.type), this.peekTok.position);
+                    return null;
+                }
+                break;
+            }
+
+            List<Expression> patterns = Lists.newArrayList();
+            Expression pattern = this.parseMatchPattern();
+            if (pattern == null) {
+                return null;
+            }
+            patterns.add(pattern);
+
+            while (this.peekTokenIs(TokenType.COMMA)) {
+                this.nextToken();   // Skip to ','
+                this.nextToken();   // Skip ','
+
+                pattern = this.parseMatchPattern();
+                if (pattern == null) {
+                    return null;
+                }
+                patterns.add(pattern);
+            }
+
+            if (!this.expectPeek(TokenType.ARROW)) {
+                return null;
+            }
+            this.nextToken();   // Consume '=>'
+
+            Expression body = this.parseBlockOrSingleExpression();
+            if (body == null) {
+                return null;
+            }
+            cases.add(new MatchCase(patterns, body));
+
+            // Cases may be separated by commas (which is necessary if a case's pattern is a negative number, since it
+            // would otherwise be parsed as a subtraction from the previous case's body)
+            if (this.peekTokenIs(TokenType.COMMA)) {
+                this.nextToken();
+            }
+        }
+        this.nextToken();   // Skip to '}'
+
+        return new MatchExpression(t, subject, cases, elseExpr);
+    }
+
+    // Patterns are literals (or negated number literals), so that a match can be compiled to a switch on constants
+    private Expression parseMatchPattern() {
+        Token t = this.curTok;
+        Expression pattern = this.parseExpression(ARROW);
+        if (pattern == null) {
+            return null;
+        }
+
+        Expression literal = pattern;
+        if (pattern instanceof PrefixExpression && ((PrefixExpression) pattern).operator.equals("-")) {
+            literal = ((PrefixExpression) pattern).expression;
+            if (!(literal instanceof IntegerLiteral || literal instanceof FloatLiteral)) {
+                literal = pattern;
+            }
+        }
+        if (!(literal instanceof IntegerLiteral ||
+            literal instanceof FloatLiteral ||
+            literal instanceof BooleanLiteral ||
+            literal instanceof StringLiteral)) {
+            this.addParserError(String.format("Invalid match pattern: '%s'", pattern.repr(false, 0)), t.position);
+            return null;
+        }
+        return pattern;
+    }
+
     // { [<stmt> [<stmt>]*] }
     private Expression parseBlockExpression() {
         Token lBrace = this.curTok;
@@ -799,6 +996,15 @@ public class Parser {
         }
     }
 
+    // A function declared within a loop has its own body, so `break` and `continue` can't refer to the enclosing loop
+    private Expression parseFunctionBody(Supplier<Expression> parseBody) {
+        int outerLoopDepth = this.loopDepth;
+        this.loopDepth = 0;
+        Expression body = parseBody.get();
+        this.loopDepth = outerLoopDepth;
+        return body;
+    }
+
     // ([<param> [, <param>]*]) => <expr>
     private Expression parseArrowFunctionExpression() {
         // The '(' token was consumed prior to entering this method, in order to simplify the parsing of parenthesized
@@ -811,7 +1017,7 @@ public class Parser {
         }
         this.nextToken();   // Consume '=>'
 
-        Expression body = this.parseBlockOrSingleExpression();
+        Expression body = this.parseFunctionBody(this::parseBlockOrSingleExpression);
         return new ArrowFunctionExpression(t, parameters, body);
     }
 
@@ -829,7 +1035,7 @@ public class Parser {
 
         this.nextToken();   // Skip '=>'
 
-        Expression body = this.parseBlockOrSingleExpression();
+        Expression body = this.parseFunctionBody(this::parseBlockOrSingleExpression);
         return new ArrowFunctionExpression(token, Lists.newArrayList(new Parameter(param)), body);
     }
 
@@ -931,6 +1137,48 @@ public class Parser {
         return new AssignmentExpression(t, name, right);
     }
 
+    // <ident> <op>= <expr>
+    // Compound assignments are desugared into plain assignments, so `x += 1` is parsed as `x = x + 1`
+    private Expression parseCompoundAssignmentExpression(Expression leftExpr) {
+        Token t = this.curTok;  // The '+=', '-=', '*=', or '/=' token
+        this.nextToken();   // Consume the operator
+
+        if (!(leftExpr instanceof Identifier)) {
+            this.addParserError(String.format("Expected %s, saw %s", TokenType.IDENT, leftExpr.getToken().type), leftExpr.getToken().position);
+            return null;
+        }
+        Identifier name = (Identifier) leftExpr;
+
+        Expression right = this.parseExpression(LOWEST);
+        return desugarCompoundAssignment(t, name, t.literal.substring(0, 1), right);
+    }
+
+    // <ident>++ | <ident>--
+    // Like compound assignments, these are desugared into plain assignments, so `x++` is parsed as `x = x + 1`
+    private Expression parseIncrementExpression(Expression leftExpr) {
+        Token t = this.curTok;  // The '++' or '--' token
+
+        if (!(leftExpr instanceof Identifier)) {
+            this.addParserError(String.format("Expected %s, saw %s", TokenType.IDENT, leftExpr.getToken().type), leftExpr.getToken().position);
+            return null;
+        }
+        Identifier name = (Identifier) leftExpr;
+
+        IntegerLiteral one = new IntegerLiteral(Token._int("1", t.position), 1);
+        return desugarCompoundAssignment(t, name, t.literal.substring(0, 1), one);
+    }
+
+    private static Expression desugarCompoundAssignment(Token t, Identifier name, String operator, Expression right) {
+        TokenType operatorType = operator.equals("+") ? TokenType.PLUS
+            : operator.equals("-") ? TokenType.MINUS
+            : operator.equals("*") ? TokenType.STAR
+            : TokenType.SLASH;
+        Token operatorToken = new Token(operatorType, operator, t.position);
+
+        Identifier target = new Identifier(name.token, name.value);
+        return new AssignmentExpression(t, name, new InfixExpression(operatorToken, operator, target, right));
+    }
+
     // <expr>.<ident>
     private Expression parseAccessorExpression(Expression leftExpr) {
         Token t = this.curTok;  // The '.' token
@@ -19,6 +19,10 @@ enum Precedence {
             case EQ:
             case NEQ:
             case ASSIGN:
+            case PLUS_ASSIGN:
+            case MINUS_ASSIGN:
+            case STAR_ASSIGN:
+            case SLASH_ASSIGN:
             case DOTDOT:
                 return EQUALS;
             case LANGLE:
@@ -39,6 +43,8 @@ enum Precedence {
             case ARROW:
                 return ARROW;
             case LPAREN:
+            case INCREMENT:
+            case DECREMENT:
                 return CALL;
             case DOT:
                 return DOT;
@@ -99,6 +99,30 @@ public class Token {
         return new Token(TokenType.ARROW, "=>", position);
     }
 
+    public static Token plusAssign(Position position) {
+        return new Token(TokenType.PLUS_ASSIGN, "+=", position);
+    }
+
+    public static Token minusAssign(Position position) {
+        return new Token(TokenType.MINUS_ASSIGN, "-=", position);
+    }
+
+    public static Token starAssign(Position position) {
+        return new Token(TokenType.STAR_ASSIGN, "*=", position);
+    }
+
+    public static Token slashAssign(Position position) {
+        return new Token(TokenType.SLASH_ASSIGN, "/=", position);
+    }
+
+    public static Token increment(Position position) {
+        return new Token(TokenType.INCREMENT, "++", position);
+    }
+
+    public static Token decrement(Position position) {
+        return new Token(TokenType.DECREMENT, "--", position);
+    }
+
     public static Token plus(Position position) {
         return new Token(TokenType.PLUS, '+', position);
     }
@@ -199,6 +223,22 @@ public class Token {
         return new Token(TokenType.IN, "in", position);
     }
 
+    public static Token _while(Position position) {
+        return new Token(TokenType.WHILE, "while", position);
+    }
+
+    public static Token _break(Position position) {
+        return new Token(TokenType.BREAK, "break", position);
+    }
+
+    public static Token _continue(Position position) {
+        return new Token(TokenType.CONTINUE, "continue", position);
+    }
+
+    public static Token match(Position position) {
+        return new Token(TokenType.MATCH, "match", position);
+    }
+
     public static Token type(Position position) {
         return new Token(TokenType.TYPE, "type", position);
     }
@@ -23,6 +23,12 @@ public enum TokenType {
     OR("||"),
     DOTDOT(".."),
     ARROW("=>"),
+    PLUS_ASSIGN("+="),
+    MINUS_ASSIGN("-="),
+    STAR_ASSIGN("*="),
+    SLASH_ASSIGN("/="),
+    INCREMENT("++"),
+    DECREMENT("--"),
 
     PLUS("+"),
     MINUS("-"),
@@ -53,6 +59,10 @@ public enum TokenType {
     VAR("VAR"),
     FOR("FOR"),
     IN("IN"),
+    WHILE("WHILE"),
+    BREAK("BREAK"),
+    CONTINUE("CONTINUE"),
+    MATCH("MATCH"),
     TYPE("TYPE"),
     EXPORT("EXPORT"),
     IMPORT("IMPORT"),
@@ -74,6 +84,10 @@ public enum TokenType {
         .put("else", ELSE)
         .put("for", FOR)
         .put("in", IN)
+        .put("while", WHILE)
+        .put("break", BREAK)
+        .put("continue", CONTINUE)
+        .put("match", MATCH)
         .put("type", TYPE)
         .put("export", EXPORT)
         .put("import", IMPORT)
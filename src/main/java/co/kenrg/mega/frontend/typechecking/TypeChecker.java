@@ -33,11 +33,14 @@ import co.kenrg.mega.frontend.ast.expression.IfExpression;
 import co.kenrg.mega.frontend.ast.expression.IndexExpression;
 import co.kenrg.mega.frontend.ast.expression.InfixExpression;
 import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.MatchCase;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
 import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
 import co.kenrg.mega.frontend.ast.expression.Parameter;
 import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
 import co.kenrg.mega.frontend.ast.expression.PrefixExpression;
 import co.kenrg.mega.frontend.ast.expression.RangeExpression;
+import co.kenrg.mega.frontend.ast.expression.StringInterpolationExpression;
 import co.kenrg.mega.frontend.ast.expression.StringLiteral;
 import co.kenrg.mega.frontend.ast.iface.Exportable;
 import co.kenrg.mega.frontend.ast.iface.Expression;
@@ -50,6 +53,7 @@ import co.kenrg.mega.frontend.ast.statement.ImportStatement;
 import co.kenrg.mega.frontend.ast.statement.TypeDeclarationStatement;
 import co.kenrg.mega.frontend.ast.statement.ValStatement;
 import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
 import co.kenrg.mega.frontend.ast.type.BasicTypeExpression;
 import co.kenrg.mega.frontend.ast.type.FunctionTypeExpression;
 import co.kenrg.mega.frontend.ast.type.ParametrizedTypeExpression;
@@ -93,6 +97,7 @@ import co.kenrg.mega.frontend.typechecking.types.ParametrizedMegaType;
 import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
 import co.kenrg.mega.frontend.typechecking.types.StructType;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -123,6 +128,13 @@ public class TypeChecker {
         }
     };
 
+    private static final Set<MegaType> MATCHABLE_TYPES = ImmutableSet.of(
+        PrimitiveTypes.INTEGER,
+        PrimitiveTypes.FLOAT,
+        PrimitiveTypes.BOOLEAN,
+        PrimitiveTypes.STRING
+    );
+
     final List<TypeCheckerError> errors;
     private Function<String, Optional<TypeCheckResult<Module>>> moduleProvider;
 
@@ -157,6 +169,8 @@ public class TypeChecker {
             this.typecheckFunctionDeclarationStatement((FunctionDeclarationStatement) node, env);
         } else if (node instanceof ForLoopStatement) {
             this.typecheckForLoopStatement((ForLoopStatement) node, env);
+        } else if (node instanceof WhileLoopStatement) {
+            this.typecheckWhileLoopStatement((WhileLoopStatement) node, env);
         } else if (node instanceof TypeDeclarationStatement) {
             this.typecheckTypeDeclarationStatement((TypeDeclarationStatement) node, env);
         } else if (node instanceof ImportStatement) {
@@ -172,6 +186,8 @@ public class TypeChecker {
             return this.typecheckLiteralExpression(PrimitiveTypes.BOOLEAN, expectedType, node);
         } else if (node instanceof StringLiteral) {
             return this.typecheckLiteralExpression(PrimitiveTypes.STRING, expectedType, node);
+        } else if (node instanceof StringInterpolationExpression) {
+            return this.typecheckStringInterpolationExpression((StringInterpolationExpression) node, env, expectedType);
         } else if (node instanceof ArrayLiteral) {
             return this.typecheckArrayLiteral((ArrayLiteral) node, env, expectedType);
         } else if (node instanceof ObjectLiteral) {
@@ -184,6 +200,8 @@ public class TypeChecker {
             return this.typecheckInfixExpression((InfixExpression) node, env, expectedType);
         } else if (node instanceof IfExpression) {
             return this.typecheckIfExpression((IfExpression) node, env, expectedType);
+        } else if (node instanceof MatchExpression) {
+            return this.typecheckMatchExpression((MatchExpression) node, env, expectedType);
         } else if (node instanceof BlockExpression) {
             return this.typecheckBlockExpression((BlockExpression) node, env, expectedType);
         } else if (node instanceof Identifier) {
@@ -342,16 +360,20 @@ public class TypeChecker {
         MegaType declaredReturnType = statement.typeAnnotation != null
             ? env.getTypeByName(statement.typeAnnotation)
             : null;
+
+        // If the return type is declared, the function's type is known up-front, and it can be bound before its body is
+        // typechecked; this allows the function to call itself recursively.
+        if (declaredReturnType != null) {
+            env.addBindingWithType(statement.name.value, new FunctionType(statement.parameters, declaredReturnType, Kind.METHOD), true);
+        }
+
         MegaType returnType = typecheckNode(statement.body, childEnv, declaredReturnType);
 
         if (statement.typeAnnotation != null) {
             if (declaredReturnType == null) {
                 this.errors.add(new UnknownTypeError(statement.typeAnnotation, statement.token.position));
-            } else {
-                if (!declaredReturnType.isEquivalentTo(returnType)) {
-                    this.errors.add(new TypeMismatchError(declaredReturnType, returnType, statement.body.getToken().position));
-                }
-                env.addBindingWithType(statement.name.value, new FunctionType(statement.parameters, declaredReturnType, Kind.METHOD), true);
+            } else if (!declaredReturnType.isEquivalentTo(returnType)) {
+                this.errors.add(new TypeMismatchError(declaredReturnType, returnType, statement.body.getToken().position));
             }
         } else {
             env.addBindingWithType(statement.name.value, new FunctionType(statement.parameters, returnType, Kind.METHOD), true);
@@ -364,7 +386,10 @@ public class TypeChecker {
 
         MegaType iterateeType = typecheckNode(statement.iteratee, env);
         ArrayType arrayAnyType = new ArrayType(PrimitiveTypes.ANY);
-        if (!arrayAnyType.isEquivalentTo(iterateeType)) {
+        if (PrimitiveTypes.INT_RANGE.isEquivalentTo(iterateeType)) {
+            childEnv.addBindingWithType(iterator, PrimitiveTypes.INTEGER, true);
+            statement.iterator.setType(PrimitiveTypes.INTEGER);
+        } else if (!arrayAnyType.isEquivalentTo(iterateeType)) {
             this.errors.add(new TypeMismatchError(arrayAnyType, iterateeType, statement.iteratee.getToken().position));
             childEnv.addBindingWithType(iterator, unknownType, true);
         } else {
@@ -376,6 +401,11 @@ public class TypeChecker {
         typecheckNode(statement.block, childEnv);
     }
 
+    private void typecheckWhileLoopStatement(WhileLoopStatement statement, TypeEnvironment env) {
+        typecheckNode(statement.condition, env, PrimitiveTypes.BOOLEAN);
+        typecheckNode(statement.block, env.createChildEnvironment());
+    }
+
     private void typecheckTypeDeclarationStatement(TypeDeclarationStatement statement, TypeEnvironment env) {
         String typeName = statement.typeName.value;
         MegaType type = resolveType(statement.typeExpr, env);
@@ -533,6 +563,14 @@ public class TypeChecker {
         return expectedType;
     }
 
+    @VisibleForTesting
+    MegaType typecheckStringInterpolationExpression(StringInterpolationExpression expr, TypeEnvironment env, @Nullable MegaType expectedType) {
+        for (Expression interpolatedExpr : expr.expressions) {
+            typecheckNode(interpolatedExpr, env);
+        }
+        return this.typecheckLiteralExpression(PrimitiveTypes.STRING, expectedType, expr);
+    }
+
     @VisibleForTesting
     MegaType typecheckArrayLiteral(ArrayLiteral array, TypeEnvironment env, @Nullable MegaType expectedType) {
         if (array.elements.isEmpty()) {
@@ -629,6 +667,7 @@ public class TypeChecker {
     MegaType typecheckPrefixExpression(PrefixExpression expr, TypeEnvironment env, @Nullable MegaType expectedType) {
         switch (expr.operator) {
             case "!":
+                typecheckNode(expr.expression, env); // Any value can be negated, but its type must still be known when compiling
                 if (expectedType != null && !expectedType.equals(PrimitiveTypes.BOOLEAN)) {
                     this.errors.add(new TypeMismatchError(expectedType, PrimitiveTypes.BOOLEAN, expr.token.position));
                 }
@@ -735,6 +774,52 @@ public class TypeChecker {
         }
     }
 
+    @VisibleForTesting
+    MegaType typecheckMatchExpression(MatchExpression expr, TypeEnvironment env, @Nullable MegaType expectedType) {
+        // Patterns are literals, so only values of the types of literals can be matched
+        MegaType subjectType = typecheckNode(expr.subject, env);
+        if (!MATCHABLE_TYPES.contains(subjectType) && subjectType != unknownType) {
+            this.errors.add(new UnsupportedFeatureError(String.format("Matching on values of type %s", subjectType.signature()), expr.subject.getToken().position));
+        }
+        for (MatchCase matchCase : expr.cases) {
+            for (Expression pattern : matchCase.patterns) {
+                typecheckNode(pattern, env, subjectType);
+            }
+        }
+
+        // Like an if-expression without an else, a match-expression without an else has no value
+        if (expr.elseExpr == null) {
+            for (MatchCase matchCase : expr.cases) {
+                typecheckNode(matchCase.body, env);
+            }
+            if (expectedType != null && !PrimitiveTypes.UNIT.isEquivalentTo(expectedType)) {
+                this.errors.add(new TypeMismatchError(expectedType, PrimitiveTypes.UNIT, expr.token.position));
+                expr.setType(expectedType);
+                return expectedType;
+            }
+            expr.setType(PrimitiveTypes.UNIT);
+            return PrimitiveTypes.UNIT;
+        }
+
+        List<Expression> bodies = Lists.newArrayList();
+        for (MatchCase matchCase : expr.cases) {
+            bodies.add(matchCase.body);
+        }
+        bodies.add(expr.elseExpr);
+
+        MegaType type = expectedType;
+        for (Expression body : bodies) {
+            MegaType bodyType = typecheckNode(body, env, expectedType);
+            if (type == null) {
+                type = bodyType;
+            } else if (expectedType == null && !type.isEquivalentTo(bodyType)) {
+                this.errors.add(new TypeMismatchError(type, bodyType, body.getToken().position));
+            }
+        }
+        expr.setType(type);
+        return type;
+    }
+
     // BlockExpressions are only accessible via if-expressions and arrow/plain function bodies there's no way to create
     // a BlockExpression on its own.
     private MegaType typecheckBlockExpression(BlockExpression expr, TypeEnvironment env, @Nullable MegaType expectedType) {
@@ -995,7 +1080,19 @@ public class TypeChecker {
     @VisibleForTesting
     MegaType typecheckIndexExpression(IndexExpression expr, TypeEnvironment env, @Nullable MegaType expectedType) {
         MegaType targetType = typecheckNode(expr.target, env);
-        if (!(new ArrayType(PrimitiveTypes.ANY)).isEquivalentTo(targetType)) {
+        if (PrimitiveTypes.INT_RANGE.isEquivalentTo(targetType)) {
+            typecheckNode(expr.index, env, PrimitiveTypes.INTEGER);
+
+            if (expectedType != null) {
+                if (!expectedType.isEquivalentTo(PrimitiveTypes.INTEGER)) {
+                    this.errors.add(new TypeMismatchError(expectedType, PrimitiveTypes.INTEGER, expr.token.position));
+                }
+                expr.setType(expectedType);
+                return expectedType;
+            }
+            expr.setType(PrimitiveTypes.INTEGER);
+            return PrimitiveTypes.INTEGER;
+        } else if (!(new ArrayType(PrimitiveTypes.ANY)).isEquivalentTo(targetType)) {
             this.errors.add(new UnindexableTypeError(targetType, expr.target.getToken().position));
             expr.setType(unknownType);
             return unknownType;
@@ -1091,15 +1188,15 @@ public class TypeChecker {
         typecheckNode(expr.leftBound, env, PrimitiveTypes.INTEGER);
         typecheckNode(expr.rightBound, env, PrimitiveTypes.INTEGER);
 
-        ArrayType arrayType = new ArrayType(PrimitiveTypes.INTEGER);
+        MegaType rangeType = PrimitiveTypes.INT_RANGE;
         if (expectedType != null) {
-            if (!expectedType.isEquivalentTo(arrayType)) {
-                this.errors.add(new TypeMismatchError(expectedType, arrayType, expr.token.position));
+            if (!expectedType.isEquivalentTo(rangeType)) {
+                this.errors.add(new TypeMismatchError(expectedType, rangeType, expr.token.position));
             }
             expr.setType(expectedType);
             return expectedType;
         }
-        expr.setType(arrayType);
-        return arrayType;
+        expr.setType(rangeType);
+        return rangeType;
     }
 }
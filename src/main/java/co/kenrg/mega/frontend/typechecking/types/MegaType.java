@@ -36,6 +36,7 @@ public abstract class MegaType {
         return null;
     }
 
+    // Excluded from equals/hashCode, since it fills up as properties are looked up
     private LinkedHashMultimap<String, MegaType> propertiesCache = LinkedHashMultimap.create();
 
     public LinkedHashMultimap<String, MegaType> getProperties() {
@@ -72,12 +73,12 @@ public abstract class MegaType {
 
     @Override
     public boolean equals(Object obj) {
-        return EqualsBuilder.reflectionEquals(this, obj);
+        return EqualsBuilder.reflectionEquals(this, obj, "propertiesCache");
     }
 
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this);
+        return HashCodeBuilder.reflectionHashCode(this, "propertiesCache");
     }
 
 }
@@ -6,6 +6,7 @@ import static java.util.stream.Collectors.toMap;
 import java.util.Map;
 
 import com.google.common.collect.Lists;
+import mega.lang.IntRange;
 
 public class PrimitiveTypes {
 
@@ -143,9 +144,31 @@ public class PrimitiveTypes {
         }
     };
 
+    public static final MegaType INT_RANGE = new MegaType() {
+        @Override
+        public String displayName() {
+            return "IntRange";
+        }
+
+        @Override
+        public boolean isEquivalentTo(MegaType other) {
+            return other.equals(INT_RANGE);
+        }
+
+        @Override
+        public String className() {
+            return "mega/lang/IntRange";
+        }
+
+        @Override
+        public Class<?> typeClass() {
+            return IntRange.class;
+        }
+    };
+
     public static final MegaType NUMBER = new UnionType("Number", INTEGER, FLOAT);
 
     public static final Map<String, MegaType> ALL =
-        Lists.newArrayList(INTEGER, FLOAT, BOOLEAN, STRING, UNIT, NOTHING, ANY).stream()
+        Lists.newArrayList(INTEGER, FLOAT, BOOLEAN, STRING, INT_RANGE, UNIT, NOTHING, ANY).stream()
             .collect(toMap(MegaType::displayName, identity()));
 }
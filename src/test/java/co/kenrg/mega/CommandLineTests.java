@@ -86,10 +86,44 @@ class CommandLineTests {
             String expected = "" +
                 "usage: mega compile [filename]\n" +
                 "Compile the Mega file passed as an argument to JVM class files\n" +
-                "  -h,--help             Displays this help information, for the compile\n" +
-                "                        subcommand\n" +
-                "  -o,--out-dir <arg>    Directory where compiled class files should be written\n" +
-                "                        (defaults to current directory)\n";
+                "     --eager-init              Initialize all top-level vals when their module\n" +
+                "                               is loaded, rather than on first use\n" +
+                "     --escape-report           Print a report of the local objects and struct\n" +
+                "                               instances considered for scalar replacement\n" +
+                "     --fold-report             Print a report of the expressions simplified by\n" +
+                "                               constant folding\n" +
+                "  -h,--help                    Displays this help information, for the compile\n" +
+                "                               subcommand\n" +
+                "     --indy-lambdas            Compile arrow functions via invokedynamic instead\n" +
+                "                               of inner classes (requires Java 8+)\n" +
+                "     --inline-depth <arg>      Max nesting depth of inlined function bodies\n" +
+                "                               (defaults to 2)\n" +
+                "     --inline-report           Print a report of the calls considered for\n" +
+                "                               inlining, against the inlining budget\n" +
+                "     --inline-size <arg>       Max size (in AST nodes) of a function body to\n" +
+                "                               inline at call-sites; 0 disables inlining\n" +
+                "                               (defaults to 32)\n" +
+                "     --ir-dump                 Print the mid-level IR of each function compiled\n" +
+                "                               via it, after its passes have run\n" +
+                "     --mid-level-ir            Compile function bodies via the mid-level IR\n" +
+                "                               (running its passes over them), where they're\n" +
+                "                               supported\n" +
+                "     --no-fold                 Disable constant folding and dead-branch\n" +
+                "                               elimination\n" +
+                "     --no-scalar-replace       Disable scalar replacement of local objects and\n" +
+                "                               struct instances which don't escape\n" +
+                "  -o,--out-dir <arg>           Directory where compiled class files should be\n" +
+                "                               written (defaults to current directory)\n" +
+                "     --peephole                Run all peephole optimizations over the generated\n" +
+                "                               bytecode\n" +
+                "     --peephole-report         Print the instruction counts of each method,\n" +
+                "                               before and after peephole optimization\n" +
+                "     --peephole-rules <arg>    Comma-separated peephole optimizations to run\n" +
+                "                               over the generated bytecode (any of [box-unbox,\n" +
+                "                               constant-branches, single-use-locals,\n" +
+                "                               jump-threading, unreachable-code])\n" +
+                "  -t,--target <arg>            Java release the generated class files should\n" +
+                "                               target (defaults to 11)\n";
             assertEquals(expected, output);
         }
     }
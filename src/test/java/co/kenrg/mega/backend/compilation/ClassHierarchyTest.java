@@ -0,0 +1,77 @@
+package co.kenrg.mega.backend.compilation;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+class ClassHierarchyTest {
+
+    // Only allows reading class files as resources, so that any attempt to load a class fails the test
+    private static class NonLoadingClassLoader extends ClassLoader {
+        NonLoadingClassLoader() {
+            super(ClassHierarchyTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) {
+            throw new AssertionError("Class " + name + " should not have been loaded");
+        }
+    }
+
+    @TestFactory
+    List<DynamicTest> testGetCommonSuperClass() {
+        ClassHierarchy classHierarchy = new ClassHierarchy(new NonLoadingClassLoader());
+        classHierarchy.declareClass("Module", "java/lang/Object", false);
+        classHierarchy.declareClass("Module$Person", "java/lang/Object", false);
+        classHierarchy.declareClass("Module$fn1", "mega/lang/functions/Invokeable", false);
+        classHierarchy.declareClass("Module$fn2", "mega/lang/functions/Invokeable", false);
+        classHierarchy.declareClass("Module$fn2$inner", "Module$fn2", false);
+
+        List<Triple<String, String, String>> testCases = Lists.newArrayList(
+            Triple.of("Module$fn1", "Module$fn1", "Module$fn1"),
+            Triple.of("Module$fn1", "Module$fn2", "mega/lang/functions/Invokeable"),
+            Triple.of("Module$fn1", "Module$fn2$inner", "mega/lang/functions/Invokeable"),
+            Triple.of("Module$fn2$inner", "Module$fn2", "Module$fn2"),
+            Triple.of("Module$Person", "Module$fn1", "java/lang/Object"),
+            Triple.of("Module$Person", "java/lang/String", "java/lang/Object"),
+            Triple.of("java/lang/Integer", "java/lang/Float", "java/lang/Number"),
+            Triple.of("java/lang/Integer", "java/lang/Number", "java/lang/Number"),
+            Triple.of("java/lang/Integer", "java/lang/Comparable", "java/lang/Object"),
+            Triple.of("Module$fn1", "mega/lang/functions/Function1", "java/lang/Object")
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String type1 = testCase.getLeft();
+                String type2 = testCase.getMiddle();
+                String expected = testCase.getRight();
+
+                String name = String.format("The common superclass of %s and %s should be %s", type1, type2, expected);
+                return dynamicTest(name, () -> {
+                    assertEquals(expected, classHierarchy.getCommonSuperClass(type1, type2));
+                    assertEquals(expected, classHierarchy.getCommonSuperClass(type2, type1));
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testGetCommonSuperClass_unknownClass() {
+        ClassHierarchy classHierarchy = new ClassHierarchy(new NonLoadingClassLoader());
+        try {
+            classHierarchy.getCommonSuperClass("Module$fn1", "java/lang/String");
+            fail("The common superclass of an unknown class should not be computable");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package co.kenrg.mega.backend.compilation;
 
+import static co.kenrg.mega.backend.compilation.optimization.LazyStaticInit.getHolderClassName;
 import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -28,6 +29,7 @@ import co.kenrg.mega.frontend.typechecking.TypeChecker;
 import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
 import co.kenrg.mega.frontend.typechecking.errors.TypeCheckerError;
 import com.google.common.collect.Lists;
+import mega.lang.IntRange;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -59,7 +61,20 @@ class CompilerTestUtils {
 
     static boolean requireNoParseOrTypecheckErrors = false;
 
+    // Tests compile with the default options (as the command line does), unless they assert on the shape of the code
+    // generated for a construct (its opcodes, classes or fields); those compile with the optimization passes disabled, so
+    // that they see the code generated for each construct rather than the (often constant) result of optimizing it away
+    static final CompilerOptions UNOPTIMIZED = CompilerOptions.DEFAULT.withFoldConstants(false).withInlineBudget(0, 0).withLazyStaticInit(false).withScalarReplacement(false);
+
+    // The backend tests are run a second time with function bodies compiled via the mid-level IR (see the midLevelIrTest
+    // task), so that both paths through the Compiler are held to the same expectations
+    static final boolean MID_LEVEL_IR = Boolean.getBoolean("mega.test.midLevelIr");
+
     static TestCompilationResult parseTypecheckAndCompileInput(String input, Function<String, TypeCheckResult<Module>> typedModuleProvider) {
+        return parseTypecheckAndCompileInput(input, typedModuleProvider, CompilerOptions.DEFAULT);
+    }
+
+    static TestCompilationResult parseTypecheckAndCompileInput(String input, Function<String, TypeCheckResult<Module>> typedModuleProvider, CompilerOptions options) {
         Lexer l = new Lexer(input);
         Parser p = new Parser(l);
         Module module = p.parseModule();
@@ -86,7 +101,7 @@ class CompilerTestUtils {
         }
 
         String className = StringUtils.capitalize(RandomStringUtils.randomAlphabetic(16));
-        Compiler compiler = new Compiler(className, typeEnv);
+        Compiler compiler = new Compiler(className, typeEnv, MID_LEVEL_IR ? options.withMidLevelIr(true) : options);
         compiler.setTypedModuleProvider(typedModuleProvider);
         List<Pair<String, byte[]>> generatedClasses = compiler.compile(module);
 
@@ -115,6 +130,10 @@ class CompilerTestUtils {
         return parseTypecheckAndCompileInput(input, moduleName -> null);
     }
 
+    static TestCompilationResult parseTypecheckAndCompileInput(String input, CompilerOptions options) {
+        return parseTypecheckAndCompileInput(input, moduleName -> null, options);
+    }
+
     static void deleteGeneratedClassFiles() {
         try {
             Files.list(Paths.get(outputDir))
@@ -139,11 +158,16 @@ class CompilerTestUtils {
         }
     }
 
+    // A top-level val which is initialized on first use is a field of its holder class, rather than of the module's class
     static Field loadStaticVariableFromClass(String className, String fieldName) {
         try {
             return loadClass(className).getDeclaredField(fieldName);
         } catch (NoSuchFieldException e) {
-            throw new TestFailureException(e);
+            try {
+                return loadClass(getHolderClassName(className, fieldName)).getDeclaredField(fieldName);
+            } catch (TestFailureException | NoSuchFieldException holderException) {
+                throw new TestFailureException(e);
+            }
         }
     }
 
@@ -165,7 +189,8 @@ class CompilerTestUtils {
         try {
             Field field = loadStaticVariableFromClass(className, fieldName);
 
-            if (!Modifier.isPrivate(field.getModifiers())) {
+            // The field of a lazily-initialized val isn't private (its module's class reads it), but its holder class is
+            if (!Modifier.isPrivate(field.getModifiers()) && !Modifier.isPrivate(field.getDeclaringClass().getModifiers())) {
                 throw new TestFailureException("Field " + fieldName + " on class " + className + " was not private");
             }
 
@@ -193,6 +218,18 @@ class CompilerTestUtils {
         } else if (value instanceof String) {
             String variable = (String) valueGetter.apply(className, staticFieldName);
             assertEquals(value, variable, "The static value read off the generated class should be as expected");
+        } else if (value instanceof int[]) {
+            int[] variable = (int[]) valueGetter.apply(className, staticFieldName);
+            assertArrayEquals((int[]) value, variable, "The static value read off the generated class should be as expected");
+        } else if (value instanceof float[]) {
+            float[] variable = (float[]) valueGetter.apply(className, staticFieldName);
+            assertArrayEquals((float[]) value, variable, "The static value read off the generated class should be as expected");
+        } else if (value instanceof boolean[]) {
+            boolean[] variable = (boolean[]) valueGetter.apply(className, staticFieldName);
+            assertArrayEquals((boolean[]) value, variable, "The static value read off the generated class should be as expected");
+        } else if (value instanceof IntRange) {
+            IntRange variable = (IntRange) valueGetter.apply(className, staticFieldName);
+            assertEquals(value, variable, "The static value read off the generated class should be as expected");
         } else if (value instanceof Object[]) {
             Object[] variable = (Object[]) valueGetter.apply(className, staticFieldName);
             assertArrayEquals((Object[]) value, variable, "The static value read off the generated class should be as expected");
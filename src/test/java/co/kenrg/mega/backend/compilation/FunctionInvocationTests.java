@@ -2,14 +2,26 @@ package co.kenrg.mega.backend.compilation;
 
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.assertStaticBindingOnClassEquals;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.deleteGeneratedClassFiles;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadClass;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadStaticMethodsFromClass;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.UNOPTIMIZED;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.parseTypecheckAndCompileInput;
 import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
+import co.kenrg.mega.backend.compilation.CompilerOptions.LambdaCodegen;
 import co.kenrg.mega.backend.compilation.CompilerTestUtils.TestCompilationResult;
 import com.google.common.collect.Lists;
+import mega.lang.functions.Function1;
+import mega.lang.functions.IntToIntFunction;
 import org.apache.commons.lang3.tuple.Triple;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.DynamicTest;
@@ -81,7 +93,12 @@ class FunctionInvocationTests {
             ),
             Triple.of("val a = ((i: Int) => i + 1)(2)", "a", 3),
             Triple.of("val a = (i: Int) => (s: String) => s; val b = a(3)('abc')", "b", "abc"),
-            Triple.of("val a = (i: Int) => (s: String) => (x: Bool) => x; val b = a(3)('abc')(true)", "b", true)
+            Triple.of("val a = (i: Int) => (s: String) => (x: Bool) => x; val b = a(3)('abc')(true)", "b", true),
+
+            // The branches' values are instances of different (not yet written) lambda classes, whose common superclass
+            // must be known to compute the frame at the end of the if-expression
+            Triple.of("val inc = (i: Int) => i + 1; val dec = (i: Int) => i - 1; val fn = if 1 < 2 { inc } else { dec }; val a = fn(3)", "a", 4),
+            Triple.of("func pick(up: Bool) { val inc = (i: Int) => i + 1; val dec = (i: Int) => i - 1; if up { inc } else { dec } }; val a = pick(false)(3)", "a", 2)
         );
 
         return testCases.stream()
@@ -214,6 +231,30 @@ class FunctionInvocationTests {
                     "val three = returnsInt() + returnsInt(fn: () => 2)",
                 "three",
                 3
+            ),
+            Triple.of(
+                "func describe(name: String, greeting: String = 'Hello', punc: String = '!') { greeting + ', ' + name + punc }\n" +
+                    "val greetings = describe('a') + ' ' + describe(name: 'b', punc: '?') + ' ' + describe(punc: '.', name: 'c', greeting: 'Hi')",
+                "greetings",
+                "Hello, a! Hello, b? Hi, c."
+            ),
+
+            // With default values which need local variables of their own
+            Triple.of(
+                "func scale(a: Int, factor: Int = if 1 < 2 { val f = 3; f * 2 } else { 0 }) { a * factor }\n" +
+                    "val scaled = scale(2) + scale(a: 1)",
+                "scaled",
+                18
+            ),
+
+            // From within other functions' bodies
+            Triple.of(
+                "func returnsSum(i1: Int = 1, i2: Int = 2, i3: Int = 3) { i1 + i2 + i3 }\n" +
+                    "func sumOf(i1: Int) { returnsSum(i1) }\n" +
+                    "func sumOfTwo(i2: Int) { returnsSum(i2: i2) }\n" +
+                    "val sum = sumOf(10) + sumOfTwo(20)",
+                "sum",
+                39
             )
         );
 
@@ -234,6 +275,56 @@ class FunctionInvocationTests {
             .collect(toList());
     }
 
+    @TestFactory
+    List<DynamicTest> testDefaultValuedParameters_compileOverloadsPerOmittedArgumentsPattern() {
+        List<Triple<String, String, List<String>>> testCases = Lists.newArrayList(
+            Triple.of(
+                "func returnsSum(i1: Int = 1, i2: Int = 2, i3: Int = 3) { i1 + i2 + i3 }",
+                "returnsSum",
+                Lists.newArrayList()
+            ),
+            Triple.of(
+                "func returnsSum(i1: Int = 1, i2: Int = 2, i3: Int = 3) { i1 + i2 + i3 }\n" +
+                    "val a = returnsSum(10) + returnsSum(20) + returnsSum(i1: 10, i3: 30) + returnsSum()",
+                "returnsSum",
+                Lists.newArrayList("returnsSum$default$i1$i2$i3", "returnsSum$default$i2", "returnsSum$default$i2$i3")
+            ),
+            Triple.of(
+                "export func returnsSum(i1: Int, i2: Int = 2, i3: Int = 3) { i1 + i2 + i3 }",
+                "returnsSum",
+                Lists.newArrayList("returnsSum$default$i2", "returnsSum$default$i2$i3", "returnsSum$default$i3")
+            ),
+
+            // Exported functions with many defaulted params only get overloads for the patterns used in their module
+            Triple.of(
+                "export func returnsSum(i1: Int = 1, i2: Int = 2, i3: Int = 3, i4: Int = 4) { i1 + i2 + i3 + i4 }\n" +
+                    "val a = returnsSum(10) + returnsSum(i2: 20)",
+                "returnsSum",
+                Lists.newArrayList("returnsSum$default$i1$i3$i4", "returnsSum$default$i2$i3$i4")
+            )
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                String fnName = testCase.getMiddle();
+                List<String> expectedOverloads = testCase.getRight();
+
+                String name = "Compiling `" + input + "` should result in the overloads " + expectedOverloads + " of " + fnName;
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input);
+
+                    List<String> overloads = Arrays.stream(loadClass(result.className).getDeclaredMethods())
+                        .map(Method::getName)
+                        .filter(methodName -> methodName.startsWith(fnName + "$default$"))
+                        .sorted()
+                        .collect(toList());
+                    assertEquals(expectedOverloads, overloads);
+                });
+            })
+            .collect(toList());
+    }
+
     @TestFactory
     List<DynamicTest> testInvocationOfStaticMethodReferences() {
         List<Triple<String, String, Object>> testCases = Lists.newArrayList(
@@ -343,6 +434,244 @@ class FunctionInvocationTests {
             .collect(toList());
     }
 
+    @TestFactory
+    List<DynamicTest> testInvocationOfArrowFunctions_invokedynamic() {
+        List<Triple<String, String, Object>> testCases = Lists.newArrayList(
+            Triple.of("val returnsOne = () => 1; val one = returnsOne()", "one", 1),
+            Triple.of("val shout = (str: String) => str + '!'; val loudNoises = shout('shouting')", "loudNoises", "shouting!"),
+            Triple.of("val half = (f: Float) => f / 2; val h = half(3.0)", "h", 1.5F),
+            Triple.of("val negate = (b: Bool) => !b; val f = negate(true)", "f", false),
+            Triple.of("val sum = (arr: Array[Int]) => arr[0] + arr[1]; val s = sum([1, 2])", "s", 3),
+            Triple.of("" +
+                    "val apply = (fn: Int => Int, a: Int) => fn(a);" +
+                    "val a = apply(i => i + 1, 3)",
+                "a",
+                4
+            ),
+            Triple.of("val a = (i: Int) => (s: String) => (x: Bool) => x; val b = a(3)('abc')(true)", "b", true),
+            Triple.of("val a = (i: Int) => (s: String) => s * i; val b = a(3)('abc')", "b", "abcabcabc"),
+            Triple.of("" +
+                    "func createAdder(a: Int) { (i: Int) => a + i }" +
+                    "val adder = createAdder(5)" +
+                    "val two = adder(-3)",
+                "two",
+                2
+            ),
+            Triple.of("" +
+                    "func createJoiner(a: String, b: Int) { (s: String) => a + s + b }" +
+                    "val joined = createJoiner('a', 2)('-')",
+                "joined",
+                "a-2"
+            )
+        );
+
+        CompilerOptions options = UNOPTIMIZED.withLambdaCodegen(LambdaCodegen.INVOKEDYNAMIC);
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                String bindingName = testCase.getMiddle();
+                Object val = testCase.getRight();
+
+                String name = "Compiling `" + input + "` with invokedynamic lambdas should result in the static variable `" + bindingName + "` = " + val;
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input, options);
+                    String className = result.className;
+
+                    assertEquals(1, result.classFiles.size(), "No inner classes should be generated for arrow functions");
+                    assertStaticBindingOnClassEquals(className, bindingName, val, true);
+                });
+            })
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testInvocationOfArrowFunctions_specializedFunctionInterfaces() {
+        class TestCase {
+            private final String input;
+            private final String bindingName;
+            private final Object val;
+            @Nullable private final String specializedIfaceName;
+
+            private TestCase(String input, String bindingName, Object val, @Nullable String specializedIfaceName) {
+                this.input = input;
+                this.bindingName = bindingName;
+                this.val = val;
+                this.specializedIfaceName = specializedIfaceName;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("val inc = (i: Int) => i + 1; val fn = inc; val x = fn(1)", "x", 2, "IntToIntFunction"),
+            new TestCase("val half = (i: Int) => i / 2.0; val fn = half; val x = fn(3)", "x", 1.5F, "IntToFloatFunction"),
+            new TestCase("val isBig = (i: Int) => i > 2; val fn = isBig; val x = fn(4)", "x", true, "IntToBoolFunction"),
+            new TestCase("val floor = (f: Float) => 3; val fn = floor; val x = fn(3.5)", "x", 3, "FloatToIntFunction"),
+            new TestCase("val sq = (f: Float) => f * f; val fn = sq; val x = fn(1.5)", "x", 2.25F, "FloatToFloatFunction"),
+            new TestCase("val isPos = (f: Float) => f > 0.0; val fn = isPos; val x = fn(-1.0)", "x", false, "FloatToBoolFunction"),
+            new TestCase("val add = (a: Int, b: Int) => a + b; val fn = add; val x = fn(1, 2)", "x", 3, "IntIntToIntFunction"),
+            new TestCase("val avg = (a: Int, b: Int) => (a + b) / 2.0; val fn = avg; val x = fn(1, 2)", "x", 1.5F, "IntIntToFloatFunction"),
+            new TestCase("val lt = (a: Int, b: Int) => a < b; val fn = lt; val x = fn(1, 2)", "x", true, "IntIntToBoolFunction"),
+            new TestCase("val cmp = (a: Float, b: Float) => 1; val fn = cmp; val x = fn(1.0, 2.0)", "x", 1, "FloatFloatToIntFunction"),
+            new TestCase("val mul = (a: Float, b: Float) => a * b; val fn = mul; val x = fn(1.5, 2.0)", "x", 3.0F, "FloatFloatToFloatFunction"),
+            new TestCase("val eq = (a: Float, b: Float) => a == b; val fn = eq; val x = fn(1.5, 1.5)", "x", true, "FloatFloatToBoolFunction"),
+            new TestCase("" +
+                    "val apply = (fn: Int => Int, a: Int) => fn(a);" +
+                    "val x = apply(i => i * 3, 3)",
+                "x",
+                9,
+                "IntToIntFunction"
+            ),
+            new TestCase("" +
+                    "func createAdder(a: Int) { (i: Int) => a + i }" +
+                    "val adder = createAdder(5)" +
+                    "val x = adder(-3)",
+                "x",
+                2,
+                "IntToIntFunction"
+            ),
+            new TestCase("func add(a: Int, b: Int) { a + b }; val addFn = add; val x = addFn(3, 4)", "x", 7, "IntIntToIntFunction"),
+
+            // Function values whose static types have no specialized interface are still invoked generically
+            new TestCase("val inc = (i: Int) => i + 1; val apply = (fn: Int => Any, a: Int) => fn(a); val x = apply(inc, 1)", "x", 2, null),
+            new TestCase("val rep = (s: String, i: Int) => s * i; val x = rep('a', 3)", "x", "aaa", null),
+            new TestCase("val f = (a: Int, b: Float) => a + b; val x = f(1, 1.5)", "x", 2.5F, null)
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = "Compiling `" + testCase.input + "` should result in the static variable `" + testCase.bindingName + "` = " + testCase.val;
+                return dynamicTest(name, () -> {
+                    // Unoptimized, so that the function objects aren't inlined away
+                    TestCompilationResult result = parseTypecheckAndCompileInput(testCase.input, UNOPTIMIZED);
+                    String className = result.className;
+
+                    assertStaticBindingOnClassEquals(className, testCase.bindingName, testCase.val, true);
+                    if (testCase.specializedIfaceName != null) {
+                        Class<?> specializedIface = loadClass("mega.lang.functions." + testCase.specializedIfaceName);
+                        boolean isImplemented = result.classFiles.stream()
+                            .map(classFile -> classFile.getFileName().toString().replace(".class", ""))
+                            .anyMatch(classFileName -> specializedIface.isAssignableFrom(loadClass(classFileName)));
+                        assertTrue(isImplemented, "A function class should implement " + testCase.specializedIfaceName);
+                    }
+                });
+            })
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testInvocationOfSpecializedFunctionTypes_javaInterop() {
+        String input = "" +
+            "export func apply(fn: Int => Int, a: Int) { fn(a) }\n" +
+            "export func createAdder(a: Int) { (i: Int) => a + i }";
+
+        return Stream.of(LambdaCodegen.INNER_CLASSES, LambdaCodegen.INVOKEDYNAMIC)
+            .map(UNOPTIMIZED::withLambdaCodegen)
+            .map(options -> dynamicTest("Functions passed to and from Java should be invokable (" + options.lambdaCodegen + " lambdas)", () -> {
+                TestCompilationResult result = parseTypecheckAndCompileInput(input, options);
+
+                // A function value which only implements the generic interface is invoked generically
+                Function1<Integer, Integer> doubler = i -> i * 2;
+                Method apply = loadStaticMethodsFromClass(result.className, "apply").get(0);
+                assertEquals(42, apply.invoke(null, doubler, 21));
+
+                Method createAdder = loadStaticMethodsFromClass(result.className, "createAdder").get(0);
+                @SuppressWarnings("unchecked")
+                Function1<Integer, Integer> adder = (Function1<Integer, Integer>) createAdder.invoke(null, 5);
+                assertEquals(8, adder.invoke(3).intValue());
+                if (options.lambdaCodegen == LambdaCodegen.INNER_CLASSES) {
+                    assertEquals(8, ((IntToIntFunction) adder).invoke(3));
+                }
+                assertEquals(42, apply.invoke(null, adder, 37));
+            }))
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testInvocationOfNonCapturingLambdaVals() {
+        class TestCase {
+            private final String input;
+            private final String bindingName;
+            private final Object val;
+            private final int numClasses; // Function objects are only created for lambda vals whose values escape
+
+            private TestCase(String input, String bindingName, Object val, int numClasses) {
+                this.input = input;
+                this.bindingName = bindingName;
+                this.val = val;
+                this.numClasses = numClasses;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("val add = (a: Int, b: Int) => a + b; val x = add(1, 2)", "x", 3, 1),
+            new TestCase("val half = (f: Float) => f / 2; val x = half(half(3.0))", "x", 0.75F, 1),
+            new TestCase("val shout = (s: String) => s + '!'; val x = shout('hi')", "x", "hi!", 1),
+            new TestCase("val sum = (arr: Array[Int]) => arr[0] + arr[1]; val x = sum([1, 2])", "x", 3, 1),
+            new TestCase("func f(a: Int) { val sq = (i: Int) => i * i; sq(a) + sq(a + 1) }; val x = f(2)", "x", 13, 1),
+            new TestCase("func f(a: Int) { val g = (i: Int) => i + 1; g(a) }; func h(a: Int) { val g = (i: Int) => i * 10; g(a) }; val x = f(1) + h(1)", "x", 12, 1),
+            new TestCase("func f(a: Int) { val f = (i: Int) => i + 1; f(a) }; val x = f(1)", "x", 2, 1),
+            new TestCase("val inc = (i: Int) => i + 1; func f(a: Int) { inc(a) * 2 }; val x = f(1)", "x", 4, 1),
+            new TestCase("val mk = (i: Int) => (j: Int) => i + j; val x = mk(1)(2)", "x", 3, 2),
+            new TestCase("val inc = (i: Int) => i + 1; val apply = (fn: Int => Int, a: Int) => fn(a); val x = apply(inc, 1) + apply(inc, 2)", "x", 5, 2),
+            new TestCase("val inc = (i: Int) => i + 1; val incTwice = (i: Int) => inc(inc(i)); val x = incTwice(1)", "x", 3, 3)
+        );
+
+        return Stream.of(LambdaCodegen.INNER_CLASSES, LambdaCodegen.INVOKEDYNAMIC)
+            .map(UNOPTIMIZED::withLambdaCodegen)
+            .flatMap(options -> testCases.stream().map(testCase -> {
+                String name = String.format(
+                    "Compiling `%s` (%s lambdas) should result in the static variable `%s` = %s",
+                    testCase.input, options.lambdaCodegen, testCase.bindingName, testCase.val
+                );
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(testCase.input, options);
+                    String className = result.className;
+
+                    assertStaticBindingOnClassEquals(className, testCase.bindingName, testCase.val, true);
+                    if (options.lambdaCodegen == LambdaCodegen.INNER_CLASSES) {
+                        assertEquals(testCase.numClasses, result.classFiles.size());
+                    }
+                });
+            }))
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testInvocations_withAndWithoutInlining() {
+        List<Triple<String, String, Object>> testCases = Lists.newArrayList(
+            Triple.of("func add(a: Int, b: Int) { a + b }; val x = add(1, 2)", "x", 3),
+            Triple.of("func sub(a: Int, b: Int) { a - b }; val x = sub(b: 1, a: 5)", "x", 4),
+            Triple.of("func f(a: Int) { a + 1 }; func g(a: Int) { f(a) * 2 }; func h(a: Int) { g(a) + 1 }; val x = h(1) + g(2)", "x", 11),
+            Triple.of("val inc = (n: Int) => n + 1; val x = inc(inc(1))", "x", 3),
+            Triple.of("val shout = (s: String) => s + '!'; val x = shout('hi')", "x", "hi!"),
+            Triple.of("val k = 10; func f(a: Int) { val k = a * 2; k + 1 }; val x = f(k)", "x", 21),
+            Triple.of("func f(a: Int, b: Int) { a * 10 + b }; val a = 1; val b = 2; val x = f(b, a)", "x", 21),
+            Triple.of("func sq(n: Int) { n * n }; func sumSq(n: Int) { var total = 0; for i in 0..n { total = total + sq(i) }; total }; val x = sumSq(4)", "x", 14),
+            Triple.of("func step(n: Int) { n - 1 }; func count(n: Int, acc: Int): Int { if n == 0 { acc } else { count(step(n), acc + 1) } }; val x = count(100000, 0)", "x", 100000)
+        );
+
+        return Stream.of(LambdaCodegen.INNER_CLASSES, LambdaCodegen.INVOKEDYNAMIC)
+            .flatMap(lambdaCodegen -> Stream.of(0, CompilerOptions.DEFAULT_INLINE_MAX_SIZE).map(inlineMaxSize -> {
+                return UNOPTIMIZED.withLambdaCodegen(lambdaCodegen).withInlineBudget(inlineMaxSize, CompilerOptions.DEFAULT_INLINE_MAX_DEPTH);
+            }))
+            .flatMap(options -> testCases.stream().map(testCase -> {
+                String input = testCase.getLeft();
+                String bindingName = testCase.getMiddle();
+                Object val = testCase.getRight();
+
+                String name = String.format(
+                    "Compiling `%s` (%s lambdas, %s) should result in the static variable `%s` = %s",
+                    input, options.lambdaCodegen, options.inlineFunctions() ? "with inlining" : "without inlining", bindingName, val
+                );
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input, options);
+                    String className = result.className;
+
+                    assertStaticBindingOnClassEquals(className, bindingName, val, true);
+                });
+            }))
+            .collect(toList());
+    }
+
     @Test
     void testInvocationOfFunctionWhichAcceptsAMapLiteral() {
         String input = "" +
@@ -2,15 +2,23 @@ package co.kenrg.mega.backend.compilation;
 
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.assertStaticBindingOnClassEquals;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.deleteGeneratedClassFiles;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadClass;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadStaticValueFromClass;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.parseTypecheckAndCompileInput;
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Function;
 
+import co.kenrg.mega.backend.compilation.CompilerOptions.LambdaCodegen;
 import co.kenrg.mega.backend.compilation.CompilerTestUtils.TestCompilationResult;
+import co.kenrg.mega.backend.compilation.optimization.LazyStaticInit;
 import co.kenrg.mega.frontend.ast.Module;
 import co.kenrg.mega.frontend.typechecking.TypeCheckResult;
+import com.google.common.collect.Lists;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -47,6 +55,31 @@ class ImportTests {
         assertStaticBindingOnClassEquals(result2.className, bindingName, expectedValue, false);
     }
 
+    @Test
+    void testCompileImports_lazilyInitializedVal() {
+        CompilerOptions options = CompilerTestUtils.UNOPTIMIZED.withLazyStaticInit(true);
+        String module1 = "export val hello = 'hel' + 'lo'";
+        Function<String, String> getModule2 = (module1Name) -> "" +
+            "import hello from '" + module1Name + "'" +
+            "export val helloWorld = hello + ' world!'";
+
+        TestCompilationResult result1 = parseTypecheckAndCompileInput(module1, options);
+        String module1ClassName = result1.className;
+        TypeCheckResult<Module> typeCheckResult1 = result1.typeCheckResult;
+
+        String module2 = getModule2.apply(module1ClassName);
+        TestCompilationResult result2 = parseTypecheckAndCompileInput(module2, moduleName -> {
+            if (moduleName.equals(module1ClassName)) {
+                return typeCheckResult1;
+            } else {
+                return null;
+            }
+        }, options);
+
+        String holderClassName = LazyStaticInit.getHolderClassName(result2.className, "helloWorld");
+        assertEquals("hello world!", loadStaticValueFromClass(holderClassName, "helloWorld"));
+    }
+
     @Test
     void testCompileImports_methodReference() {
         String module1 = "export func sayHello() { 'hello' }";
@@ -57,7 +90,7 @@ class ImportTests {
         String bindingName = "shoutedHello";
         String expectedValue = "hello!";
 
-        TestCompilationResult result1 = parseTypecheckAndCompileInput(module1);
+        TestCompilationResult result1 = parseTypecheckAndCompileInput(module1, CompilerTestUtils.UNOPTIMIZED);
         String module1ClassName = result1.className;
         TypeCheckResult<Module> typeCheckResult1 = result1.typeCheckResult;
 
@@ -68,9 +101,37 @@ class ImportTests {
             } else {
                 return null;
             }
-        });
+        }, CompilerTestUtils.UNOPTIMIZED);
 
         assertStaticBindingOnClassEquals(result2.className, bindingName, expectedValue, false);
+        assertEquals(1, result1.classFiles.size(), "The exporting module shouldn't generate a $ref class for sayHello");
+        assertEquals(2, result2.classFiles.size(), "The importing module should generate the $ref class for sayHello");
+    }
+
+    @Test
+    void testCompileImports_methodReference_invokedynamic() {
+        CompilerOptions options = CompilerTestUtils.UNOPTIMIZED.withLambdaCodegen(LambdaCodegen.INVOKEDYNAMIC);
+        String module1 = "export func sayHello() { 'hello' }";
+        Function<String, String> getModule2 = (module1Name) -> "" +
+            "import sayHello from '" + module1Name + "'" +
+            "func shout(fn: () => String) { fn() + '!' }" +
+            "export val shoutedHello = shout(sayHello)";
+
+        TestCompilationResult result1 = parseTypecheckAndCompileInput(module1, options);
+        String module1ClassName = result1.className;
+        TypeCheckResult<Module> typeCheckResult1 = result1.typeCheckResult;
+
+        String module2 = getModule2.apply(module1ClassName);
+        TestCompilationResult result2 = parseTypecheckAndCompileInput(module2, moduleName -> {
+            if (moduleName.equals(module1ClassName)) {
+                return typeCheckResult1;
+            } else {
+                return null;
+            }
+        }, options);
+
+        assertStaticBindingOnClassEquals(result2.className, "shoutedHello", "hello!", false);
+        assertEquals(1, result2.classFiles.size(), "No $ref classes should be generated for invokedynamic method references");
     }
 
     @Test
@@ -82,6 +143,58 @@ class ImportTests {
         String bindingName = "helloWorld";
         String expectedValue = "hello world!";
 
+        TestCompilationResult result1 = parseTypecheckAndCompileInput(module1, CompilerTestUtils.UNOPTIMIZED);
+        String module1ClassName = result1.className;
+        TypeCheckResult<Module> typeCheckResult1 = result1.typeCheckResult;
+
+        String module2 = getModule2.apply(module1ClassName);
+        TestCompilationResult result2 = parseTypecheckAndCompileInput(module2, moduleName -> {
+            if (moduleName.equals(module1ClassName)) {
+                return typeCheckResult1;
+            } else {
+                return null;
+            }
+        }, CompilerTestUtils.UNOPTIMIZED);
+
+        assertStaticBindingOnClassEquals(result2.className, bindingName, expectedValue, false);
+        assertEquals(1, result1.classFiles.size(), "Functions which are only called directly shouldn't have $ref classes");
+        assertEquals(1, result2.classFiles.size(), "Functions which are only called directly shouldn't have $ref classes");
+    }
+
+    @Test
+    void testCompileImports_methodImportWithDefaultValuedParameters() {
+        String module1 = "export func greet(name: String = 'world', punc: String = '!') { 'hello ' + name + punc }";
+        Function<String, String> getModule2 = (module1Name) -> "" +
+            "import greet from '" + module1Name + "'" +
+            "export val greetings = greet() + ' ' + greet('Ken') + ' ' + greet(punc: '?')";
+        String bindingName = "greetings";
+        String expectedValue = "hello world! hello Ken! hello world?";
+
+        TestCompilationResult result1 = parseTypecheckAndCompileInput(module1);
+        String module1ClassName = result1.className;
+        TypeCheckResult<Module> typeCheckResult1 = result1.typeCheckResult;
+
+        String module2 = getModule2.apply(module1ClassName);
+        TestCompilationResult result2 = parseTypecheckAndCompileInput(module2, moduleName -> {
+            if (moduleName.equals(module1ClassName)) {
+                return typeCheckResult1;
+            } else {
+                return null;
+            }
+        });
+
+        assertStaticBindingOnClassEquals(result2.className, bindingName, expectedValue, false);
+    }
+
+    @Test
+    void testCompileImports_methodImportWithManyDefaultValuedParameters() {
+        String module1 = "export func join(a: String = 'a', b: String = 'b', c: String = 'c', d: String = 'd', e: Int = 5) { a + b + c + d + e }";
+        Function<String, String> getModule2 = (module1Name) -> "" +
+            "import join from '" + module1Name + "'" +
+            "export val joined = join() + ' ' + join('A', 'B') + ' ' + join(b: 'B', d: 'D') + ' ' + join(e: 0, a: 'A')";
+        String bindingName = "joined";
+        String expectedValue = "abcd5 ABcd5 aBcD5 Abcd0";
+
         TestCompilationResult result1 = parseTypecheckAndCompileInput(module1);
         String module1ClassName = result1.className;
         TypeCheckResult<Module> typeCheckResult1 = result1.typeCheckResult;
@@ -96,6 +209,13 @@ class ImportTests {
         });
 
         assertStaticBindingOnClassEquals(result2.className, bindingName, expectedValue, false);
+
+        // Rather than an overload for each of the 31 patterns of omitted arguments, there's a single proxy
+        List<String> methodNames = Arrays.stream(loadClass(module1ClassName).getDeclaredMethods())
+            .map(Method::getName)
+            .filter(methodName -> methodName.startsWith("join$"))
+            .collect(toList());
+        assertEquals(Lists.newArrayList("join$proxy"), methodNames);
     }
 
     @Test
@@ -1,18 +1,33 @@
 package co.kenrg.mega.backend.compilation;
 
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.UNOPTIMIZED;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.deleteGeneratedClassFiles;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadPrivateStaticValueFromClass;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadStaticMethodsFromClass;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.parseTypecheckAndCompileInput;
 import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
 
 import co.kenrg.mega.backend.compilation.CompilerTestUtils.TestCompilationResult;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
 
 class PropertyAccessorTests {
@@ -71,6 +86,209 @@ class PropertyAccessorTests {
             .collect(toList());
     }
 
+    @TestFactory
+    List<DynamicTest> testObjectLiteralPropertyAccessors() {
+        class TestCase {
+            private final String input;
+            private final Object expectedValue;
+            private final String valName;
+
+            public TestCase(String input, Object expectedValue, String valName) {
+                this.input = input;
+                this.expectedValue = expectedValue;
+                this.valName = valName;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase(
+                "val o = { name: 'Ken', age: 26 }\n" +
+                    "val n = o.name",
+                "Ken",
+                "n"
+            ),
+            new TestCase(
+                "val o = { b: 2, a: 1 }\n" +
+                    "val n = o.a + o.b * 10",
+                21,
+                "n"
+            ),
+            new TestCase(
+                "val o = { inner: { x: 1.5 }, flag: true }\n" +
+                    "val x = o.inner.x",
+                1.5F,
+                "x"
+            ),
+            new TestCase(
+                "func getAge(p: { name: String, age: Int }) { p.age }\n" +
+                    "val a = getAge({ age: 30, name: 'Meg' })",
+                30,
+                "a"
+            ),
+            new TestCase(
+                "val o = { b: 'x', a: 1 }\n" +
+                    "val s = '' + o",
+                "{a=1, b=x}",
+                "s"
+            )
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = String.format(
+                    "Compiling and evaluating `%s` should result in the binding %s, whose value is `%s`",
+                    testCase.input, testCase.valName, testCase.expectedValue
+                );
+
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(testCase.input);
+                    Object val = loadPrivateStaticValueFromClass(result.className, testCase.valName);
+
+                    assertEquals(testCase.expectedValue, val);
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testObjectLiteralsOfTheSameShapeShareAClass() {
+        String input = "" +
+            "val o1 = { a: 1, b: 'x' }\n" +
+            "val o2 = { b: 'y', a: 2 }\n" +
+            "func getA(o: { a: Int, b: String }) { o.a }\n" +
+            "val sum = getA(o1) + getA(o2)";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED); // Lazily-initialized vals would add holder classes
+
+        assertEquals(2, result.classFiles.size(), "A single shape class should be generated for both object literals");
+        assertEquals(3, loadPrivateStaticValueFromClass(result.className, "sum"));
+    }
+
+    @TestFactory
+    List<DynamicTest> testStructuralTypePropertyAccessors() {
+        class TestCase {
+            private final String input;
+            private final Object expectedValue;
+            private final String valName;
+
+            public TestCase(String input, Object expectedValue, String valName) {
+                this.input = input;
+                this.expectedValue = expectedValue;
+                this.valName = valName;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase(
+                "type Person = { name: String }\n" +
+                    "type Pet = { name: String }\n" +
+                    "func getName(p: Person) { p.name }\n" +
+                    "val n = getName(Person(name: 'Ken')) + getName(Pet(name: 'Rex'))",
+                "KenRex",
+                "n"
+            ),
+            new TestCase(
+                "type Person = { name: String, age: Int }\n" +
+                    "func getAge(p: { name: String, age: Int }) { p.age }\n" +
+                    "val a = getAge(Person(name: 'Ken', age: 26)) + getAge({ age: 30, name: 'Meg' })",
+                56,
+                "a"
+            ),
+            new TestCase(
+                "val o = { x: 1.5 }\n" +
+                    "type Point = { x: Float }\n" +
+                    "val p: Point = o\n" +
+                    "val x = p.x",
+                1.5F,
+                "x"
+            ),
+            new TestCase(
+                "type Inner = { flag: Bool }\n" +
+                    "type Outer = { inner: Inner }\n" +
+                    "val o = Outer(inner: Inner(flag: true))\n" +
+                    "val f = o.inner.flag",
+                true,
+                "f"
+            ),
+            new TestCase(
+                "val o = { inc: (i: Int) => i + 1 }\n" +
+                    "val i = o.inc(2)",
+                3,
+                "i"
+            ),
+            new TestCase(
+                "type A = { n: Int }\n" +
+                    "type B = { n: Int }\n" +
+                    "type C = { n: Int }\n" +
+                    "type D = { n: Int }\n" +
+                    "type E = { n: Int }\n" +
+                    "val o = { n: 6 }\n" +
+                    "func getN(a: A) { a.n }\n" +
+                    "val n = getN(A(n: 1)) + getN(B(n: 2)) + getN(C(n: 3)) + getN(D(n: 4)) + getN(E(n: 5)) + getN(o) + getN(A(n: 7))",
+                28,
+                "n"
+            )
+        );
+
+        // Class files targeting Java 6 can't use invokedynamic, so they read properties reflectively. The accesses are
+        // unoptimized (the default options may inline them, and replace the values read from with locals), but they're
+        // also run with the default options.
+        return Stream.of(UNOPTIMIZED, UNOPTIMIZED.withTarget(6), CompilerOptions.DEFAULT)
+            .flatMap(options -> testCases.stream().map(testCase -> {
+                String name = String.format(
+                    "Compiling (targeting %d%s) and evaluating `%s` should result in the binding %s, whose value is `%s`",
+                    options.target, options == CompilerOptions.DEFAULT ? ", with the default options" : "", testCase.input, testCase.valName, testCase.expectedValue
+                );
+
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(testCase.input, options);
+                    Object val = loadPrivateStaticValueFromClass(result.className, testCase.valName);
+
+                    assertEquals(testCase.expectedValue, val);
+                });
+            }))
+            .collect(toList());
+    }
+
+    @Test
+    void testStructuralTypePropertyAccessors_mapReceiver() throws Exception {
+        String input = "export func describe(p: { name: String, age: Int }) { p.name + ' is ' + p.age }";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input);
+        Method describe = loadStaticMethodsFromClass(result.className, "describe").get(0);
+
+        Map<String, Object> person = Maps.newHashMap();
+        person.put("name", "Ken");
+        person.put("age", 26);
+        assertEquals("Ken is 26", describe.invoke(null, person));
+    }
+
+    @Test
+    void testStructuralTypePropertyAccessors_megamorphicReceivers() throws Exception {
+        String input = "export func describe(p: { name: String, age: Int }) { p.name + ' is ' + p.age }";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input);
+        Method describe = loadStaticMethodsFromClass(result.className, "describe").get(0);
+
+        List<Map<String, Object>> people = Lists.newArrayList(
+            new HashMap<>(),
+            new LinkedHashMap<>(),
+            new TreeMap<>(),
+            new Hashtable<>(),
+            new ConcurrentHashMap<>(),
+            new ConcurrentSkipListMap<>(),
+            new WeakHashMap<>()
+        );
+        for (int i = 0; i < people.size(); i++) {
+            people.get(i).put("name", "Ken");
+            people.get(i).put("age", i);
+        }
+
+        // Each receiver class is seen more than once, both before and after the call sites become megamorphic
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < people.size(); i++) {
+                assertEquals("Ken is " + i, describe.invoke(null, people.get(i)));
+            }
+        }
+    }
+
     @TestFactory
     List<DynamicTest> testBuiltinTypePropertyAccessors() {
         class TestCase {
@@ -124,4 +342,108 @@ class PropertyAccessorTests {
             })
             .collect(toList());
     }
+
+    @TestFactory
+    List<DynamicTest> testScalarReplacedPropertyReads() {
+        class TestCase {
+            private final String input;
+            private final Object expectedValue;
+            private final int numClassFiles;
+
+            public TestCase(String input, Object expectedValue, int numClassFiles) {
+                this.input = input;
+                this.expectedValue = expectedValue;
+                this.numClassFiles = numClassFiles;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase(
+                "func f(a: Int, b: Int) { val p = { x: a, y: b }\np.x * p.y }\nval r = f(3, 4)",
+                12,
+                1
+            ),
+            new TestCase(
+                "func f(a: Float) { val p = { x: a, ok: a > 1.0 }\nif p.ok { p.x } else { 0.0 } }\nval r = f(2.5)",
+                2.5F,
+                1
+            ),
+            new TestCase(
+                "var trace = ''\nfunc t(s: String): String { trace = trace + s; s }\nfunc f(): String { val p = { b: t('b'), a: t('a') }\np.a + p.b }\nval r = f() + trace",
+                "abba",
+                1
+            ),
+            new TestCase(
+                "type Point = { x: Int, y: Int }\nfunc f(a: Int) { val p = Point(y: a, x: a + 1)\nval q = p\nq.x - p.y }\nval r = f(5)",
+                1,
+                2
+            ),
+            new TestCase(
+                "func f(a: Int) { val p = { x: a }\nval arr = [p]\narr[0].x }\nval r = f(7)",
+                7,
+                2
+            )
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = String.format(
+                    "Compiling `%s` with scalar replacement should result in the binding r, whose value is `%s`",
+                    testCase.input, testCase.expectedValue
+                );
+
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(testCase.input, UNOPTIMIZED.withScalarReplacement(true));
+                    Object val = loadPrivateStaticValueFromClass(result.className, "r");
+
+                    assertEquals(testCase.expectedValue, val);
+                    assertEquals(testCase.numClassFiles, result.classFiles.size(), "Shape classes should only be generated for escaping object literals");
+                });
+            })
+            .collect(toList());
+    }
+
+    // With the default options, the object literals passed to inlined functions are scalar-replaced within the inlined
+    // bodies, which mustn't affect the functions' own bodies (nor each other)
+    @TestFactory
+    List<DynamicTest> testScalarReplacedPropertyReads_ofInlinedArguments() {
+        List<Pair<String, Object>> testCases = Lists.newArrayList(
+            Pair.of(
+                "func getAge(p: { name: String, age: Int }) { p.age }\nval r = getAge({ age: 30, name: 'Meg' })",
+                30
+            ),
+            Pair.of(
+                "func getName(p: { name: String }) { p.name }\nval r = getName({ name: 'a' }) + getName({ name: 'b' })",
+                "ab"
+            ),
+            Pair.of(
+                "func getAge(p: { name: String, age: Int }) { p.age }\n" +
+                    "val getAgeOf = (q: { name: String, age: Int }) => getAge(q)\n" +
+                    "val r = getAge({ age: 30, name: 'Meg' }) + getAgeOf({ age: 26, name: 'Ken' })",
+                56
+            ),
+            Pair.of(
+                "type Person = { name: String, age: Int }\n" +
+                    "func describe(p: Person) { p.name + ' is ' + p.age }\n" +
+                    "val r = describe(Person(name: 'Ken', age: 26)) + ', ' + describe(Person(name: 'Meg', age: 30))",
+                "Ken is 26, Meg is 30"
+            )
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = String.format(
+                    "Compiling `%s` with the default options should result in the binding r, whose value is `%s`",
+                    testCase.getLeft(), testCase.getRight()
+                );
+
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(testCase.getLeft(), CompilerOptions.DEFAULT);
+                    Object val = loadPrivateStaticValueFromClass(result.className, "r");
+
+                    assertEquals(testCase.getRight(), val);
+                });
+            })
+            .collect(toList());
+    }
 }
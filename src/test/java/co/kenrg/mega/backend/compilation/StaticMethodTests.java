@@ -2,24 +2,37 @@ package co.kenrg.mega.backend.compilation;
 
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.deleteGeneratedClassFiles;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadStaticMethodsFromClass;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.UNOPTIMIZED;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.parseTypecheckAndCompileInput;
 import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 
+import co.kenrg.mega.backend.compilation.CompilerOptions.PeepholeRule;
 import co.kenrg.mega.backend.compilation.CompilerTestUtils.TestCompilationResult;
 import com.google.common.collect.Lists;
+import mega.lang.IntRange;
 import mega.lang.functions.Function1;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 class StaticMethodTests {
 
@@ -50,6 +63,20 @@ class StaticMethodTests {
             new TestCase("func addsOne(a: Int): Int { a + 1 }", "addsOne", new Object[]{2}, 3),
             new TestCase("func strConcatShout(a: String, b: String): String { a + b + '!' }", "strConcatShout", new Object[]{"Hello ", "world"}, "Hello world!"),
             new TestCase("func addAll(a: Int, b: Int, c: Int) { a + b + c }", "addAll", new Object[]{1, 2, 3}, 6),
+            new TestCase("func sum(arr: Array[Int]): Int { var total = 0; for x in arr { total = total + x }; total }", "sum", new Object[]{new int[]{1, 2, 3}}, 6),
+            new TestCase("func sum(arr: Array[Float]): Float { var total = 0.0; for x in arr { total = total + x }; total }", "sum", new Object[]{new float[]{1.5F, 2.5F}}, 4.0F),
+            new TestCase("func first(arr: Array[Bool]): Bool { arr[0] }", "first", new Object[]{new boolean[]{true, false}}, true),
+            new TestCase("func sumTo(n: Int): Int { var total = 0; for i in 0..n { total = total + i }; total }", "sumTo", new Object[]{5}, 10),
+            new TestCase("func sumTo(n: Int): Int { var total = 0; for i in n..0 { total = total + i }; total }", "sumTo", new Object[]{5}, 0),
+            new TestCase("func sumNext(x: Int): Int { var total = 0; for x in x..(x + 3) { total = total + x }; total }", "sumNext", new Object[]{3}, 12),
+            new TestCase("func sum(r: IntRange): Int { var total = 0; for x in r { total = total + x }; total }", "sum", new Object[]{IntRange.of(1, 4)}, 6),
+            new TestCase("func sum(r: IntRange): Int { var total = 0; for x in r { total = total + x }; total }", "sum", new Object[]{IntRange.of(0, 10).stepBy(3)}, 18),
+            new TestCase("func concatAll(arr: Array[String]): String { var s = ''; for x in arr { s = s + x }; s }", "concatAll", new Object[]{new String[]{"a", "b"}}, "ab"),
+            new TestCase("func fact(n: Int): Int { if n < 2 { 1 } else { n * fact(n - 1) } }", "fact", new Object[]{10}, 3628800),
+            new TestCase("func sum(n: Int, acc: Int): Int { if n == 0 { acc } else { sum(n - 1, acc + n) } }", "sum", new Object[]{1000000, 0}, 1784293664),
+            new TestCase("func swapDown(a: Int, b: Int): Int { if a == 0 { b } else { (swapDown(b - 1, a)) } }", "swapDown", new Object[]{1000001, 7}, 999995),
+            new TestCase("func count(n: Int, s: String): String { if n > 0 { val next = n - 1; count(n: next, s: s + '.') } else { s } }", "count", new Object[]{3, "!"}, "!..."),
+            new TestCase("func countDown(n: Int, f: Float): Float { if n == 0 { f } else { val countDown = (n: Int, f: Float) => f; countDown(n - 1, f + 0.5) } }", "countDown", new Object[]{5, 0.0F}, 0.5F),
             new TestCase("func applyToInt(fn: Int => String, a: Int): String { fn(a) }", "applyToInt",
                 new Object[]{(Function1<Integer, String>) input -> input + "!", 24},
                 "24!"
@@ -74,6 +101,409 @@ class StaticMethodTests {
             .collect(toList());
     }
 
+    @TestFactory
+    List<DynamicTest> testFunctionDeclarationExpressions_whileLoopsAndCompoundAssignment() {
+        class TestCase {
+            private final String input;
+            private final String bindingName;
+            private final Object[] args;
+            private final Object result;
+
+            private TestCase(String input, String bindingName, Object[] args, Object result) {
+                this.input = input;
+                this.bindingName = bindingName;
+                this.args = args;
+                this.result = result;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("func sumTo(n: Int): Int { var total = 0; var i = 0; while i < n { total += i; i++ }; total }", "sumTo", new Object[]{5}, 10),
+            new TestCase("func countDown(n: Int): Int { var steps = 0; var i = n; while i > 0 { i -= 3; steps++ }; steps }", "countDown", new Object[]{10}, 4),
+            new TestCase("func pow(b: Int, e: Int): Int { var r = 1; var i = 0; while i < e { r *= b; i = i + 1 }; r }", "pow", new Object[]{3, 4}, 81),
+            new TestCase("func halve(f: Float, n: Int): Float { var r = f; var i = 0; while i < n { r /= 2; i++ }; r }", "halve", new Object[]{10.0F, 2}, 2.5F),
+            new TestCase("func repeat(s: String, n: Int): String { var r = ''; var i = n; while i > 0 { r += s; i-- }; r }", "repeat", new Object[]{"ab", 3}, "ababab"),
+            new TestCase("func firstOver(arr: Array[Int], n: Int): Int { var i = 0; while true { if arr[i] > n { break }; i++ }; arr[i] }", "firstOver", new Object[]{new int[]{1, 5, 9}, 4}, 5),
+            new TestCase("func sumOdds(n: Int): Int { var total = 0; var i = 0; while i < n { i++; if i / 2 * 2 == i { continue }; total += i }; total }", "sumOdds", new Object[]{6}, 9),
+            new TestCase("func sumUntil(arr: Array[Int], n: Int): Int { var total = 0; for x in arr { if x == n { break }; total += x }; total }", "sumUntil", new Object[]{new int[]{1, 2, 3, 4}, 3}, 3),
+            new TestCase("func sumSkipping(n: Int, skip: Int): Int { var total = 0; for i in 0..n { if i == skip { continue }; total += i }; total }", "sumSkipping", new Object[]{5, 2}, 8),
+            new TestCase("func countPairs(n: Int): Int { var c = 0; for i in 0..n { var j = 0; while true { if j >= i { break }; c++; j++ } }; c }", "countPairs", new Object[]{4}, 6),
+            new TestCase("func sumTo(n: Int): Int { var total = 0; var i = 0; while i < n { i++; total + i }; i }", "sumTo", new Object[]{3}, 3)
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.input;
+                String bindingName = testCase.bindingName;
+                Object[] args = testCase.args;
+                Object expectedResult = testCase.result;
+
+                String name = String.format("Compiling `%s` should result in the static method `%s`", input, bindingName);
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input);
+                    String className = result.className;
+
+                    assertInvokingPrivateStaticMethodOnClassEvaluatesTo(className, bindingName, args, expectedResult);
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testCompoundAssignmentOfIntLocal_compiledToIinc() throws IOException {
+        String input = "func sumTo(n: Int): Int { var total = 0; var i = 0; while i < n { total += i; i++; i += 2; i -= 2 }; total }";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED);
+        assertInvokingPrivateStaticMethodOnClassEvaluatesTo(result.className, "sumTo", new Object[]{5}, 10);
+
+        List<Integer> opcodes = getOpcodesOfMethod(result, "sumTo");
+        assertEquals(3, opcodes.stream().filter(opcode -> opcode == Opcodes.IINC).count(), "i++, i += 2 and i -= 2 should each be a single IINC");
+        assertEquals(1, opcodes.stream().filter(opcode -> opcode == Opcodes.IADD).count(), "Only total += i should need an IADD");
+    }
+
+    @TestFactory
+    List<DynamicTest> testFunctionDeclarationExpressions_forLoopsOverEachElementType() {
+        class TestCase {
+            private final String input;
+            private final Object[] args;
+            private final Object result;
+
+            private TestCase(String input, Object[] args, Object result) {
+                this.input = input;
+                this.args = args;
+                this.result = result;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("func f(arr: Array[Bool]): Int { var c = 0; for b in arr { if b { c++ } }; c }", new Object[]{new boolean[]{true, false, true}}, 2),
+            new TestCase("func f(arr: Array[Array[Int]]): Int { var c = 0; for a in arr { for x in a { c += x } }; c }", new Object[]{new int[][]{{1, 2}, {}, {3}}}, 6),
+            new TestCase("func f(arr: Array[Array[String]]): String { var s = ''; for a in arr { for x in a { s += x } }; s }", new Object[]{new String[][]{{"a", "b"}, {"c"}}}, "abc"),
+            new TestCase("type P = { x: Int }\nfunc f(n: Int): Int { var c = 0; for p in [P(x: n), P(x: 2)] { c += p.x }; c }", new Object[]{5}, 7),
+            new TestCase("func f(n: Int): Int { var c = 0; for o in [{ x: n }, { x: 1 }] { c += o.x }; c }", new Object[]{5}, 6),
+            new TestCase("func f(arr: Array[Float]): Float { var c = 0.0; for x in arr { if x < 0 { continue }; c += x }; c }", new Object[]{new float[]{1.5F, -1.0F, 2.0F}}, 3.5F),
+            new TestCase("func f(r: IntRange): Int { var c = 0; for x in r { c = c * 10 + x }; c }", new Object[]{IntRange.of(1, 4)}, 123),
+            new TestCase("func f(r: IntRange): Int { var c = 0; for x in r { c += x }; c }", new Object[]{IntRange.of(4, 1)}, 0),
+            new TestCase("func f(r: IntRange): Int { var c = 0; for x in r { c = c * 10 + x }; c }", new Object[]{IntRange.of(-2, 5).stepBy(3)}, -186),
+            new TestCase("func f(r: IntRange): Int { var c = 0; for x in r { if x > 4 { break }; c += x }; c }", new Object[]{IntRange.of(0, 10).stepBy(2)}, 6),
+            new TestCase("func f(r: IntRange): Int { var c = 0; for x in r { if x == 1 { continue }; c += x }; c }", new Object[]{IntRange.of(0, 4)}, 5)
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.input;
+                Object[] args = testCase.args;
+                Object expectedResult = testCase.result;
+
+                String name = String.format("Invoking `%s` with %s should return %s", input, Arrays.deepToString(args), expectedResult);
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input);
+                    assertInvokingPrivateStaticMethodOnClassEvaluatesTo(result.className, "f", args, expectedResult);
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testForLoops_rangesWithMoreThanIntMaxElementsAreRejected() {
+        TestCompilationResult result = parseTypecheckAndCompileInput("func f(a: Int, b: Int): Int { val r = a..b; var c = 0; for x in r { c += 1 }; c }");
+        Method method = loadStaticMethodsFromClass(result.className, "f").get(0);
+        method.setAccessible(true);
+
+        try {
+            method.invoke(null, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException, "f should throw an IllegalArgumentException");
+            return;
+        }
+        fail("f should throw an IllegalArgumentException, rather than iterating over a negatively-sized range");
+    }
+
+    @Test
+    void testForLoops_elementsAreLoadedWithoutCallsOrCasts() throws IOException {
+        String input = "" +
+            "func sumRange(r: IntRange): Int { var c = 0; for x in r { c += x }; c }\n" +
+            "func concatAll(arr: Array[String]): String { var s = ''; for x in arr { s += x }; s }";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED);
+
+        // The range's step, size and start are each read once, before the loop
+        List<Integer> rangeOpcodes = getOpcodesOfMethod(result, "sumRange");
+        assertEquals(3, rangeOpcodes.stream().filter(opcode -> opcode == Opcodes.INVOKEVIRTUAL).count(), "IntRange#get shouldn't be called per element");
+
+        List<Integer> arrayOpcodes = getOpcodesOfMethod(result, "concatAll");
+        assertTrue(arrayOpcodes.contains(Opcodes.AALOAD));
+        assertTrue(!arrayOpcodes.contains(Opcodes.CHECKCAST), "Elements of a String array shouldn't need a cast");
+    }
+
+    @Test
+    void testFunctionDeclarationExpressions_assignmentToTopLevelVar() {
+        String input = "var count = 10\nfunc incr(n: Int): Int { count += n; count = count * 2; count }";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input);
+
+        // Each call updates the static field, rather than a local
+        assertInvokingPrivateStaticMethodOnClassEvaluatesTo(result.className, "incr", new Object[]{5}, 30);
+        assertInvokingPrivateStaticMethodOnClassEvaluatesTo(result.className, "incr", new Object[]{1}, 62);
+    }
+
+    @TestFactory
+    List<DynamicTest> testFunctionDeclarationExpressions_matchExpressions() {
+        class TestCase {
+            private final String input;
+            private final Object[] args;
+            private final Object result;
+
+            private TestCase(String input, Object[] args, Object result) {
+                this.input = input;
+                this.args = args;
+                this.result = result;
+            }
+        }
+
+        String dense = "func f(n: Int): String = match n { 1 => 'one', 2, 3 => 'few', -1 => 'neg' else => 'many' }";
+        String sparse = "func f(n: Int): Int = match n { 1 => 10, 1000 => 20, -100000 => 30, 1 => 40 else => 0 }";
+        String strings = "func f(s: String): Int = match s { 'a' => 1, 'Aa', 'BB' => 2, '' => 3 else => 4 }"; // 'Aa' and 'BB' have the same hash code
+        String floats = "func f(x: Float): Int = match x { 1.5 => 1, -2.0 => 2 else => 3 }";
+        String bools = "func f(b: Bool): Int = match b { true => 1 else => 0 }";
+        String noElse = "func f(n: Int): Int { var c = 0; match n { 1 => { c += 1 }, 2 => c += 10, 3 => c }; c }";
+        String inLoop = "func f(n: Int): Int { var c = 0; for i in 0..n { c += match i { 0, 2 => 1, 1 => { val y = i * 10; y } else => 100 } }; c }";
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase(dense, new Object[]{1}, "one"),
+            new TestCase(dense, new Object[]{3}, "few"),
+            new TestCase(dense, new Object[]{-1}, "neg"),
+            new TestCase(dense, new Object[]{0}, "many"),
+            new TestCase(sparse, new Object[]{1}, 10),
+            new TestCase(sparse, new Object[]{1000}, 20),
+            new TestCase(sparse, new Object[]{-100000}, 30),
+            new TestCase(sparse, new Object[]{2}, 0),
+            new TestCase(strings, new Object[]{"a"}, 1),
+            new TestCase(strings, new Object[]{"Aa"}, 2),
+            new TestCase(strings, new Object[]{"BB"}, 2),
+            new TestCase(strings, new Object[]{""}, 3),
+            new TestCase(strings, new Object[]{"C#"}, 4),
+            new TestCase(floats, new Object[]{1.5F}, 1),
+            new TestCase(floats, new Object[]{-2.0F}, 2),
+            new TestCase(floats, new Object[]{2.0F}, 3),
+            new TestCase(bools, new Object[]{true}, 1),
+            new TestCase(bools, new Object[]{false}, 0),
+            new TestCase(noElse, new Object[]{1}, 1),
+            new TestCase(noElse, new Object[]{2}, 10),
+            new TestCase(noElse, new Object[]{3}, 0),
+            new TestCase(inLoop, new Object[]{4}, 112)
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.input;
+                Object[] args = testCase.args;
+                Object expectedResult = testCase.result;
+
+                String name = String.format("Invoking `%s` with %s should return %s", input, Arrays.toString(args), expectedResult);
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input);
+                    assertInvokingPrivateStaticMethodOnClassEvaluatesTo(result.className, "f", args, expectedResult);
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testMatchExpressions_compiledToSwitches() throws IOException {
+        String input = "" +
+            "func dense(n: Int): Int = match n { 1 => 10, 2 => 20, 4 => 40 else => 0 }\n" +
+            "func sparse(n: Int): Int = match n { 1 => 10, 100 => 20, 10000 => 40 else => 0 }\n" +
+            "func strings(s: String): Int = match s { 'a' => 10, 'b' => 20 else => 0 }";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED);
+
+        List<Integer> denseOpcodes = getOpcodesOfMethod(result, "dense");
+        assertTrue(denseOpcodes.contains(Opcodes.TABLESWITCH), "Dense cases should be dispatched via a tableswitch");
+        assertTrue(denseOpcodes.stream().noneMatch(opcode -> opcode == Opcodes.IF_ICMPNE || opcode == Opcodes.IF_ICMPEQ), "Cases shouldn't be compared one at a time");
+
+        List<Integer> sparseOpcodes = getOpcodesOfMethod(result, "sparse");
+        assertTrue(sparseOpcodes.contains(Opcodes.LOOKUPSWITCH), "Sparse cases should be dispatched via a lookupswitch");
+
+        List<Integer> stringOpcodes = getOpcodesOfMethod(result, "strings");
+        assertTrue(stringOpcodes.contains(Opcodes.LOOKUPSWITCH), "String cases should be dispatched via a switch on their hash codes");
+    }
+
+    @TestFactory
+    List<DynamicTest> testFunctionDeclarationExpressions_conditions() {
+        class TestCase {
+            private final String condition;
+            private final String params;
+            private final Object[] args;
+            private final boolean result;
+
+            private TestCase(String condition, String params, Object[] args, boolean result) {
+                this.condition = condition;
+                this.params = params;
+                this.args = args;
+                this.result = result;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("a < b", "a: Int, b: Int", new Object[]{1, 2}, true),
+            new TestCase("a >= b", "a: Int, b: Int", new Object[]{1, 2}, false),
+            new TestCase("!(a == b)", "a: Int, b: Int", new Object[]{1, 1}, false),
+            new TestCase("(a < b) && (b < 10)", "a: Int, b: Int", new Object[]{1, 2}, true),
+            new TestCase("(a < b) && (b < 10)", "a: Int, b: Int", new Object[]{1, 12}, false),
+            new TestCase("(a < b) && (b < 10)", "a: Int, b: Int", new Object[]{3, 2}, false),
+            new TestCase("(a < b) || (b < 10)", "a: Int, b: Int", new Object[]{3, 2}, true),
+            new TestCase("(a < b) || (b < 10)", "a: Int, b: Int", new Object[]{30, 20}, false),
+            new TestCase("!((a < b) || (b < 10))", "a: Int, b: Int", new Object[]{30, 20}, true),
+            new TestCase("((a < b) || (b < 10)) && (a != 3)", "a: Int, b: Int", new Object[]{3, 2}, false),
+            new TestCase("(a == 1) || ((b == 2) && !(a == 3))", "a: Int, b: Int", new Object[]{4, 2}, true),
+            new TestCase("x <= y", "x: Float, y: Float", new Object[]{1.5F, 1.5F}, true),
+            new TestCase("x > n", "x: Float, n: Int", new Object[]{1.5F, 1}, true),
+            new TestCase("x < y", "x: Float, y: Float", new Object[]{Float.NaN, 1.0F}, false),
+            new TestCase("x >= y", "x: Float, y: Float", new Object[]{Float.NaN, 1.0F}, false),
+            new TestCase("x != y", "x: Float, y: Float", new Object[]{Float.NaN, Float.NaN}, true),
+            new TestCase("s < t", "s: String, t: String", new Object[]{"a", "b"}, true),
+            new TestCase("(s == t) && c", "s: String, t: String, c: Bool", new Object[]{"a", "a", true}, true),
+            new TestCase("!c == false", "c: Bool", new Object[]{true}, true),
+            new TestCase("c || false", "c: Bool", new Object[]{false}, false),
+            new TestCase("true && !c", "c: Bool", new Object[]{false}, true)
+        );
+
+        // Each condition is compiled both as a value (where it's materialized) and as the condition of an if-expression
+        // and of a while-loop (where it's compiled to jumps)
+        return testCases.stream()
+            .flatMap(testCase -> {
+                String asValue = String.format("func f(%s): Bool { %s }", testCase.params, testCase.condition);
+                String asIfCondition = String.format("func f(%s): Bool { if %s { true } else { false } }", testCase.params, testCase.condition);
+                String asLoopCondition = String.format("func f(%s): Bool { var res = false; while %s { res = true; break }; res }", testCase.params, testCase.condition);
+
+                return Lists.newArrayList(asValue, asIfCondition, asLoopCondition).stream()
+                    .map(input -> {
+                        String name = String.format("Invoking `%s` with %s should return %s", input, Arrays.toString(testCase.args), testCase.result);
+                        return dynamicTest(name, () -> {
+                            TestCompilationResult result = parseTypecheckAndCompileInput(input);
+                            assertInvokingPrivateStaticMethodOnClassEvaluatesTo(result.className, "f", testCase.args, testCase.result);
+                        });
+                    });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testConditions_compiledToJumps() throws IOException {
+        String input = "" +
+            "func ifCondition(a: Int, b: Int): String { if (a < b) && !(b > 10) { 'yes' } else { 'no' } }\n" +
+            "func loopCondition(a: Int, b: Int): Int { var i = a; while (i < b) || (i == 100) { i += 1 }; i }";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED);
+
+        for (String methodName : Lists.newArrayList("ifCondition", "loopCondition")) {
+            List<Integer> opcodes = getOpcodesOfMethod(result, methodName);
+            assertTrue(opcodes.stream().noneMatch(opcode -> opcode == Opcodes.ICONST_0 || opcode == Opcodes.ICONST_1), "The condition shouldn't be materialized as a boolean");
+            assertTrue(opcodes.stream().noneMatch(opcode -> opcode == Opcodes.IFEQ || opcode == Opcodes.IFNE), "The comparisons should jump to the branches directly");
+        }
+    }
+
+    @TestFactory
+    List<DynamicTest> testFunctionDeclarationExpressions_peepholeOptimized() {
+        class TestCase {
+            private final String input;
+            private final Object[] args;
+            private final Object result;
+
+            private TestCase(String input, Object[] args, Object result) {
+                this.input = input;
+                this.args = args;
+                this.result = result;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("func f(a: Int, b: Int): String { if (a < b) && (b < 10) { 'yes' } else { 'no' } }", new Object[]{1, 2}, "yes"),
+            new TestCase("func f(a: Int, b: Int): String { if (a < b) && (b < 10) { 'yes' } else { 'no' } }", new Object[]{1, 12}, "no"),
+            new TestCase("func f(a: Int, b: Int): String { if (a < b) || (b > 5) { 'yes' } else { 'no' } }", new Object[]{3, 2}, "no"),
+            new TestCase("func f(b: Bool): Bool { !b }", new Object[]{true}, false),
+            new TestCase("func f(a: Int): Int { val y = a + 1; y * 2 }", new Object[]{2}, 6),
+            new TestCase("func f(n: Int): Int { var i = 0; while i < n { if i == 3 { break }; i += 1 }; i }", new Object[]{10}, 3),
+            new TestCase("func f(n: Int): Int { var c = 0; for i in 0..n { c += match i { 0, 2 => 1, 1 => 10 else => 100 } }; c }", new Object[]{4}, 112),
+            new TestCase("func f(s: String): Int = match s { 'a' => 1, 'b' => 2 else => 3 }", new Object[]{"b"}, 2),
+            new TestCase("func f(n: Int): Int { val inc = (x: Int) => x + 1; inc(n) }", new Object[]{1}, 2)
+        );
+
+        CompilerOptions options = UNOPTIMIZED.withPeepholeRules(EnumSet.allOf(PeepholeRule.class));
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.input;
+                Object[] args = testCase.args;
+                Object expectedResult = testCase.result;
+
+                String name = String.format("Invoking `%s` with %s, with peephole optimizations, should return %s", input, Arrays.toString(args), expectedResult);
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input, options);
+                    assertInvokingPrivateStaticMethodOnClassEvaluatesTo(result.className, "f", args, expectedResult);
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testPeepholeOptimization_branchesOnComparisonsDirectly() throws IOException {
+        String input = "func f(a: Int, b: Int): String { val isSmaller = (a < b) && (b < 10); if isSmaller { 'yes' } else { 'no' } }";
+
+        List<Integer> unoptimizedOpcodes = getOpcodesOfMethod(parseTypecheckAndCompileInput(input, UNOPTIMIZED), "f");
+        assertTrue(unoptimizedOpcodes.contains(Opcodes.ICONST_1), "Without peephole optimization, the condition is materialized as a boolean");
+
+        CompilerOptions options = UNOPTIMIZED.withPeepholeRules(EnumSet.allOf(PeepholeRule.class));
+        List<Integer> opcodes = getOpcodesOfMethod(parseTypecheckAndCompileInput(input, options), "f");
+        assertTrue(opcodes.stream().noneMatch(opcode -> opcode == Opcodes.ICONST_0 || opcode == Opcodes.ICONST_1), "The condition shouldn't be materialized as a boolean");
+        assertTrue(opcodes.stream().noneMatch(opcode -> opcode == Opcodes.IFEQ || opcode == Opcodes.IFNE), "The comparisons should jump to the branches directly");
+    }
+
+    // The opcodes of the method's instructions which have no operands (and of its IINC and switch instructions)
+    private List<Integer> getOpcodesOfMethod(TestCompilationResult result, String methodName) throws IOException {
+        List<Integer> opcodes = Lists.newArrayList();
+        new ClassReader(Files.readAllBytes(result.classFiles.get(0))).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (!name.equals(methodName)) {
+                    return null;
+                }
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitInsn(int opcode) {
+                        opcodes.add(opcode);
+                    }
+
+                    @Override
+                    public void visitJumpInsn(int opcode, Label label) {
+                        opcodes.add(opcode);
+                    }
+
+                    @Override
+                    public void visitIincInsn(int var, int increment) {
+                        opcodes.add(Opcodes.IINC);
+                    }
+
+                    @Override
+                    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+                        opcodes.add(Opcodes.TABLESWITCH);
+                    }
+
+                    @Override
+                    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+                        opcodes.add(Opcodes.LOOKUPSWITCH);
+                    }
+
+                    @Override
+                    public void visitTypeInsn(int opcode, String type) {
+                        opcodes.add(opcode);
+                    }
+
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                        opcodes.add(opcode);
+                    }
+                };
+            }
+        }, 0);
+        return opcodes;
+    }
+
     private void assertInvokingPrivateStaticMethodOnClassEvaluatesTo(String className, String name, Object[] args, Object res) {
         List<Method> potentialMethods = loadStaticMethodsFromClass(className, name);
         long numMatches = potentialMethods.stream()
@@ -2,12 +2,17 @@ package co.kenrg.mega.backend.compilation;
 
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.assertStaticBindingOnClassEquals;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.deleteGeneratedClassFiles;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadClass;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadPrivateStaticValueFromClass;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadStaticMethodsFromClass;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.loadStaticVariableFromClass;
+import static co.kenrg.mega.backend.compilation.CompilerTestUtils.UNOPTIMIZED;
 import static co.kenrg.mega.backend.compilation.CompilerTestUtils.parseTypecheckAndCompileInput;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
@@ -19,13 +24,20 @@ import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import co.kenrg.mega.backend.compilation.CompilerTestUtils.TestCompilationResult;
+import co.kenrg.mega.backend.compilation.CompilerTestUtils.TestFailureException;
+import co.kenrg.mega.backend.compilation.optimization.LazyStaticInit;
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import mega.lang.IntRange;
+import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.tuple.Triple;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
 
 class StaticVariableTests {
@@ -133,15 +145,15 @@ class StaticVariableTests {
     List<DynamicTest> testArrayLiteralDeclarations() {
         List<Triple<String, String, Object>> testCases = Lists.newArrayList(
             // Basic arrays
-            Triple.of("val someIntArray = [123, 456, 789]", "someIntArray", new Integer[]{123, 456, 789}),
-            Triple.of("val someFloatArray = [12.3, 45.6, 78.9]", "someFloatArray", new Float[]{12.3F, 45.6F, 78.9F}),
-            Triple.of("val someBoolArray = [true, false, false, true]", "someBoolArray", new Boolean[]{true, false, false, true}),
+            Triple.of("val someIntArray = [123, 456, 789]", "someIntArray", new int[]{123, 456, 789}),
+            Triple.of("val someFloatArray = [12.3, 45.6, 78.9]", "someFloatArray", new float[]{12.3F, 45.6F, 78.9F}),
+            Triple.of("val someBoolArray = [true, false, false, true]", "someBoolArray", new boolean[]{true, false, false, true}),
             Triple.of("val someStrArray = ['asdf', 'qwer', 'zxcv']", "someStrArray", new String[]{"asdf", "qwer", "zxcv"}),
 
             // Nested arrays
-            Triple.of("val someIntArrayArray = [[0, 0], [1, 0], [0, 1]]", "someIntArrayArray", new Integer[][]{{0, 0}, {1, 0}, {0, 1}}),
-            Triple.of("val someFloatArrayArray = [[0.0, 0.0], [1.0, 0.0], [0.0, 1.0]]", "someFloatArrayArray", new Float[][]{{0.0F, 0.0F}, {1.0F, 0.0F}, {0.0F, 1.0F}}),
-            Triple.of("val someBoolArrayArray = [[true, false], [false, true], [true, true]]", "someBoolArrayArray", new Boolean[][]{{true, false}, {false, true}, {true, true}}),
+            Triple.of("val someIntArrayArray = [[0, 0], [1, 0], [0, 1]]", "someIntArrayArray", new int[][]{{0, 0}, {1, 0}, {0, 1}}),
+            Triple.of("val someFloatArrayArray = [[0.0, 0.0], [1.0, 0.0], [0.0, 1.0]]", "someFloatArrayArray", new float[][]{{0.0F, 0.0F}, {1.0F, 0.0F}, {0.0F, 1.0F}}),
+            Triple.of("val someBoolArrayArray = [[true, false], [false, true], [true, true]]", "someBoolArrayArray", new boolean[][]{{true, false}, {false, true}, {true, true}}),
             Triple.of("val someStrArrayArray = [['a', 'A'], ['b', 'B'], ['c', 'C']]", "someStrArrayArray", new String[][]{{"a", "A"}, {"b", "B"}, {"c", "C"}})
         );
 
@@ -180,6 +192,8 @@ class StaticVariableTests {
             Triple.of("val someBool = [true, false, true][1]", "someBool", false),
             Triple.of("val someFloat = [1.23, 4.56, 7.89][2]", "someFloat", 7.89F),
             Triple.of("val someString = ['abc', 'def', 'ghi'][1]", "someString", "def"),
+            Triple.of("val someFloat = [[1.5, 2.5], [3.5, 4.5]][1][0]", "someFloat", 3.5F),
+            Triple.of("val someBool = [[true], [false, true]][1][1]", "someBool", true),
 
             Triple.of("val idx = 0; val someString = ['abc', 'def', 'ghi'][idx]", "someString", "abc"),
             Triple.of("val idx = 0; val strings = ['a', 'b', 'c']; val someString = strings[idx]", "someString", "a")
@@ -285,6 +299,8 @@ class StaticVariableTests {
             Triple.of("val someStr = [1, 2, 3] + 'abc'", "someStr", "[1, 2, 3]abc"),
             Triple.of("val someStr = if true { val x = [1, 2, 3]; x + 'abc' } else { '' }", "someStr", "[1, 2, 3]abc"),
             Triple.of("val someStr = if true { val x = [[1, 2], [3, 4]]; x + 'abc' } else { '' }", "someStr", "[[1, 2], [3, 4]]abc"),
+            Triple.of("val someStr = [1.5, 2.5] + 'abc'", "someStr", "[1.5, 2.5]abc"),
+            Triple.of("val someStr = 'abc' + [true, false]", "someStr", "abc[true, false]"),
 
             // String repetition
             Triple.of("val someStr = 'asdf' * 4", "someStr", "asdfasdfasdfasdf"),
@@ -365,6 +381,44 @@ class StaticVariableTests {
             .collect(toList());
     }
 
+    @TestFactory
+    List<DynamicTest> testStringInfixExpressions_acrossTargets() {
+        String longChain = "val someStr = 'start'" + Strings.repeat(" + x + ','", 150);
+        // 250 arguments (the tag character constant is passed as one too), so the chain is split across call sites
+        String longMixedChain = "val someStr = 'start'" + Strings.repeat(" + i + '\u0001' + f + b + s + ','", 50);
+        List<Triple<String, String, Object>> testCases = Lists.newArrayList(
+            Triple.of("val someStr = 'abc' + 'def' + 'ghi'", "someStr", "abcdefghi"),
+            Triple.of("val x = 1; val someStr = x + 'abc' + 1.5 + true + 'def'", "someStr", "1abc1.5truedef"),
+            Triple.of("val a = 'abc'; val b = [1, 2]; val someStr = (a + b) + (b + a)", "someStr", "abc[1, 2][1, 2]abc"),
+            Triple.of("val x = 1; " + longChain, "someStr", "start" + Strings.repeat("1,", 150)),
+            Triple.of("val i = 1; val f = 1.5; val b = true; val s = 'x'; " + longMixedChain, "someStr", "start" + Strings.repeat("1\u00011.5truex,", 50)),
+            Triple.of("val someStr = 'asdf' * 4", "someStr", "asdfasdfasdfasdf"),
+            Triple.of("val someStr = 'asdf' * 0", "someStr", ""),
+            Triple.of("val someStr = 'asdf' * -2", "someStr", ""),
+            Triple.of("val a = 24; val someStr = \"$a hrs\"", "someStr", "24 hrs"),
+            Triple.of("val a = [24]; val someStr = \"${a[0]} hrs, $a[0] hrs\"", "someStr", "24 hrs, [24][0] hrs"),
+            Triple.of("val a = 1; val b = 'x'; val someStr = \"$a$b${a + 1.5}${true} $b\"", "someStr", "1x2.5true x"),
+            Triple.of("val a = '\u0001'; val someStr = \"\u0002$a\u0001\"", "someStr", "\u0002\u0001\u0001"),
+            Triple.of("val a = 5; val someStr = \"costs $5, $$a, $ each\"", "someStr", "costs $5, $5, $ each")
+        );
+
+        return IntStream.of(6, 8, 11).boxed()
+            .flatMap(target -> testCases.stream().map(testCase -> {
+                String input = testCase.getLeft();
+                String bindingName = testCase.getMiddle();
+                Object val = testCase.getRight();
+
+                String name = "Compiling `" + input + "` targeting " + target + " should result in the static variable `" + bindingName + "` = " + val;
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED.withTarget(target));
+                    String className = result.className;
+
+                    assertStaticBindingOnClassEquals(className, bindingName, val, true);
+                });
+            }))
+            .collect(toList());
+    }
+
     @TestFactory
     List<DynamicTest> testIfExpressions() { // TODO: Testing if's without else's
         List<Triple<String, String, Object>> testCases = Lists.newArrayList(
@@ -397,11 +451,48 @@ class StaticVariableTests {
             .collect(toList());
     }
 
+    @TestFactory
+    List<DynamicTest> testConstantExpressions_withAndWithoutFolding() {
+        List<Triple<String, String, Object>> testCases = Lists.newArrayList(
+            Triple.of("val someInt = 1 + 2 * 3 - -4", "someInt", 11),
+            Triple.of("val someFloat = 7 / 2 + 0.5", "someFloat", 3.5F),
+            Triple.of("val someBool = (1 < 2) && (3.5 < 4)", "someBool", true),
+            Triple.of("val a = 3; val someStr = 'x' + a + 1.5 + (a > 2)", "someStr", "x31.5true"),
+            Triple.of("val a = 24; val someStr = \"$a hrs\"", "someStr", "24 hrs"),
+            Triple.of("val a = 2; val someInt = if a * 2 > 3 { val b = a + 1; b * 10 } else { 0 }", "someInt", 30),
+            Triple.of("val a = 2; val someInt = if a > 3 { 1 } else { a }", "someInt", 2)
+        );
+
+        return Stream.of(true, false)
+            .flatMap(foldConstants -> testCases.stream().map(testCase -> {
+                String input = testCase.getLeft();
+                String bindingName = testCase.getMiddle();
+                Object val = testCase.getRight();
+
+                String name = "Compiling `" + input + "` " + (foldConstants ? "with" : "without") + " folding should result in the static variable `" + bindingName + "` = " + val;
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED.withFoldConstants(foldConstants));
+                    String className = result.className;
+
+                    assertStaticBindingOnClassEquals(className, bindingName, val, true);
+                });
+            }))
+            .collect(toList());
+    }
+
     @TestFactory
     List<DynamicTest> testRangeExpressions() {
         List<Triple<String, String, Object>> testCases = Lists.newArrayList(
-            Triple.of("val someRange = 1..4", "someRange", new Integer[]{1, 2, 3}),
-            Triple.of("val lBound = 3; val rBound = 7; val someRange = lBound..rBound", "someRange", new Integer[]{3, 4, 5, 6})
+            Triple.of("val someRange = 1..4", "someRange", IntRange.of(1, 4)),
+            Triple.of("val lBound = 3; val rBound = 7; val someRange = lBound..rBound", "someRange", IntRange.of(3, 7)),
+            Triple.of("val someRange = 4..1", "someRange", IntRange.of(4, 1)),
+            Triple.of("val r = 0..10; val size = r.size()", "size", 10),
+            Triple.of("val r = 0..1000000000; val size = r.size()", "size", 1000000000),
+            Triple.of("val r = 0..2147483647; val size = r.size()", "size", 2147483647),
+            Triple.of("val r = 0..10; val contains = r.contains(3)", "contains", true),
+            Triple.of("val r = 0..10; val contains = r.contains(10)", "contains", false),
+            Triple.of("val r = 3..10; val third = r[2]", "third", 5),
+            Triple.of("val r = 1..4; val s = \"range: \" + r", "s", "range: 1..4")
         );
 
         return testCases.stream()
@@ -438,12 +529,7 @@ class StaticVariableTests {
         }
 
         List<TestCase> testCases = Lists.newArrayList(
-            new TestCase("val a = true; val someFn = () => a", "someFn", new Object[]{}, true),
-            new TestCase("val someFn = () => true", "someFn", new Object[]{}, true),
-            new TestCase("val someFn = (i: Int) => i + '!'", "someFn", new Object[]{1}, "1!"),
-            new TestCase("val someFn = (i: Int) => if i > 3 { i + 0.14 } else { i - 0.14 }", "someFn", new Object[]{1}, 0.86F),
-            new TestCase("val someFn = (a: Int, b: Int) => a + b", "someFn", new Object[]{1, 2}, 3),
-            new TestCase("val someFn = (a: Int, b: Bool) => if a > 3 { b } else { !b }", "someFn", new Object[]{2, true}, false)
+            new TestCase("val a = true; val someFn = () => a", "someFn", new Object[]{}, true)
         );
 
         return testCases.stream()
@@ -464,6 +550,169 @@ class StaticVariableTests {
             .collect(toList());
     }
 
+    @TestFactory
+    List<DynamicTest> testArrowFunctionExpressions_nonCapturingLambdaVals() {
+        class TestCase {
+            private final String input;
+            private final String lambdaBindingName;
+            private final String bindingName;
+            private final Object[] args;
+            private final Object result;
+
+            private TestCase(String input, String lambdaBindingName, String bindingName, Object[] args, Object result) {
+                this.input = input;
+                this.lambdaBindingName = lambdaBindingName;
+                this.bindingName = bindingName;
+                this.args = args;
+                this.result = result;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("val someFn = () => true; val fn = someFn", "someFn", "fn", new Object[]{}, true),
+            new TestCase("val someFn = (i: Int) => i + '!'; val fn = someFn", "someFn", "fn", new Object[]{1}, "1!"),
+            new TestCase("val someFn = (i: Int) => if i > 3 { i + 0.14 } else { i - 0.14 }; val fn = someFn", "someFn", "fn", new Object[]{1}, 0.86F),
+            new TestCase("val someFn = (a: Int, b: Int) => a + b; val fn = someFn", "someFn", "fn", new Object[]{1, 2}, 3),
+            new TestCase("val someFn = (a: Int, b: Bool) => if a > 3 { b } else { !b }; val fn = someFn", "someFn", "fn", new Object[]{2, true}, false),
+            new TestCase("func f() { val someFn = (i: Int) => i * 2; someFn }; val fn = f()", "someFn", "fn", new Object[]{4}, 8)
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.input;
+                String bindingName = testCase.bindingName;
+                Object[] args = testCase.args;
+                Object res = testCase.result;
+
+                String name = "Compiling `" + input + "` should result in no static variable `" + testCase.lambdaBindingName + "`, and the static variable `" + bindingName + "` which evaluates to " + res + " when passed " + Arrays.toString(args);
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input);
+                    String className = result.className;
+
+                    assertNoStaticBindingOnClass(className, testCase.lambdaBindingName);
+                    assertPrivateStaticBindingOnClassIsLambdaAndEvaluatesTo(className, bindingName, args, res);
+                });
+            })
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testLazilyInitializedVals() {
+        // The last binding of each input is initialized lazily, and is read from its holder class
+        List<Triple<String, String, Object>> testCases = Lists.newArrayList(
+            Triple.of("val a = 1 + 2", "a", 3),
+            Triple.of("val s = 'abc'; val t = s + '!'", "t", "abc!"),
+            Triple.of("val s = 'abc'; val t = \"$s!\"", "t", "abc!"),
+            Triple.of("val o = { a: 1 }; val b = o.a + 1", "b", 2),
+            Triple.of("val x = 3 * 3; val y = if x > 5 { x } else { 0 }", "y", 9),
+            Triple.of("export val z = 4 * 5 - 3", "z", 17)
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                String bindingName = testCase.getMiddle();
+                Object val = testCase.getRight();
+
+                String name = "Compiling `" + input + "` with lazy initialization should result in the holder of `" + bindingName + "` having value " + val;
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED.withLazyStaticInit(true));
+                    String className = result.className;
+
+                    assertNoStaticBindingOnClass(className, bindingName);
+                    assertEquals(val, loadLazyStaticValue(className, bindingName));
+                });
+            })
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testEagerlyInitializedVals_withLazyInitialization() {
+        // Trivial initializers, initializers which may have side effects or throw, and all initializers in modules with
+        // top-level vars, remain eager
+        List<Triple<String, String, Object>> testCases = Lists.newArrayList(
+            Triple.of("val a = 1", "a", 1),
+            Triple.of("val a = -1.5", "a", -1.5F),
+            Triple.of("val a = 'abc'", "a", "abc"),
+            Triple.of("val a = 'abc'; val b = a", "b", "abc"),
+            Triple.of("var a = 1; val b = a + 1", "b", 2),
+            Triple.of("func double(i: Int) { i * 2 }; val c = double(4)", "c", 8),
+            Triple.of("func double(i: Int) { i * 2 }; val c = [double(4)][0] + 1", "c", 9),
+            Triple.of("val fns = [(i: Int) => i + 1]; val r = fns[0](1)", "r", 2),
+            Triple.of("val arr = [1, 2, 3]; val b = arr[1] + 1", "b", 3),
+            Triple.of("val a = 7; val b = a / 2 + 1", "b", 4)
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                String bindingName = testCase.getMiddle();
+                Object val = testCase.getRight();
+
+                String name = "Compiling `" + input + "` with lazy initialization should result in the static variable `" + bindingName + "` = " + val;
+                return dynamicTest(name, () -> {
+                    TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED.withLazyStaticInit(true));
+                    String className = result.className;
+
+                    assertStaticBindingOnClassEquals(className, bindingName, val, true);
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testValWithSideEffects_isInitializedWhenModuleIsLoaded() throws ClassNotFoundException {
+        String propertyName = "mega.test.lazy." + RandomStringUtils.randomAlphabetic(8);
+        String input = "" +
+            "import setProperty from 'java.lang.System'\n" +
+            "val previous = setProperty('" + propertyName + "', 'initialized')\n" +
+            "val a = 1 + 2";
+        TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED.withLazyStaticInit(true));
+        String className = result.className;
+
+        Class.forName(className, true, StaticVariableTests.class.getClassLoader());
+        assertEquals("initialized", System.getProperty(propertyName), "Loading the module should initialize `previous`");
+        assertStaticBindingOnClassEquals(className, "previous", null, true);
+        assertEquals(3, loadLazyStaticValue(className, "a"));
+    }
+
+    @Test
+    void testStaticInitializerIsSplit_forLargeModules() {
+        // Each binding's initialization is ~30 bytes of bytecode, so these would exceed the 64KB method limit in <clinit>
+        int numBindings = 3000;
+        String input = IntStream.range(0, numBindings)
+            .mapToObj(i -> String.format("val a%d = [%d, %d, %d]", i, i, i + 1, i + 2))
+            .collect(joining("\n"));
+        TestCompilationResult result = parseTypecheckAndCompileInput(input, UNOPTIMIZED); // Lazily-initialized vals aren't in <clinit>
+        String className = result.className;
+
+        assertStaticBindingOnClassEquals(className, "a0", new int[]{0, 1, 2}, true);
+        assertStaticBindingOnClassEquals(className, "a2999", new int[]{2999, 3000, 3001}, true);
+
+        // Only fields initialized in <clinit> itself can be final
+        assertFinalityOnStaticBinding(className, "a0", true);
+        assertFinalityOnStaticBinding(className, "a2999", false);
+        assertFalse(loadStaticMethodsFromClass(className, "$clinit$1").isEmpty(), "The helper method $clinit$1 should exist");
+    }
+
+    private void assertNoStaticBindingOnClass(String className, String fieldName) {
+        boolean hasField = Arrays.stream(loadClass(className).getDeclaredFields())
+            .anyMatch(field -> field.getName().equals(fieldName));
+        assertFalse(hasField, "Field " + fieldName + " is initialized lazily and should not be on the module class");
+    }
+
+    private Object loadLazyStaticValue(String className, String fieldName) {
+        try {
+            Field field = loadStaticVariableFromClass(LazyStaticInit.getHolderClassName(className, fieldName), fieldName);
+            assertTrue(Modifier.isFinal(field.getModifiers()), "Field " + fieldName + " on its holder class should be final");
+
+            field.setAccessible(true);
+            return field.get(null);
+        } catch (IllegalAccessException e) {
+            throw new TestFailureException(e);
+        }
+    }
+
     private void assertFinalityOnStaticBinding(String className, String fieldName, boolean expectedFinal) {
         Field field = loadStaticVariableFromClass(className, fieldName);
         if (expectedFinal) {
@@ -0,0 +1,301 @@
+package co.kenrg.mega.backend.compilation.ir;
+
+import static co.kenrg.mega.frontend.parser.ParserTestUtils.parseModule;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
+import co.kenrg.mega.backend.compilation.ir.Instruction.Assign;
+import co.kenrg.mega.backend.compilation.ir.Instruction.Eval;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Branch;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Goto;
+import co.kenrg.mega.backend.compilation.ir.Terminator.Return;
+import co.kenrg.mega.backend.compilation.ir.Value.Arithmetic;
+import co.kenrg.mega.backend.compilation.ir.Value.Const;
+import co.kenrg.mega.backend.compilation.ir.Value.LocalRef;
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.typechecking.TypeCheckResult;
+import co.kenrg.mega.frontend.typechecking.TypeChecker;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+class MidLevelIrTest {
+    private static final String CLASS_NAME = "MidLevelIrTest";
+    private static final CompilerOptions OPTIONS = CompilerOptions.DEFAULT
+        .withFoldConstants(false)
+        .withInlineBudget(0, 0)
+        .withLazyStaticInit(false)
+        .withMidLevelIr(true);
+
+    private static class TestClassLoader extends ClassLoader {
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    private static class CompilationResult {
+        final Compiler compiler;
+        final Class<?> moduleClass;
+
+        CompilationResult(Compiler compiler, Class<?> moduleClass) {
+            this.compiler = compiler;
+            this.moduleClass = moduleClass;
+        }
+
+        String getIr(String fnName) {
+            return this.compiler.getIrFunctions().stream()
+                .filter(fn -> fn.name.equals(fnName))
+                .map(IrFunction::toString)
+                .findFirst()
+                .orElse(null);
+        }
+    }
+
+    private static CompilationResult compile(String input) {
+        TypeEnvironment typeEnv = new TypeEnvironment();
+        TypeCheckResult<Module> result = new TypeChecker().typecheck(parseModule(input), typeEnv);
+        assertTrue(result.errors.isEmpty(), "There should be no typechecking errors");
+
+        Compiler compiler = new Compiler(CLASS_NAME, typeEnv, OPTIONS);
+        List<Pair<String, byte[]>> classes = compiler.compile(result.node);
+
+        TestClassLoader classLoader = new TestClassLoader();
+        Class<?> moduleClass = null;
+        for (Pair<String, byte[]> generatedClass : classes) {
+            Class<?> clazz = classLoader.define(generatedClass.getLeft(), generatedClass.getRight());
+            if (generatedClass.getLeft().equals(CLASS_NAME)) {
+                moduleClass = clazz;
+            }
+        }
+        return new CompilationResult(compiler, moduleClass);
+    }
+
+    private static Object invoke(Class<?> moduleClass, String fnName, Object... args) throws Exception {
+        Method method = Arrays.stream(moduleClass.getDeclaredMethods())
+            .filter(m -> m.getName().equals(fnName))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("No method " + fnName));
+        method.setAccessible(true);
+        return method.invoke(null, args);
+    }
+
+    @TestFactory
+    List<DynamicTest> testLowering() {
+        // The IR of the function f, after the standard pipeline of passes has run over it
+        List<Pair<String, String>> testCases = Lists.newArrayList(
+            Pair.of(
+                "func f(a: Int, b: Int): Int = a * b + 1",
+                "" +
+                    "func f(a.0: Int, b.1: Int): Int\n" +
+                    "b0:\n" +
+                    "  return ((a.0 * b.1) + 1)"
+            ),
+            Pair.of(
+                "func f(a: Int, b: Float): Float = -a * b",
+                "" +
+                    "func f(a.0: Int, b.1: Float): Float\n" +
+                    "b0:\n" +
+                    "  return (i2f(-a.0) * b.1)"
+            ),
+            Pair.of(
+                "func f(a: Int): Int { val b = a; val c = 2; b * c }",
+                "" +
+                    "func f(a.0: Int): Int\n" +
+                    "b0:\n" +
+                    "  return (a.0 * 2)"
+            ),
+            Pair.of(
+                "func f(a: Int, b: Int): Bool = (a < b) && !(b > 10)",
+                "" +
+                    "func f(a.0: Int, b.1: Int): Bool\n" +
+                    "b0:\n" +
+                    "  branch (a.0 < b.1) ? b4 : b2\n" +
+                    "b1:\n" +
+                    "  return true\n" +
+                    "b2:\n" +
+                    "  return false\n" +
+                    "b4:\n" +
+                    "  branch (b.1 > 10) ? b2 : b1"
+            ),
+            Pair.of(
+                "func f(n: Int, acc: Int): Int = if n <= 1 { acc } else { f(n - 1, acc * n) }",
+                "" +
+                    "func f(n.0: Int, acc.1: Int): Int\n" +
+                    "b0:\n" +
+                    "  branch (n.0 <= 1) ? b1 : b2\n" +
+                    "b1:\n" +
+                    "  return acc.1\n" +
+                    "b2:\n" +
+                    "  $tmp.3 = (n.0 - 1)\n" +
+                    "  $tmp.4 = (acc.1 * n.0)\n" +
+                    "  n.0 = $tmp.3\n" +
+                    "  acc.1 = $tmp.4\n" +
+                    "  goto b0"
+            ),
+            Pair.of(
+                "func f(n: Int): Int { var i = 0; while true { i += 1; if i >= n { break } }; i }",
+                "" +
+                    "func f(n.0: Int): Int\n" +
+                    "b0:\n" +
+                    "  i.1 = 0\n" +
+                    "  goto b2\n" +
+                    "b2:\n" +
+                    "  i.1 = (i.1 + 1)\n" +
+                    "  branch (i.1 >= n.0) ? b3 : b2\n" +
+                    "b3:\n" +
+                    "  return i.1"
+            ),
+            Pair.of(
+                "func g(x: Int): Int = x + 1\nfunc f(a: Int): Int = g(a) + (if a > 0 { var b = a; b = b * 2; b } else { 0 })",
+                "" +
+                    "func f(a.0: Int): Int\n" +
+                    "b0:\n" +
+                    "  $tmp.1 = MidLevelIrTest.g(a.0)\n" +
+                    "  branch (a.0 > 0) ? b1 : b2\n" +
+                    "b1:\n" +
+                    "  b.3 = (a.0 * 2)\n" +
+                    "  return ($tmp.1 + b.3)\n" +
+                    "b2:\n" +
+                    "  return ($tmp.1 + 0)"
+            )
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                String expected = testCase.getRight();
+
+                String name = String.format("Lowering `%s` should produce the expected IR", input);
+                return dynamicTest(name, () -> {
+                    CompilationResult result = compile(input);
+                    assertEquals(expected, result.getIr("f"));
+                });
+            })
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testFunctionsCompiledViaIr() {
+        class TestCase {
+            private final String input;
+            private final Object[] args;
+            private final Object expected;
+
+            private TestCase(String input, Object[] args, Object expected) {
+                this.input = input;
+                this.args = args;
+                this.expected = expected;
+            }
+        }
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("func f(n: Int, acc: Int): Int = if n <= 1 { acc } else { f(n - 1, acc * n) }", new Object[]{5, 1}, 120),
+            new TestCase("func f(a: Int, b: Int): Int = if a < b { f(b, a) } else { a - b }", new Object[]{3, 10}, 7),
+            new TestCase("func f(a: Int, b: Float): Float = -a * b", new Object[]{2, 1.5F}, -3.0F),
+            new TestCase("func f(a: Int, b: Int): Bool = (a < b) && !(b > 10)", new Object[]{1, 2}, true),
+            new TestCase("func f(a: Int, b: Int): Bool = (a < b) && !(b > 10)", new Object[]{1, 20}, false),
+            new TestCase("func f(a: Int, b: Int): Bool = (a < b) || (b < 0)", new Object[]{2, -1}, true),
+            new TestCase("func f(x: Float): Bool = !(x < 1.0)", new Object[]{Float.NaN}, true),
+            new TestCase("func f(x: Float): Bool = x != x", new Object[]{Float.NaN}, true),
+            new TestCase("func f(n: Int): Int { var i = 0; while true { i += 1; if i >= n { break } }; i }", new Object[]{4}, 4),
+            new TestCase("func f(n: Int): Int { var s = 0; var i = 0; while i < n { i += 1; if i == 2 { continue }; s += i }; s }", new Object[]{4}, 8),
+            new TestCase("func f(n: Int): Float { var s = 0.0; var i = 0; while (i < n) && (s < 10) { s = s + 2.5; i += 1 }; s }", new Object[]{10}, 10.0F),
+            new TestCase("func f(a: Int): Int { val b = if a > 0 { val c = a * 2; c + 1 } else { 0 }; b * 2 }", new Object[]{3}, 14),
+            new TestCase("func g(x: Int): Int = x + 1\nfunc f(a: Int): Int = g(a) + (if a > 0 { var b = a; b = b * 2; b } else { 0 })", new Object[]{3}, 10),
+            new TestCase("val k = 3\nfunc f(a: Int): Int = a * k", new Object[]{5}, 15),
+            new TestCase("func f(a: Int): Int { val x = a / 0; a }", new Object[]{5}, null) // Throws, even though x is unused
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = String.format("Invoking `%s` with %s, compiled via the IR, should return %s", testCase.input, Arrays.toString(testCase.args), testCase.expected);
+                return dynamicTest(name, () -> {
+                    CompilationResult result = compile(testCase.input);
+                    assertTrue(result.getIr("f") != null, "f should be compiled via the IR");
+
+                    if (testCase.expected == null) {
+                        try {
+                            invoke(result.moduleClass, "f", testCase.args);
+                        } catch (java.lang.reflect.InvocationTargetException e) {
+                            assertTrue(e.getCause() instanceof ArithmeticException, "f should throw an ArithmeticException");
+                            return;
+                        }
+                        throw new AssertionError("f should throw an ArithmeticException");
+                    }
+                    assertEquals(testCase.expected, invoke(result.moduleClass, "f", testCase.args));
+                });
+            })
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testUnsupportedFunctionsAreCompiledFromAst() {
+        List<String> testCases = Lists.newArrayList(
+            "func f(s: String): String = s + '!'",
+            "func f(a: Int): Int { val arr = [a, a]; arr[0] }",
+            "func f(a: Int): Int { var s = 0; for x in [1, 2, a] { s += x }; s }",
+            "func f(a: Int): Int { val g = (b: Int) => a + b; g(1) }",
+            "var total = 0\nfunc f(a: Int): Int { total = a; a }",
+            "func g(a: Int, b: Int = 1): Int = a + b\nfunc f(a: Int): Int = g(a)",
+            "func f(a: Int): Int = match a { 1 => 10, 2 => 20 else => 0 }"
+        );
+
+        return testCases.stream()
+            .map(input -> {
+                String name = String.format("`%s` can't be lowered to the IR, and should be compiled from the AST", input);
+                return dynamicTest(name, () -> {
+                    CompilationResult result = compile(input);
+                    assertEquals(null, result.getIr("f"));
+                    assertTrue(result.moduleClass != null);
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testPassManager_runsPassesToFixpoint() {
+        // b0: t = 1; x = t + a; eval x; branch true ? b1 : b2
+        // b1: return x
+        // b2: return 0
+        IrFunction fn = new IrFunction("f", PrimitiveTypes.INTEGER);
+        Local a = fn.newParam("a", PrimitiveTypes.INTEGER);
+        Local t = fn.newLocal("t", PrimitiveTypes.INTEGER);
+        Local x = fn.newLocal("x", PrimitiveTypes.INTEGER);
+        Block b0 = fn.newBlock();
+        Block b1 = fn.newBlock();
+        Block b2 = fn.newBlock();
+        b0.instructions.add(new Assign(t, new Const(PrimitiveTypes.INTEGER, 1)));
+        b0.instructions.add(new Assign(x, new Arithmetic("+", new LocalRef(t), new LocalRef(a))));
+        b0.instructions.add(new Eval(new LocalRef(x)));
+        b0.terminator = new Branch(new Const(PrimitiveTypes.BOOLEAN, true), b1, b2);
+        b1.terminator = new Return(new LocalRef(x));
+        b2.terminator = new Goto(b1);
+
+        PassManager passManager = PassManager.standardPipeline();
+        passManager.run(fn);
+
+        String expected = "" +
+            "func f(a.0: Int): Int\n" +
+            "b0:\n" +
+            "  x.2 = (1 + a.0)\n" +
+            "  return x.2";
+        assertEquals(expected, fn.toString());
+
+        Map<String, Integer> numChanges = passManager.getNumChanges();
+        assertEquals(Lists.newArrayList("copy-propagation", "branch-folding", "dead-code-elimination"), Lists.newArrayList(numChanges.keySet()));
+        assertTrue(numChanges.values().stream().allMatch(n -> n > 0), "Each pass should have changed the function");
+    }
+}
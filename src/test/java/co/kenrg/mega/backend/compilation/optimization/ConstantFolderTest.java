@@ -0,0 +1,116 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static co.kenrg.mega.frontend.parser.ParserTestUtils.parseModule;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.util.List;
+
+import co.kenrg.mega.backend.compilation.optimization.ConstantFoldingReport.Entry;
+import co.kenrg.mega.backend.compilation.optimization.ConstantFoldingReport.Kind;
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.ast.iface.Statement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.typechecking.TypeCheckResult;
+import co.kenrg.mega.frontend.typechecking.TypeChecker;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+class ConstantFolderTest {
+
+    private static Module typecheck(String input) {
+        TypeCheckResult<Module> result = new TypeChecker().typecheck(parseModule(input), new TypeEnvironment());
+        assertTrue(result.errors.isEmpty(), "There should be no typechecking errors");
+        return result.node;
+    }
+
+    // Returns the repr of the value bound to the last val in the folded module
+    private static String foldAndGetLastValue(ConstantFolder folder, String input) {
+        Module folded = folder.fold(typecheck(input));
+        Statement last = folded.statements.get(folded.statements.size() - 1);
+        assertTrue(last instanceof ValStatement, "The last statement should be a val");
+        return ((ValStatement) last).value.repr(false, 0);
+    }
+
+    @TestFactory
+    List<DynamicTest> testFoldConstantExpressions() {
+        List<Pair<String, String>> testCases = Lists.newArrayList(
+            Pair.of("val x = 1 + 2 * 3", "7"),
+            Pair.of("val x = (1 + 2) * 3", "9"),
+            Pair.of("val x = 7 / 2", "3"),
+            Pair.of("val x = 1 + 2.5", "3.5"),
+            Pair.of("val x = -(3 - 5)", "2"),
+            Pair.of("val x = !false", "true"),
+            Pair.of("val x = (1 < 2) && (3.5 >= 3)", "true"),
+            Pair.of("val x = false || ('abc' == 'abc')", "true"),
+            Pair.of("val x = 'a' + 'b'", "\"ab\""),
+            Pair.of("val x = 'a' + 1 + 2.5 + true", "\"a12.5true\""),
+            Pair.of("val x = if 1 < 2 { 'yes' } else { 'no' }", "\"yes\""),
+            Pair.of("val x = if !true { 1 } else { 2 + 2 }", "4"),
+            Pair.of("val a = 2\nval x = a * 3", "6"),
+            Pair.of("val a = 24\nval x = \"$a hrs\"", "\"24 hrs\""),
+
+            // Nothing to fold (or not safe to fold)
+            Pair.of("val x = 1 / 0", "1 / 0"),
+            Pair.of("val x = 'ab' * 3", "\"ab\" * 3"),
+            Pair.of("var a = 2\nval x = a * 3", "a * 3"),
+            Pair.of("val a = 2\nval x = (a: Int) => a * 3", "a: Int => a * 3"),
+            Pair.of("val a = 2\nval x = [a, a + 1]", "[2, 3]"),
+            Pair.of("func f(a: Int) { a }\nval x = true && (f(1) > 1)", "(f(1) > 1)")
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                String expected = testCase.getRight();
+
+                String name = String.format("Folding `%s` should result in `%s`", input, expected);
+                return dynamicTest(name, () -> {
+                    assertEquals(expected, foldAndGetLastValue(new ConstantFolder(), input));
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testFoldingPreservesTypes() {
+        Module folded = new ConstantFolder().fold(typecheck("val x = 1 + 2.5"));
+        ValStatement val = (ValStatement) folded.statements.get(0);
+        assertEquals(PrimitiveTypes.FLOAT, val.value.getType());
+    }
+
+    @Test
+    void testFoldingDoesNotPropagateShadowedVals() {
+        String input = "" +
+            "val a = 2\n" +
+            "func f(a: Int) { val b = a * 3\nb }\n" +
+            "val x = a";
+        Module folded = new ConstantFolder().fold(typecheck(input));
+
+        assertEquals("func f(a: Int) = {\n  val b = a * 3\n  b\n}", folded.statements.get(1).repr(false, 0));
+        assertEquals("2", ((ValStatement) folded.statements.get(2)).value.repr(false, 0));
+    }
+
+    @Test
+    void testReportContainsOnlyOutermostSimplifications() {
+        ConstantFolder folder = new ConstantFolder();
+        foldAndGetLastValue(folder, "val a = 3\nval x = 1 + 2 * a\nval y = if x > 5 { 'big' } else { 'small' }");
+
+        List<Entry> entries = folder.getReport().getEntries();
+        assertEquals(2, entries.size());
+
+        assertEquals(Kind.FOLDED, entries.get(0).kind);
+        assertEquals("folded `1 + 2 * a` to `7`", entries.get(0).toString());
+        assertEquals(2, entries.get(0).position.line);
+
+        assertEquals(Kind.PRUNED, entries.get(1).kind);
+        assertEquals("pruned `if x > 5` to `then-branch`", entries.get(1).toString());
+    }
+}
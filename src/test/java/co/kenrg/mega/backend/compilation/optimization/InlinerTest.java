@@ -0,0 +1,148 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static co.kenrg.mega.frontend.parser.ParserTestUtils.parseModule;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.util.List;
+
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.iface.Expression;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.typechecking.TypeCheckResult;
+import co.kenrg.mega.frontend.typechecking.TypeChecker;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+class InlinerTest {
+
+    private static Module typecheck(String input) {
+        TypeCheckResult<Module> result = new TypeChecker().typecheck(parseModule(input), new TypeEnvironment());
+        assertTrue(result.errors.isEmpty(), "There should be no typechecking errors");
+        return result.node;
+    }
+
+    private static List<String> getReportEntries(Inliner inliner) {
+        return inliner.getReport().getEntries().stream()
+            .map(InliningReport.Entry::toString)
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testInlineCalls() {
+        List<Pair<String, List<String>>> testCases = Lists.newArrayList(
+            Pair.of(
+                "func add(a: Int, b: Int) { a + b }\nval x = add(1, 2)",
+                Lists.newArrayList("inlined `add(1, 2)` (size 5, depth 1)")
+            ),
+            Pair.of(
+                "func add(a: Int, b: Int): Int = a + b\nval x = add(b: 1, a: 2)",
+                Lists.newArrayList("inlined `add(b: 1, a: 2)` (size 3, depth 1)")
+            ),
+            Pair.of(
+                "val inc = (n: Int) => n + 1\nval x = inc(1)",
+                Lists.newArrayList("inlined `inc(1)` (size 3, depth 1)")
+            ),
+            Pair.of(
+                "func f(a: Int) { a + 1 }\nfunc g(a: Int) { f(a) * 2 }\nval x = g(1)",
+                Lists.newArrayList(
+                    "inlined `f(a)` (size 5, depth 1)",
+                    "inlined `g(1)` (size 13, depth 2)"
+                )
+            ),
+            Pair.of(
+                "func f(a: Int) { a + 1 }\nfunc g(a: Int) { f(a) * 2 }\nfunc h(a: Int) { g(a) + 1 }\nval x = h(1)",
+                Lists.newArrayList(
+                    "inlined `f(a)` (size 5, depth 1)",
+                    "inlined `g(a)` (size 13, depth 2)",
+                    "over budget, not inlined `h(1)` (size 21, depth 3)"
+                )
+            ),
+            Pair.of(
+                "func f(s: String) { s + s + s + s + s + s + s + s + s + s + s + s + s + s + s + s + s }\nval x = f('a')",
+                Lists.newArrayList("over budget, not inlined `f(\"a\")` (size 35, depth 1)")
+            ),
+
+            // Calls which aren't considered for inlining at all
+            Pair.of("export func add(a: Int, b: Int) { a + b }\nval x = add(1, 2)", Lists.newArrayList()),
+            Pair.of("func add(a: Int, b: Int = 1) { a + b }\nval x = add(1)", Lists.newArrayList()),
+            Pair.of("func fact(n: Int): Int { if n < 2 { 1 } else { n * fact(n - 1) } }\nval x = fact(3)", Lists.newArrayList()),
+            Pair.of("func f(a: Int) { val g = (n: Int) => n + a; g(1) }", Lists.newArrayList()),
+            Pair.of("func f(a: Int) { (b: Int) => a + b }\nval x = f(1)(2)", Lists.newArrayList()),
+            Pair.of("val inc = (n: Int) => n + 1\nval f = (n: Int) => inc(n)", Lists.newArrayList()),
+            Pair.of("val k = 1\nfunc f(a: Int) { a + k }\nfunc g(k: Int) { f(k) }", Lists.newArrayList()),
+            Pair.of("func f(a: Int, b: Int) { a - b }\nfunc g(a: Int, b: Int) { f(b, a) }", Lists.newArrayList())
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                List<String> expected = testCase.getRight();
+
+                String name = String.format("Inlining `%s` should result in the report %s", input, expected);
+                return dynamicTest(name, () -> {
+                    Inliner inliner = new Inliner(32, 2);
+                    inliner.inline(typecheck(input));
+                    assertEquals(expected, getReportEntries(inliner));
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testInlinedCallIsReplacedByBlockBindingParameters() {
+        Module inlined = new Inliner(32, 2).inline(typecheck("func add(a: Int, b: Int) { a + b }\nval x = add(1, 2)"));
+        ValStatement val = (ValStatement) inlined.statements.get(1);
+
+        assertTrue(val.value instanceof BlockExpression, "The call should have been replaced by a block");
+        BlockExpression block = (BlockExpression) val.value;
+        assertEquals(3, block.statements.size());
+        assertEquals("a", ((ValStatement) block.statements.get(0)).name.value);
+        assertEquals("1", ((ValStatement) block.statements.get(0)).value.repr(false, 0));
+        assertEquals("b", ((ValStatement) block.statements.get(1)).name.value);
+        assertEquals("2", ((ValStatement) block.statements.get(1)).value.repr(false, 0));
+        assertEquals(PrimitiveTypes.INTEGER, block.getType());
+    }
+
+    @Test
+    void testEachInlinedCallHasItsOwnCopyOfTheBody() {
+        Module inlined = new Inliner(32, 2).inline(typecheck("func add(a: Int, b: Int) { a + b }\nval x = add(1, 2)\nval y = add(3, 4)"));
+        FunctionDeclarationStatement add = (FunctionDeclarationStatement) inlined.statements.get(0);
+        BlockExpression xBlock = (BlockExpression) ((ValStatement) inlined.statements.get(1)).value;
+        BlockExpression yBlock = (BlockExpression) ((ValStatement) inlined.statements.get(2)).value;
+
+        Expression xBody = ((ExpressionStatement) xBlock.statements.get(2)).expression;
+        Expression yBody = ((ExpressionStatement) yBlock.statements.get(2)).expression;
+        assertEquals(add.body.repr(false, 0), xBody.repr(false, 0));
+        assertEquals(add.body.repr(false, 0), yBody.repr(false, 0));
+        assertTrue(add.body != xBody, "The function's body shouldn't be shared with an inlined call");
+        assertTrue(xBody != yBody, "The inlined calls' bodies shouldn't be shared");
+        assertEquals(PrimitiveTypes.INTEGER, xBody.getType());
+
+        Identifier xParamName = ((ValStatement) xBlock.statements.get(0)).name;
+        Identifier yParamName = ((ValStatement) yBlock.statements.get(0)).name;
+        assertTrue(add.parameters.get(0).ident != xParamName, "The function's parameters shouldn't be shared with an inlined call");
+        assertTrue(xParamName != yParamName, "The inlined calls' parameter bindings shouldn't be shared");
+    }
+
+    @Test
+    void testZeroDepthBudgetInlinesNothing() {
+        Inliner inliner = new Inliner(32, 0);
+        Module module = typecheck("func add(a: Int, b: Int) { a + b }\nval x = add(1, 2)");
+        Module inlined = inliner.inline(module);
+
+        assertEquals("add(1, 2)", ((ValStatement) inlined.statements.get(1)).value.repr(false, 0));
+        assertEquals(0, inliner.getReport().getNumInlined());
+    }
+}
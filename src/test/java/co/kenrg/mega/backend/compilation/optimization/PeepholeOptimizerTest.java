@@ -0,0 +1,235 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import co.kenrg.mega.backend.compilation.ClassHierarchy;
+import co.kenrg.mega.backend.compilation.CompilerOptions.PeepholeRule;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+class PeepholeOptimizerTest {
+    private static final String CLASS_NAME = "PeepholeTest";
+
+    private static class TestClassLoader extends ClassLoader {
+        Class<?> define(byte[] classFile) {
+            return defineClass(CLASS_NAME, classFile, 0, classFile.length);
+        }
+    }
+
+    // A class with a single method, `static int f(int)`, whose code is written by writeBody
+    private static byte[] compileMethod(Consumer<MethodVisitor> writeBody) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC, CLASS_NAME, null, "java/lang/Object", null);
+        MethodVisitor writer = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "f", "(I)I", null, null);
+        writer.visitCode();
+        writeBody.accept(writer);
+        writer.visitMaxs(-1, -1);
+        writer.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static List<Integer> getOpcodes(byte[] classFile) {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(classFile).accept(classNode, 0);
+        MethodNode method = classNode.methods.get(0);
+        return Arrays.stream(method.instructions.toArray())
+            .map(AbstractInsnNode::getOpcode)
+            .filter(opcode -> opcode >= 0)
+            .collect(toList());
+    }
+
+    private static Object invoke(byte[] classFile, int arg) throws Exception {
+        return new TestClassLoader().define(classFile).getMethod("f", int.class).invoke(null, arg);
+    }
+
+    @TestFactory
+    List<DynamicTest> testPeepholeRules() {
+        class TestCase {
+            private final String description;
+            private final Set<PeepholeRule> rules;
+            private final Consumer<MethodVisitor> writeBody;
+            private final List<Integer> expectedOpcodes;
+
+            private TestCase(String description, Set<PeepholeRule> rules, Consumer<MethodVisitor> writeBody, List<Integer> expectedOpcodes) {
+                this.description = description;
+                this.rules = rules;
+                this.writeBody = writeBody;
+                this.expectedOpcodes = expectedOpcodes;
+            }
+        }
+
+        Set<PeepholeRule> allRules = EnumSet.allOf(PeepholeRule.class);
+
+        Consumer<MethodVisitor> boxUnbox = writer -> {
+            writer.visitVarInsn(ILOAD, 0);
+            writer.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+            writer.visitTypeInsn(CHECKCAST, "java/lang/Integer");
+            writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Integer", "intValue", "()I", false);
+            writer.visitInsn(IRETURN);
+        };
+        Consumer<MethodVisitor> constantBranch = writer -> {
+            Label elseLabel = new Label();
+            writer.visitInsn(ICONST_1);
+            writer.visitJumpInsn(IFEQ, elseLabel);
+            writer.visitVarInsn(ILOAD, 0);
+            writer.visitInsn(IRETURN);
+            writer.visitLabel(elseLabel);
+            writer.visitInsn(ICONST_0);
+            writer.visitInsn(IRETURN);
+        };
+        Consumer<MethodVisitor> singleUseLocal = writer -> {
+            writer.visitVarInsn(ILOAD, 0);
+            writer.visitInsn(ICONST_1);
+            writer.visitInsn(IADD);
+            writer.visitVarInsn(ISTORE, 1);
+            writer.visitVarInsn(ILOAD, 1);
+            writer.visitInsn(IRETURN);
+        };
+        Consumer<MethodVisitor> reusedLocal = writer -> {
+            writer.visitVarInsn(ILOAD, 0);
+            writer.visitVarInsn(ISTORE, 1);
+            writer.visitVarInsn(ILOAD, 1);
+            writer.visitVarInsn(ILOAD, 1);
+            writer.visitInsn(IADD);
+            writer.visitInsn(IRETURN);
+        };
+        Consumer<MethodVisitor> jumpToGoto = writer -> {
+            Label gotoLabel = new Label();
+            Label zeroLabel = new Label();
+            writer.visitVarInsn(ILOAD, 0);
+            writer.visitJumpInsn(IFEQ, gotoLabel);
+            writer.visitInsn(ICONST_1);
+            writer.visitInsn(IRETURN);
+            writer.visitLabel(gotoLabel);
+            writer.visitJumpInsn(GOTO, zeroLabel);
+            writer.visitLabel(zeroLabel);
+            writer.visitInsn(ICONST_0);
+            writer.visitInsn(IRETURN);
+        };
+        Consumer<MethodVisitor> jumpOverGoto = writer -> {
+            Label zeroLabel = new Label();
+            Label oneLabel = new Label();
+            writer.visitVarInsn(ILOAD, 0);
+            writer.visitJumpInsn(IFEQ, zeroLabel);
+            writer.visitJumpInsn(GOTO, oneLabel);
+            writer.visitLabel(zeroLabel);
+            writer.visitInsn(ICONST_0);
+            writer.visitInsn(IRETURN);
+            writer.visitLabel(oneLabel);
+            writer.visitInsn(ICONST_1);
+            writer.visitInsn(IRETURN);
+        };
+        Consumer<MethodVisitor> materializedBoolean = writer -> { // `if n != 0 { 1 } else { 0 }`, via a boolean
+            Label falseLabel = new Label();
+            Label branchLabel = new Label();
+            Label elseLabel = new Label();
+            writer.visitVarInsn(ILOAD, 0);
+            writer.visitJumpInsn(IFEQ, falseLabel);
+            writer.visitInsn(ICONST_1);
+            writer.visitJumpInsn(GOTO, branchLabel);
+            writer.visitLabel(falseLabel);
+            writer.visitInsn(ICONST_0);
+            writer.visitLabel(branchLabel);
+            writer.visitJumpInsn(IFEQ, elseLabel);
+            writer.visitInsn(ICONST_1);
+            writer.visitInsn(IRETURN);
+            writer.visitLabel(elseLabel);
+            writer.visitInsn(ICONST_0);
+            writer.visitInsn(IRETURN);
+        };
+
+        List<TestCase> testCases = Lists.newArrayList(
+            new TestCase("box then unbox", allRules, boxUnbox, Lists.newArrayList(ILOAD, IRETURN)),
+            new TestCase("branch on a constant", allRules, constantBranch, Lists.newArrayList(ILOAD, IRETURN)),
+            new TestCase("store then load of a single-use local", allRules, singleUseLocal, Lists.newArrayList(ILOAD, ICONST_1, IADD, IRETURN)),
+            new TestCase("store then load of a reused local", allRules, reusedLocal, Lists.newArrayList(ILOAD, ISTORE, ILOAD, ILOAD, IADD, IRETURN)),
+            new TestCase("jump to a GOTO", allRules, jumpToGoto, Lists.newArrayList(ILOAD, IFEQ, ICONST_1, IRETURN, ICONST_0, IRETURN)),
+            new TestCase("conditional jump over a GOTO", allRules, jumpOverGoto, Lists.newArrayList(ILOAD, IFNE, ICONST_0, IRETURN, ICONST_1, IRETURN)),
+            new TestCase("branch on a materialized boolean", allRules, materializedBoolean, Lists.newArrayList(ILOAD, IFEQ, ICONST_1, IRETURN, ICONST_0, IRETURN)),
+
+            // Rules which aren't enabled aren't applied
+            new TestCase("box then unbox", EnumSet.of(PeepholeRule.JUMP_THREADING), boxUnbox, Lists.newArrayList(ILOAD, INVOKESTATIC, CHECKCAST, INVOKEVIRTUAL, IRETURN)),
+            new TestCase("branch on a constant", EnumSet.of(PeepholeRule.CONSTANT_BRANCHES, PeepholeRule.UNREACHABLE_CODE), constantBranch, Lists.newArrayList(GOTO, ILOAD, IRETURN)),
+            new TestCase("branch on a constant", EnumSet.of(PeepholeRule.JUMP_THREADING, PeepholeRule.UNREACHABLE_CODE), constantBranch, Lists.newArrayList(ICONST_1, IFEQ, ILOAD, IRETURN, ICONST_0, IRETURN))
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = String.format("Optimizing a %s with rules %s yields the expected instructions", testCase.description, testCase.rules);
+                return dynamicTest(name, () -> {
+                    byte[] classFile = compileMethod(testCase.writeBody);
+                    PeepholeOptimizer optimizer = new PeepholeOptimizer(testCase.rules, new ClassHierarchy());
+                    byte[] optimizedClassFile = optimizer.optimize(Lists.newArrayList(Pair.of(CLASS_NAME, classFile))).get(0).getRight();
+
+                    assertEquals(testCase.expectedOpcodes, getOpcodes(optimizedClassFile));
+                    for (int arg : new int[]{0, 1, 5}) {
+                        assertEquals(invoke(classFile, arg), invoke(optimizedClassFile, arg), "The optimized method should return the same value as the original");
+                    }
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testReportsInstructionCountsPerMethod() {
+        byte[] classFile = compileMethod(writer -> {
+            Label elseLabel = new Label();
+            writer.visitVarInsn(ILOAD, 0);
+            writer.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+            writer.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Integer", "intValue", "()I", false);
+            writer.visitInsn(ICONST_0);
+            writer.visitJumpInsn(IFNE, elseLabel);
+            writer.visitInsn(IRETURN);
+            writer.visitLabel(elseLabel);
+            writer.visitInsn(ICONST_0);
+            writer.visitInsn(IRETURN);
+        });
+
+        PeepholeOptimizer optimizer = new PeepholeOptimizer(EnumSet.allOf(PeepholeRule.class), new ClassHierarchy());
+        optimizer.optimize(Lists.newArrayList(Pair.of(CLASS_NAME, classFile)));
+
+        List<String> entries = optimizer.getReport().getEntries().stream()
+            .map(PeepholeReport.Entry::toString)
+            .collect(toList());
+        assertEquals(Lists.newArrayList("`PeepholeTest.f(I)I` 8 -> 2 instruction(s), 14 -> 2 byte(s)"), entries);
+        assertEquals(
+            "Peephole optimization (Test, rules: box-unbox, constant-branches, single-use-locals, jump-threading, unreachable-code): 6 instruction(s) removed from 1 method(s)\n" +
+                "  Test: `PeepholeTest.f(I)I` 8 -> 2 instruction(s), 14 -> 2 byte(s)",
+            optimizer.getReport().format("Test")
+        );
+    }
+}
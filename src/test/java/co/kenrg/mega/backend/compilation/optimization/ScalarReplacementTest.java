@@ -0,0 +1,156 @@
+package co.kenrg.mega.backend.compilation.optimization;
+
+import static co.kenrg.mega.frontend.parser.ParserTestUtils.parseModule;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.util.List;
+
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.ast.expression.BlockExpression;
+import co.kenrg.mega.frontend.ast.expression.Identifier;
+import co.kenrg.mega.frontend.ast.iface.ExpressionStatement;
+import co.kenrg.mega.frontend.ast.statement.FunctionDeclarationStatement;
+import co.kenrg.mega.frontend.ast.statement.ValStatement;
+import co.kenrg.mega.frontend.typechecking.TypeCheckResult;
+import co.kenrg.mega.frontend.typechecking.TypeChecker;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
+import co.kenrg.mega.frontend.typechecking.types.PrimitiveTypes;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+class ScalarReplacementTest {
+
+    private static Module typecheck(String input) {
+        TypeCheckResult<Module> result = new TypeChecker().typecheck(parseModule(input), new TypeEnvironment());
+        assertTrue(result.errors.isEmpty(), "There should be no typechecking errors");
+        return result.node;
+    }
+
+    private static List<String> getReportEntries(ScalarReplacement scalarReplacement) {
+        return scalarReplacement.getReport().getEntries().stream()
+            .map(ScalarReplacementReport.Entry::toString)
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testEscapeAnalysis() {
+        List<Pair<String, List<String>>> testCases = Lists.newArrayList(
+            Pair.of(
+                "func f(a: Int, b: Int) { val p = { x: a, y: b }\np.x + p.y }",
+                Lists.newArrayList("replaced `p` ({ x: Int, y: Int }), 2 property read(s)")
+            ),
+            Pair.of(
+                "type Point = { x: Int, y: Int }\nfunc f(a: Int) { val p = Point(y: a, x: 1)\np.x * p.y }",
+                Lists.newArrayList("replaced `p` (Point), 2 property read(s)")
+            ),
+            Pair.of(
+                "type Point = { x: Int, y: Int }\nfunc f(a: Int) { val p = Point(a, 1)\nval q = p\nq.x }",
+                Lists.newArrayList("replaced `p` (Point), 1 property read(s)")
+            ),
+            Pair.of(
+                "func f(a: Int) { val p = { x: a }\nif a > 0 { p.x } else { 0 } }",
+                Lists.newArrayList("replaced `p` ({ x: Int }), 1 property read(s)")
+            ),
+            Pair.of(
+                "func f(a: Int) { val p = { x: a }\na }",
+                Lists.newArrayList("replaced `p` ({ x: Int }), 0 property read(s)")
+            ),
+
+            // Values which escape
+            Pair.of(
+                "func f(a: Int) { val p = { x: a }\np }",
+                Lists.newArrayList("`p` ({ x: Int }) escapes (used as a value), not replaced")
+            ),
+            Pair.of(
+                "func g(o: { x: Int }): Int = o.x\nfunc f(a: Int) { val p = { x: a }\ng(p) }",
+                Lists.newArrayList("`p` ({ x: Int }) escapes (used as a value), not replaced")
+            ),
+            Pair.of(
+                "func f(a: Int) { val p = { x: a }\nval q = { inner: p }\nq.inner.x }",
+                Lists.newArrayList(
+                    "`p` ({ x: Int }) escapes (used as a value), not replaced",
+                    "replaced `q` ({ inner: { x: Int } }), 1 property read(s)"
+                )
+            ),
+            Pair.of(
+                "func f(a: Int) { val p = { x: a }\nval g = () => p.x\ng() }",
+                Lists.newArrayList("`p` ({ x: Int }) escapes (captured by a function), not replaced")
+            ),
+            Pair.of(
+                "func f(a: Int) { val p = { x: a }\nvar q = p\nq.x }",
+                Lists.newArrayList("`p` ({ x: Int }) escapes (used as a value), not replaced")
+            ),
+            Pair.of(
+                "func f(a: Int) { val p = { x: a }\nval arr = [p]\narr[0].x }",
+                Lists.newArrayList("`p` ({ x: Int }) escapes (used as a value), not replaced")
+            ),
+
+            // Vals which aren't considered at all
+            Pair.of("val p = { x: 1 }\nval y = p.x", Lists.newArrayList()),
+            Pair.of("func f(a: Int) { val p = { x: a } }", Lists.newArrayList()),
+            Pair.of("func f(a: Int) { val arr = [a]\narr[0] }", Lists.newArrayList())
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                List<String> expected = testCase.getRight();
+
+                String name = String.format("Scalar replacement over `%s` should result in the report %s", input, expected);
+                return dynamicTest(name, () -> {
+                    ScalarReplacement scalarReplacement = new ScalarReplacement();
+                    scalarReplacement.replace(typecheck(input));
+                    assertEquals(expected, getReportEntries(scalarReplacement));
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testReplacedValBecomesValPerProperty() {
+        Module module = typecheck("type Point = { x: Int, y: Int }\nfunc f(a: Int) { val p = Point(y: a + 1, x: 2)\np.y }");
+        Module replaced = new ScalarReplacement().replace(module);
+        BlockExpression body = (BlockExpression) ((FunctionDeclarationStatement) replaced.statements.get(1)).body;
+
+        // The constructor's arguments are bound in parameter order, which is the order they're evaluated in
+        assertEquals(3, body.statements.size());
+        assertEquals("p$x", ((ValStatement) body.statements.get(0)).name.value);
+        assertEquals("2", ((ValStatement) body.statements.get(0)).value.repr(false, 0));
+        assertEquals("p$y", ((ValStatement) body.statements.get(1)).name.value);
+        assertEquals("a + 1", ((ValStatement) body.statements.get(1)).value.repr(false, 0));
+
+        Identifier read = (Identifier) ((ExpressionStatement) body.statements.get(2)).expression;
+        assertEquals("p$y", read.value);
+        assertEquals(PrimitiveTypes.INTEGER, read.getType());
+    }
+
+    @Test
+    void testValInABodySharedByTwoFunctionsIsNotReplaced() {
+        Module module = typecheck("func f(a: Int) { val p = { x: a }\np.x }");
+        FunctionDeclarationStatement f = (FunctionDeclarationStatement) module.statements.get(0);
+        FunctionDeclarationStatement g = new FunctionDeclarationStatement(f.token, new Identifier(f.name.token, "g"), f.parameters, f.body);
+        Module sharingModule = new Module(Lists.newArrayList(f, g), module.imports, module.exports);
+
+        ScalarReplacement scalarReplacement = new ScalarReplacement();
+        assertTrue(sharingModule == scalarReplacement.replace(sharingModule), "The module should not have been rebuilt");
+        assertEquals(
+            Lists.newArrayList(
+                "`p` ({ x: Int }) escapes (shared with another body), not replaced",
+                "`p` ({ x: Int }) escapes (shared with another body), not replaced"
+            ),
+            getReportEntries(scalarReplacement)
+        );
+    }
+
+    @Test
+    void testModuleWithoutCandidatesIsUnchanged() {
+        Module module = typecheck("func f(a: Int) { val p = { x: a }\np }");
+        assertTrue(module == new ScalarReplacement().replace(module), "The module should not have been rebuilt");
+    }
+}
@@ -0,0 +1,114 @@
+package co.kenrg.mega.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.lexer.Lexer;
+import co.kenrg.mega.frontend.parser.Parser;
+import co.kenrg.mega.frontend.typechecking.TypeCheckResult;
+import co.kenrg.mega.frontend.typechecking.TypeChecker;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.tuple.Pair;
+
+// Helpers for the (manually-run) benchmarks in this package. These aren't tests; each benchmark has a main method and
+// prints its results to stdout.
+class BenchmarkUtils {
+    static class InMemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes = Maps.newHashMap();
+
+        InMemoryClassLoader(List<Pair<String, byte[]>> generatedClasses) {
+            super(BenchmarkUtils.class.getClassLoader());
+            for (Pair<String, byte[]> generatedClass : generatedClasses) {
+                classes.put(generatedClass.getLeft().replace('/', '.'), generatedClass.getRight());
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    static List<Pair<String, byte[]>> compile(String className, String input) {
+        return compile(className, input, CompilerOptions.DEFAULT);
+    }
+
+    static List<Pair<String, byte[]>> compile(String className, String input, CompilerOptions options) {
+        Parser parser = new Parser(new Lexer(input));
+        Module module = parser.parseModule();
+        if (!parser.errors.isEmpty()) {
+            throw new IllegalStateException("Benchmark input has syntax errors: " + parser.errors);
+        }
+
+        TypeChecker typeChecker = new TypeChecker();
+        typeChecker.setModuleProvider(moduleName -> Optional.empty());
+        TypeEnvironment typeEnv = new TypeEnvironment();
+        TypeCheckResult<Module> typecheckResult = typeChecker.typecheck(module, typeEnv);
+        if (typecheckResult.hasErrors()) {
+            throw new IllegalStateException("Benchmark input has type errors: " + typecheckResult.errors);
+        }
+
+        Compiler compiler = new Compiler(className, typeEnv, options);
+        compiler.setTypedModuleProvider(moduleName -> null);
+        return compiler.compile(module);
+    }
+
+    static Class<?> compileAndLoad(String className, String input) {
+        try {
+            return new InMemoryClassLoader(compile(className, input)).loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Method getMethod(Class<?> c, String name) {
+        return Arrays.stream(c.getDeclaredMethods())
+            .filter(method -> method.getName().equals(name))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("No method " + name + " on " + c));
+    }
+
+    interface Benchmarkable {
+        Object run() throws Exception;
+    }
+
+    // Returns the median time per invocation, in nanoseconds. The result of each invocation is retained in a sink so
+    // that the JIT can't eliminate the work.
+    static double nanosPerOp(Benchmarkable op, int warmupIterations, int iterations) throws Exception {
+        Object sink = null;
+        for (int i = 0; i < warmupIterations; i++) {
+            sink = op.run();
+        }
+
+        long[] times = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink = op.run();
+            times[i] = System.nanoTime() - start;
+        }
+        if (sink == null) {
+            System.out.print("");
+        }
+        Arrays.sort(times);
+        return times[iterations / 2];
+    }
+
+    static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
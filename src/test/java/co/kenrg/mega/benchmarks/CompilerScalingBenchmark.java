@@ -0,0 +1,111 @@
+package co.kenrg.mega.benchmarks;
+
+import java.util.List;
+import java.util.Optional;
+
+import co.kenrg.mega.backend.compilation.Compiler;
+import co.kenrg.mega.backend.compilation.CompilerOptions;
+import co.kenrg.mega.frontend.ast.Module;
+import co.kenrg.mega.frontend.lexer.Lexer;
+import co.kenrg.mega.frontend.parser.Parser;
+import co.kenrg.mega.frontend.typechecking.TypeCheckResult;
+import co.kenrg.mega.frontend.typechecking.TypeChecker;
+import co.kenrg.mega.frontend.typechecking.TypeEnvironment;
+import org.apache.commons.lang3.tuple.Pair;
+
+// Measures how the time to parse, typecheck and compile a module grows with the number of declarations in it, using
+// generated modules of 1k to 100k declarations. Each phase's time per declaration should stay roughly constant as the
+// module grows; a time per declaration which grows with the module's size indicates a superlinear hot spot.
+//
+// The generated functions each contain several local vals, a closure, a reference to the previous function, and an
+// object literal, so that lambda naming, method reference classes and shape classes are all exercised. Declarations are
+// mostly locals, since a single class can only hold so many methods and constants.
+public class CompilerScalingBenchmark {
+    private static final int[] NUM_DECLARATIONS = {1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000};
+    private static final int NUM_LOCALS_PER_FUNCTION = 35;
+    private static final int NUM_DECLARATIONS_PER_FUNCTION = NUM_LOCALS_PER_FUNCTION + 4; // The func, g, h and p
+
+    static String generateInput(int numDeclarations) {
+        StringBuilder sb = new StringBuilder();
+        int numFunctions = Math.max(1, numDeclarations / NUM_DECLARATIONS_PER_FUNCTION);
+        for (int i = 0; i < numFunctions; i++) {
+            sb.append(String.format("func f%d(a: Int) {\n", i));
+            sb.append("  val v0 = a + 1\n");
+            for (int j = 1; j < NUM_LOCALS_PER_FUNCTION; j++) {
+                sb.append(String.format("  val v%d = v%d * %d + a\n", j, j - 1, j % 7 + 1));
+            }
+            sb.append(String.format("  val g = (b: Int) => b * v%d\n", NUM_LOCALS_PER_FUNCTION - 1));
+            sb.append(i == 0 ? "  val h = (b: Int) => b\n" : String.format("  val h = f%d\n", i - 1));
+            sb.append("  val p = { a: v0, b: 'x' }\n");
+            sb.append("  if v0 > 10 { g(a) } else { h(a) }\n");
+            sb.append("}\n");
+        }
+        return sb.toString();
+    }
+
+    private static class Timings {
+        long parseNanos;
+        long typecheckNanos;
+        long compileNanos;
+        int numClasses;
+    }
+
+    private static Timings compile(String className, String input) {
+        Timings timings = new Timings();
+
+        long start = System.nanoTime();
+        Parser parser = new Parser(new Lexer(input));
+        Module module = parser.parseModule();
+        if (!parser.errors.isEmpty()) {
+            throw new IllegalStateException("Benchmark input has syntax errors: " + parser.errors);
+        }
+        timings.parseNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        TypeChecker typeChecker = new TypeChecker();
+        typeChecker.setModuleProvider(moduleName -> Optional.empty());
+        TypeEnvironment typeEnv = new TypeEnvironment();
+        TypeCheckResult<Module> typecheckResult = typeChecker.typecheck(module, typeEnv);
+        if (typecheckResult.hasErrors()) {
+            throw new IllegalStateException("Benchmark input has type errors: " + typecheckResult.errors);
+        }
+        timings.typecheckNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Compiler compiler = new Compiler(className, typeEnv, CompilerOptions.DEFAULT);
+        compiler.setTypedModuleProvider(moduleName -> null);
+        List<Pair<String, byte[]>> classes = compiler.compile(module);
+        timings.compileNanos = System.nanoTime() - start;
+        timings.numClasses = classes.size();
+
+        return timings;
+    }
+
+    public static void main(String[] args) {
+        // Warm up the JIT on a mid-sized module, so that the smaller modules' numbers aren't dominated by interpretation
+        for (int i = 0; i < 5; i++) {
+            compile("ScalingBenchmarkWarmup", generateInput(5_000));
+        }
+
+        System.out.println(String.format(
+            "%12s %9s %8s %10s %12s %10s %13s",
+            "declarations", "functions", "classes", "parse ms", "typecheck ms", "compile ms", "µs/declaration"
+        ));
+        for (int numDeclarations : NUM_DECLARATIONS) {
+            String input = generateInput(numDeclarations);
+            Timings timings = compile("ScalingBenchmarkModule" + numDeclarations, input);
+
+            long totalNanos = timings.parseNanos + timings.typecheckNanos + timings.compileNanos;
+            System.out.println(String.format(
+                "%,12d %,9d %,8d %10.1f %12.1f %10.1f %13.2f",
+                numDeclarations,
+                Math.max(1, numDeclarations / NUM_DECLARATIONS_PER_FUNCTION),
+                timings.numClasses,
+                timings.parseNanos / 1e6,
+                timings.typecheckNanos / 1e6,
+                timings.compileNanos / 1e6,
+                totalNanos / 1e3 / numDeclarations
+            ));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package co.kenrg.mega.benchmarks;
+
+import static co.kenrg.mega.benchmarks.BenchmarkUtils.compile;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.reflect.Field;
+import java.util.List;
+
+import co.kenrg.mega.backend.compilation.CompilerOptions;
+import co.kenrg.mega.backend.compilation.CompilerOptions.LambdaCodegen;
+import co.kenrg.mega.benchmarks.BenchmarkUtils.InMemoryClassLoader;
+import mega.lang.functions.Function1;
+import org.apache.commons.lang3.tuple.Pair;
+
+// Compares the two arrow function codegen strategies (an inner class per lambda vs. invokedynamic + LambdaMetafactory)
+// for a module containing many lambdas: number of generated classes, total class file size, metaspace used by loading
+// and initializing the module, and cold-start time (class loading, <clinit>, and the first invocation of each lambda).
+//
+// Each strategy is measured in a fresh JVM, so that the cold-start numbers include one-time costs (like bootstrapping
+// the java.lang.invoke infrastructure for invokedynamic).
+public class LambdaCodegenBenchmark {
+    private static final int NUM_LAMBDAS = 500;
+    private static final String CLASS_NAME = "LambdaHeavyModule";
+
+    private static String generateInput() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUM_LAMBDAS; i++) {
+            if (i % 2 == 0) {
+                sb.append(String.format("val fn%d = (i: Int) => i + %d\n", i, i));
+            } else {
+                sb.append(String.format("func mk%d(a: Int) { (i: Int) => i * a }\nval fn%d = mk%d(%d)\n", i, i, i, i));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long metaspaceUsedBytes() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace")) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void measure(LambdaCodegen lambdaCodegen) throws Exception {
+        CompilerOptions options = CompilerOptions.DEFAULT.withLambdaCodegen(lambdaCodegen);
+        List<Pair<String, byte[]>> classes = compile(CLASS_NAME, generateInput(), options);
+        long totalBytes = classes.stream().mapToLong(c -> c.getRight().length).sum();
+
+        InMemoryClassLoader classLoader = new InMemoryClassLoader(classes);
+        System.gc();
+        long metaspaceBefore = metaspaceUsedBytes();
+
+        long start = System.nanoTime();
+        Class<?> moduleClass = Class.forName(CLASS_NAME, true, classLoader);
+        int sum = 0;
+        for (int i = 0; i < NUM_LAMBDAS; i++) {
+            Field field = moduleClass.getDeclaredField("fn" + i);
+            field.setAccessible(true);
+            sum += ((Function1<Integer, Integer>) field.get(null)).invoke(1);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        long metaspaceBytes = metaspaceUsedBytes() - metaspaceBefore;
+        System.out.printf(
+            "%-14s classes: %4d   class file bytes: %8d   metaspace: %6d KB   cold start: %6.1f ms   (checksum %d)%n",
+            lambdaCodegen, classes.size(), totalBytes, metaspaceBytes / 1024, elapsedNanos / 1e6, sum
+        );
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1) {
+            measure(LambdaCodegen.valueOf(args[0]));
+            return;
+        }
+
+        System.out.printf("Module with %d arrow functions (half of which capture a binding)%n", NUM_LAMBDAS);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = System.getProperty("java.class.path");
+        for (LambdaCodegen lambdaCodegen : LambdaCodegen.values()) {
+            Process process = new ProcessBuilder(java, "-cp", classpath, LambdaCodegenBenchmark.class.getName(), lambdaCodegen.name())
+                .redirectErrorStream(true)
+                .start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    System.out.println(line);
+                }
+            }
+            process.waitFor();
+        }
+    }
+}
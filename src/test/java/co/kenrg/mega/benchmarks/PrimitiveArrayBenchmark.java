@@ -0,0 +1,60 @@
+package co.kenrg.mega.benchmarks;
+
+import static co.kenrg.mega.benchmarks.BenchmarkUtils.compileAndLoad;
+import static co.kenrg.mega.benchmarks.BenchmarkUtils.getMethod;
+import static co.kenrg.mega.benchmarks.BenchmarkUtils.nanosPerOp;
+import static co.kenrg.mega.benchmarks.BenchmarkUtils.usedHeapBytes;
+
+import java.lang.reflect.Method;
+
+// Compares the compiled representation of Array[Int] (int[]) against the previous boxed representation (Integer[],
+// read via AALOAD + intValue), for both throughput of an array-heavy loop and heap footprint.
+public class PrimitiveArrayBenchmark {
+    private static final int SIZE = 1_000_000;
+
+    private static final String INPUT = "" +
+        "export func sum(arr: Array[Int]): Int {\n" +
+        "  var total = 0\n" +
+        "  for x in arr { total = total + x }\n" +
+        "  total\n" +
+        "}";
+
+    // Mirrors the bytecode which was previously emitted for the `sum` function above
+    private static int boxedSum(Integer[] arr) {
+        int total = 0;
+        for (int i = 0; i < arr.length; i++) {
+            total = total + arr[i].intValue();
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Measure the heap footprint first, so that garbage from the throughput runs doesn't skew the numbers
+        long before = usedHeapBytes();
+        int[] primitives = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            primitives[i] = i;
+        }
+        long primitiveBytes = usedHeapBytes() - before;
+
+        before = usedHeapBytes();
+        Integer[] boxed = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            boxed[i] = i;
+        }
+        long boxedBytes = usedHeapBytes() - before;
+
+        System.out.println(String.format("heap retained by %,d elements", SIZE));
+        System.out.println(String.format("  Array[Int] as int[]:     %,12d bytes", primitiveBytes));
+        System.out.println(String.format("  Array[Int] as Integer[]: %,12d bytes", boxedBytes));
+
+        Class<?> module = compileAndLoad("PrimitiveArrayBenchmarkModule", INPUT);
+        Method sum = getMethod(module, "sum");
+
+        double primitiveNanos = nanosPerOp(() -> sum.invoke(null, (Object) primitives), 50, 200);
+        double boxedNanos = nanosPerOp(() -> boxedSum(boxed), 50, 200);
+        System.out.println(String.format("sum over %,d elements", SIZE));
+        System.out.println(String.format("  Array[Int] as int[]:     %,12.0f ns/op", primitiveNanos));
+        System.out.println(String.format("  Array[Int] as Integer[]: %,12.0f ns/op", boxedNanos));
+    }
+}
@@ -51,7 +51,7 @@ class LexerTest {
 
     @Test
     void testNextToken_multiCharSymbols() {
-        String input = "== != <= >= => .. && ||";
+        String input = "== != <= >= => .. && || += -= *= /= ++ --";
 
         List<Token> expectedTokens = Lists.newArrayList(
             Token.eq(Position.at(1, 1)),
@@ -61,7 +61,13 @@ class LexerTest {
             Token.arrow(Position.at(1, 13)),
             Token.dotdot(Position.at(1, 16)),
             Token.and(Position.at(1, 19)),
-            Token.or(Position.at(1, 22))
+            Token.or(Position.at(1, 22)),
+            Token.plusAssign(Position.at(1, 25)),
+            Token.minusAssign(Position.at(1, 28)),
+            Token.starAssign(Position.at(1, 31)),
+            Token.slashAssign(Position.at(1, 34)),
+            Token.increment(Position.at(1, 37)),
+            Token.decrement(Position.at(1, 40))
         );
 
         assertTokensForInput(expectedTokens, input);
@@ -207,7 +213,7 @@ class LexerTest {
 
     @Test
     void testNextToken_keywords() {
-        String input = "val var func if else for in type export import from";
+        String input = "val var func if else for in type export import from while break continue match";
 
         List<Token> expectedTokens = Lists.newArrayList(
             Token.val(Position.at(1, 1)),
@@ -220,7 +226,11 @@ class LexerTest {
             Token.type(Position.at(1, 29)),
             Token.export(Position.at(1, 34)),
             Token._import(Position.at(1, 41)),
-            Token.from(Position.at(1, 48))
+            Token.from(Position.at(1, 48)),
+            Token._while(Position.at(1, 53)),
+            Token._break(Position.at(1, 59)),
+            Token._continue(Position.at(1, 65)),
+            Token.match(Position.at(1, 74))
         );
         assertTokensForInput(expectedTokens, input);
     }
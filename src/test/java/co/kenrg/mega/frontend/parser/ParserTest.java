@@ -32,6 +32,8 @@ import co.kenrg.mega.frontend.ast.expression.IfExpression;
 import co.kenrg.mega.frontend.ast.expression.IndexExpression;
 import co.kenrg.mega.frontend.ast.expression.InfixExpression;
 import co.kenrg.mega.frontend.ast.expression.IntegerLiteral;
+import co.kenrg.mega.frontend.ast.expression.MatchCase;
+import co.kenrg.mega.frontend.ast.expression.MatchExpression;
 import co.kenrg.mega.frontend.ast.expression.ObjectLiteral;
 import co.kenrg.mega.frontend.ast.expression.Parameter;
 import co.kenrg.mega.frontend.ast.expression.ParenthesizedExpression;
@@ -49,6 +51,7 @@ import co.kenrg.mega.frontend.ast.statement.ImportStatement;
 import co.kenrg.mega.frontend.ast.statement.TypeDeclarationStatement;
 import co.kenrg.mega.frontend.ast.statement.ValStatement;
 import co.kenrg.mega.frontend.ast.statement.VarStatement;
+import co.kenrg.mega.frontend.ast.statement.WhileLoopStatement;
 import co.kenrg.mega.frontend.ast.type.BasicTypeExpression;
 import co.kenrg.mega.frontend.ast.type.FunctionTypeExpression;
 import co.kenrg.mega.frontend.ast.type.ParametrizedTypeExpression;
@@ -1440,6 +1443,157 @@ class ParserTest {
         assertEquals(new IntegerLiteral(Token._int("1", Position.at(1, 20)), 1), body.right);
     }
 
+    @Test
+    void testWhileLoop() {
+        String input = "while i < 10 { i++ }";
+
+        Statement statement = parseStatement(input);
+        assertTrue(statement instanceof WhileLoopStatement);
+
+        WhileLoopStatement whileLoop = (WhileLoopStatement) statement;
+
+        InfixExpression condition = (InfixExpression) whileLoop.condition;
+        assertEquals("<", condition.operator);
+        assertIdentifier(condition.left, "i", Position.at(1, 7));
+        assertEquals(new IntegerLiteral(Token._int("10", Position.at(1, 11)), 10), condition.right);
+
+        assertEquals(1, whileLoop.block.statements.size());
+        AssignmentExpression body = (AssignmentExpression) ((ExpressionStatement) whileLoop.block.statements.get(0)).expression;
+        assertEquals("i", body.name.value);
+        assertEquals("(i + 1)", body.right.repr(true, 0));
+    }
+
+    @TestFactory
+    List<DynamicTest> testCompoundAssignmentExpression() {
+        List<Pair<String, String>> testCases = Lists.newArrayList(
+            Pair.of("x += 2", "(x + 2)"),
+            Pair.of("x -= y * 2", "(x - (y * 2))"),
+            Pair.of("x *= 3", "(x * 3)"),
+            Pair.of("x /= (1 + 2)", "(x / ((1 + 2)))"),
+            Pair.of("x++", "(x + 1)"),
+            Pair.of("x--", "(x - 1)")
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                String expectedRight = testCase.getRight();
+
+                String testName = String.format("`%s` should be parsed as an assignment to x of `%s`", input, expectedRight);
+                return dynamicTest(testName, () -> {
+                    ExpressionStatement statement = parseExpressionStatement(input);
+                    assertTrue(statement.expression instanceof AssignmentExpression);
+                    AssignmentExpression assignment = (AssignmentExpression) statement.expression;
+
+                    assertEquals("x", assignment.name.value);
+                    assertEquals(expectedRight, assignment.right.repr(true, 0));
+                });
+            })
+            .collect(toList());
+    }
+
+    @Test
+    void testMatchExpression() {
+        String input = "match x { 1 => 'one', 2, -3 => { 'two' } else => 'many' }";
+
+        ExpressionStatement statement = parseExpressionStatement(input);
+        assertTrue(statement.expression instanceof MatchExpression);
+        MatchExpression match = (MatchExpression) statement.expression;
+
+        assertIdentifier(match.subject, "x", Position.at(1, 7));
+
+        assertEquals(2, match.cases.size());
+        MatchCase first = match.cases.get(0);
+        assertEquals(Lists.newArrayList(new IntegerLiteral(Token._int("1", Position.at(1, 11)), 1)), first.patterns);
+        assertEquals(new StringLiteral(Token.string("one", Position.at(1, 16)), "one"), first.body);
+
+        MatchCase second = match.cases.get(1);
+        assertEquals(2, second.patterns.size());
+        assertEquals("(-3)", second.patterns.get(1).repr(true, 0));
+        assertTrue(second.body instanceof BlockExpression);
+
+        assertEquals(new StringLiteral(Token.string("many", Position.at(1, 50)), "many"), match.elseExpr);
+    }
+
+    @TestFactory
+    List<DynamicTest> testMatchExpression_errors() {
+        List<Pair<String, String>> testCases = Lists.newArrayList(
+            Pair.of("match x { y => 1 }", "Invalid match pattern: 'y'"),
+            Pair.of("match x { 1 + 1 => 1 }", "Invalid match pattern: '1 + 1'"),
+            Pair.of("match x { 1 => 1 else => 2 3 => 3 }", "Expected RBRACE, saw INT"),
+            Pair.of("match x { 1, => 1 }", "Unexpected 'ARROW'")
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String input = testCase.getLeft();
+                String expectedError = testCase.getRight();
+
+                String name = String.format("`%s` should fail to parse with the error `%s`", input, expectedError);
+                return dynamicTest(name, () -> {
+                    Parser p = new Parser(new Lexer(input));
+                    p.parseModule();
+                    assertTrue(p.errors.size() >= 1);
+                    assertTrue(p.errors.get(0).message.contains(expectedError), p.errors.get(0).message);
+                });
+            })
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testLoopControlStatements() {
+        List<String> validInputs = Lists.newArrayList(
+            "while true { break }",
+            "while true { continue }",
+            "for x in arr { if x > 1 { break; } }",
+            "for x in arr { while true { continue } }",
+            "for x in arr { if x > 1 { 1 } else { match x { 2 => { break } } } }",
+            "for x in arr { f(() => { for y in arr { continue } }) }"
+        );
+        List<String> invalidInputs = Lists.newArrayList(
+            "break",
+            "func f() { continue }",
+            "while true { val g = () => { break } }"
+        );
+        List<String> invalidOperandInputs = Lists.newArrayList(
+            "var s = 0; for i in 0..10 { s = s + (if i > 3 { break; 0 } else { i }) }",
+            "var s = 0; for i in 0..10 { s += if i == 3 { continue; 0 } else { i } }",
+            "for i in 0..10 { val x = if i > 3 { break; 0 } else { i } }",
+            "for i in 0..10 { f(if i > 3 { break; 0 } else { i }) }",
+            "for i in 0..10 { if i > 3 { break; \"a\" } else { \"b\" } + \"c\" }",
+            "for i in 0..10 { if (if i > 3 { continue; true } else { false }) { 1 } }",
+            "for x in arr { while if x > 1 { break; true } else { false } { 1 } }"
+        );
+
+        List<DynamicTest> tests = validInputs.stream()
+            .map(input -> dynamicTest(String.format("`%s` should have no errors", input), () -> {
+                List<SyntaxError> errors = parseStatementAndGetErrors(input).getRight();
+                assertEquals(0, errors.size());
+            }))
+            .collect(toList());
+        tests.addAll(
+            invalidInputs.stream()
+                .map(input -> dynamicTest(String.format("`%s` should have an error", input), () -> {
+                    Parser p = new Parser(new Lexer(input));
+                    p.parseModule();
+                    assertEquals(1, p.errors.size());
+                    assertTrue(p.errors.get(0).message.contains("outside of a loop"));
+                }))
+                .collect(toList())
+        );
+        tests.addAll(
+            invalidOperandInputs.stream()
+                .map(input -> dynamicTest(String.format("`%s` should have an error", input), () -> {
+                    Parser p = new Parser(new Lexer(input));
+                    p.parseModule();
+                    assertEquals(1, p.errors.size());
+                    assertTrue(p.errors.get(0).message.contains("within an expression"), p.errors.get(0).message);
+                }))
+                .collect(toList())
+        );
+        return tests;
+    }
+
     @TestFactory
     List<DynamicTest> testTypeDeclarationStatement() {
         class TestCase {
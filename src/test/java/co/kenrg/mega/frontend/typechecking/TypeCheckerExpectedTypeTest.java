@@ -1110,44 +1110,44 @@ class TypeCheckerExpectedTypeTest {
     class RangeExpressionTests {
 
         @Test
-        void noExpectedType_leftBoundIsNotInteger_returnsIntArray_hasMismatchError() {
+        void noExpectedType_leftBoundIsNotInteger_returnsIntRange_hasMismatchError() {
             RangeExpression rangeExpression = parseExpression("'a'..4", RangeExpression.class);
             MegaType type = typeChecker.typecheckRangeExpression(rangeExpression, env, null);
             assertEquals(
                 Lists.newArrayList(new TypeMismatchError(PrimitiveTypes.INTEGER, PrimitiveTypes.STRING, Position.at(1, 1))),
                 typeChecker.errors
             );
-            assertEquals(arrayOf.apply(PrimitiveTypes.INTEGER), type);
+            assertEquals(PrimitiveTypes.INT_RANGE, type);
         }
 
         @Test
-        void noExpectedType_rightBoundIsNotInteger_returnsIntArray_hasMismatchError() {
+        void noExpectedType_rightBoundIsNotInteger_returnsIntRange_hasMismatchError() {
             RangeExpression rangeExpression = parseExpression("1..1.3", RangeExpression.class);
             MegaType type = typeChecker.typecheckRangeExpression(rangeExpression, env, null);
             assertEquals(
                 Lists.newArrayList(new TypeMismatchError(PrimitiveTypes.INTEGER, PrimitiveTypes.FLOAT, Position.at(1, 4))),
                 typeChecker.errors
             );
-            assertEquals(arrayOf.apply(PrimitiveTypes.INTEGER), type);
+            assertEquals(PrimitiveTypes.INT_RANGE, type);
         }
 
         @Test
-        void expectedType_expectedTypeIsNotIntArray_returnsExpectedType_hasMismatchError() {
+        void expectedType_expectedTypeIsNotIntRange_returnsExpectedType_hasMismatchError() {
             RangeExpression rangeExpression = parseExpression("1..3", RangeExpression.class);
             MegaType type = typeChecker.typecheckRangeExpression(rangeExpression, env, arrayOf.apply(PrimitiveTypes.FLOAT));
             assertEquals(
-                Lists.newArrayList(new TypeMismatchError(arrayOf.apply(PrimitiveTypes.FLOAT), arrayOf.apply(PrimitiveTypes.INTEGER), Position.at(1, 2))),
+                Lists.newArrayList(new TypeMismatchError(arrayOf.apply(PrimitiveTypes.FLOAT), PrimitiveTypes.INT_RANGE, Position.at(1, 2))),
                 typeChecker.errors
             );
             assertEquals(arrayOf.apply(PrimitiveTypes.FLOAT), type);
         }
 
         @Test
-        void expectedType_expectedTypeIsIntArray_returnsExpectedType() {
+        void expectedType_expectedTypeIsIntRange_returnsExpectedType() {
             RangeExpression rangeExpression = parseExpression("1..3", RangeExpression.class);
-            MegaType type = typeChecker.typecheckRangeExpression(rangeExpression, env, arrayOf.apply(PrimitiveTypes.INTEGER));
+            MegaType type = typeChecker.typecheckRangeExpression(rangeExpression, env, PrimitiveTypes.INT_RANGE);
             assertEquals(0, typeChecker.errors.size(), "There should be no errors");
-            assertEquals(arrayOf.apply(PrimitiveTypes.INTEGER), type);
+            assertEquals(PrimitiveTypes.INT_RANGE, type);
         }
     }
 
@@ -755,6 +755,22 @@ class TypeCheckerTest {
                 ),
                 PrimitiveTypes.INTEGER,
                 Kind.METHOD
+            )),
+
+            // Test recursive function (requires a declared return type)
+            Triple.of("func fact(n: Int): Int { if n < 2 { 1 } else { n * fact(n - 1) } }", "fact", new FunctionType(
+                Lists.newArrayList(
+                    new Parameter(
+                        new Identifier(
+                            Token.ident("n", Position.at(1, 11)),
+                            "n",
+                            new BasicTypeExpression("Int", Position.at(1, 14)),
+                            PrimitiveTypes.INTEGER
+                        )
+                    )
+                ),
+                PrimitiveTypes.INTEGER,
+                Kind.METHOD
             ))
         );
 
@@ -853,6 +869,71 @@ class TypeCheckerTest {
             .collect(toList());
     }
 
+    @Test
+    void testTypecheckWhileLoopStatement() {
+        String input = "while i < 10 { i += 1 }";
+
+        TypeEnvironment env = new TypeEnvironment();
+        env.addBindingWithType("i", PrimitiveTypes.INTEGER, false);
+
+        TypeCheckResult result = testTypecheckStatementAndGetResult(input, env);
+        assertEquals(PrimitiveTypes.UNIT, result.type);
+        assertTrue(result.errors.isEmpty(), "There should be no typechecking errors");
+    }
+
+    @Test
+    void testTypecheckWhileLoopStatement_errors() {
+        String input = "while 123 { }";
+
+        TypeCheckResult result = testTypecheckStatementAndGetResult(input);
+        assertEquals(PrimitiveTypes.UNIT, result.type);
+
+        assertTrue(result.hasErrors());
+        assertEquals(new TypeMismatchError(PrimitiveTypes.BOOLEAN, PrimitiveTypes.INTEGER, Position.at(1, 7)), result.errors.get(0));
+    }
+
+    @TestFactory
+    List<DynamicTest> testTypecheckMatchExpression() {
+        List<Pair<String, MegaType>> testCases = Lists.newArrayList(
+            Pair.of("match 1 { 1 => 'a', 2, 3 => 'b' else => 'c' }", PrimitiveTypes.STRING),
+            Pair.of("match 'x' { 'a' => 1 else => { val y = 2; y } }", PrimitiveTypes.INTEGER),
+            Pair.of("match 1.5 { -1.5 => true else => false }", PrimitiveTypes.BOOLEAN),
+            Pair.of("match true { true => 1, false => 2 }", PrimitiveTypes.UNIT),
+            Pair.of("match 1 { else => 1.5 }", PrimitiveTypes.FLOAT)
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = String.format("'%s' should typecheck to %s", testCase.getLeft(), testCase.getRight());
+                return dynamicTest(name, () -> {
+                    TypeCheckResult result = testTypecheckExpressionAndGetResult(testCase.getLeft());
+                    assertTrue(result.errors.isEmpty(), "There should be no typechecking errors");
+                    assertEquals(testCase.getRight(), result.type);
+                });
+            })
+            .collect(toList());
+    }
+
+    @TestFactory
+    List<DynamicTest> testTypecheckMatchExpression_errors() {
+        List<Pair<String, TypeCheckerError>> testCases = Lists.newArrayList(
+            Pair.of("match 1 { 'a' => 1 else => 2 }", new TypeMismatchError(PrimitiveTypes.INTEGER, PrimitiveTypes.STRING, Position.at(1, 11))),
+            Pair.of("match 1 { 1 => 1 else => 'b' }", new TypeMismatchError(PrimitiveTypes.INTEGER, PrimitiveTypes.STRING, Position.at(1, 26))),
+            Pair.of("match [1] { else => 1 }", new UnsupportedFeatureError("Matching on values of type Array[Int]", Position.at(1, 7)))
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = String.format("'%s' should fail to typecheck", testCase.getLeft());
+                return dynamicTest(name, () -> {
+                    TypeCheckResult result = testTypecheckExpressionAndGetResult(testCase.getLeft());
+                    assertTrue(result.hasErrors());
+                    assertEquals(testCase.getRight(), result.errors.get(0));
+                });
+            })
+            .collect(toList());
+    }
+
     @TestFactory
     List<DynamicTest> testTypecheckTypeDeclarationStatement_typeAliases() {
         List<Triple<String, String, MegaType>> testCases = Lists.newArrayList(
@@ -2269,13 +2350,13 @@ class TypeCheckerTest {
                 String input = testCase.getLeft();
                 Map<String, MegaType> environment = testCase.getRight();
 
-                String name = String.format("'%s' should typecheck to %s", input, arrayOf.apply(PrimitiveTypes.INTEGER).signature());
+                String name = String.format("'%s' should typecheck to %s", input, PrimitiveTypes.INT_RANGE.signature());
                 return dynamicTest(name, () -> {
                     TypeEnvironment env = new TypeEnvironment();
                     environment.forEach((key, value) -> env.addBindingWithType(key, value, false));
 
                     MegaType result = testTypecheckExpression(input, env);
-                    assertEquals(arrayOf.apply(PrimitiveTypes.INTEGER), result);
+                    assertEquals(PrimitiveTypes.INT_RANGE, result);
                 });
             })
             .collect(toList());
@@ -2348,7 +2429,7 @@ class TypeCheckerTest {
                     TypeEnvironment env = new TypeEnvironment();
                     testCase.getMiddle().forEach((key, value) -> env.addBindingWithType(key, value, true));
                     TypeCheckResult result = testTypecheckExpressionAndGetResult(testCase.getLeft(), env);
-                    assertEquals(arrayOf.apply(PrimitiveTypes.INTEGER), result.type);
+                    assertEquals(PrimitiveTypes.INT_RANGE, result.type);
 
                     assertTrue(result.hasErrors());
                     assertEquals(testCase.getRight(), result.errors.get(0));
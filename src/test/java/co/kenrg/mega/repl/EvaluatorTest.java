@@ -19,6 +19,7 @@ import co.kenrg.mega.backend.evaluation.object.FloatObj;
 import co.kenrg.mega.backend.evaluation.object.IntegerObj;
 import co.kenrg.mega.backend.evaluation.object.NullObj;
 import co.kenrg.mega.backend.evaluation.object.ObjectObj;
+import co.kenrg.mega.backend.evaluation.object.RangeObj;
 import co.kenrg.mega.backend.evaluation.object.StringObj;
 import co.kenrg.mega.backend.evaluation.object.iface.Obj;
 import com.google.common.collect.ImmutableMap;
@@ -124,7 +125,12 @@ class EvaluatorTest {
             Pair.of("val a = 24; \"$a hrs\"", "24 hrs"),
             Pair.of("val a = 24; \"${a} hrs\"", "24 hrs"),
             Pair.of("val a = [24]; \"${a[0]} hrs\"", "24 hrs"),
-            Pair.of("val a = [24]; \"$a[0] hrs\"", "[24][0] hrs")
+            Pair.of("val a = [24]; \"$a[0] hrs\"", "[24][0] hrs"),
+            Pair.of("val a = 1; val b = 2; \"$a$b, ${a + b}, $a\"", "12, 3, 1"),
+
+            // A `$` which isn't followed by an identifier or a `{` isn't an interpolation
+            Pair.of("\"costs $5\"", "costs $5"),
+            Pair.of("val a = 5; \"costs $$a, $ each\"", "costs $5, $ each")
         );
 
         return testCases.stream()
@@ -522,6 +528,77 @@ class EvaluatorTest {
             "a";
         Obj result2 = testEval(input2);
         assertEquals(new IntegerObj(6), result2);
+
+        String input3 = "" +
+            "val x = 3\n" +
+            "var a = 0\n" +
+            "for x in x..(x + 3) {\n" +
+            "  a = a + x\n" +
+            "}\n" +
+            "a";
+        Obj result3 = testEval(input3);
+        assertEquals(new IntegerObj(12), result3);
+    }
+
+    @Test
+    public void testWhileLoop() {
+        String input = "" +
+            "var a = 1\n" +
+            "while a < 100 {\n" +
+            "  a *= 3\n" +
+            "}\n" +
+            "a";
+        Obj result = testEval(input);
+        assertEquals(new IntegerObj(243), result);
+
+        String input2 = "" +
+            "var i = 0\n" +
+            "var sum = 0\n" +
+            "while true {\n" +
+            "  i++\n" +
+            "  if i > 10 { break }\n" +
+            "  if i == 5 { continue }\n" +
+            "  sum += i\n" +
+            "}\n" +
+            "sum";
+        Obj result2 = testEval(input2);
+        assertEquals(new IntegerObj(50), result2);
+
+        String input3 = "" +
+            "var a = 0\n" +
+            "for x in 1..10 {\n" +
+            "  if x == 4 { break }\n" +
+            "  a += x\n" +
+            "}\n" +
+            "a";
+        Obj result3 = testEval(input3);
+        assertEquals(new IntegerObj(6), result3);
+    }
+
+    @TestFactory
+    public List<DynamicTest> testMatchExpression() {
+        String func = "func f(n: Int) = match n { 1 => 'one', 2, 3 => 'few', -1 => { 'neg' } else => 'many' }\n";
+        List<Pair<String, Obj>> testCases = Lists.newArrayList(
+            Pair.of(func + "f(1)", new StringObj("one")),
+            Pair.of(func + "f(3)", new StringObj("few")),
+            Pair.of(func + "f(-1)", new StringObj("neg")),
+            Pair.of(func + "f(10)", new StringObj("many")),
+            Pair.of("match 'b' { 'a' => 1, 'b' => 2, 'b' => 3 }", new IntegerObj(2)),
+            Pair.of("match 1.5 { 1.5 => true else => false }", BooleanObj.TRUE),
+            Pair.of("match false { true => 1 }", NullObj.NULL),
+            Pair.of("var a = 0\nfor x in 0..4 { a = a + match x { 0, 2 => 1 else => 10 } }\na", new IntegerObj(22))
+        );
+
+        return testCases.stream()
+            .map(testCase -> {
+                String name = String.format("'%s' should evaluate to '%s'", testCase.getKey(), testCase.getValue().inspect(0));
+
+                return dynamicTest(name, () -> {
+                    Obj result = testEval(testCase.getKey());
+                    assertEquals(testCase.getValue(), result);
+                });
+            })
+            .collect(toList());
     }
 
     @TestFactory
@@ -548,8 +625,7 @@ class EvaluatorTest {
                 String name = String.format("'%s' should evaluate to '%s'", input, expectedValues);
                 return dynamicTest(name, () -> {
                     Obj result = testEval(input);
-                    List<IntegerObj> expectedVals = expectedValues.stream().map(IntegerObj::new).collect(toList());
-                    assertEquals(expectedVals, ((ArrayObj) result).elems);
+                    assertEquals(expectedValues, Lists.newArrayList(((RangeObj) result).range));
                 });
             })
             .collect(toList());
@@ -0,0 +1,139 @@
+package mega.lang;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A lazy range of ints, from start (inclusive) to end (exclusive), stepping by step. Elements are computed on demand,
+ * so a range takes a constant amount of memory regardless of its size. A range may have at most Integer.MAX_VALUE
+ * elements, so that its size (and the index of each of its elements) is an int.
+ */
+public final class IntRange implements Iterable<Integer> {
+    private final int start;
+    private final int end;
+    private final int step;
+
+    public IntRange(int start, int end, int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive, got " + step);
+        }
+        if (count(start, end, step) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Range " + start + ".." + end + " step " + step + " has more than " + Integer.MAX_VALUE + " elements");
+        }
+        this.start = start;
+        this.end = end;
+        this.step = step;
+    }
+
+    public static IntRange of(int start, int endNotInclusive) {
+        return new IntRange(start, endNotInclusive, 1);
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public int step() {
+        return step;
+    }
+
+    public IntRange stepBy(int step) {
+        return new IntRange(this.start, this.end, step);
+    }
+
+    public int size() {
+        return (int) count(start, end, step);
+    }
+
+    private static long count(int start, int end, int step) {
+        if (end <= start) {
+            return 0;
+        }
+        long span = (long) end - (long) start;
+        return (span + step - 1) / step;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean contains(int value) {
+        if (value < start || value >= end) {
+            return false;
+        }
+        return ((long) value - (long) start) % step == 0;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for range " + this);
+        }
+        return start + index * step;
+    }
+
+    public int[] toArray() {
+        int size = size();
+        int[] arr = new int[size];
+        for (int i = 0; i < size; i++) {
+            arr[i] = start + i * step;
+        }
+        return arr;
+    }
+
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            private int index = 0;
+            private final int size = size();
+
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return start + (index++) * step;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("Ranges are immutable");
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof IntRange)) {
+            return false;
+        }
+        IntRange other = (IntRange) obj;
+        if (this.isEmpty() && other.isEmpty()) {
+            return true;
+        }
+        return this.start == other.start && this.size() == other.size() && (this.size() == 1 || this.step == other.step);
+    }
+
+    @Override
+    public int hashCode() {
+        if (isEmpty()) {
+            return 0;
+        }
+        return 31 * (31 * start + size()) + (size() == 1 ? 1 : step);
+    }
+
+    @Override
+    public String toString() {
+        if (step == 1) {
+            return start + ".." + end;
+        }
+        return start + ".." + end + " step " + step;
+    }
+}
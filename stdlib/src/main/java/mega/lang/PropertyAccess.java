@@ -0,0 +1,181 @@
+package mega.lang;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads properties of values of structural types. A value of a struct type, or of an object type, may be an instance of
+ * any class with the right properties: a struct class (whose properties are read via its getters), a shape class
+ * (whose properties are public fields; see {@link Shape}), or some other {@link Map}, whose entries are its properties.
+ * <p>
+ * Compiled code reads such a property via an invokedynamic call site bootstrapped by {@link #bootstrap}, which caches
+ * the getters of the receiver classes it has seen: the site's target is a chain of guards on the receiver's exact class,
+ * each leading to that class's getter, ending in a fallback which looks up the getter of a new receiver class and adds
+ * it to the chain. Once a site has seen more than {@link #MAX_CACHED_CLASSES} classes, it stops growing the chain, and
+ * instead ends it in a megamorphic dispatch which looks up the getter of the receiver's class in a {@link ClassValue},
+ * and invokes it exactly; no lock is taken, and no argument array is allocated, on that path.
+ */
+public class PropertyAccess {
+    public static final int MAX_CACHED_CLASSES = 4;
+
+    private static final MethodHandle IS_CLASS;
+    private static final MethodHandle MAP_GET;
+    private static final MethodHandle FALLBACK;
+    private static final MethodHandle GET_MEGAMORPHIC_GETTER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            IS_CLASS = lookup.findStatic(PropertyAccess.class, "isClass", MethodType.methodType(boolean.class, Class.class, Object.class));
+            MAP_GET = lookup.findVirtual(Map.class, "get", MethodType.methodType(Object.class, Object.class));
+            FALLBACK = lookup.findVirtual(InlineCachingCallSite.class, "fallback", MethodType.methodType(Object.class, Object.class));
+            GET_MEGAMORPHIC_GETTER = lookup.findVirtual(InlineCachingCallSite.class, "getMegamorphicGetter", MethodType.methodType(MethodHandle.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The bootstrap method of property access call sites. The name of the call site is the name of the property, and
+     * its type takes the receiver (as an Object) and returns the property's type.
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type) {
+        return new InlineCachingCallSite(lookup, name, type);
+    }
+
+    /**
+     * Reads a property without a call site (for class files which predate invokedynamic); the value is boxed if it's a
+     * primitive.
+     */
+    public static Object getProperty(Object receiver, String name) {
+        try {
+            Class<?> receiverClass = receiver.getClass();
+            Field field = findField(receiverClass, name);
+            if (field != null) {
+                return field.get(receiver);
+            }
+            Method getter = findGetter(receiverClass, name);
+            if (getter != null) {
+                return getter.invoke(receiver);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not read property " + name + " of " + receiver.getClass().getName(), e);
+        }
+
+        if (receiver instanceof Map) {
+            return ((Map<?, ?>) receiver).get(name);
+        }
+        throw new IllegalStateException("No property " + name + " on " + receiver.getClass().getName());
+    }
+
+    private static boolean isClass(Class<?> expectedClass, Object receiver) {
+        return receiver.getClass() == expectedClass;
+    }
+
+    private static Field findField(Class<?> receiverClass, String name) {
+        try {
+            Field field = receiverClass.getField(name);
+            return Modifier.isStatic(field.getModifiers()) ? null : field;
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    private static Method findGetter(Class<?> receiverClass, String name) {
+        String getterName = "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        try {
+            Method getter = receiverClass.getMethod(getterName);
+            if (Modifier.isStatic(getter.getModifiers()) || getter.getDeclaringClass() == Object.class) {
+                return null; // A property named `class` isn't getClass
+            }
+            return getter;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static class InlineCachingCallSite extends MutableCallSite {
+        private final MethodHandles.Lookup lookup;
+        private final String name;
+        private final MethodHandle fallback;
+        private final List<Class<?>> cachedClasses = new ArrayList<Class<?>>();
+        private final List<MethodHandle> cachedGetters = new ArrayList<MethodHandle>();
+        private final ClassValue<MethodHandle> getters = new ClassValue<MethodHandle>() {
+            @Override
+            protected MethodHandle computeValue(Class<?> receiverClass) {
+                try {
+                    return getGetter(receiverClass).asType(type());
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Could not read property " + name + " of " + receiverClass.getName(), e);
+                }
+            }
+        };
+
+        InlineCachingCallSite(MethodHandles.Lookup lookup, String name, MethodType type) {
+            super(type);
+            this.lookup = lookup;
+            this.name = name;
+            this.fallback = FALLBACK.bindTo(this).asType(type);
+            setTarget(this.fallback);
+        }
+
+        // Invoked (via the end of the target's chain of guards) for receivers whose class isn't cached, until the site
+        // becomes megamorphic; after that, the chain ends in the megamorphic dispatch instead
+        synchronized Object fallback(Object receiver) throws Throwable {
+            Class<?> receiverClass = receiver.getClass();
+            MethodHandle getter = this.getters.get(receiverClass);
+            if (!this.cachedClasses.contains(receiverClass)) { // Another thread may have cached it while this one waited
+                if (this.cachedClasses.size() < MAX_CACHED_CLASSES) {
+                    this.cachedClasses.add(receiverClass);
+                    this.cachedGetters.add(getter);
+                    setTarget(guardCachedClasses(this.fallback));
+                } else {
+                    MethodHandle megamorphicDispatch = MethodHandles.foldArguments(
+                        MethodHandles.exactInvoker(type()),
+                        GET_MEGAMORPHIC_GETTER.bindTo(this)
+                    );
+                    setTarget(guardCachedClasses(megamorphicDispatch));
+                }
+            }
+            return getter.invokeWithArguments(receiver);
+        }
+
+        // Invoked by the megamorphic dispatch, which then invokes the returned getter on the same receiver
+        MethodHandle getMegamorphicGetter(Object receiver) {
+            return this.getters.get(receiver.getClass());
+        }
+
+        private MethodHandle guardCachedClasses(MethodHandle otherwise) {
+            MethodHandle target = otherwise;
+            for (int i = 0; i < this.cachedClasses.size(); i++) {
+                MethodHandle guard = MethodHandles.insertArguments(IS_CLASS, 0, this.cachedClasses.get(i));
+                target = MethodHandles.guardWithTest(guard, this.cachedGetters.get(i), target);
+            }
+            return target;
+        }
+
+        private MethodHandle getGetter(Class<?> receiverClass) throws IllegalAccessException {
+            Field field = findField(receiverClass, this.name);
+            if (field != null) {
+                return this.lookup.unreflectGetter(field);
+            }
+            Method getter = findGetter(receiverClass, this.name);
+            if (getter != null) {
+                return this.lookup.unreflect(getter);
+            }
+            if (Map.class.isAssignableFrom(receiverClass)) {
+                return MethodHandles.insertArguments(MAP_GET, 1, this.name);
+            }
+            throw new IllegalStateException("No property " + this.name + " on " + receiverClass.getName());
+        }
+    }
+}
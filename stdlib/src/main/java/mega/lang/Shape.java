@@ -0,0 +1,86 @@
+package mega.lang;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Base class for the classes the compiler generates for object literals; there is one such class per distinct shape
+ * (set of property names and types). Compiled code reads and writes a shape's properties directly via its fields; this
+ * class only provides a read-only Map view of those properties, for consumers which need to treat an object
+ * dynamically (printing, equality with other maps, interop with Java code expecting a Map).
+ */
+public abstract class Shape extends AbstractMap<String, Object> {
+    private final String[] propertyNames;
+
+    protected Shape(String[] propertyNames) {
+        this.propertyNames = propertyNames;
+    }
+
+    /**
+     * Returns the (boxed) value of the property at the given index in the propertyNames array passed to the
+     * constructor.
+     */
+    protected abstract Object getProperty(int index);
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (propertyNames[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return propertyNames.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index == -1 ? null : getProperty(index);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public int size() {
+                return propertyNames.length;
+            }
+
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int index = 0;
+
+                    public boolean hasNext() {
+                        return index < propertyNames.length;
+                    }
+
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, Object> entry = new SimpleImmutableEntry<String, Object>(propertyNames[index], getProperty(index));
+                        index++;
+                        return entry;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException("Shapes are immutable");
+                    }
+                };
+            }
+        };
+    }
+}
@@ -5,6 +5,18 @@ public class Arrays {
         return java.util.Arrays.deepToString(arr);
     }
 
+    public static String toString(int[] arr) {
+        return java.util.Arrays.toString(arr);
+    }
+
+    public static String toString(float[] arr) {
+        return java.util.Arrays.toString(arr);
+    }
+
+    public static String toString(boolean[] arr) {
+        return java.util.Arrays.toString(arr);
+    }
+
     public static String strArrayToString(String[] arr) {
         StringBuilder sb = new StringBuilder();
         sb.append("[");
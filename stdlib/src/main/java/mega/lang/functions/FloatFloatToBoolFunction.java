@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface FloatFloatToBoolFunction {
+    public boolean invoke(float p1, float p2);
+}
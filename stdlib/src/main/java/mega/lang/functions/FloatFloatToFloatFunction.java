@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface FloatFloatToFloatFunction {
+    public float invoke(float p1, float p2);
+}
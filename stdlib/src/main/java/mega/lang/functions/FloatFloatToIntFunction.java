@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface FloatFloatToIntFunction {
+    public int invoke(float p1, float p2);
+}
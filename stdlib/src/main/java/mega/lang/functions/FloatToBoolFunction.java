@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface FloatToBoolFunction {
+    public boolean invoke(float p);
+}
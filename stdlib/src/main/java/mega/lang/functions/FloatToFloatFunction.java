@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface FloatToFloatFunction {
+    public float invoke(float p);
+}
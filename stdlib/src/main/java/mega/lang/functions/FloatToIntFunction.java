@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface FloatToIntFunction {
+    public int invoke(float p);
+}
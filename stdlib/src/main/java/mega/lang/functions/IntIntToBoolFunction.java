@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface IntIntToBoolFunction {
+    public boolean invoke(int p1, int p2);
+}
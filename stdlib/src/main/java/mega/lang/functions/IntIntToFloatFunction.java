@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface IntIntToFloatFunction {
+    public float invoke(int p1, int p2);
+}
@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface IntIntToIntFunction {
+    public int invoke(int p1, int p2);
+}
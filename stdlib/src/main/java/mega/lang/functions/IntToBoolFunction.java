@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface IntToBoolFunction {
+    public boolean invoke(int p);
+}
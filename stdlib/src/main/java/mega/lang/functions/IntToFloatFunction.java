@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface IntToFloatFunction {
+    public float invoke(int p);
+}
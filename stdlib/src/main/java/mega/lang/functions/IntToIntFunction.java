@@ -0,0 +1,5 @@
+package mega.lang.functions;
+
+public interface IntToIntFunction {
+    public int invoke(int p);
+}